@@ -23,6 +23,9 @@ import com.jc.hellohttp.R;
 import com.jc.hellohttp.Request;
 import com.jc.hellohttp.RequestCallback;
 import com.jc.hellohttp.RequestQueue;
+import com.jc.hellohttp.ResponseDecoders;
+
+import org.json.JSONObject;
 
 public class MainActivity extends AppCompatActivity {
 
@@ -37,9 +40,9 @@ public class MainActivity extends AppCompatActivity {
         mRequestQueue = HelloHttp.createRequestQueue();
 
         String url = "??????????";
-        Request request = new Request(url, Request.RequestType.STRING, Request.RequestMethod.GET, new RequestCallback() {
+        Request request = new Request(url, Request.RequestType.STRING, Request.RequestMethod.GET, new RequestCallback<String>() {
             @Override
-            public void onSuccess(Object response) {
+            public void onSuccess(String response) {
                 // do something
             }
 
@@ -52,6 +55,21 @@ public class MainActivity extends AppCompatActivity {
 //        request.setPriority(Request.Priority.HIGH);
         // add request into request queue
         mRequestQueue.add(request);
+
+        // parse json on the executor thread, the callback receives the parsed result
+        Request jsonRequest = new Request(url, Request.RequestType.JSON, Request.RequestMethod.GET, null,
+                ResponseDecoders.jsonObject(), new RequestCallback<JSONObject>() {
+            @Override
+            public void onSuccess(JSONObject response) {
+                // do something
+            }
+
+            @Override
+            public void onError(String errorMsg) {
+                // do something
+            }
+        });
+        mRequestQueue.add(jsonRequest);
     }
 
     @Override
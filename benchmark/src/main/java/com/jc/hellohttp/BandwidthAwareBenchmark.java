@@ -0,0 +1,134 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by Zhang on 2017/7/30.<br/>
+ * Description: 受限链路上接口调用的延迟，服务端限速为bandwidth字节/秒<br/>
+ * 后台持续保持FLOOD个LOW优先级的图片下载（每个imageSize字节），同时测量NORMAL优先级的小请求从加入到回调的时间。
+ * bandwidthAware为false时图片下载占满全部执行者，接口调用与它们平分链路；为true时请求队列估计出带宽受限，
+ * 降低并发数并推迟图片下载，接口调用的延迟应当明显降低
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BandwidthAwareBenchmark {
+
+    /**
+     * 同时保持的图片下载数
+     */
+    private static final int FLOOD = 16;
+
+    @Param({"false", "true"})
+    public boolean bandwidthAware;
+
+    /**
+     * 服务端的限速，字节/秒
+     */
+    @Param({"131072"})
+    public long bandwidth;
+
+    @Param({"65536"})
+    public int imageSize;
+
+    private LocalHttpServer mServer;
+    private String mApiUrl;
+    private String mImageUrl;
+    private ExecutorService mExecutor;
+    private RequestQueue mQueue;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mServer = new LocalHttpServer();
+        mServer.setBandwidth(bandwidth);
+        mApiUrl = mServer.url("/bytes?size=512");
+        mImageUrl = mServer.url("/bytes?size=" + imageSize);
+        mExecutor = Executors.newCachedThreadPool();
+        mQueue = HelloHttp.createRequestQueue(mExecutor, 8);
+        mQueue.setBandwidthAware(bandwidthAware);
+        for (int i = 0; i < FLOOD; i++) {
+            addImageRequest();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        HelloHttp.stop(mQueue);
+        mExecutor.shutdownNow();
+        mExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        mServer.stop();
+    }
+
+    /**
+     * 图片下载完成后立即加入下一个，保持FLOOD个在队列中
+     */
+    private void addImageRequest() {
+        Request request = new Request(mImageUrl, Request.RequestType.STRING, Request.RequestMethod.GET, new RequestCallback<Object>() {
+            @Override
+            public void onSuccess(Object response) {
+                addImageRequest();
+            }
+
+            @Override
+            public void onError(String errorMsg) {
+                addImageRequest();
+            }
+        });
+        request.setPriority(Request.Priority.LOW);
+        mQueue.add(request);
+    }
+
+    @Benchmark
+    public void apiCall() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        mQueue.add(new Request(mApiUrl, Request.RequestType.STRING, Request.RequestMethod.GET, new RequestCallback<Object>() {
+            @Override
+            public void onSuccess(Object response) {
+                latch.countDown();
+            }
+
+            @Override
+            public void onError(String errorMsg) {
+                latch.countDown();
+            }
+        }));
+        latch.await();
+    }
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Created by Zhang on 2017/7/26.<br/>
+ * Description: 不同Executor在高延迟、高并发下的吞吐量，服务端每个响应固定延迟delayMillis毫秒<br/>
+ * platformThreads为每个在途请求一个平台线程；forkJoinPool为默认并行度的ForkJoinPool，阻塞IO使在途请求数受限于CPU核数；
+ * virtualThreads在JDK 21以下退化为按需创建线程的线程池（见WorkerExecutors.virtualThreads()）。
+ * 在途连接数超过http.maxConnections（默认5）时多出的连接用完即关闭，可以通过-jvmArgs -Dhttp.maxConnections=N调整
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExecutorBackendBenchmark {
+
+    @Param({"platformThreads", "forkJoinPool", "virtualThreads"})
+    public String backend;
+
+    /**
+     * 同时在途的请求数，同时也是请求队列的并发上限
+     */
+    @Param({"4", "64", "512"})
+    public int concurrency;
+
+    /**
+     * 服务端注入的延迟（毫秒）
+     */
+    @Param({"50"})
+    public int delayMillis;
+
+    private LocalHttpServer mServer;
+    private String mUrl;
+    private ExecutorService mExecutor;
+    private RequestQueue mQueue;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long requests;
+        public long errors;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            requests = 0;
+            errors = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mServer = new LocalHttpServer();
+        mUrl = mServer.url("/delay?ms=" + delayMillis + "&size=256");
+        switch (backend) {
+            case "platformThreads":
+                mExecutor = Executors.newFixedThreadPool(concurrency);
+                break;
+            case "forkJoinPool":
+                mExecutor = new ForkJoinPool();
+                break;
+            case "virtualThreads":
+                mExecutor = WorkerExecutors.virtualThreads();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown backend: " + backend);
+        }
+        mQueue = HelloHttp.createRequestQueue(mExecutor, concurrency);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        HelloHttp.stop(mQueue);
+        mExecutor.shutdownNow();
+        mExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        mServer.stop();
+    }
+
+    @Benchmark
+    public void get(Counters counters) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(concurrency);
+        final AtomicLong errors = new AtomicLong();
+        RequestCallback<Object> callback = new RequestCallback<Object>() {
+            @Override
+            public void onSuccess(Object response) {
+                latch.countDown();
+            }
+
+            @Override
+            public void onError(String errorMsg) {
+                errors.incrementAndGet();
+                latch.countDown();
+            }
+        };
+        for (int i = 0; i < concurrency; i++) {
+            mQueue.add(new Request(mUrl, Request.RequestType.STRING, Request.RequestMethod.GET, callback));
+        }
+        latch.await();
+        counters.requests += concurrency - errors.get();
+        counters.errors += errors.get();
+    }
+
+}
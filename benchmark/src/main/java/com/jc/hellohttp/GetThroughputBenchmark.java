@@ -0,0 +1,117 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Created by Zhang on 2017/7/20.<br/>
+ * Description: 端到端的GET请求吞吐量，每次调用同时发出concurrency个请求并等待全部回调<br/>
+ * 结果中的requests为每秒完成的请求数，errors为每秒失败的请求数
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GetThroughputBenchmark {
+
+    /**
+     * 同时在途的请求数
+     */
+    @Param({"1", "4", "16", "64"})
+    public int concurrency;
+
+    /**
+     * 响应体大小（字节）
+     */
+    @Param({"256", "16384"})
+    public int bodySize;
+
+    private LocalHttpServer mServer;
+    private String mUrl;
+    private RequestQueue mQueue;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long requests;
+        public long errors;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            requests = 0;
+            errors = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mServer = new LocalHttpServer();
+        mUrl = mServer.url("/bytes?size=" + bodySize);
+        mQueue = HelloHttp.createRequestQueue();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        HelloHttp.stop(mQueue);
+        mServer.stop();
+    }
+
+    @Benchmark
+    public void get(Counters counters) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(concurrency);
+        final AtomicLong errors = new AtomicLong();
+        RequestCallback<Object> callback = new RequestCallback<Object>() {
+            @Override
+            public void onSuccess(Object response) {
+                latch.countDown();
+            }
+
+            @Override
+            public void onError(String errorMsg) {
+                errors.incrementAndGet();
+                latch.countDown();
+            }
+        };
+        for (int i = 0; i < concurrency; i++) {
+            mQueue.add(new Request(mUrl, Request.RequestType.STRING, Request.RequestMethod.GET, callback));
+        }
+        latch.await();
+        counters.requests += concurrency - errors.get();
+        counters.errors += errors.get();
+    }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Created by Zhang on 2017/7/28.<br/>
+ * Description: HTTP/1.1与HTTP/2（h2c）在高延迟、高并发下的吞吐量，服务端每个响应固定延迟delayMillis毫秒<br/>
+ * HTTP/1.1的每个在途请求占用一个TCP连接，超过http.maxConnections（默认5）的连接用完即关闭，需要重新握手；
+ * HTTP/2的全部请求在同一个连接上多路复用，测试结束时打印服务端的h2c连接数
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class Http2Benchmark {
+
+    @Param({"HTTP_1_1", "H2_PRIOR_KNOWLEDGE"})
+    public Protocol protocol;
+
+    /**
+     * 同时在途的请求数，同时也是请求队列的并发上限
+     */
+    @Param({"4", "64", "256"})
+    public int concurrency;
+
+    /**
+     * 服务端注入的延迟（毫秒）
+     */
+    @Param({"20"})
+    public int delayMillis;
+
+    /**
+     * 响应体大小
+     */
+    @Param({"1024"})
+    public int size;
+
+    private LocalHttpServer mHttp1Server;
+    private LocalHttp2Server mHttp2Server;
+    private String mUrl;
+    private ExecutorService mExecutor;
+    private RequestQueue mQueue;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long requests;
+        public long errors;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            requests = 0;
+            errors = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        String path = "/delay?ms=" + delayMillis + "&size=" + size;
+        if (protocol == Protocol.HTTP_1_1) {
+            mHttp1Server = new LocalHttpServer();
+            mUrl = mHttp1Server.url(path);
+        } else {
+            mHttp2Server = new LocalHttp2Server();
+            mUrl = mHttp2Server.url(path);
+        }
+        mExecutor = Executors.newFixedThreadPool(concurrency);
+        mQueue = HelloHttp.createRequestQueue(mExecutor, concurrency);
+        mQueue.setProtocol(protocol);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        if (mHttp2Server != null) {
+            System.out.println("\nh2c connections: " + mHttp2Server.connectionCount());
+        }
+        HelloHttp.stop(mQueue);
+        mExecutor.shutdownNow();
+        mExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        if (mHttp1Server != null) {
+            mHttp1Server.stop();
+        }
+        if (mHttp2Server != null) {
+            mHttp2Server.stop();
+        }
+    }
+
+    @Benchmark
+    public void get(Counters counters) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(concurrency);
+        final AtomicLong errors = new AtomicLong();
+        RequestCallback<Object> callback = new RequestCallback<Object>() {
+            @Override
+            public void onSuccess(Object response) {
+                latch.countDown();
+            }
+
+            @Override
+            public void onError(String errorMsg) {
+                errors.incrementAndGet();
+                latch.countDown();
+            }
+        };
+        for (int i = 0; i < concurrency; i++) {
+            mQueue.add(new Request(mUrl, Request.RequestType.STRING, Request.RequestMethod.GET, callback));
+        }
+        latch.await();
+        counters.requests += concurrency - errors.get();
+        counters.errors += errors.get();
+    }
+
+}
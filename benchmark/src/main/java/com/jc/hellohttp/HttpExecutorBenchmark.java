@@ -0,0 +1,127 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by Zhang on 2017/7/20.<br/>
+ * Description: 请求参数编码与响应体读取的基准测试，不涉及网络
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HttpExecutorBenchmark {
+
+    @State(Scope.Thread)
+    public static class Body {
+        /**
+         * 响应体大小（字节）
+         */
+        @Param({"1024", "65536", "1048576"})
+        public int bodySize;
+
+        byte[] bytes;
+
+        @Setup
+        public void setUp() {
+            bytes = new byte[bodySize];
+            Arrays.fill(bytes, (byte) 'a');
+            // 每80个字节一行，模拟格式化过的JSON
+            for (int i = 79; i < bodySize; i += 80) {
+                bytes[i] = '\n';
+            }
+        }
+    }
+
+    private Map<String, String> mParams;
+    private final byte[] mBuffer = new byte[1024 * 8];
+
+    @Setup
+    public void setUp() {
+        mParams = new LinkedHashMap<>();
+        for (int i = 0; i < 16; i++) {
+            mParams.put("key" + i, "value " + i + " 中文&=?");
+        }
+    }
+
+    @Benchmark
+    public int encodedParamsLength() {
+        return ParamsEncoder.encodedLength(mParams);
+    }
+
+    /**
+     * 与POST请求相同的方式：经由复用的缓冲区写入输出流
+     */
+    @Benchmark
+    public void writeParams(Blackhole blackhole) throws IOException {
+        ParamsEncoder.writeTo(mParams, new NullOutputStream(blackhole), mBuffer);
+    }
+
+    /**
+     * 与GET请求相同的方式：编码为查询字符串
+     */
+    @Benchmark
+    public String encodeParamsToString() {
+        return ParamsEncoder.encodeToString(mParams);
+    }
+
+    private static final class NullOutputStream extends OutputStream {
+        private final Blackhole mBlackhole;
+
+        NullOutputStream(Blackhole blackhole) {
+            mBlackhole = blackhole;
+        }
+
+        @Override
+        public void write(int b) {
+            mBlackhole.consume(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            mBlackhole.consume(b);
+        }
+    }
+
+    @Benchmark
+    public String responseToString(Body body) throws IOException {
+        return ResponseDecoders.readString(new ByteArrayInputStream(body.bytes), null, body.bytes.length);
+    }
+
+}
@@ -0,0 +1,386 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.jc.hellohttp.Http2Framer.*;
+
+/**
+ * Created by Zhang on 2017/7/28.<br/>
+ * Description: 基准测试使用的本地明文HTTP/2（h2c，prior knowledge）服务器，复用客户端的Http2Framer与Hpack<br/>
+ * 与LocalHttpServer提供相同的/bytes、/echo、/delay，每个流在线程池中处理，发送响应时遵守客户端的流量控制窗口
+ */
+final class LocalHttp2Server {
+
+    /**
+     * 服务端的流接收窗口，足够接收基准测试中的请求体
+     */
+    private static final int INITIAL_WINDOW_SIZE = 1024 * 1024;
+
+    private final ServerSocket mServerSocket;
+    private final ExecutorService mExecutor = Executors.newCachedThreadPool();
+    private final Set<Connection> mConnections = Collections.newSetFromMap(new ConcurrentHashMap<Connection, Boolean>());
+
+    LocalHttp2Server() throws IOException {
+        mServerSocket = new ServerSocket(0, 1024, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!mServerSocket.isClosed()) {
+                    try {
+                        Socket socket = mServerSocket.accept();
+                        socket.setTcpNoDelay(true);
+                        final Connection connection = new Connection(socket);
+                        mConnections.add(connection);
+                        mExecutor.execute(connection);
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            }
+        }, "LocalHttp2Server-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    String url(String path) {
+        return "http://127.0.0.1:" + mServerSocket.getLocalPort() + path;
+    }
+
+    /**
+     * 当前的连接数，用于验证同一主机的请求共享一个连接
+     */
+    int connectionCount() {
+        return mConnections.size();
+    }
+
+    /**
+     * 向全部连接发送GOAWAY，模拟服务器优雅关闭连接
+     */
+    void goAway() throws IOException {
+        for (Connection connection : mConnections) {
+            connection.goAway();
+        }
+    }
+
+    void stop() {
+        try {
+            mServerSocket.close();
+        } catch (IOException ignored) {
+        }
+        for (Connection connection : mConnections) {
+            connection.close();
+        }
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * 服务端的一个流
+     */
+    private static final class Stream {
+        final int mId;
+        List<String> mHeaders;
+        final ByteArrayOutputStream mBody = new ByteArrayOutputStream();
+        long mSendWindow;
+        boolean mReset;
+
+        Stream(int id, long sendWindow) {
+            mId = id;
+            mSendWindow = sendWindow;
+        }
+    }
+
+    private final class Connection implements Runnable {
+
+        private final Socket mSocket;
+        private volatile Http2Framer mFramer;
+        private final Hpack.Decoder mDecoder = new Hpack.Decoder(Hpack.DEFAULT_HEADER_TABLE_SIZE);
+
+        // 以下字段由this保护
+        private final Map<Integer, Stream> mStreams = new HashMap<>();
+        private long mSendWindow = DEFAULT_INITIAL_WINDOW_SIZE;
+        private int mPeerInitialWindowSize = DEFAULT_INITIAL_WINDOW_SIZE;
+        private int mPeerMaxFrameSize = DEFAULT_MAX_FRAME_SIZE;
+        private int mLastStreamId;
+        private boolean mClosed;
+
+        Connection(Socket socket) {
+            mSocket = socket;
+        }
+
+        @Override
+        public void run() {
+            try {
+                // 逐字节读取连接前言，之后的数据交给Http2Framer的缓冲区
+                byte[] preface = new byte[CONNECTION_PREFACE.length];
+                new DataInputStream(mSocket.getInputStream()).readFully(preface);
+                if (!Arrays.equals(preface, CONNECTION_PREFACE)) {
+                    throw new IOException("Bad connection preface");
+                }
+                mFramer = new Http2Framer(mSocket.getInputStream(), mSocket.getOutputStream());
+                mFramer.writeSettings(SETTINGS_INITIAL_WINDOW_SIZE, INITIAL_WINDOW_SIZE);
+                mFramer.flush();
+                while (mFramer.nextFrame()) {
+                    readFrame();
+                }
+            } catch (IOException ignored) {
+                // 客户端关闭连接
+            } finally {
+                close();
+            }
+        }
+
+        private void readFrame() throws IOException {
+            int streamId = mFramer.streamId();
+            int length = mFramer.length();
+            int flags = mFramer.flags();
+            switch (mFramer.type()) {
+                case TYPE_HEADERS: {
+                    int padding = (flags & FLAG_PADDED) != 0 ? mFramer.readUnsignedByte() : 0;
+                    int blockLength = length - ((flags & FLAG_PADDED) != 0 ? 1 : 0) - padding;
+                    if ((flags & FLAG_PRIORITY) != 0) {
+                        mFramer.skipPayload(5);
+                        blockLength -= 5;
+                    }
+                    ByteArrayOutputStream block = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[blockLength];
+                    mFramer.readPayload(buffer, 0, blockLength);
+                    block.write(buffer, 0, blockLength);
+                    mFramer.skipPayload(padding);
+                    boolean endStream = (flags & FLAG_END_STREAM) != 0;
+                    while ((flags & FLAG_END_HEADERS) == 0) {
+                        if (!mFramer.nextFrame() || mFramer.type() != TYPE_CONTINUATION) {
+                            throw new IOException("Expected CONTINUATION");
+                        }
+                        flags = mFramer.flags();
+                        buffer = new byte[mFramer.length()];
+                        mFramer.readPayload(buffer, 0, buffer.length);
+                        block.write(buffer, 0, buffer.length);
+                    }
+                    byte[] bytes = block.toByteArray();
+                    List<String> headers = mDecoder.decode(bytes, 0, bytes.length);
+                    Stream stream;
+                    synchronized (this) {
+                        stream = new Stream(streamId, mPeerInitialWindowSize);
+                        stream.mHeaders = headers;
+                        mStreams.put(streamId, stream);
+                        mLastStreamId = streamId;
+                    }
+                    if (endStream) {
+                        dispatch(stream);
+                    }
+                    break;
+                }
+                case TYPE_DATA: {
+                    int padding = (flags & FLAG_PADDED) != 0 ? mFramer.readUnsignedByte() : 0;
+                    int dataLength = length - ((flags & FLAG_PADDED) != 0 ? 1 : 0) - padding;
+                    byte[] data = new byte[dataLength];
+                    mFramer.readPayload(data, 0, dataLength);
+                    mFramer.skipPayload(padding);
+                    Stream stream;
+                    synchronized (this) {
+                        stream = mStreams.get(streamId);
+                    }
+                    if (stream != null) {
+                        stream.mBody.write(data, 0, dataLength);
+                    }
+                    if (length > 0) {
+                        // 请求体全部缓存在内存中，收到即归还窗口
+                        mFramer.writeWindowUpdate(0, length);
+                        if ((flags & FLAG_END_STREAM) == 0) {
+                            mFramer.writeWindowUpdate(streamId, length);
+                        }
+                        mFramer.flush();
+                    }
+                    if (stream != null && (flags & FLAG_END_STREAM) != 0) {
+                        dispatch(stream);
+                    }
+                    break;
+                }
+                case TYPE_SETTINGS: {
+                    if ((flags & FLAG_ACK) != 0) {
+                        break;
+                    }
+                    synchronized (this) {
+                        for (int i = 0; i < length; i += 6) {
+                            int id = mFramer.readUnsignedByte() << 8 | mFramer.readUnsignedByte();
+                            int value = mFramer.readInt();
+                            if (id == SETTINGS_INITIAL_WINDOW_SIZE) {
+                                for (Stream stream : mStreams.values()) {
+                                    stream.mSendWindow += value - mPeerInitialWindowSize;
+                                }
+                                mPeerInitialWindowSize = value;
+                            } else if (id == SETTINGS_MAX_FRAME_SIZE) {
+                                mPeerMaxFrameSize = value;
+                            }
+                        }
+                        notifyAll();
+                    }
+                    mFramer.writeSettingsAck();
+                    mFramer.flush();
+                    break;
+                }
+                case TYPE_WINDOW_UPDATE: {
+                    int increment = mFramer.readInt() & 0x7fffffff;
+                    synchronized (this) {
+                        if (streamId == 0) {
+                            mSendWindow += increment;
+                        } else {
+                            Stream stream = mStreams.get(streamId);
+                            if (stream != null) {
+                                stream.mSendWindow += increment;
+                            }
+                        }
+                        notifyAll();
+                    }
+                    break;
+                }
+                case TYPE_RST_STREAM: {
+                    mFramer.readInt();
+                    synchronized (this) {
+                        Stream stream = mStreams.remove(streamId);
+                        if (stream != null) {
+                            stream.mReset = true;
+                        }
+                        notifyAll();
+                    }
+                    break;
+                }
+                case TYPE_PING: {
+                    byte[] payload = new byte[8];
+                    mFramer.readPayload(payload, 0, 8);
+                    if ((flags & FLAG_ACK) == 0) {
+                        mFramer.writePing(true, payload);
+                        mFramer.flush();
+                    }
+                    break;
+                }
+                case TYPE_GOAWAY:
+                    mFramer.skipPayload(length);
+                    throw new IOException("GOAWAY received");
+                default:
+                    mFramer.skipPayload(length);
+                    break;
+            }
+        }
+
+        private void dispatch(final Stream stream) {
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        respond(stream);
+                    } catch (IOException | InterruptedException e) {
+                        close();
+                    }
+                }
+            });
+        }
+
+        private void respond(Stream stream) throws IOException, InterruptedException {
+            String path = Http2Connection.header(stream.mHeaders, ":path");
+            byte[] body;
+            if (path.startsWith("/echo")) {
+                body = stream.mBody.toByteArray();
+            } else {
+                if (path.startsWith("/delay")) {
+                    Thread.sleep(queryParameter(path, "ms", 50));
+                }
+                body = new byte[queryParameter(path, "size", 16)];
+                Arrays.fill(body, (byte) 'a');
+            }
+            byte[] block = new Hpack.Encoder()
+                    .header(":status", "200")
+                    .header("content-type", "application/octet-stream")
+                    .header("content-length", String.valueOf(body.length))
+                    .toByteArray();
+            mFramer.writeHeaders(stream.mId, block, body.length == 0, 0);
+            mFramer.flush();
+            int pos = 0;
+            while (pos < body.length) {
+                int length;
+                synchronized (this) {
+                    while (!stream.mReset && !mClosed && (mSendWindow <= 0 || stream.mSendWindow <= 0)) {
+                        wait();
+                    }
+                    if (stream.mReset || mClosed) {
+                        return;
+                    }
+                    length = (int) Math.min(Math.min(body.length - pos, mPeerMaxFrameSize),
+                            Math.min(mSendWindow, stream.mSendWindow));
+                    mSendWindow -= length;
+                    stream.mSendWindow -= length;
+                }
+                mFramer.writeData(stream.mId, body, pos, length, pos + length == body.length);
+                pos += length;
+            }
+            mFramer.flush();
+            synchronized (this) {
+                mStreams.remove(stream.mId);
+            }
+        }
+
+        void goAway() throws IOException {
+            int lastStreamId;
+            synchronized (this) {
+                lastStreamId = mLastStreamId;
+            }
+            mFramer.writeGoAway(lastStreamId, NO_ERROR);
+            mFramer.flush();
+        }
+
+        void close() {
+            synchronized (this) {
+                mClosed = true;
+                notifyAll();
+            }
+            mConnections.remove(this);
+            try {
+                mSocket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static int queryParameter(String path, String name, int defaultValue) {
+        int queryStart = path.indexOf('?');
+        if (queryStart == -1) {
+            return defaultValue;
+        }
+        for (String pair : path.substring(queryStart + 1).split("&")) {
+            if (pair.startsWith(name + "=")) {
+                return Integer.parseInt(pair.substring(name.length() + 1));
+            }
+        }
+        return defaultValue;
+    }
+
+}
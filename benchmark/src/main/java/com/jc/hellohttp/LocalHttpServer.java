@@ -0,0 +1,184 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by Zhang on 2017/7/20.<br/>
+ * Description: 基准测试使用的本地http服务器<br/>
+ * /bytes?size=N：返回N字节的响应体；/echo：原样返回请求体；/delay?ms=T&size=N：等待T毫秒后返回N字节的响应体，模拟网络延迟<br/>
+ * setBandwidth()限制全部响应体共享的发送速度，模拟受限的链路
+ */
+final class LocalHttpServer {
+
+    static {
+        // 默认开启了Nagle算法，与客户端的延迟确认叠加后每个响应会多出约40ms
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    /**
+     * 限速时每次发送的字节数
+     */
+    private static final int CHUNK_SIZE = 4 * 1024;
+
+    private final HttpServer mServer;
+    private final ExecutorService mExecutor;
+    /**
+     * 共享链路的带宽，字节/秒，0为不限速
+     */
+    private volatile long mBandwidth;
+    /**
+     * 链路下一次空闲的时间，由this保护
+     */
+    private long mLinkFreeNanos;
+
+    LocalHttpServer() throws IOException {
+        mServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        // 按需创建线程，/delay在等待期间占用一个线程，固定大小的线程池会让服务端成为瓶颈
+        mExecutor = Executors.newCachedThreadPool();
+        mServer.setExecutor(mExecutor);
+        mServer.createContext("/bytes", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                int size = queryParameter(exchange, "size", 16);
+                drain(exchange.getRequestBody());
+                byte[] body = new byte[size];
+                Arrays.fill(body, (byte) 'a');
+                respond(exchange, body);
+            }
+        });
+        mServer.createContext("/delay", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                int delayMillis = queryParameter(exchange, "ms", 50);
+                int size = queryParameter(exchange, "size", 16);
+                drain(exchange.getRequestBody());
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    exchange.close();
+                    return;
+                }
+                byte[] body = new byte[size];
+                Arrays.fill(body, (byte) 'a');
+                respond(exchange, body);
+            }
+        });
+        mServer.createContext("/echo", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                respond(exchange, drain(exchange.getRequestBody()));
+            }
+        });
+        mServer.start();
+    }
+
+    String url(String path) {
+        return "http://127.0.0.1:" + mServer.getAddress().getPort() + path;
+    }
+
+    /**
+     * 限制全部响应体共享的发送速度，同时发送的响应按先后排队占用链路
+     *
+     * @param bytesPerSecond 带宽，0为不限速
+     */
+    void setBandwidth(long bytesPerSecond) {
+        mBandwidth = bytesPerSecond;
+    }
+
+    void stop() {
+        mServer.stop(0);
+        mExecutor.shutdownNow();
+    }
+
+    static int queryParameter(HttpExchange exchange, String name, int defaultValue) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return defaultValue;
+        }
+        for (String pair : query.split("&")) {
+            if (pair.startsWith(name + "=")) {
+                return Integer.parseInt(pair.substring(name.length() + 1));
+            }
+        }
+        return defaultValue;
+    }
+
+    private void respond(HttpExchange exchange, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(200, body.length == 0 ? -1 : body.length);
+        OutputStream out = exchange.getResponseBody();
+        if (mBandwidth <= 0) {
+            out.write(body);
+        } else {
+            for (int offset = 0; offset < body.length; offset += CHUNK_SIZE) {
+                int length = Math.min(CHUNK_SIZE, body.length - offset);
+                awaitLink(length);
+                out.write(body, offset, length);
+                out.flush();
+            }
+        }
+        out.close();
+    }
+
+    /**
+     * 在链路上预约length字节的发送时间，等到预约的时间结束
+     */
+    private void awaitLink(int length) throws IOException {
+        long bandwidth = mBandwidth;
+        long sendAt;
+        synchronized (this) {
+            long now = System.nanoTime();
+            mLinkFreeNanos = Math.max(now, mLinkFreeNanos) + length * 1000000000L / bandwidth;
+            sendAt = mLinkFreeNanos;
+        }
+        long remaining;
+        while ((remaining = sendAt - System.nanoTime()) > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while throttling");
+            }
+        }
+    }
+
+    private static byte[] drain(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024 * 8];
+        int length;
+        while ((length = in.read(buffer)) != -1) {
+            out.write(buffer, 0, length);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+}
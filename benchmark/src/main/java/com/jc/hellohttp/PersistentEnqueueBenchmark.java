@@ -0,0 +1,88 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by Zhang on 2017/7/31.<br/>
+ * Description: 多线程加入持久化请求的吞吐量，groupCommit为false时每条记录单独fsync<br/>
+ * 存储处于离线状态，请求只写入磁盘，不发送。结果取决于磁盘的fsync延迟，可以通过-t调整线程数
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PersistentEnqueueBenchmark {
+
+    @Param({"false", "true"})
+    public boolean groupCommit;
+
+    private File mFile;
+    private RequestQueue mQueue;
+    private PersistentRequestStore mStore;
+    private Map<String, String> mParams;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("requests", ".log");
+        mQueue = HelloHttp.createRequestQueue();
+        mStore = new PersistentRequestStore(mFile, groupCommit);
+        mStore.setOnline(false);
+        mQueue.setPersistentStore(mStore);
+        mParams = new HashMap<>();
+        mParams.put("content", "a short message");
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        HelloHttp.stop(mQueue);
+        mStore.close();
+        if (!mFile.delete()) {
+            mFile.deleteOnExit();
+        }
+    }
+
+    @Benchmark
+    public boolean enqueue() {
+        Request request = new Request("http://127.0.0.1/messages", Request.RequestType.STRING, mParams, null);
+        request.setPersistable(true);
+        return mQueue.add(request);
+    }
+
+}
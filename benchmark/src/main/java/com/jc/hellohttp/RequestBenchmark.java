@@ -0,0 +1,115 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by Zhang on 2017/7/20.<br/>
+ * Description: Request的构造、URL解析与编码、优先级比较的基准测试<br/>
+ * 配合-prof gc可以看到每构造一个Request分配的内存
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RequestBenchmark {
+
+    private static final int QUEUE_SIZE = 1024;
+
+    private static final String ASCII_URL = "http://example.com/api/v1/users?id=12345&name=hello";
+    private static final String NON_ASCII_URL = "http://example.com/搜索/图片?关键字=你好世界&page=1";
+    private static final String SURROGATE_URL = "http://example.com/emoji/\uD83D\uDE00?q=\uD83D\uDC4D#\uD83C\uDF89";
+
+    private Request[] mRequests;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        Request.Priority[] priorities = Request.Priority.values();
+        mRequests = new Request[QUEUE_SIZE];
+        for (int i = 0; i < QUEUE_SIZE; i++) {
+            Request request = new Request(ASCII_URL, Request.RequestType.STRING, null);
+            request.setPriority(priorities[random.nextInt(priorities.length)]);
+            request.setSequence(i);
+            mRequests[i] = request;
+        }
+    }
+
+    @Benchmark
+    public Request constructAsciiRequest() {
+        return new Request(ASCII_URL, Request.RequestType.STRING, null);
+    }
+
+    @Benchmark
+    public Request constructNonAsciiRequest() {
+        return new Request(NON_ASCII_URL, Request.RequestType.STRING, null);
+    }
+
+    @Benchmark
+    public HttpUrl parseAsciiUrl() {
+        return HttpUrl.parse(ASCII_URL);
+    }
+
+    @Benchmark
+    public HttpUrl parseNonAsciiUrl() {
+        return HttpUrl.parse(NON_ASCII_URL);
+    }
+
+    @Benchmark
+    public HttpUrl parseSurrogateUrl() {
+        return HttpUrl.parse(SURROGATE_URL);
+    }
+
+    @Benchmark
+    public int compareTo() {
+        return mRequests[0].compareTo(mRequests[1]);
+    }
+
+    /**
+     * 与等候区相同的使用方式：先全部入队，再按优先级全部出队
+     */
+    @Benchmark
+    @OperationsPerInvocation(QUEUE_SIZE)
+    public void priorityQueueOfferPoll(Blackhole blackhole) {
+        PriorityQueue<Request> queue = new PriorityQueue<>(QUEUE_SIZE);
+        for (Request request : mRequests) {
+            queue.offer(request);
+        }
+        Request request;
+        while ((request = queue.poll()) != null) {
+            blackhole.consume(request);
+        }
+    }
+
+}
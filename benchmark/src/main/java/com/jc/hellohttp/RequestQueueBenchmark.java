@@ -0,0 +1,79 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by Zhang on 2017/7/20.<br/>
+ * Description: RequestQueue.add()分发请求的开销<br/>
+ * 每次迭代固定加入BATCH个请求，迭代结束后停止队列，避免队列无限增长
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10, batchSize = RequestQueueBenchmark.BATCH)
+@Measurement(iterations = 10, batchSize = RequestQueueBenchmark.BATCH)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RequestQueueBenchmark {
+
+    static final int BATCH = 10000;
+
+    private LocalHttpServer mServer;
+    private String mUrl;
+    private RequestQueue mQueue;
+
+    @Setup(Level.Trial)
+    public void startServer() throws IOException {
+        mServer = new LocalHttpServer();
+        mUrl = mServer.url("/bytes?size=16");
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() {
+        mServer.stop();
+    }
+
+    @Setup(Level.Iteration)
+    public void createQueue() {
+        mQueue = HelloHttp.createRequestQueue();
+    }
+
+    @TearDown(Level.Iteration)
+    public void stopQueue() {
+        HelloHttp.stop(mQueue);
+    }
+
+    @Benchmark
+    public boolean add() {
+        return mQueue.add(new Request(mUrl, Request.RequestType.STRING, Request.RequestMethod.GET, null));
+    }
+
+}
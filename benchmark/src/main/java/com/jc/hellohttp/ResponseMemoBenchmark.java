@@ -0,0 +1,107 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by Zhang on 2017/8/1.<br/>
+ * Description: 反复请求少量相同接口（如切换标签页）时的延迟，服务端每个响应固定延迟delayMillis毫秒<br/>
+ * 每次调用从TABS个URL中轮流选择一个。启用响应备忘（ttl 1秒，之后5秒内先返回旧响应并在后台刷新）时，
+ * 大部分调用直接返回备忘的响应体，hitRatio为命中率
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResponseMemoBenchmark {
+
+    private static final int TABS = 4;
+
+    @Param({"false", "true"})
+    public boolean memo;
+
+    @Param({"20"})
+    public int delayMillis;
+
+    private LocalHttpServer mServer;
+    private String[] mUrls;
+    private RequestQueue mQueue;
+    private int mNext;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public double hitRatio;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mServer = new LocalHttpServer();
+        mUrls = new String[TABS];
+        for (int i = 0; i < TABS; i++) {
+            mUrls[i] = mServer.url("/delay?ms=" + delayMillis + "&size=" + (1024 + i));
+        }
+        mQueue = HelloHttp.createRequestQueue();
+        if (memo) {
+            mQueue.setResponseMemo(1024 * 1024, 1000, 5000);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        HelloHttp.stop(mQueue);
+        mServer.stop();
+    }
+
+    @Benchmark
+    public void get(Counters counters) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        mQueue.add(new Request(mUrls[mNext++ % TABS], Request.RequestType.JSON, Request.RequestMethod.GET, new RequestCallback<Object>() {
+            @Override
+            public void onSuccess(Object response) {
+                latch.countDown();
+            }
+
+            @Override
+            public void onError(String errorMsg) {
+                latch.countDown();
+            }
+        }));
+        latch.await();
+        counters.hitRatio = mQueue.getResponseMemoHitRatio();
+    }
+
+}
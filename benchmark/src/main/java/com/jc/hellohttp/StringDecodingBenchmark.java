@@ -0,0 +1,100 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by Zhang on 2017/8/3.<br/>
+ * Description: 将数MB的响应体解码为String，对比原来逐行读取、每行追加换行的实现<br/>
+ * text为ascii时模拟格式化过的JSON，为cjk时每行是UTF-8编码的中文；knownLength为false时模拟没有Content-Length的响应。
+ * 可以加上-prof gc对比每次调用分配的字节数
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class StringDecodingBenchmark {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * 响应体大小（字节）
+     */
+    @Param({"1048576", "8388608"})
+    public int bodySize;
+
+    @Param({"ascii", "cjk"})
+    public String text;
+
+    @Param({"true", "false"})
+    public boolean knownLength;
+
+    private byte[] mBody;
+
+    @Setup
+    public void setUp() {
+        String line = "ascii".equals(text)
+                ? "    {\"id\": 12345, \"name\": \"hello http\", \"tags\": [\"a\", \"b\"]},\n"
+                : "    {\"标题\": \"你好，世界\", \"内容\": \"一个简单的网络请求库\"},\n";
+        StringBuilder builder = new StringBuilder(bodySize);
+        while (builder.length() < bodySize) {
+            builder.append(line);
+        }
+        byte[] bytes = builder.toString().getBytes(UTF_8);
+        mBody = new byte[bodySize];
+        System.arraycopy(bytes, 0, mBody, 0, bodySize);
+    }
+
+    @Benchmark
+    public String lineByLine() throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(mBody)));
+        StringBuilder builder = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            builder.append(line).append("\n");
+        }
+        reader.close();
+        return builder.toString();
+    }
+
+    @Benchmark
+    public String textDecoder() throws IOException {
+        InputStream body = new ByteArrayInputStream(mBody);
+        return TextDecoder.decode(body, "application/json; charset=utf-8", knownLength ? mBody.length : -1);
+    }
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by Zhang on 2017/7/25.<br/>
+ * Description: 等候区队列在多个生产者同时入队、一个执行者出队时的竞争开销<br/>
+ * 对比原先的PriorityBlockingQueue与按优先级分桶的PriorityRequestQueue，结果为每个请求入队并出队的平均耗时；
+ * PriorityRequestQueue+aging为等候区开启1秒老化后的配置，包括入队时间的记录、老化后的选择与排队时间的统计
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WaitingAreaQueueBenchmark {
+
+    private static final int REQUESTS = 16 * 1024;
+
+    @Param({"1", "2", "4", "8", "16"})
+    public int producers;
+
+    @Param({"PriorityBlockingQueue", "PriorityRequestQueue", "PriorityRequestQueue+aging"})
+    public String queue;
+
+    private Request[] mRequests;
+    private ExecutorService mProducerPool;
+    private QueueAdapter mQueue;
+
+    /**
+     * 统一两种队列的入队与出队操作
+     */
+    private interface QueueAdapter {
+        void offer(Request request);
+
+        Request take() throws InterruptedException;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Request.Priority[] priorities = Request.Priority.values();
+        mRequests = new Request[REQUESTS];
+        for (int i = 0; i < REQUESTS; i++) {
+            Request request = new Request("http://127.0.0.1/", Request.RequestType.STRING, null);
+            request.setPriority(priorities[i % priorities.length]);
+            request.setSequence(i);
+            mRequests[i] = request;
+        }
+        mProducerPool = Executors.newFixedThreadPool(producers);
+        if ("PriorityBlockingQueue".equals(queue)) {
+            final BlockingQueue<Request> blockingQueue = new PriorityBlockingQueue<>();
+            mQueue = new QueueAdapter() {
+                @Override
+                public void offer(Request request) {
+                    blockingQueue.offer(request);
+                }
+
+                @Override
+                public Request take() throws InterruptedException {
+                    return blockingQueue.take();
+                }
+            };
+        } else {
+            final PriorityRequestQueue requestQueue = "PriorityRequestQueue".equals(queue) ? new PriorityRequestQueue()
+                    : new PriorityRequestQueue(new PriorityAging(TimeUnit.SECONDS.toNanos(1)));
+            mQueue = new QueueAdapter() {
+                @Override
+                public void offer(Request request) {
+                    requestQueue.offer(request);
+                }
+
+                @Override
+                public Request take() throws InterruptedException {
+                    return requestQueue.take();
+                }
+            };
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mProducerPool.shutdownNow();
+    }
+
+    /**
+     * 生产者线程各自入队REQUESTS / producers个请求，当前线程作为执行者全部出队
+     */
+    @Benchmark
+    @OperationsPerInvocation(REQUESTS)
+    public void offerAndTake() throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final int perProducer = REQUESTS / producers;
+        Future<?>[] futures = new Future<?>[producers];
+        for (int p = 0; p < producers; p++) {
+            final int from = p * perProducer;
+            futures[p] = mProducerPool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = from; i < from + perProducer; i++) {
+                        mQueue.offer(mRequests[i]);
+                    }
+                }
+            });
+        }
+        start.countDown();
+        for (int i = 0; i < perProducer * producers; i++) {
+            mQueue.take();
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+    }
+
+}
@@ -0,0 +1,4 @@
+# Platform在运行时通过反射创建AndroidPlatform
+-keep class com.jc.hellohttp.AndroidPlatform {
+    <init>();
+}
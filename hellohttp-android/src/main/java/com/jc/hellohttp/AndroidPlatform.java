@@ -0,0 +1,68 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import android.graphics.Bitmap;
+import android.os.Environment;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.File;
+import java.util.concurrent.Executor;
+
+/**
+ * Created by Zhang on 2017/7/27.<br/>
+ * Description: Android平台的实现，由Platform通过反射创建：回调通过Handler投递到主线程，日志输出到Logcat，ImageRequest默认解析为Bitmap
+ */
+class AndroidPlatform extends Platform {
+
+    @Override
+    Executor callbackExecutor() {
+        return new MainThreadExecutor();
+    }
+
+    @Override
+    void logInfo(String tag, String msg) {
+        Log.i(tag, msg);
+    }
+
+    @Override
+    void logError(String tag, String msg) {
+        Log.e(tag, msg);
+    }
+
+    @Override
+    ResponseDecoder<?> defaultImageDecoder() {
+        // 不压缩图片，且采用最高品质
+        return new BitmapDecoder(0, 0, Bitmap.Config.ARGB_8888);
+    }
+
+    @Override
+    File downloadDirectory() {
+        return Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS);
+    }
+
+    static class MainThreadExecutor implements Executor {
+        private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void execute(Runnable command) {
+            mHandler.post(command);
+        }
+    }
+
+}
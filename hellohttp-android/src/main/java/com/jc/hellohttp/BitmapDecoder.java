@@ -0,0 +1,141 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Created by Zhang on 2017/7/24.<br/>
+ * Description: ImageRequest默认使用的解析器，按照给定的宽高压缩图片
+ */
+class BitmapDecoder implements ResponseDecoder<Bitmap> {
+
+    /**
+     * 解码结果的大小上限，按照目标宽高缩放后仍超过上限的图片继续增大采样率，避免超大图片耗尽内存
+     */
+    static final long MAX_BITMAP_BYTES = 16 * 1024 * 1024;
+
+    private final int mWidth;
+    private final int mHeight;
+    private final Bitmap.Config mConfig;
+
+    BitmapDecoder(int width, int height, Bitmap.Config config) {
+        this.mWidth = width;
+        this.mHeight = height;
+        this.mConfig = config;
+    }
+
+    @Override
+    public Bitmap decode(InputStream body, String contentType, long contentLength) throws IOException {
+        return getCompressedBitmap(body, mWidth, mHeight, mConfig);
+    }
+
+    /**
+     * 根据给定的图片宽高压缩图片，如果给定的宽或高为0则不压缩图片
+     *
+     * @param inputStream 图片的输入流
+     * @param width       目标宽度
+     * @param height      目标高度
+     * @return 压缩后的图片，数据无法解析为图片时返回null
+     * @throws IOException 读取响应体失败，或解码结果超出请求队列的内存预算
+     */
+    // 避免同时解码多张图片，可明显降低处理过程中CPU占用，改善流畅度
+    static synchronized Bitmap getCompressedBitmap(InputStream inputStream, int width, int height, Bitmap.Config config) throws IOException {
+        return decodeSampled(inputStream, width, height, config);
+    }
+
+    /**
+     * 与getCompressedBitmap()相同，但不持有全局的解码锁，由调用者限制同时解码的数量（如ImagePipeline的解码并行度）
+     */
+    static Bitmap decodeSampled(InputStream inputStream, int width, int height, Bitmap.Config config) throws IOException {
+        // 将输入流中的数据读入数组中
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024 * 8];
+        int length = 0;
+        while ((length = inputStream.read(buffer)) != -1) {
+            byteArrayOutputStream.write(buffer, 0, length);
+            byteArrayOutputStream.flush();
+        }
+        byte[] bytes = byteArrayOutputStream.toByteArray();
+        byteArrayOutputStream.close();
+        // 解析byte[]数组，获取图片原始尺寸
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        // 仅加载边界属性
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+        // 再次解析byte[]数组，获取Bitmap
+        options.inJustDecodeBounds = false;
+        options.inPreferredConfig = config;
+        options.inSampleSize = limitSampleSize(calculateSampleSize(options.outWidth, options.outHeight, width, height),
+                options.outWidth, options.outHeight, config);
+        // 超出内存预算时抛出RequestException(MEMORY)，由执行者以onError回调
+        BudgetedInputStream.reserve(inputStream, decodedSize(options.outWidth, options.outHeight, options.inSampleSize, config));
+        return BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+    }
+
+    /**
+     * 根据原始尺寸计算压缩比例
+     */
+    static int calculateSampleSize(int outWidth, int outHeight, int width, int height) {
+        int scale = 1;
+        if (width != 0 && height != 0) {
+            int scaleW = outWidth / width;
+            int scaleH = outHeight / height;
+            scale = scaleW > scaleH ? scaleW : scaleH;
+        }
+        return scale;
+    }
+
+    /**
+     * 增大采样率直到解码结果不超过MAX_BITMAP_BYTES
+     */
+    static int limitSampleSize(int sampleSize, int outWidth, int outHeight, Bitmap.Config config) {
+        int scale = Math.max(1, sampleSize);
+        while (decodedSize(outWidth, outHeight, scale, config) > MAX_BITMAP_BYTES) {
+            scale *= 2;
+        }
+        return scale;
+    }
+
+    /**
+     * 估计解码结果的字节数，BitmapFactory实际使用不大于inSampleSize的2的幂
+     */
+    static long decodedSize(int outWidth, int outHeight, int sampleSize, Bitmap.Config config) {
+        int scale = Integer.highestOneBit(Math.max(1, sampleSize));
+        return (long) (outWidth / scale) * (outHeight / scale) * bytesPerPixel(config);
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        if (config == null) {
+            return 4;
+        }
+        switch (config) {
+            case ALPHA_8:
+                return 1;
+            case RGB_565:
+            case ARGB_4444:
+                return 2;
+            default:
+                return 4;
+        }
+    }
+
+}
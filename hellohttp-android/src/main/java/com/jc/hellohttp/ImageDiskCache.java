@@ -0,0 +1,426 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.support.annotation.Nullable;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Created by Zhang on 2017/7/29.<br/>
+ * Description: 图片的文件缓存，默认原样保存服务器返回的图片数据，不重新编码<br/>
+ * 缓存文件在下载时由执行者线程直接从响应体写入临时文件，写完后重命名，读取方不会看到写了一半的文件；
+ * 读取时按照目标宽高计算采样率解析：通过文件描述符交给BitmapFactory在native层直接读取文件，
+ * 图片的原始尺寸来自索引，命中索引时不需要再次解析文件头<br/>
+ * 缓存文件以URL的摘要命名；经过变换的图片作为派生版本另存为一个文件，文件名包含变换签名的摘要
+ */
+final class ImageDiskCache {
+
+    private static final String TAG = ImageDiskCache.class.getSimpleName();
+    /**
+     * 尺寸索引的条目数上限
+     */
+    private static final int MAX_INDEX_ENTRIES = 1024;
+    /**
+     * 解码缓冲区的大小与BitmapFactory默认分配的相同
+     */
+    private static final int TEMP_STORAGE_SIZE = 16 * 1024;
+    private static final int MAX_POOLED_TEMP_STORAGES = 4;
+    /**
+     * 未设置缓存格式时派生版本的JPEG质量
+     */
+    private static final int VARIANT_QUALITY = 90;
+
+    private final File mDirectory;
+    /**
+     * 解码许可，限制同时解码的图片数
+     */
+    private final Semaphore mDecodePermits;
+    /**
+     * 缓存文件的格式，为null时保存原始数据
+     */
+    private volatile Bitmap.CompressFormat mFormat;
+    private volatile int mQuality;
+    /**
+     * 缓存文件名 -> 图片原始尺寸
+     */
+    private final LruCache<String, Bounds> mIndex = new LruCache<>(MAX_INDEX_ENTRIES);
+    /**
+     * 复用的解码缓冲区（BitmapFactory.Options.inTempStorage），由自身保护
+     */
+    private final Deque<byte[]> mTempStorages = new ArrayDeque<>();
+
+    ImageDiskCache(Context context, Semaphore decodePermits) {
+        this.mDirectory = new File(context.getApplicationContext().getCacheDir(), "image");
+        this.mDecodePermits = decodePermits;
+    }
+
+    /**
+     * 设置缓存文件的格式
+     *
+     * @param format  为null时原样保存服务器返回的数据（默认）；否则将解析、压缩后的Bitmap以该格式重新编码后保存，
+     *                之后以更大的尺寸读取时清晰度受限于保存时的尺寸
+     * @param quality 重新编码的质量，0-100，PNG忽略此参数
+     */
+    void setFormat(@Nullable Bitmap.CompressFormat format, int quality) {
+        if (quality < 0 || quality > 100) {
+            throw new IllegalArgumentException("quality must be in [0, 100]");
+        }
+        this.mQuality = quality;
+        this.mFormat = format;
+    }
+
+    /**
+     * 文件名为完整URL的摘要，路径末段相同的不同URL（如不同目录下的同名图片、只有查询参数不同）不会共用一个文件，
+     * 尺寸索引同样以文件名为键
+     */
+    File getFile(String url) {
+        return new File(mDirectory, md5(url));
+    }
+
+    /**
+     * @param signature 变换签名，见Transformation.key()
+     */
+    File getVariantFile(String url, String signature) {
+        return new File(mDirectory, getFile(url).getName() + "-" + md5(signature));
+    }
+
+    boolean contains(String url) {
+        return getFile(url).exists();
+    }
+
+    /**
+     * 从缓存文件中按照目标宽高解析图片，会读取文件，不要在主线程中调用
+     *
+     * @return 不存在或线程被打断时返回null
+     */
+    @Nullable
+    Bitmap get(String url, int width, int height, Bitmap.Config config) {
+        return get(getFile(url), width, height, config);
+    }
+
+    /**
+     * 读取派生版本，会读取文件，不要在主线程中调用
+     *
+     * @return 不存在或线程被打断时返回null
+     */
+    @Nullable
+    Bitmap getVariant(String url, String signature, Bitmap.Config config) {
+        // 派生版本已经是变换后的尺寸，不再压缩
+        return get(getVariantFile(url, signature), 0, 0, config);
+    }
+
+    /**
+     * 保存派生版本，设置了缓存格式时使用该格式，否则有透明通道的图片保存为PNG，其他保存为JPEG。不要在主线程中调用
+     */
+    void putVariant(String url, String signature, Bitmap bitmap) {
+        Bitmap.CompressFormat format = mFormat;
+        int quality = mQuality;
+        if (format == null) {
+            format = bitmap.hasAlpha() ? Bitmap.CompressFormat.PNG : Bitmap.CompressFormat.JPEG;
+            quality = VARIANT_QUALITY;
+        }
+        try {
+            save(getVariantFile(url, signature), bitmap, format, quality);
+        } catch (IOException e) {
+            // 变换已经完成，写缓存失败不影响显示
+            Log.e(TAG, "Failed to cache variant of " + url + ": " + e.getMessage());
+        }
+    }
+
+    @Nullable
+    private Bitmap get(File file, int width, int height, Bitmap.Config config) {
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            mDecodePermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        try {
+            return decode(file, width, height, config, null);
+        } catch (IOException e) {
+            // body为null时decode()记录错误并返回null，不会抛出
+            return null;
+        } finally {
+            mDecodePermits.release();
+        }
+    }
+
+    /**
+     * 创建解析器：响应体先写入缓存文件，再从文件按照目标宽高解析，在执行者线程中完成
+     */
+    ResponseDecoder<Bitmap> newDecoder(String url, int width, int height, Bitmap.Config config) {
+        return new CachingDecoder(url, width, height, config);
+    }
+
+    /**
+     * 按照目标宽高解析缓存文件，索引中没有该文件的尺寸时先只解析文件头
+     *
+     * @param body 刚刚下载该文件的响应体，解码结果计入请求队列的内存预算；从缓存读取时为null
+     * @return 文件不存在或无法解析时返回null
+     * @throws IOException 刚刚下载的文件无法读取，或解码结果超出内存预算；从缓存读取时读取失败返回null，不抛出
+     */
+    @Nullable
+    private Bitmap decode(File file, int width, int height, Bitmap.Config config, @Nullable InputStream body) throws IOException {
+        FileInputStream inputStream;
+        try {
+            inputStream = new FileInputStream(file);
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+        byte[] tempStorage = acquireTempStorage();
+        try {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inTempStorage = tempStorage;
+            // 文件可能在两次读取之间被新下载的同名文件替换，以长度和修改时间校验索引
+            long length = inputStream.getChannel().size();
+            long lastModified = file.lastModified();
+            Bounds bounds = mIndex.get(file.getName());
+            if (bounds == null || bounds.mLength != length || bounds.mLastModified != lastModified) {
+                options.inJustDecodeBounds = true;
+                BitmapFactory.decodeFileDescriptor(inputStream.getFD(), null, options);
+                if (options.outWidth <= 0 || options.outHeight <= 0) {
+                    return null;
+                }
+                bounds = new Bounds(options.outWidth, options.outHeight, length, lastModified);
+                mIndex.put(file.getName(), bounds);
+                options.inJustDecodeBounds = false;
+                // 部分系统版本解析后不恢复文件偏移
+                inputStream.getChannel().position(0);
+            }
+            options.inPreferredConfig = config;
+            options.inSampleSize = BitmapDecoder.limitSampleSize(
+                    BitmapDecoder.calculateSampleSize(bounds.mWidth, bounds.mHeight, width, height),
+                    bounds.mWidth, bounds.mHeight, config);
+            BudgetedInputStream.reserve(body, BitmapDecoder.decodedSize(bounds.mWidth, bounds.mHeight, options.inSampleSize, config));
+            return BitmapFactory.decodeFileDescriptor(inputStream.getFD(), null, options);
+        } catch (IOException e) {
+            if (body != null) {
+                // 下载的请求以onError回调，不能当作解析结果为null
+                throw e;
+            }
+            Log.e(TAG, "Failed to read " + file + ": " + e.getMessage());
+            return null;
+        } finally {
+            releaseTempStorage(tempStorage);
+            closeQuietly(inputStream);
+        }
+    }
+
+    private byte[] acquireTempStorage() {
+        synchronized (mTempStorages) {
+            byte[] tempStorage = mTempStorages.poll();
+            if (tempStorage != null) {
+                return tempStorage;
+            }
+        }
+        return new byte[TEMP_STORAGE_SIZE];
+    }
+
+    private void releaseTempStorage(byte[] tempStorage) {
+        synchronized (mTempStorages) {
+            if (mTempStorages.size() < MAX_POOLED_TEMP_STORAGES) {
+                mTempStorages.push(tempStorage);
+            }
+        }
+    }
+
+    /**
+     * 将响应体原样写入缓存文件
+     *
+     * @return 缓存文件
+     */
+    private File save(String url, InputStream body) throws IOException {
+        File tmp = createTempFile();
+        boolean success = false;
+        OutputStream outputStream = new FileOutputStream(tmp);
+        try {
+            byte[] buffer = new byte[1024 * 8];
+            int length;
+            while ((length = body.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, length);
+            }
+            outputStream.close();
+            success = true;
+        } finally {
+            closeQuietly(outputStream);
+            if (!success) {
+                //noinspection ResultOfMethodCallIgnored
+                tmp.delete();
+            }
+        }
+        return commit(tmp, getFile(url));
+    }
+
+    /**
+     * 将Bitmap以指定格式编码后写入缓存文件
+     */
+    private void save(File file, Bitmap bitmap, Bitmap.CompressFormat format, int quality) throws IOException {
+        File tmp = createTempFile();
+        boolean success = false;
+        OutputStream outputStream = new FileOutputStream(tmp);
+        try {
+            if (!bitmap.compress(format, quality, outputStream)) {
+                throw new IOException("Failed to compress bitmap as " + format);
+            }
+            outputStream.close();
+            success = true;
+        } finally {
+            closeQuietly(outputStream);
+            if (!success) {
+                //noinspection ResultOfMethodCallIgnored
+                tmp.delete();
+            }
+        }
+        commit(tmp, file);
+    }
+
+    /**
+     * 同一url可能同时被多个执行者下载（如预取与显示），每次写入各自的临时文件
+     */
+    private File createTempFile() throws IOException {
+        if (!mDirectory.exists()) {
+            //noinspection ResultOfMethodCallIgnored
+            mDirectory.mkdirs();
+        }
+        return File.createTempFile("image", ".tmp", mDirectory);
+    }
+
+    private static File commit(File tmp, File file) throws IOException {
+        // 同一文件系统内的重命名是原子的，已存在的缓存文件会被替换
+        if (!tmp.renameTo(file)) {
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+            throw new IOException("Failed to rename " + tmp + " to " + file);
+        }
+        return file;
+    }
+
+    private static String md5(String s) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(s.getBytes(Charset.forName("UTF-8")));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // 所有平台都支持MD5
+            throw new AssertionError(e);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * 缓存文件中图片的原始尺寸
+     */
+    private static final class Bounds {
+        final int mWidth;
+        final int mHeight;
+        final long mLength;
+        final long mLastModified;
+
+        Bounds(int width, int height, long length, long lastModified) {
+            this.mWidth = width;
+            this.mHeight = height;
+            this.mLength = length;
+            this.mLastModified = lastModified;
+        }
+    }
+
+    private final class CachingDecoder implements ResponseDecoder<Bitmap> {
+
+        private final String mUrl;
+        private final int mWidth;
+        private final int mHeight;
+        private final Bitmap.Config mConfig;
+
+        CachingDecoder(String url, int width, int height, Bitmap.Config config) {
+            this.mUrl = url;
+            this.mWidth = width;
+            this.mHeight = height;
+            this.mConfig = config;
+        }
+
+        @Override
+        public Bitmap decode(InputStream body, String contentType, long contentLength) throws IOException {
+            Bitmap.CompressFormat format = mFormat;
+            if (format == null) {
+                File file = save(mUrl, body);
+                acquireDecodePermit();
+                try {
+                    return ImageDiskCache.this.decode(file, mWidth, mHeight, mConfig, body);
+                } finally {
+                    mDecodePermits.release();
+                }
+            }
+            Bitmap bitmap;
+            acquireDecodePermit();
+            try {
+                bitmap = BitmapDecoder.decodeSampled(body, mWidth, mHeight, mConfig);
+            } finally {
+                mDecodePermits.release();
+            }
+            if (bitmap != null) {
+                try {
+                    save(getFile(mUrl), bitmap, format, mQuality);
+                } catch (IOException e) {
+                    // 图片已经解析成功，写缓存失败不影响显示
+                    Log.e(TAG, "Failed to cache " + mUrl + ": " + e.getMessage());
+                }
+            }
+            return bitmap;
+        }
+
+        private void acquireDecodePermit() throws InterruptedIOException {
+            try {
+                mDecodePermits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to decode " + mUrl);
+            }
+        }
+    }
+
+}
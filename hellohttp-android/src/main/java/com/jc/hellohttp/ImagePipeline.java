@@ -0,0 +1,645 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.support.annotation.Nullable;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+import android.widget.ImageView;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Created by Zhang on 2017/7/29.<br/>
+ * Description: 图片加载流水线，MultiThreadImageLoader与SingleThreadImageLoader共用的引擎<br/>
+ * 一张图片依次经过以下阶段：<br/>
+ * 1.内存缓存：在主线程中查询，按Bitmap的字节数计算大小<br/>
+ * 2.文件缓存：在文件线程中读取并按照目标宽高解析，并行度由diskParallelism决定<br/>
+ * 3.下载：通过RequestQueue以LOW优先级执行，并行度即请求队列的并发上限，响应体原样写入文件缓存<br/>
+ * 4.解码：在文件线程或执行者线程中进行，同时解码的图片数不超过decodeParallelism；into()时指定的变换在解码之后执行，
+ * 同样占用解码并行度，变换后的图片以包含变换签名的键缓存在内存和文件中，再次显示时不再解码原图和变换<br/>
+ * 5.显示：在主线程中进行，控件已被复用（into()了其他url）时不再显示<br/>
+ * 渐进加载、预取等都建立在这些阶段之上，对所有使用此流水线的图片生效。除特别说明外，公开方法只能在主线程中调用
+ */
+public class ImagePipeline {
+
+    private static final String TAG = ImagePipeline.class.getSimpleName();
+    /**
+     * 内存缓存的大小：10MB
+     */
+    private static final int MEMORY_CACHE_SIZE = 10 * 1024 * 1024;
+    /**
+     * 预览图的边长为原图的1/PREVIEW_SCALE
+     */
+    private static final int PREVIEW_SCALE = 4;
+    private static final int DEFAULT_DISK_PARALLELISM = 2;
+    private static final int DEFAULT_DECODE_PARALLELISM = 1;
+
+    /**
+     * 内存缓存，按字节数计算大小
+     */
+    private final LruCache<String, Bitmap> mCache = new LruCache<String, Bitmap>(MEMORY_CACHE_SIZE) {
+        @Override
+        protected int sizeOf(String key, Bitmap value) {
+            return value.getByteCount();
+        }
+    };
+    /**
+     * 预览图的内存缓存，按字节数计算大小
+     */
+    private final LruCache<String, Bitmap> mPreviewCache = new LruCache<String, Bitmap>(2 * 1024 * 1024) {
+        @Override
+        protected int sizeOf(String key, Bitmap value) {
+            return value.getByteCount();
+        }
+    };
+    /**
+     * 是否对所有图片启用渐进加载
+     */
+    private volatile boolean mProgressive;
+    /**
+     * 每个控件当前应当显示的图片（缓存键），控件被复用（如列表滚动）后，旧的图片不会再显示到该控件上。只在主线程中访问
+     */
+    private final Map<ImageView, String> mTargets = new WeakHashMap<>();
+    /**
+     * 尚未提交的预取，按提交顺序排列，只在主线程中访问
+     */
+    private final Deque<PrefetchTarget> mPendingPrefetches = new ArrayDeque<>();
+    /**
+     * 已提交到请求队列、尚未完成的预取请求，只在主线程中访问
+     */
+    private final Map<String, Request> mInFlightPrefetches = new HashMap<>();
+    /**
+     * 正在文件线程中检查文件缓存、尚未提交到请求队列的预取，同样占用预取的名额，只在主线程中访问
+     */
+    private final Set<String> mDiskCheckingPrefetches = new HashSet<>();
+    /**
+     * 同时在请求队列中的预取请求数上限，保证执行者不会全部被预取占用
+     */
+    private int mMaxInFlightPrefetches = 2;
+    /**
+     * 等待提交的预取数上限，超出时丢弃最早加入的（离当前位置最远的）
+     */
+    private int mMaxPendingPrefetches = 32;
+    /**
+     * 文件缓存
+     */
+    private final ImageDiskCache mDiskCache;
+    /**
+     * 文件缓存阶段的线程池
+     */
+    private final ThreadPoolExecutor mDiskExecutor;
+    /**
+     * 显示阶段，主线程
+     */
+    private final Executor mDeliveryExecutor = new AndroidPlatform.MainThreadExecutor();
+    /**
+     * 解码阶段的许可，解码和变换都需要先获取
+     */
+    private final Semaphore mDecodePermits;
+    /**
+     * 下载阶段
+     */
+    private final RequestQueue mRequestQueue;
+    /**
+     * 由流水线自己创建的请求队列的线程池，使用外部传入的请求队列时为null
+     */
+    private final ExecutorService mOwnedFetchExecutor;
+
+    /**
+     * 使用默认的并行度：2个文件线程，同时解码1张图片
+     *
+     * @param requestQueue 下载图片使用的请求队列，由调用者负责停止
+     */
+    public ImagePipeline(Context context, RequestQueue requestQueue) {
+        this(context, requestQueue, DEFAULT_DISK_PARALLELISM, DEFAULT_DECODE_PARALLELISM);
+    }
+
+    /**
+     * @param requestQueue      下载图片使用的请求队列，由调用者负责停止，下载的并行度即其并发上限
+     * @param diskParallelism   读取文件缓存的线程数
+     * @param decodeParallelism 同时解码的图片数，包括从文件缓存和从网络解码
+     */
+    public ImagePipeline(Context context, RequestQueue requestQueue, int diskParallelism, int decodeParallelism) {
+        this(context, requestQueue, null, diskParallelism, decodeParallelism);
+    }
+
+    private ImagePipeline(Context context, RequestQueue requestQueue, @Nullable ExecutorService ownedFetchExecutor,
+                          int diskParallelism, int decodeParallelism) {
+        if (diskParallelism <= 0 || decodeParallelism <= 0) {
+            throw new IllegalArgumentException("diskParallelism <= 0 || decodeParallelism <= 0");
+        }
+        this.mRequestQueue = requestQueue;
+        this.mOwnedFetchExecutor = ownedFetchExecutor;
+        this.mDiskExecutor = WorkerExecutors.newDefaultExecutor(diskParallelism);
+        this.mDecodePermits = new Semaphore(decodeParallelism);
+        this.mDiskCache = new ImageDiskCache(context, mDecodePermits);
+    }
+
+    /**
+     * 每个阶段只有一个线程的流水线：一个下载线程、一个文件线程，按加入的顺序依次下载、解码。
+     * 请求队列由流水线自己创建，不再使用时调用shutdown()
+     */
+    public static ImagePipeline singleThreaded(Context context) {
+        ExecutorService fetchExecutor = WorkerExecutors.newDefaultExecutor(1);
+        return new ImagePipeline(context, HelloHttp.createRequestQueue(fetchExecutor, 1), fetchExecutor, 1, 1);
+    }
+
+    /**
+     * 设置文件缓存的格式，默认原样保存服务器返回的图片数据，可以在任意线程中调用
+     *
+     * @param format  为null时保存原始数据；否则将按照into()的宽高压缩后的图片以该格式重新编码后保存，
+     *                如WEBP可以减小文件体积，PNG可以保留透明通道
+     * @param quality 重新编码的质量，0-100
+     */
+    public void setDiskCacheFormat(@Nullable Bitmap.CompressFormat format, int quality) {
+        mDiskCache.setFormat(format, quality);
+    }
+
+    /**
+     * 设置是否对所有图片启用渐进加载：原图从网络加载时，先显示之前缓存的同一url的预览图，原图就绪后替换。
+     * 预览图在解析原图时按1/4边长缩放得到，不会额外解码原图
+     */
+    public void setProgressive(boolean progressive) {
+        this.mProgressive = progressive;
+    }
+
+    /**
+     * 渐进地在指定的控件中显示图片：原图需要从网络加载时，先显示缩略图（或之前缓存的预览图），原图就绪后替换
+     *
+     * @param intoView        指定的控件
+     * @param url             原图url
+     * @param thumbnailUrl    缩略图url，如服务端提供的小尺寸版本；为null且未启用渐进加载时直接加载原图
+     * @param width           指定的图片宽度，为0时使用控件的宽度
+     * @param height          指定的高度，为0时使用控件的高度
+     * @param defaultBmpResId 默认图片资源id
+     * @param transformations 按顺序执行的变换，缩略图不做变换
+     */
+    public void into(ImageView intoView, String url, @Nullable String thumbnailUrl,
+                     int width, int height, int defaultBmpResId, Transformation... transformations) {
+        int wid = width == 0 ? intoView.getWidth() : width;
+        int hei = height == 0 ? intoView.getHeight() : height;
+        Target target = new Target(intoView, url, thumbnailUrl, wid, hei, defaultBmpResId, Arrays.asList(transformations));
+        mTargets.put(intoView, target.mCacheKey);
+        // 先设置默认图片
+        intoView.setImageResource(defaultBmpResId);
+        // 先到内存缓存中查询
+        Bitmap bitmap = mCache.get(target.mCacheKey);
+        if (bitmap != null) {
+            intoView.setImageBitmap(bitmap);
+            return;
+        }
+
+        // 执行到此处说明内存缓存中不存在指定的Bitmap
+        // 到文件缓存中查找，未命中时再从网络请求
+        loadFromDisk(target);
+    }
+
+    /**
+     * 停止流水线：取消全部预取，停止文件线程；由singleThreaded()创建的流水线同时停止其请求队列。可以在任意线程中调用
+     */
+    public void shutdown() {
+        mDiskExecutor.shutdownNow();
+        if (mOwnedFetchExecutor != null) {
+            HelloHttp.stop(mRequestQueue);
+            mOwnedFetchExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 文件缓存阶段：在文件线程中读取，结果回到主线程显示，未命中时进入下载阶段
+     */
+    private void loadFromDisk(final Target target) {
+        try {
+            mDiskExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    final Bitmap bitmap = readDiskCache(target);
+                    if (bitmap != null) {
+                        // 将Bitmap保存到内存缓存
+                        mCache.put(target.mCacheKey, bitmap);
+                    }
+                    mDeliveryExecutor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            // 控件已经用于显示其他图片时不再显示，也不再下载
+                            if (!target.isCurrent()) {
+                                return;
+                            }
+                            if (bitmap != null) {
+                                target.mView.setImageBitmap(bitmap);
+                            } else {
+                                fetch(target);
+                            }
+                        }
+                    });
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Log.e(TAG, "ImagePipeline is already shut down...");
+        }
+    }
+
+    /**
+     * 在文件线程中读取文件缓存：有变换时先查找派生版本，没有则从原图变换并保存派生版本
+     */
+    @Nullable
+    private Bitmap readDiskCache(Target target) {
+        if (target.mSignature == null) {
+            return mDiskCache.get(target.mUrl, target.mWidth, target.mHeight, Bitmap.Config.ARGB_8888);
+        }
+        Bitmap variant = mDiskCache.getVariant(target.mUrl, target.mSignature, Bitmap.Config.ARGB_8888);
+        if (variant != null) {
+            return variant;
+        }
+        Bitmap source = mDiskCache.get(target.mUrl, target.mWidth, target.mHeight, Bitmap.Config.ARGB_8888);
+        if (source == null) {
+            return null;
+        }
+        try {
+            return transform(target, source);
+        } catch (InterruptedIOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 在解码阶段中依次执行变换，并保存派生版本到文件缓存
+     */
+    private Bitmap transform(Target target, Bitmap source) throws InterruptedIOException {
+        try {
+            mDecodePermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to transform " + target.mUrl);
+        }
+        Bitmap bitmap = source;
+        try {
+            for (Transformation transformation : target.mTransformations) {
+                bitmap = transformation.transform(bitmap);
+            }
+        } finally {
+            mDecodePermits.release();
+        }
+        mDiskCache.putVariant(target.mUrl, target.mSignature, bitmap);
+        return bitmap;
+    }
+
+    /**
+     * 下载阶段，在主线程中调用
+     */
+    private void fetch(final Target target) {
+        final String url = target.mUrl;
+        final boolean progressive = mProgressive || target.mThumbnailUrl != null;
+        if (progressive) {
+            Bitmap preview = mPreviewCache.get(target.mCacheKey);
+            if (preview != null) {
+                target.mView.setImageBitmap(preview);
+            } else if (target.mThumbnailUrl != null) {
+                loadThumbnail(target);
+            }
+        }
+        // 响应体在执行者线程中原样写入文件缓存，再从文件解析
+        ResponseDecoder<Bitmap> decoder = mDiskCache.newDecoder(url, target.mWidth, target.mHeight, Bitmap.Config.ARGB_8888);
+        if (target.mSignature != null) {
+            decoder = new TransformingDecoder(target, decoder);
+        }
+        if (progressive) {
+            decoder = new PreviewingDecoder(target.mCacheKey, decoder);
+        }
+        Request request = new Request(url, Request.RequestType.IMAGE, Request.RequestMethod.GET, null, decoder, new RequestCallback<Bitmap>() {
+            @Override
+            public void onSuccess(Bitmap response) {
+                if (response != null) {
+                    // 将压缩后的图片放入内存缓存
+                    mCache.put(target.mCacheKey, response);
+                    // 控件可能已经用于显示其他图片，此时只缓存
+                    if (target.isCurrent()) {
+                        target.mView.setImageBitmap(response);
+                    }
+                }
+            }
+
+            @Override
+            public void onError(String errorMsg) {
+                if (target.isCurrent()) {
+                    target.mView.setImageResource(target.mDefaultBmpResId);
+                }
+                Log.e(TAG, errorMsg);
+            }
+        });
+        request.setPriority(Request.Priority.LOW); // 设为低优先级
+        if (!mRequestQueue.add(request)) {
+            Log.e(TAG, "An error occurred while the imageRequest joined the request queue...");
+        }
+    }
+
+    /**
+     * 设置预取的预算
+     *
+     * @param maxInFlight 同时执行的预取请求数上限，应小于请求队列的并发数，为可见的图片保留执行者
+     * @param maxPending  等待执行的预取数上限
+     */
+    public void setPrefetchBudget(int maxInFlight, int maxPending) {
+        if (maxInFlight <= 0 || maxPending < 0) {
+            throw new IllegalArgumentException("maxInFlight <= 0 || maxPending < 0");
+        }
+        this.mMaxInFlightPrefetches = maxInFlight;
+        this.mMaxPendingPrefetches = maxPending;
+        schedulePrefetches();
+    }
+
+    /**
+     * 预先下载并解析图片，放入内存缓存和文件缓存，之后into()同一url时直接命中缓存<br/>
+     * 预取请求的优先级为PREFETCH，低于into()的LOW，并且同时执行的数量受预算限制；
+     * 新的预取取代尚未执行的旧预取，已经在执行的不受影响。请求队列启用了带宽感知调度并且带宽受限时暂不提交预取，
+     * 把带宽留给正在显示的图片
+     *
+     * @param urls   按照预计显示的先后排列的图片url
+     * @param width  指定的图片宽度
+     * @param height 指定的图片高度
+     */
+    public void prefetch(List<String> urls, int width, int height) {
+        mPendingPrefetches.clear();
+        for (String url : urls) {
+            if (url != null && !mInFlightPrefetches.containsKey(url) && !mDiskCheckingPrefetches.contains(url)
+                    && mCache.get(url) == null) {
+                mPendingPrefetches.add(new PrefetchTarget(url, width, height));
+            }
+        }
+        while (mPendingPrefetches.size() > mMaxPendingPrefetches) {
+            mPendingPrefetches.removeLast();
+        }
+        schedulePrefetches();
+    }
+
+    /**
+     * 取消全部预取，包括已经在请求队列中等待的，例如滚动方向改变时
+     */
+    public void cancelPrefetch() {
+        mPendingPrefetches.clear();
+        for (Request request : mInFlightPrefetches.values()) {
+            request.cancel();
+        }
+        mInFlightPrefetches.clear();
+        // 文件线程的检查结果回到主线程时发现已不在其中，不再提交
+        mDiskCheckingPrefetches.clear();
+    }
+
+    /**
+     * 在预算内提交等待中的预取：主线程中只查询内存缓存，文件缓存在文件线程中检查，未命中时再回到主线程提交到请求队列
+     */
+    private void schedulePrefetches() {
+        if (mRequestQueue.isBandwidthConstrained()) {
+            // 保留等待中的预取，下次prefetch()或预取完成时再尝试
+            return;
+        }
+        while (mInFlightPrefetches.size() + mDiskCheckingPrefetches.size() < mMaxInFlightPrefetches
+                && !mPendingPrefetches.isEmpty()) {
+            PrefetchTarget target = mPendingPrefetches.poll();
+            if (mCache.get(target.mUrl) != null) {
+                continue;
+            }
+            checkDiskCache(target);
+        }
+    }
+
+    /**
+     * 文件缓存阶段：在文件线程中检查预取的图片是否已经在文件缓存中
+     */
+    private void checkDiskCache(final PrefetchTarget target) {
+        final String url = target.mUrl;
+        mDiskCheckingPrefetches.add(url);
+        try {
+            mDiskExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    final boolean cached = mDiskCache.contains(url);
+                    mDeliveryExecutor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (!mDiskCheckingPrefetches.remove(url)) {
+                                // 检查期间预取被取消
+                                return;
+                            }
+                            if (cached) {
+                                schedulePrefetches();
+                            } else {
+                                submitPrefetch(target);
+                            }
+                        }
+                    });
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            mDiskCheckingPrefetches.remove(url);
+            Log.e(TAG, "ImagePipeline is already shut down...");
+        }
+    }
+
+    /**
+     * 以PREFETCH优先级提交到请求队列
+     */
+    private void submitPrefetch(PrefetchTarget target) {
+        final String url = target.mUrl;
+        ResponseDecoder<Bitmap> decoder = mDiskCache.newDecoder(url, target.mWidth, target.mHeight, Bitmap.Config.ARGB_8888);
+        Request request = new Request(url, Request.RequestType.IMAGE, Request.RequestMethod.GET, null, decoder, new RequestCallback<Bitmap>() {
+            @Override
+            public void onSuccess(Bitmap response) {
+                if (response != null) {
+                    mCache.put(url, response);
+                }
+                onPrefetchFinished(url);
+            }
+
+            @Override
+            public void onError(String errorMsg) {
+                onPrefetchFinished(url);
+            }
+        });
+        request.setPriority(Request.Priority.PREFETCH);
+        if (!mRequestQueue.add(request)) {
+            Log.e(TAG, "An error occurred while the prefetch request joined the request queue...");
+            return;
+        }
+        mInFlightPrefetches.put(url, request);
+    }
+
+    private void onPrefetchFinished(String url) {
+        mInFlightPrefetches.remove(url);
+        schedulePrefetches();
+    }
+
+    /**
+     * 以高于原图的优先级加载缩略图，原图尚未显示时将其显示为预览图
+     */
+    private void loadThumbnail(final Target target) {
+        final String cacheKey = target.mCacheKey;
+        Request request = new ImageRequest(target.mThumbnailUrl, Request.RequestMethod.GET, null, new RequestCallback<Bitmap>() {
+            @Override
+            public void onSuccess(Bitmap response) {
+                if (response == null) {
+                    return;
+                }
+                mPreviewCache.put(cacheKey, response);
+                // 原图已经就绪（并已显示）或者控件已经被复用时不再显示缩略图
+                if (target.isCurrent() && mCache.get(cacheKey) == null) {
+                    target.mView.setImageBitmap(response);
+                }
+            }
+
+            @Override
+            public void onError(String errorMsg) {
+                // 缩略图失败不影响原图的加载
+                Log.e(TAG, errorMsg);
+            }
+        }, target.mWidth / PREVIEW_SCALE, target.mHeight / PREVIEW_SCALE, Bitmap.Config.RGB_565);
+        request.setPriority(Request.Priority.NORMAL);
+        if (!mRequestQueue.add(request)) {
+            Log.e(TAG, "An error occurred while the thumbnail request joined the request queue...");
+        }
+    }
+
+    /**
+     * 一次into()调用
+     */
+    private final class Target {
+        final ImageView mView;
+        final String mUrl;
+        final String mThumbnailUrl;
+        final int mWidth;
+        final int mHeight;
+        final int mDefaultBmpResId;
+        final List<Transformation> mTransformations;
+        /**
+         * 变换签名，没有变换时为null
+         */
+        final String mSignature;
+        /**
+         * 内存缓存和预览图缓存的键：没有变换时为url，否则为url#变换签名
+         */
+        final String mCacheKey;
+
+        Target(ImageView view, String url, @Nullable String thumbnailUrl, int width, int height, int defaultBmpResId,
+               List<Transformation> transformations) {
+            this.mView = view;
+            this.mUrl = url;
+            this.mThumbnailUrl = thumbnailUrl;
+            this.mWidth = width;
+            this.mHeight = height;
+            this.mDefaultBmpResId = defaultBmpResId;
+            this.mTransformations = transformations;
+            if (transformations.isEmpty()) {
+                mSignature = null;
+                mCacheKey = url;
+            } else {
+                // 变换前的尺寸影响变换结果
+                StringBuilder sb = new StringBuilder().append(width).append('x').append(height);
+                for (Transformation transformation : transformations) {
+                    sb.append('|').append(transformation.key());
+                }
+                mSignature = sb.toString();
+                mCacheKey = url + "#" + mSignature;
+            }
+        }
+
+        /**
+         * @return 控件是否仍然要显示这张图片，只在主线程中调用
+         */
+        boolean isCurrent() {
+            return mCacheKey.equals(mTargets.get(mView));
+        }
+    }
+
+    /**
+     * 等待提交的预取
+     */
+    private static final class PrefetchTarget {
+        final String mUrl;
+        final int mWidth;
+        final int mHeight;
+
+        PrefetchTarget(String url, int width, int height) {
+            this.mUrl = url;
+            this.mWidth = width;
+            this.mHeight = height;
+        }
+    }
+
+    /**
+     * 在执行者线程中解析原图后执行变换
+     */
+    private final class TransformingDecoder implements ResponseDecoder<Bitmap> {
+
+        private final Target mTarget;
+        private final ResponseDecoder<Bitmap> mDecoder;
+
+        TransformingDecoder(Target target, ResponseDecoder<Bitmap> decoder) {
+            this.mTarget = target;
+            this.mDecoder = decoder;
+        }
+
+        @Override
+        public Bitmap decode(InputStream body, String contentType, long contentLength) throws IOException {
+            Bitmap bitmap = mDecoder.decode(body, contentType, contentLength);
+            return bitmap != null ? transform(mTarget, bitmap) : null;
+        }
+    }
+
+    /**
+     * 在执行者线程中解析原图后，缩放出预览图放入预览图缓存，下次需要从网络加载同一张图片（如内存缓存被清除后）时先显示预览图
+     */
+    private final class PreviewingDecoder implements ResponseDecoder<Bitmap> {
+
+        private final String mUrl;
+        private final ResponseDecoder<Bitmap> mDecoder;
+
+        PreviewingDecoder(String url, ResponseDecoder<Bitmap> decoder) {
+            this.mUrl = url;
+            this.mDecoder = decoder;
+        }
+
+        @Override
+        public Bitmap decode(InputStream body, String contentType, long contentLength) throws IOException {
+            Bitmap bitmap = mDecoder.decode(body, contentType, contentLength);
+            if (bitmap != null) {
+                int width = Math.max(1, bitmap.getWidth() / PREVIEW_SCALE);
+                int height = Math.max(1, bitmap.getHeight() / PREVIEW_SCALE);
+                mPreviewCache.put(mUrl, Bitmap.createScaledBitmap(bitmap, width, height, true));
+            }
+            return bitmap;
+        }
+    }
+
+}
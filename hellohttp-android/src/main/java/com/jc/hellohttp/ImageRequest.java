@@ -0,0 +1,41 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import android.graphics.Bitmap;
+import android.support.annotation.Nullable;
+
+import java.util.Map;
+
+/**
+ * Created by Zhang on 2017/7/27.<br/>
+ * Description: 图片请求，响应在执行者线程中按照给定的宽高压缩并解析为Bitmap<br/>
+ * 取代原先Request中带Bitmap.Config参数的构造方法，使Request本身不再依赖Android
+ */
+public class ImageRequest extends Request {
+
+    // 指定的BitmapConfig为null时，将采用默认配置：不压缩图片，且Bitmap.Config为ARGB_8888，即最高品质
+    public ImageRequest(String url, RequestMethod method, Map<String, String> params, RequestCallback<Bitmap> callback,
+                        int bmpWidth, int bmpHeight, @Nullable Bitmap.Config bmpConfig) {
+        super(url, RequestType.IMAGE, method, params,
+                new BitmapDecoder(bmpWidth, bmpHeight, bmpConfig == null ? Bitmap.Config.ARGB_8888 : bmpConfig), callback);
+    }
+
+    public ImageRequest(String url, RequestCallback<Bitmap> callback, int bmpWidth, int bmpHeight) {
+        this(url, RequestMethod.GET, null, callback, bmpWidth, bmpHeight, null);
+    }
+
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import android.util.JsonReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+/**
+ * Created by Zhang on 2017/7/24.<br/>
+ * Description: 基于JsonReader的流式JSON解析器，边读取边解析，不会把整个响应体读成String<br/>
+ * 使用方法：继承并实现read()方法，按需读取字段并构造结果对象。使用Content-Type中声明的字符集，默认UTF-8
+ */
+public abstract class JsonReaderDecoder<T> implements ResponseDecoder<T> {
+
+    @Override
+    public final T decode(InputStream body, String contentType, long contentLength) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(body, TextDecoder.charsetOf(contentType)));
+        try {
+            return read(reader);
+        } catch (IllegalStateException e) {
+            // JsonReader在遇到与预期不符的类型时抛出IllegalStateException
+            throw new RequestException(RequestException.Kind.DECODE, "Malformed json: " + e.getMessage());
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * 在执行者线程中从JsonReader读取结果
+     */
+    protected abstract T read(JsonReader reader) throws IOException;
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.support.annotation.Nullable;
+import android.widget.ImageView;
+
+import java.util.List;
+
+/**
+ * Created by Zhang on 2017/7/12.<br/>
+ * Description: 多线程的实现后台加载图片，并将图片缓存至文件<br/>
+ * 使用方法：1.实例化ImageLoader。2.调用into()方法，传递必要参数。<br/>
+ * 已实现：内存缓存、文件缓存、与HelloHttp整合的下载队列、渐进加载（先显示低分辨率的预览图，原图就绪后替换）、
+ * 预取（配合PrefetchScrollListener按照滚动方向预先加载即将显示的图片）、图片变换（变换结果缓存在内存和文件中）<br/>
+ * 各阶段的实现见{@link ImagePipeline}
+ */
+public class MultiThreadImageLoader {
+
+    private final ImagePipeline mPipeline;
+
+//    private BaseAdapter mAdapter;
+
+    public MultiThreadImageLoader(Context context, RequestQueue requestQueue/*, @Nullable BaseAdapter adapter*/) {
+        this.mPipeline = new ImagePipeline(context, requestQueue);
+//        this.mAdapter = adapter;
+    }
+
+    /**
+     * @return 此ImageLoader使用的图片加载流水线
+     */
+    public ImagePipeline getPipeline() {
+        return mPipeline;
+    }
+
+    /**
+     * 设置文件缓存的格式，默认原样保存服务器返回的图片数据
+     *
+     * @see ImagePipeline#setDiskCacheFormat(Bitmap.CompressFormat, int)
+     */
+    public void setDiskCacheFormat(@Nullable Bitmap.CompressFormat format, int quality) {
+        mPipeline.setDiskCacheFormat(format, quality);
+    }
+
+    /**
+     * 设置是否对所有图片启用渐进加载：原图从网络加载时，先显示之前缓存的同一url的预览图，原图就绪后替换。
+     * 预览图在解析原图时按1/4边长缩放得到，不会额外解码原图
+     */
+    public void setProgressive(boolean progressive) {
+        mPipeline.setProgressive(progressive);
+    }
+
+    /**
+     * 在指定的控件中显示图片
+     *
+     * @param intoView        指定的控件
+     * @param url             图片url
+     * @param width           指定的图片宽度
+     * @param height          指定的高度
+     * @param defaultBmpResId 默认图片资源id
+     * @param transformations 按顺序执行的变换，如Transformations.roundedCorners()，变换结果会被缓存
+     */
+    public void into(final ImageView intoView, final String url, int width, int height, final int defaultBmpResId,
+                     Transformation... transformations) {
+        mPipeline.into(intoView, url, null, width, height, defaultBmpResId, transformations);
+    }
+
+    /**
+     * 渐进地在指定的控件中显示图片：原图需要从网络加载时，先显示缩略图（或之前缓存的预览图），原图就绪后替换
+     *
+     * @param intoView        指定的控件
+     * @param url             原图url
+     * @param thumbnailUrl    缩略图url，如服务端提供的小尺寸版本；为null时只使用缓存的预览图
+     * @param width           指定的图片宽度
+     * @param height          指定的高度
+     * @param defaultBmpResId 默认图片资源id
+     * @param transformations 按顺序执行的变换，缩略图不做变换
+     */
+    public void into(final ImageView intoView, final String url, @Nullable String thumbnailUrl,
+                     int width, int height, final int defaultBmpResId, Transformation... transformations) {
+        mPipeline.into(intoView, url, thumbnailUrl, width, height, defaultBmpResId, transformations);
+    }
+
+    /**
+     * 设置预取的预算
+     *
+     * @see ImagePipeline#setPrefetchBudget(int, int)
+     */
+    public void setPrefetchBudget(int maxInFlight, int maxPending) {
+        mPipeline.setPrefetchBudget(maxInFlight, maxPending);
+    }
+
+    /**
+     * 预先下载并解析图片，放入内存缓存和文件缓存，之后into()同一url时直接命中缓存。只能在主线程中调用
+     *
+     * @see ImagePipeline#prefetch(List, int, int)
+     */
+    public void prefetch(List<String> urls, int width, int height) {
+        mPipeline.prefetch(urls, width, height);
+    }
+
+    /**
+     * 取消全部预取，包括已经在请求队列中等待的，例如滚动方向改变时。只能在主线程中调用
+     */
+    public void cancelPrefetch() {
+        mPipeline.cancelPrefetch();
+    }
+
+}
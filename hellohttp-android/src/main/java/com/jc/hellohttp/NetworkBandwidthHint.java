@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.telephony.TelephonyManager;
+
+/**
+ * Created by Zhang on 2017/7/30.<br/>
+ * Description: 根据当前的网络类型为请求队列提供带宽的初始估计，之后由实际的传输速度修正<br/>
+ * 使用方法：启用带宽感知调度后，在启动时和收到网络变化广播（CONNECTIVITY_ACTION）时调用apply()。需要ACCESS_NETWORK_STATE权限
+ */
+public final class NetworkBandwidthHint {
+
+    private static final long WIFI_BANDWIDTH = 2 * 1024 * 1024;
+    private static final long LTE_BANDWIDTH = 1024 * 1024;
+    private static final long MOBILE_BANDWIDTH = 100 * 1024;
+    private static final long SLOW_MOBILE_BANDWIDTH = 16 * 1024;
+
+    private NetworkBandwidthHint() {
+    }
+
+    /**
+     * 按照当前的网络类型设置请求队列的带宽估计，没有网络时不做改变
+     *
+     * @return 设置的带宽，字节/秒，没有网络时返回-1
+     */
+    public static long apply(Context context, RequestQueue requestQueue) {
+        ConnectivityManager manager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo info = manager == null ? null : manager.getActiveNetworkInfo();
+        if (info == null || !info.isConnected()) {
+            return -1;
+        }
+        long bandwidth = estimate(info);
+        requestQueue.setBandwidthHint(bandwidth);
+        return bandwidth;
+    }
+
+    private static long estimate(NetworkInfo info) {
+        switch (info.getType()) {
+            case ConnectivityManager.TYPE_WIFI:
+            case ConnectivityManager.TYPE_ETHERNET:
+                return WIFI_BANDWIDTH;
+            case ConnectivityManager.TYPE_MOBILE:
+                switch (info.getSubtype()) {
+                    case TelephonyManager.NETWORK_TYPE_GPRS:
+                    case TelephonyManager.NETWORK_TYPE_EDGE:
+                    case TelephonyManager.NETWORK_TYPE_CDMA:
+                    case TelephonyManager.NETWORK_TYPE_1xRTT:
+                    case TelephonyManager.NETWORK_TYPE_IDEN:
+                        return SLOW_MOBILE_BANDWIDTH;
+                    case TelephonyManager.NETWORK_TYPE_LTE:
+                        return LTE_BANDWIDTH;
+                    default:
+                        return MOBILE_BANDWIDTH;
+                }
+            default:
+                return MOBILE_BANDWIDTH;
+        }
+    }
+
+}
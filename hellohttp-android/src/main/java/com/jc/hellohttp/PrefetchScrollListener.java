@@ -0,0 +1,103 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import android.widget.AbsListView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Created by Zhang on 2017/7/29.<br/>
+ * Description: 根据ListView、GridView的滚动位置预取即将显示的图片<br/>
+ * 沿滚动方向预取可见区域之外的distance个位置，离可见区域近的先预取；滚动方向改变时取消之前的预取。
+ * 使用方法：listView.setOnScrollListener(new PrefetchScrollListener(loader, width, height, 10) { getImageUrl(position) {...} });
+ */
+public abstract class PrefetchScrollListener implements AbsListView.OnScrollListener {
+
+    private final ImagePipeline mPipeline;
+    private final int mWidth;
+    private final int mHeight;
+    private final int mDistance;
+
+    private int mLastFirstVisibleItem = -1;
+    /**
+     * 1为向下（位置增大），-1为向上，0为尚未滚动
+     */
+    private int mDirection;
+
+    /**
+     * @param loader   图片加载器
+     * @param width    预取图片的宽度，与into()时一致
+     * @param height   预取图片的高度，与into()时一致
+     * @param distance 沿滚动方向预取的位置数
+     */
+    public PrefetchScrollListener(MultiThreadImageLoader loader, int width, int height, int distance) {
+        this(loader.getPipeline(), width, height, distance);
+    }
+
+    /**
+     * @param pipeline 图片加载流水线
+     * @param width    预取图片的宽度，与into()时一致
+     * @param height   预取图片的高度，与into()时一致
+     * @param distance 沿滚动方向预取的位置数
+     */
+    public PrefetchScrollListener(ImagePipeline pipeline, int width, int height, int distance) {
+        this.mPipeline = pipeline;
+        this.mWidth = width;
+        this.mHeight = height;
+        this.mDistance = distance;
+    }
+
+    /**
+     * @param position 列表中的位置
+     * @return 该位置要显示的图片url，没有图片时返回null
+     */
+    protected abstract String getImageUrl(int position);
+
+    @Override
+    public void onScrollStateChanged(AbsListView view, int scrollState) {
+    }
+
+    @Override
+    public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+        if (mLastFirstVisibleItem == -1 || firstVisibleItem == mLastFirstVisibleItem) {
+            mLastFirstVisibleItem = firstVisibleItem;
+            return;
+        }
+        int direction = firstVisibleItem > mLastFirstVisibleItem ? 1 : -1;
+        mLastFirstVisibleItem = firstVisibleItem;
+        if (direction != mDirection && mDirection != 0) {
+            // 之前的预取都在另一个方向上，不会再用到
+            mPipeline.cancelPrefetch();
+        }
+        mDirection = direction;
+        List<String> urls = new ArrayList<>(mDistance);
+        if (direction > 0) {
+            int end = Math.min(totalItemCount, firstVisibleItem + visibleItemCount + mDistance);
+            for (int position = firstVisibleItem + visibleItemCount; position < end; position++) {
+                urls.add(getImageUrl(position));
+            }
+        } else {
+            int end = Math.max(0, firstVisibleItem - mDistance);
+            for (int position = firstVisibleItem - 1; position >= end; position--) {
+                urls.add(getImageUrl(position));
+            }
+        }
+        mPipeline.prefetch(urls, mWidth, mHeight);
+    }
+
+}
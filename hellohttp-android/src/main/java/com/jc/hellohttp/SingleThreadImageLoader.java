@@ -0,0 +1,58 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import android.content.Context;
+import android.widget.ImageView;
+
+/**
+ * Created by Zhang on 2017/7/4.<br/>
+ * Description: 单线程、单下载队列的ImageLoader，适用于同时下载任务量不太多，单个任务下载数据量也不大的情况，比如ListView中。实现后台加载图片，并将图片缓存至文件<br/>
+ * 使用方法：1.实例化ImageLoader。2.调用into()方法，传递必要参数。3.在不需要使用ImageLoader时调用stopImageLoadTask()方法停止任务队列。<br/>
+ * 已实现：内存缓存、文件缓存、下载队列<br/>
+ * 实现为每个阶段只有一个线程的{@link ImagePipeline}，见ImagePipeline.singleThreaded()
+ */
+public class SingleThreadImageLoader {
+
+    private final ImagePipeline mPipeline;
+
+    public SingleThreadImageLoader(Context context) {
+        super();
+        this.mPipeline = ImagePipeline.singleThreaded(context);
+    }
+
+    /**
+     * 在指定的控件中显示图片
+     *
+     * @param view            指定的控件
+     * @param url             图片url
+     * @param width           指定的图片宽度
+     * @param height          指定的高度
+     * @param defaultBmpResId 默认图片资源id
+     */
+    // 缺陷：只有一个下载线程，下载量大时会导致图片显示过慢
+    public void into(ImageView view, String url, int width, int height, int defaultBmpResId) {
+        mPipeline.into(view, url, null, width, height, defaultBmpResId);
+    }
+
+    /**
+     * 停止任务队列，在不需要使用ImageLoader时，如Activity被销毁时调用
+     */
+    public void stopImageLoadTask() {
+        mPipeline.shutdown();
+    }
+
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import android.graphics.Bitmap;
+
+/**
+ * Created by Zhang on 2017/7/30.<br/>
+ * Description: 图片变换，如裁剪、圆角、模糊，在ImagePipeline的解码阶段中执行，变换后的结果按照key()缓存在内存和文件中<br/>
+ * 常用的变换见{@link Transformations}
+ */
+public interface Transformation {
+
+    /**
+     * 变换图片，在解码线程中调用，不要在此操作UI
+     *
+     * @param source 解码得到的图片或上一个变换的结果，不要回收
+     * @return 变换后的新图片，无需变换时可以返回source
+     */
+    Bitmap transform(Bitmap source);
+
+    /**
+     * @return 唯一标识此变换及其参数，如"roundedCorners(16.0)"，作为缓存键的一部分，参数不同的变换必须返回不同的值
+     */
+    String key();
+
+}
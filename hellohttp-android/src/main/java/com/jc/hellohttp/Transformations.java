@@ -0,0 +1,195 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Shader;
+
+/**
+ * Created by Zhang on 2017/7/30.<br/>
+ * Description: 常用的图片变换，用于ImagePipeline.into()
+ */
+public final class Transformations {
+
+    private Transformations() {
+    }
+
+    /**
+     * 等比缩放至覆盖给定的宽高，并裁去超出的部分
+     */
+    public static Transformation centerCrop(final int width, final int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("width <= 0 || height <= 0");
+        }
+        return new Transformation() {
+            @Override
+            public Bitmap transform(Bitmap source) {
+                return crop(source, width, height);
+            }
+
+            @Override
+            public String key() {
+                return "centerCrop(" + width + "," + height + ")";
+            }
+        };
+    }
+
+    /**
+     * 圆角
+     *
+     * @param radius 圆角半径，单位为像素
+     */
+    public static Transformation roundedCorners(final float radius) {
+        return new Transformation() {
+            @Override
+            public Bitmap transform(Bitmap source) {
+                int width = source.getWidth();
+                int height = source.getHeight();
+                Bitmap output = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+                Canvas canvas = new Canvas(output);
+                canvas.drawRoundRect(new RectF(0, 0, width, height), radius, radius, shaderPaint(source));
+                return output;
+            }
+
+            @Override
+            public String key() {
+                return "roundedCorners(" + radius + ")";
+            }
+        };
+    }
+
+    /**
+     * 从中间裁剪出正方形后裁剪为圆形，如头像
+     */
+    public static Transformation circleCrop() {
+        return new Transformation() {
+            @Override
+            public Bitmap transform(Bitmap source) {
+                int size = Math.min(source.getWidth(), source.getHeight());
+                Bitmap square = crop(source, size, size);
+                Bitmap output = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+                Canvas canvas = new Canvas(output);
+                float radius = size / 2f;
+                canvas.drawCircle(radius, radius, radius, shaderPaint(square));
+                return output;
+            }
+
+            @Override
+            public String key() {
+                return "circleCrop";
+            }
+        };
+    }
+
+    /**
+     * 模糊，水平、垂直方向各做两次均值模糊，近似高斯模糊
+     *
+     * @param radius 模糊半径，单位为像素
+     */
+    public static Transformation blur(final int radius) {
+        if (radius <= 0) {
+            throw new IllegalArgumentException("radius <= 0");
+        }
+        return new Transformation() {
+            @Override
+            public Bitmap transform(Bitmap source) {
+                int width = source.getWidth();
+                int height = source.getHeight();
+                int[] pixels = new int[width * height];
+                int[] transposed = new int[width * height];
+                source.getPixels(pixels, 0, width, 0, 0, width, height);
+                for (int i = 0; i < 2; i++) {
+                    blurAndTranspose(pixels, transposed, width, height, radius);
+                    blurAndTranspose(transposed, pixels, height, width, radius);
+                }
+                Bitmap output = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+                output.setPixels(pixels, 0, width, 0, 0, width, height);
+                return output;
+            }
+
+            @Override
+            public String key() {
+                return "blur(" + radius + ")";
+            }
+        };
+    }
+
+    private static Bitmap crop(Bitmap source, int width, int height) {
+        int sourceWidth = source.getWidth();
+        int sourceHeight = source.getHeight();
+        if (sourceWidth == width && sourceHeight == height) {
+            return source;
+        }
+        // 以较大的缩放比例覆盖目标区域，源图中对应的区域居中
+        float scale = Math.max((float) width / sourceWidth, (float) height / sourceHeight);
+        int cropWidth = Math.min(sourceWidth, Math.round(width / scale));
+        int cropHeight = Math.min(sourceHeight, Math.round(height / scale));
+        int left = (sourceWidth - cropWidth) / 2;
+        int top = (sourceHeight - cropHeight) / 2;
+        Bitmap output = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(output);
+        canvas.drawBitmap(source, new Rect(left, top, left + cropWidth, top + cropHeight),
+                new Rect(0, 0, width, height), new Paint(Paint.FILTER_BITMAP_FLAG));
+        return output;
+    }
+
+    private static Paint shaderPaint(Bitmap source) {
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setShader(new BitmapShader(source, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP));
+        return paint;
+    }
+
+    /**
+     * 对src的每一行做均值模糊，结果转置后写入dst，对结果再调用一次即完成垂直方向的模糊并转置回原来的方向
+     *
+     * @param width  src的宽度，即dst的高度
+     * @param height src的高度，即dst的宽度
+     */
+    static void blurAndTranspose(int[] src, int[] dst, int width, int height, int radius) {
+        int window = radius * 2 + 1;
+        int last = width - 1;
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            int a = 0;
+            int r = 0;
+            int g = 0;
+            int b = 0;
+            // 边缘之外按边缘像素计算
+            for (int i = -radius; i <= radius; i++) {
+                int pixel = src[row + Math.min(Math.max(i, 0), last)];
+                a += pixel >>> 24;
+                r += (pixel >> 16) & 0xff;
+                g += (pixel >> 8) & 0xff;
+                b += pixel & 0xff;
+            }
+            for (int x = 0; x < width; x++) {
+                dst[x * height + y] = (a / window) << 24 | (r / window) << 16 | (g / window) << 8 | b / window;
+                int in = src[row + Math.min(x + radius + 1, last)];
+                int out = src[row + Math.max(x - radius, 0)];
+                a += (in >>> 24) - (out >>> 24);
+                r += ((in >> 16) & 0xff) - ((out >> 16) & 0xff);
+                g += ((in >> 8) & 0xff) - ((out >> 8) & 0xff);
+                b += (in & 0xff) - (out & 0xff);
+            }
+        }
+    }
+
+}
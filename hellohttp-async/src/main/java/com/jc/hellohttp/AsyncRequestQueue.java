@@ -0,0 +1,93 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import org.reactivestreams.Publisher;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Created by Zhang on 2017/8/4.<br/>
+ * Description: 以CompletableFuture和Reactive Streams的Publisher返回结果的请求队列，包装一个RequestQueue<br/>
+ * 结果在执行请求的线程中直接完成，不经过RequestCallback所在的回调线程（Android上为主线程），
+ * 多个并行的请求可以通过CompletableFuture.allOf()等组合，失败时的异常为RequestException。
+ * 之后的thenApply()等同步阶段同样运行在执行者线程中，耗时的处理应使用thenApplyAsync()交给其他线程
+ */
+public final class AsyncRequestQueue {
+
+    private final RequestQueue mQueue;
+
+    public AsyncRequestQueue(RequestQueue queue) {
+        if (queue == null) {
+            throw new NullPointerException("queue == null");
+        }
+        mQueue = queue;
+    }
+
+    public RequestQueue getRequestQueue() {
+        return mQueue;
+    }
+
+    /**
+     * 加入请求，请求原有的ResponseListener会被替换，RequestCallback照常回调
+     *
+     * @return 请求成功时以Response完成；失败、被取消或请求队列已停止时以RequestException异常完成。
+     * 取消返回的CompletableFuture会同时取消请求
+     */
+    public CompletableFuture<Response> execute(final Request request) {
+        final CompletableFuture<Response> future = new CompletableFuture<Response>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                request.cancel();
+                return super.cancel(mayInterruptIfRunning);
+            }
+        };
+        request.setResponseListener(new ResponseListener() {
+            @Override
+            public void onResponse(Response response) {
+                future.complete(response);
+            }
+
+            @Override
+            public void onFailure(RequestException error) {
+                future.completeExceptionally(error);
+            }
+        });
+        // 加入失败时监听器已经收到REJECTED
+        mQueue.add(request);
+        return future;
+    }
+
+    /**
+     * 以NORMAL优先级GET url，见{@link #stream(String, Request.RequestMethod, Map, Request.Priority)}
+     */
+    public Publisher<ByteBuffer> stream(String url) {
+        return stream(url, Request.RequestMethod.GET, null, Request.Priority.NORMAL);
+    }
+
+    /**
+     * 以流的形式读取响应体，订阅时才加入请求，只允许订阅一次<br/>
+     * 响应体按照订阅者的请求数逐块（最多8KB）读取，不在内存中累积，不计入内存预算与响应体大小上限；
+     * 订阅者暂停请求时执行者与连接保持占用，暂停过久时服务端可能断开连接。取消订阅即取消请求
+     */
+    public Publisher<ByteBuffer> stream(String url, Request.RequestMethod method, Map<String, String> params,
+                                        Request.Priority priority) {
+        return new BodyPublisher(mQueue, url, method, params, priority);
+    }
+
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Created by Zhang on 2017/8/4.<br/>
+ * Description: 响应体的Publisher，订阅时加入请求，只允许一个订阅者<br/>
+ * 执行者线程在解析器中等待订阅者的请求数，每次读取一块交给onNext()；onComplete()与onError()都由请求的ResponseListener发出，
+ * 因此全部信号都来自执行者线程（或加入失败、请求队列停止时调用方的线程），不会并发
+ */
+final class BodyPublisher implements Publisher<ByteBuffer> {
+
+    private static final int CHUNK_SIZE = 8 * 1024;
+
+    private final RequestQueue mQueue;
+    private final Request mRequest;
+    private final AtomicBoolean mSubscribed = new AtomicBoolean();
+    private Subscriber<? super ByteBuffer> mSubscriber;
+
+    // 以下字段由this保护
+    private long mDemand;
+    private boolean mCanceled;
+    /**
+     * request()参数非法时要发出的错误，随请求结束时的终止信号发出
+     */
+    private Throwable mPendingError;
+
+    BodyPublisher(RequestQueue queue, String url, Request.RequestMethod method, Map<String, String> params,
+                  Request.Priority priority) {
+        mQueue = queue;
+        mRequest = new Request(url, Request.RequestType.STRING, method, params, new Decoder(), null);
+        mRequest.setPriority(priority);
+        mRequest.setResponseListener(new ResponseListener() {
+            @Override
+            public void onResponse(Response response) {
+                if (!isCanceled()) {
+                    mSubscriber.onComplete();
+                } else {
+                    signalPendingError();
+                }
+            }
+
+            @Override
+            public void onFailure(RequestException error) {
+                if (!isCanceled()) {
+                    mSubscriber.onError(error);
+                } else {
+                    signalPendingError();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super ByteBuffer> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber == null");
+        }
+        if (!mSubscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("The response body can only be subscribed once"));
+            return;
+        }
+        mSubscriber = subscriber;
+        subscriber.onSubscribe(new BodySubscription());
+        // 加入失败时监听器已经发出onError()；已经取消时执行者直接跳过
+        mQueue.add(mRequest);
+    }
+
+    private synchronized boolean isCanceled() {
+        return mCanceled;
+    }
+
+    private void signalPendingError() {
+        Throwable error;
+        synchronized (this) {
+            error = mPendingError;
+            mPendingError = null;
+        }
+        if (error != null) {
+            mSubscriber.onError(error);
+        }
+    }
+
+    private void cancelRequest(Throwable error) {
+        synchronized (this) {
+            if (mCanceled) {
+                return;
+            }
+            mCanceled = true;
+            mPendingError = error;
+            notifyAll();
+        }
+        mRequest.cancel();
+    }
+
+    private final class BodySubscription implements Subscription {
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                // Reactive Streams规范3.9
+                cancelRequest(new IllegalArgumentException("Non-positive request: " + n));
+                return;
+            }
+            synchronized (BodyPublisher.this) {
+                mDemand = mDemand + n < 0 ? Long.MAX_VALUE : mDemand + n;
+                BodyPublisher.this.notifyAll();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelRequest(null);
+        }
+    }
+
+    /**
+     * 在执行者线程中按照请求数逐块读取响应体
+     */
+    private final class Decoder implements StreamingDecoder<Void> {
+
+        @Override
+        public Void decode(InputStream body, String contentType, long contentLength) throws IOException {
+            while (true) {
+                synchronized (BodyPublisher.this) {
+                    while (mDemand == 0 && !mCanceled) {
+                        try {
+                            BodyPublisher.this.wait();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new InterruptedIOException("Interrupted while waiting for demand");
+                        }
+                    }
+                    if (mCanceled) {
+                        // 不再读取，请求已取消，监听器将收到CANCELED
+                        return null;
+                    }
+                    mDemand--;
+                }
+                byte[] chunk = new byte[CHUNK_SIZE];
+                int length = body.read(chunk);
+                if (length == -1) {
+                    return null;
+                }
+                try {
+                    mSubscriber.onNext(ByteBuffer.wrap(chunk, 0, length));
+                } catch (RuntimeException e) {
+                    // 违反规范2.13的订阅者视为取消了订阅
+                    cancelRequest(null);
+                    return null;
+                }
+            }
+        }
+    }
+
+}
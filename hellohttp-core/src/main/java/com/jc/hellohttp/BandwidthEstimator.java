@@ -0,0 +1,148 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Created by Zhang on 2017/7/30.<br/>
+ * Description: 根据响应体的实际读取速度估计可用带宽<br/>
+ * 同一请求队列的全部传输共享一条链路，因此只要有传输在进行就累计字节数和时间，而不是单独计算每个请求的速度：
+ * 多个请求同时传输时各自的速度之和才是链路的带宽。每累计一个样本，以指数加权移动平均更新估计值。
+ * 只统计响应头之后的响应体，不包括建立连接和等待首字节的时间
+ */
+final class BandwidthEstimator {
+
+    /**
+     * 一个样本至少包含的字节数，过小的样本主要反映延迟而不是带宽
+     */
+    private static final long MIN_SAMPLE_BYTES = 16 * 1024;
+    /**
+     * 传输持续进行时，每隔这么长时间产生一个样本
+     */
+    private static final long SAMPLE_INTERVAL_NANOS = 250 * 1000 * 1000L;
+    /**
+     * 新样本的权重
+     */
+    private static final double SAMPLE_WEIGHT = 0.3;
+
+    // 以下字段由this保护
+    private int mActiveTransfers;
+    private long mSampleStartNanos;
+    private long mSampleBytes;
+    /**
+     * 估计的带宽，字节/秒，尚无样本时为-1
+     */
+    private double mEstimate = -1;
+
+    /**
+     * @return 估计的带宽，字节/秒，尚无样本时返回-1
+     */
+    synchronized long getBytesPerSecond() {
+        return (long) mEstimate;
+    }
+
+    /**
+     * 以外部信息（如网络类型）设置估计值，之后的样本在此基础上继续更新
+     */
+    synchronized void setEstimate(long bytesPerSecond) {
+        mEstimate = bytesPerSecond;
+    }
+
+    /**
+     * 包装响应体的输入流，读取时计入带宽估计，关闭或读到末尾时结束传输
+     */
+    InputStream meter(InputStream inputStream) {
+        return new MeteredInputStream(inputStream);
+    }
+
+    private synchronized void onTransferStart() {
+        if (mActiveTransfers++ == 0) {
+            mSampleStartNanos = System.nanoTime();
+            mSampleBytes = 0;
+        }
+    }
+
+    private synchronized void onBytesTransferred(long bytes) {
+        mSampleBytes += bytes;
+        long now = System.nanoTime();
+        if (mSampleBytes >= MIN_SAMPLE_BYTES && now - mSampleStartNanos >= SAMPLE_INTERVAL_NANOS) {
+            addSample(now);
+        }
+    }
+
+    private synchronized void onTransferEnd() {
+        if (--mActiveTransfers == 0 && mSampleBytes >= MIN_SAMPLE_BYTES) {
+            addSample(System.nanoTime());
+        }
+    }
+
+    private void addSample(long now) {
+        long elapsed = Math.max(1, now - mSampleStartNanos);
+        double sample = mSampleBytes * 1e9 / elapsed;
+        mEstimate = mEstimate < 0 ? sample : mEstimate + SAMPLE_WEIGHT * (sample - mEstimate);
+        mSampleStartNanos = now;
+        mSampleBytes = 0;
+    }
+
+    private final class MeteredInputStream extends FilterInputStream {
+
+        private boolean mEnded;
+
+        MeteredInputStream(InputStream in) {
+            super(in);
+            onTransferStart();
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                end();
+            } else {
+                onBytesTransferred(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int length = super.read(b, off, len);
+            if (length == -1) {
+                end();
+            } else {
+                onBytesTransferred(length);
+            }
+            return length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            end();
+            super.close();
+        }
+
+        private void end() {
+            if (!mEnded) {
+                mEnded = true;
+                onTransferEnd();
+            }
+        }
+    }
+
+}
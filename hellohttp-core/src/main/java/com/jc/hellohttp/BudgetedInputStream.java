@@ -0,0 +1,117 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Created by Zhang on 2017/7/31.<br/>
+ * Description: 传给ResponseDecoder的响应体，读取超过响应大小上限时抛出IOException，读取超出预留的部分计入内存预算
+ */
+final class BudgetedInputStream extends FilterInputStream {
+
+    private final long mMaxSize;
+    private final MemoryBudget mBudget;
+    /**
+     * 已经计入预算的字节数，包括响应体和解码器追加的部分
+     */
+    private long mReserved;
+    /**
+     * 已经为响应体预留的字节数
+     */
+    private long mBodyAllowance;
+    private long mRead;
+    private boolean mReleased;
+
+    /**
+     * @param reserved 已经通过MemoryBudget.acquire()预留的字节数
+     */
+    BudgetedInputStream(InputStream in, long maxSize, MemoryBudget budget, long reserved) {
+        super(in);
+        mMaxSize = maxSize;
+        mBudget = budget;
+        mReserved = reserved;
+        mBodyAllowance = reserved;
+    }
+
+    /**
+     * 解码器在分配与响应体大小无关的大块内存（如按照图片尺寸分配的Bitmap）之前调用，计入请求队列的内存预算，
+     * 响应体不是来自请求队列时不做任何事
+     */
+    static void reserve(InputStream body, long bytes) {
+        if (body instanceof BudgetedInputStream) {
+            ((BudgetedInputStream) body).reserve(bytes);
+        }
+    }
+
+    private void reserve(long bytes) {
+        if (bytes > 0) {
+            mBudget.grow(bytes);
+            mReserved += bytes;
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            onRead(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int length = super.read(b, off, len);
+        if (length > 0) {
+            onRead(length);
+        }
+        return length;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        if (skipped > 0) {
+            onRead(skipped);
+        }
+        return skipped;
+    }
+
+    private void onRead(long length) throws IOException {
+        mRead += length;
+        if (mRead > mMaxSize) {
+            throw new RequestException(RequestException.Kind.MEMORY, "Response body exceeds " + mMaxSize + " bytes");
+        }
+        if (mRead > mBodyAllowance) {
+            reserve(mRead - mBodyAllowance);
+            mBodyAllowance = mRead;
+        }
+    }
+
+    /**
+     * 解析结束后释放全部预留，只释放一次
+     */
+    void release() {
+        if (!mReleased) {
+            mReleased = true;
+            mBudget.release(mReserved);
+        }
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+/**
+ * Created by Zhang on 2017/7/7.<br/>
+ * Description: HelloHttp的相关配置
+ */
+class Config {
+
+    static String STRING_REQ_PROP = "application/x-www-form-urlencoded";
+    static String JSON_REQ_PROP = "application/json";
+    static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    /**
+     * 默认核心线程池大小
+     */
+//    static final int CORE_SIZE = getDefCoreSize();
+    static final int CORE_SIZE = 4;
+    /**
+     * 连接超时时间
+     */
+    static final int CONNECT_TIMEOUT = 5000;
+    /**
+     * 读取超时时间
+     */
+    static final int READ_TIMEOUT = 5000;
+    /**
+     * 带宽感知调度：估计带宽低于此值（字节/秒）时视为受限
+     */
+    static final long CONSTRAINED_BANDWIDTH = 256 * 1024;
+    /**
+     * 带宽感知调度：带宽受限时每个在途请求至少分到的带宽（字节/秒），据此降低并发数
+     */
+    static final long MIN_BANDWIDTH_PER_REQUEST = 32 * 1024;
+    /**
+     * 带宽感知调度：带宽受限时同时执行的LOW、PREFETCH请求数上限，其余的推迟加入等候区
+     */
+    static final int CONSTRAINED_LOW_PRIORITY_REQUESTS = 1;
+    /**
+     * 默认的响应体大小上限，STRING、JSON、IMAGE请求的响应体会被读入内存
+     */
+    static final long MAX_RESPONSE_SIZE = 16 * 1024 * 1024;
+    /**
+     * 默认的内存预算占堆内存上限的比例
+     */
+    static final int MEMORY_BUDGET_DIVISOR = 4;
+    /**
+     * 没有Content-Length的响应预先预留的字节数，读取超出时再追加
+     */
+    static final long UNKNOWN_LENGTH_RESERVATION = 64 * 1024;
+    /**
+     * 堆内存使用量超过上限的此比例时视为内存紧张，放弃执行LOW、PREFETCH请求
+     */
+    static final double HEAP_PRESSURE_RATIO = 0.85;
+    /**
+     * 收到低内存通知或解析时发生OutOfMemoryError后，放弃执行LOW、PREFETCH请求的时长（毫秒）
+     */
+    static final long LOW_MEMORY_SHED_MILLIS = 10 * 1000;
+    /**
+     * 主机名解析结果的缓存时长（毫秒）
+     */
+    static final long DNS_TTL = 60 * 1000;
+    /**
+     * 解析出多个地址时，相邻两次连接尝试的间隔（毫秒），RFC 8305建议的默认值
+     */
+    static final long CONNECT_ATTEMPT_DELAY = 250;
+    /**
+     * HTTP/2连接空闲（没有进行中的流）超过此时间（毫秒）后关闭，包括preconnect()预先建立的连接
+     */
+    static final long CONNECTION_IDLE_TIMEOUT = 5 * 60 * 1000;
+    /**
+     * 默认的优先级老化间隔（毫秒），0表示关闭老化，严格按优先级执行，需要时通过RequestQueue.setPriorityAging()开启
+     */
+    static final long PRIORITY_AGING_INTERVAL = 0;
+
+    private static int getDefCoreSize() {
+        // 根据CPU核心数（包括超线程）决定默认线程池的大小。
+        int processors = Runtime.getRuntime().availableProcessors();
+//        if (processors < 4) return 4;
+//        if (processors > 8) return 8;
+//        return processors;
+        return processors < 4 ? 4 : (processors > 8 ? 8 : processors);
+    }
+
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Created by Zhang on 2017/8/2.<br/>
+ * Description: 主机名解析，可以通过RequestQueue.setDns()替换，例如使用HTTPDNS或在测试中返回固定的地址<br/>
+ * 请求队列在其外部缓存解析结果，实现不需要自己缓存
+ */
+public interface Dns {
+
+    /**
+     * 系统的解析，InetAddress.getAllByName()
+     */
+    Dns SYSTEM = new Dns() {
+        @Override
+        public List<InetAddress> lookup(String host) throws UnknownHostException {
+            return Arrays.asList(InetAddress.getAllByName(host));
+        }
+    };
+
+    /**
+     * 可能在多个线程中同时调用
+     *
+     * @return host的全部地址，按优先使用的顺序排列，不能为空
+     * @throws UnknownHostException 无法解析时
+     */
+    List<InetAddress> lookup(String host) throws UnknownHostException;
+
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Created by Zhang on 2017/8/2.<br/>
+ * Description: 请求队列的解析缓存，解析结果在ttl内直接返回；同一主机同时只有一个线程调用实际的Dns，其他的等待它的结果。
+ * 解析失败不缓存
+ */
+final class DnsCache implements Dns {
+
+    private static final String TAG = DnsCache.class.getSimpleName();
+
+    private final long mTtlMillis;
+
+    // 以下字段由this保护
+    private Dns mDelegate;
+    private final Map<String, Entry> mEntries = new HashMap<>();
+    /**
+     * 正在解析的主机
+     */
+    private final Map<String, Lookup> mLookups = new HashMap<>();
+    private long mLookupCount;
+    private long mHitCount;
+    private long mResolveCount;
+    private long mResolveNanos;
+
+    DnsCache(Dns delegate, long ttlMillis) {
+        mDelegate = delegate;
+        mTtlMillis = ttlMillis;
+    }
+
+    /**
+     * 替换实际的Dns并清空缓存，正在进行的解析不受影响，但结果不再缓存
+     */
+    synchronized void setDelegate(Dns delegate) {
+        mDelegate = delegate;
+        mEntries.clear();
+    }
+
+    @Override
+    public List<InetAddress> lookup(String host) throws UnknownHostException {
+        Lookup lookup;
+        Dns delegate = null;
+        synchronized (this) {
+            mLookupCount++;
+            Entry entry = mEntries.get(host);
+            if (entry != null && System.currentTimeMillis() < entry.mExpiresAt) {
+                mHitCount++;
+                return entry.mAddresses;
+            }
+            lookup = mLookups.get(host);
+            if (lookup == null) {
+                lookup = new Lookup();
+                mLookups.put(host, lookup);
+                delegate = mDelegate;
+            } else {
+                mHitCount++;
+            }
+        }
+        if (delegate != null) {
+            resolve(host, delegate, lookup);
+        }
+        return lookup.await(host);
+    }
+
+    /**
+     * 在executor中异步解析hosts，结果存入缓存。使用系统的解析时也会填充系统自身的缓存，
+     * 之后HttpURLConnection建立连接时不必再等待解析
+     */
+    void preresolve(Collection<String> hosts, Executor executor) {
+        for (final String host : hosts) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        lookup(host);
+                    } catch (UnknownHostException e) {
+                        Platform.get().logInfo(TAG, "Preresolve " + host + " failed: " + e.getMessage());
+                    }
+                }
+            });
+        }
+    }
+
+    synchronized long getLookupCount() {
+        return mLookupCount;
+    }
+
+    synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    synchronized long getResolveCount() {
+        return mResolveCount;
+    }
+
+    /**
+     * @return 实际的Dns耗费的总时间（纳秒），包括失败的解析
+     */
+    synchronized long getResolveNanos() {
+        return mResolveNanos;
+    }
+
+    private void resolve(String host, Dns delegate, Lookup lookup) {
+        List<InetAddress> addresses = null;
+        UnknownHostException error = null;
+        long start = System.nanoTime();
+        try {
+            List<InetAddress> result = delegate.lookup(host);
+            if (result == null || result.isEmpty()) {
+                error = new UnknownHostException(delegate + " returned no addresses for " + host);
+            } else {
+                addresses = Collections.unmodifiableList(new ArrayList<>(result));
+            }
+        } catch (UnknownHostException e) {
+            error = e;
+        } catch (RuntimeException e) {
+            error = new UnknownHostException("Resolve " + host + " failed: " + e);
+            error.initCause(e);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            synchronized (this) {
+                mResolveCount++;
+                mResolveNanos += elapsed;
+                mLookups.remove(host);
+                if (addresses != null && delegate == mDelegate) {
+                    put(host, addresses);
+                }
+            }
+            if (addresses == null && error == null) {
+                error = new UnknownHostException("Resolve " + host + " failed");
+            }
+            lookup.complete(addresses, error);
+        }
+    }
+
+    private void put(String host, List<InetAddress> addresses) {
+        long now = System.currentTimeMillis();
+        Iterator<Entry> iterator = mEntries.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().mExpiresAt <= now) {
+                iterator.remove();
+            }
+        }
+        mEntries.put(host, new Entry(addresses, now + mTtlMillis));
+    }
+
+    private static final class Lookup {
+        private boolean mDone;
+        private List<InetAddress> mAddresses;
+        private UnknownHostException mError;
+
+        synchronized void complete(List<InetAddress> addresses, UnknownHostException error) {
+            mDone = true;
+            mAddresses = addresses;
+            mError = error;
+            notifyAll();
+        }
+
+        synchronized List<InetAddress> await(String host) throws UnknownHostException {
+            while (!mDone) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new UnknownHostException("Interrupted while resolving " + host);
+                }
+            }
+            if (mError != null) {
+                // 每个等待者得到各自的异常，保留调用栈
+                UnknownHostException error = new UnknownHostException(mError.getMessage());
+                error.initCause(mError);
+                throw error;
+            }
+            return mAddresses;
+        }
+    }
+
+    private static final class Entry {
+        final List<InetAddress> mAddresses;
+        final long mExpiresAt;
+
+        Entry(List<InetAddress> addresses, long expiresAt) {
+            mAddresses = addresses;
+            mExpiresAt = expiresAt;
+        }
+    }
+
+}
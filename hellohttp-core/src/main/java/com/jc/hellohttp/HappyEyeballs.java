@@ -0,0 +1,164 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by Zhang on 2017/8/2.<br/>
+ * Description: 解析出多个地址时并发尝试建立TCP连接（Happy Eyeballs，RFC 8305）<br/>
+ * 地址按IPv6、IPv4交替排列（以第一个地址的类型开始），依次开始尝试，每次间隔CONNECT_ATTEMPT_DELAY毫秒，
+ * 前一个尝试失败时立即开始下一个。第一个建立的连接胜出，其余的关闭。
+ * 这样一个不可达的地址（如网络不支持IPv6）只会推迟很短的时间，而不是等到连接超时
+ */
+final class HappyEyeballs {
+
+    private HappyEyeballs() {
+    }
+
+    /**
+     * @param addresses     同一主机的全部地址，不能为空
+     * @param timeoutMillis 每个尝试的连接超时
+     * @param executor      运行并发的尝试
+     * @return 已连接的Socket
+     * @throws IOException 全部地址都无法连接时，为最后一个失败的原因
+     */
+    static Socket connect(List<InetAddress> addresses, int port, int timeoutMillis, Executor executor) throws IOException {
+        List<InetAddress> ordered = interleave(addresses);
+        if (ordered.size() == 1) {
+            Socket socket = new Socket();
+            try {
+                socket.connect(new InetSocketAddress(ordered.get(0), port), timeoutMillis);
+            } catch (IOException e) {
+                closeQuietly(socket);
+                throw e;
+            }
+            return socket;
+        }
+        BlockingQueue<Attempt> finished = new LinkedBlockingQueue<>();
+        List<Attempt> attempts = new ArrayList<>(ordered.size());
+        Socket winner = null;
+        IOException failure = null;
+        int failures = 0;
+        try {
+            while (winner == null && failures < ordered.size()) {
+                if (attempts.size() < ordered.size()) {
+                    Attempt attempt = new Attempt(new InetSocketAddress(ordered.get(attempts.size()), port), timeoutMillis, finished);
+                    attempts.add(attempt);
+                    executor.execute(attempt);
+                }
+                // 全部开始后等待到有结果为止，每个尝试都会在自身的超时之内结束
+                Attempt attempt = attempts.size() < ordered.size()
+                        ? finished.poll(Config.CONNECT_ATTEMPT_DELAY, TimeUnit.MILLISECONDS) : finished.take();
+                if (attempt == null) {
+                    continue;
+                }
+                if (attempt.mError == null) {
+                    winner = attempt.mSocket;
+                } else {
+                    failures++;
+                    failure = attempt.mError;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while connecting to " + addresses);
+        } finally {
+            for (Attempt attempt : attempts) {
+                if (attempt.mSocket != winner) {
+                    closeQuietly(attempt.mSocket);
+                }
+            }
+        }
+        if (winner == null) {
+            throw failure;
+        }
+        return winner;
+    }
+
+    /**
+     * 按地址类型交替排列，同类型的地址保持原来的顺序
+     */
+    static List<InetAddress> interleave(List<InetAddress> addresses) {
+        boolean firstIsV6 = addresses.get(0) instanceof Inet6Address;
+        List<InetAddress> first = new ArrayList<>();
+        List<InetAddress> second = new ArrayList<>();
+        for (InetAddress address : addresses) {
+            if ((address instanceof Inet6Address) == firstIsV6) {
+                first.add(address);
+            } else {
+                second.add(address);
+            }
+        }
+        List<InetAddress> ordered = new ArrayList<>(addresses.size());
+        for (int i = 0; i < Math.max(first.size(), second.size()); i++) {
+            if (i < first.size()) {
+                ordered.add(first.get(i));
+            }
+            if (i < second.size()) {
+                ordered.add(second.get(i));
+            }
+        }
+        return ordered;
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * 对一个地址的连接尝试，结束后将自身放入finished。Socket在开始前创建，连接过程中也可以被关闭
+     */
+    private static final class Attempt implements Runnable {
+        final Socket mSocket = new Socket();
+        final InetSocketAddress mAddress;
+        final int mTimeoutMillis;
+        final BlockingQueue<Attempt> mFinished;
+        // 通过mFinished发布
+        IOException mError;
+
+        Attempt(InetSocketAddress address, int timeoutMillis, BlockingQueue<Attempt> finished) {
+            mAddress = address;
+            mTimeoutMillis = timeoutMillis;
+            mFinished = finished;
+        }
+
+        @Override
+        public void run() {
+            try {
+                mSocket.connect(mAddress, mTimeoutMillis);
+            } catch (IOException e) {
+                mError = e;
+            }
+            mFinished.offer(this);
+        }
+    }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Created by Zhang on 2017/7/10.<br/>
+ * Description: 一个简单的http请求框架，支持StringRequest，JsonRequest，ImageRequest<br/>
+ * 使用方法：1.创建RequestQueue实例：HelloHttp.createRequestQueue()。2.创建Request对象，传递相关参数。3.在RequestCallback中得到请求响应。4.在无需使用时停止服务：HelloHttp.stop()<br/>
+ */
+public class HelloHttp {
+
+    public static RequestQueue createRequestQueue() {
+//        return RequestQueue.getInstance();
+        return new RequestQueue();
+    }
+
+    /**
+     * 使用给定的Executor执行请求，例如WorkerExecutors.virtualThreads()或ForkJoinPool，Executor由调用者负责关闭
+     *
+     * @param executor       运行请求的Executor
+     * @param maxConcurrency 同时执行的请求数上限
+     */
+    public static RequestQueue createRequestQueue(Executor executor, int maxConcurrency) {
+        return new RequestQueue(executor, maxConcurrency);
+    }
+
+    /**
+     * 立即停止请求队列，尚未执行的请求将被丢弃。需要等待请求执行完毕时使用RequestQueue.drain()
+     */
+    public static void stop(RequestQueue queue) {
+//        RequestQueue.getInstance().stopRequestQueue();
+        queue.shutdownNow();
+    }
+
+    // android.app.DownloadManager sample
+//    String downloadUrl = "http://dl.hdslb.com/mobile/latest/iBiliPlayer-bili.apk";
+//    DownloadManager.Request downloadReq = new DownloadManager.Request(Uri.parse(downloadUrl));
+//    downloadReq.setTitle("Download File");
+//    downloadReq.setAllowedNetworkTypes(DownloadManager.Request.NETWORK_WIFI);
+//    downloadReq.setAllowedOverRoaming(false);
+//    downloadReq.setDescription("Downloading...");
+//    downloadReq.setDestinationInExternalFilesDir(TestActivity.this, Environment.DIRECTORY_DOWNLOADS, downloadUrl.substring(downloadUrl.lastIndexOf("/") + 1));
+//    DownloadManager manager = (DownloadManager) TestActivity.this.getSystemService(DOWNLOAD_SERVICE);
+//    manager.enqueue(downloadReq);
+
+}
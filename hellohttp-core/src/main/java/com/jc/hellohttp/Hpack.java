@@ -0,0 +1,474 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Created by Zhang on 2017/7/28.<br/>
+ * Description: HTTP/2的头部压缩（RFC 7541）<br/>
+ * 编码器只使用静态表，不使用动态表和Huffman编码，因此是无状态的，多个线程发送请求时无需按发送顺序编码；
+ * 解码器完整实现了动态表和Huffman解码，只能在读取线程中按接收顺序使用。头部以名称、值交替的列表表示
+ */
+final class Hpack {
+
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    /**
+     * 动态表中每个条目额外计算的字节数
+     */
+    private static final int ENTRY_OVERHEAD = 32;
+
+    /**
+     * SETTINGS_HEADER_TABLE_SIZE的默认值
+     */
+    static final int DEFAULT_HEADER_TABLE_SIZE = 4096;
+
+    /**
+     * 静态表，下标从1开始
+     */
+    private static final String[][] STATIC_TABLE = {
+            {":authority", ""},
+            {":method", "GET"},
+            {":method", "POST"},
+            {":path", "/"},
+            {":path", "/index.html"},
+            {":scheme", "http"},
+            {":scheme", "https"},
+            {":status", "200"},
+            {":status", "204"},
+            {":status", "206"},
+            {":status", "304"},
+            {":status", "400"},
+            {":status", "404"},
+            {":status", "500"},
+            {"accept-charset", ""},
+            {"accept-encoding", "gzip, deflate"},
+            {"accept-language", ""},
+            {"accept-ranges", ""},
+            {"accept", ""},
+            {"access-control-allow-origin", ""},
+            {"age", ""},
+            {"allow", ""},
+            {"authorization", ""},
+            {"cache-control", ""},
+            {"content-disposition", ""},
+            {"content-encoding", ""},
+            {"content-language", ""},
+            {"content-length", ""},
+            {"content-location", ""},
+            {"content-range", ""},
+            {"content-type", ""},
+            {"cookie", ""},
+            {"date", ""},
+            {"etag", ""},
+            {"expect", ""},
+            {"expires", ""},
+            {"from", ""},
+            {"host", ""},
+            {"if-match", ""},
+            {"if-modified-since", ""},
+            {"if-none-match", ""},
+            {"if-range", ""},
+            {"if-unmodified-since", ""},
+            {"last-modified", ""},
+            {"link", ""},
+            {"location", ""},
+            {"max-forwards", ""},
+            {"proxy-authenticate", ""},
+            {"proxy-authorization", ""},
+            {"range", ""},
+            {"referer", ""},
+            {"refresh", ""},
+            {"retry-after", ""},
+            {"server", ""},
+            {"set-cookie", ""},
+            {"strict-transport-security", ""},
+            {"transfer-encoding", ""},
+            {"user-agent", ""},
+            {"vary", ""},
+            {"via", ""},
+            {"www-authenticate", ""}
+    };
+
+    /**
+     * 名称在静态表中第一次出现的下标
+     */
+    private static final Map<String, Integer> STATIC_NAME_INDEX = new HashMap<>();
+    /**
+     * 名称与值都相同的静态表条目的下标，键为"名称:值"
+     */
+    private static final Map<String, Integer> STATIC_ENTRY_INDEX = new HashMap<>();
+
+    static {
+        for (int i = STATIC_TABLE.length - 1; i >= 0; i--) {
+            STATIC_NAME_INDEX.put(STATIC_TABLE[i][0], i + 1);
+            if (!STATIC_TABLE[i][1].isEmpty()) {
+                STATIC_ENTRY_INDEX.put(STATIC_TABLE[i][0] + ':' + STATIC_TABLE[i][1], i + 1);
+            }
+        }
+    }
+
+    // RFC 7541附录B中0~255的Huffman编码，EOS（256）为30个1，只用于判断填充
+    private static final int[] HUFFMAN_CODES = {
+            0x1ff8, 0x7fffd8, 0xfffffe2, 0xfffffe3, 0xfffffe4, 0xfffffe5, 0xfffffe6, 0xfffffe7,
+            0xfffffe8, 0xffffea, 0x3ffffffc, 0xfffffe9, 0xfffffea, 0x3ffffffd, 0xfffffeb, 0xfffffec,
+            0xfffffed, 0xfffffee, 0xfffffef, 0xffffff0, 0xffffff1, 0xffffff2, 0x3ffffffe, 0xffffff3,
+            0xffffff4, 0xffffff5, 0xffffff6, 0xffffff7, 0xffffff8, 0xffffff9, 0xffffffa, 0xffffffb,
+            0x14, 0x3f8, 0x3f9, 0xffa, 0x1ff9, 0x15, 0xf8, 0x7fa,
+            0x3fa, 0x3fb, 0xf9, 0x7fb, 0xfa, 0x16, 0x17, 0x18,
+            0x0, 0x1, 0x2, 0x19, 0x1a, 0x1b, 0x1c, 0x1d,
+            0x1e, 0x1f, 0x5c, 0xfb, 0x7ffc, 0x20, 0xffb, 0x3fc,
+            0x1ffa, 0x21, 0x5d, 0x5e, 0x5f, 0x60, 0x61, 0x62,
+            0x63, 0x64, 0x65, 0x66, 0x67, 0x68, 0x69, 0x6a,
+            0x6b, 0x6c, 0x6d, 0x6e, 0x6f, 0x70, 0x71, 0x72,
+            0xfc, 0x73, 0xfd, 0x1ffb, 0x7fff0, 0x1ffc, 0x3ffc, 0x22,
+            0x7ffd, 0x3, 0x23, 0x4, 0x24, 0x5, 0x25, 0x26,
+            0x27, 0x6, 0x74, 0x75, 0x28, 0x29, 0x2a, 0x7,
+            0x2b, 0x76, 0x2c, 0x8, 0x9, 0x2d, 0x77, 0x78,
+            0x79, 0x7a, 0x7b, 0x7ffe, 0x7fc, 0x3ffd, 0x1ffd, 0xffffffc,
+            0xfffe6, 0x3fffd2, 0xfffe7, 0xfffe8, 0x3fffd3, 0x3fffd4, 0x3fffd5, 0x7fffd9,
+            0x3fffd6, 0x7fffda, 0x7fffdb, 0x7fffdc, 0x7fffdd, 0x7fffde, 0xffffeb, 0x7fffdf,
+            0xffffec, 0xffffed, 0x3fffd7, 0x7fffe0, 0xffffee, 0x7fffe1, 0x7fffe2, 0x7fffe3,
+            0x7fffe4, 0x1fffdc, 0x3fffd8, 0x7fffe5, 0x3fffd9, 0x7fffe6, 0x7fffe7, 0xffffef,
+            0x3fffda, 0x1fffdd, 0xfffe9, 0x3fffdb, 0x3fffdc, 0x7fffe8, 0x7fffe9, 0x1fffde,
+            0x7fffea, 0x3fffdd, 0x3fffde, 0xfffff0, 0x1fffdf, 0x3fffdf, 0x7fffeb, 0x7fffec,
+            0x1fffe0, 0x1fffe1, 0x3fffe0, 0x1fffe2, 0x7fffed, 0x3fffe1, 0x7fffee, 0x7fffef,
+            0xfffea, 0x3fffe2, 0x3fffe3, 0x3fffe4, 0x7ffff0, 0x3fffe5, 0x3fffe6, 0x7ffff1,
+            0x3ffffe0, 0x3ffffe1, 0xfffeb, 0x7fff1, 0x3fffe7, 0x7ffff2, 0x3fffe8, 0x1ffffec,
+            0x3ffffe2, 0x3ffffe3, 0x3ffffe4, 0x7ffffde, 0x7ffffdf, 0x3ffffe5, 0xfffff1, 0x1ffffed,
+            0x7fff2, 0x1fffe3, 0x3ffffe6, 0x7ffffe0, 0x7ffffe1, 0x3ffffe7, 0x7ffffe2, 0xfffff2,
+            0x1fffe4, 0x1fffe5, 0x3ffffe8, 0x3ffffe9, 0xffffffd, 0x7ffffe3, 0x7ffffe4, 0x7ffffe5,
+            0xfffec, 0xfffff3, 0xfffed, 0x1fffe6, 0x3fffe9, 0x1fffe7, 0x1fffe8, 0x7ffff3,
+            0x3fffea, 0x3fffeb, 0x1ffffee, 0x1ffffef, 0xfffff4, 0xfffff5, 0x3ffffea, 0x7ffff4,
+            0x3ffffeb, 0x7ffffe6, 0x3ffffec, 0x3ffffed, 0x7ffffe7, 0x7ffffe8, 0x7ffffe9, 0x7ffffea,
+            0x7ffffeb, 0xffffffe, 0x7ffffec, 0x7ffffed, 0x7ffffee, 0x7ffffef, 0x7fffff0, 0x3ffffee
+    };
+    private static final byte[] HUFFMAN_CODE_LENGTHS = {
+            13, 23, 28, 28, 28, 28, 28, 28, 28, 24, 30, 28, 28, 30, 28, 28,
+            28, 28, 28, 28, 28, 28, 30, 28, 28, 28, 28, 28, 28, 28, 28, 28,
+            6, 10, 10, 12, 13, 6, 8, 11, 10, 10, 8, 11, 8, 6, 6, 6,
+            5, 5, 5, 6, 6, 6, 6, 6, 6, 6, 7, 8, 15, 6, 12, 10,
+            13, 6, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7,
+            7, 7, 7, 7, 7, 7, 7, 7, 8, 7, 8, 13, 19, 13, 14, 6,
+            15, 5, 6, 5, 6, 5, 6, 6, 6, 5, 7, 7, 6, 6, 6, 5,
+            6, 7, 6, 5, 5, 6, 7, 7, 7, 7, 7, 15, 11, 14, 13, 28,
+            20, 22, 20, 20, 22, 22, 22, 23, 22, 23, 23, 23, 23, 23, 24, 23,
+            24, 24, 22, 23, 24, 23, 23, 23, 23, 21, 22, 23, 22, 23, 23, 24,
+            22, 21, 20, 22, 22, 23, 23, 21, 23, 22, 22, 24, 21, 22, 23, 23,
+            21, 21, 22, 21, 23, 22, 23, 23, 20, 22, 22, 22, 23, 22, 22, 23,
+            26, 26, 20, 19, 22, 23, 22, 25, 26, 26, 26, 27, 27, 26, 24, 25,
+            19, 21, 26, 27, 27, 26, 27, 24, 21, 21, 26, 26, 28, 27, 27, 27,
+            20, 24, 20, 21, 22, 21, 21, 23, 22, 22, 25, 25, 24, 24, 26, 23,
+            26, 27, 26, 26, 27, 27, 27, 27, 27, 28, 27, 27, 27, 27, 27, 26
+    };
+
+    /**
+     * Huffman解码树，每个节点占两个元素（0与1两个分支），值大于0为子节点的下标，小于0为叶子（-1 - 符号），0表示不存在
+     */
+    private static final int[] HUFFMAN_TREE = buildHuffmanTree();
+
+    private Hpack() {
+    }
+
+    private static int[] buildHuffmanTree() {
+        int[] tree = new int[256 * 2 * 2];
+        int nodeCount = 1;
+        for (int symbol = 0; symbol < HUFFMAN_CODES.length; symbol++) {
+            int code = HUFFMAN_CODES[symbol];
+            int length = HUFFMAN_CODE_LENGTHS[symbol];
+            int node = 0;
+            for (int bit = length - 1; bit > 0; bit--) {
+                int slot = node * 2 + ((code >>> bit) & 1);
+                if (tree[slot] == 0) {
+                    tree[slot] = nodeCount++;
+                }
+                node = tree[slot];
+            }
+            tree[node * 2 + (code & 1)] = -1 - symbol;
+        }
+        return tree;
+    }
+
+    /**
+     * 头部编码器，无状态
+     */
+    static final class Encoder {
+
+        private final ByteArrayOutputStream mOut = new ByteArrayOutputStream(256);
+
+        /**
+         * 编码一个头部，名称必须为小写
+         */
+        Encoder header(String name, String value) {
+            Integer index = STATIC_ENTRY_INDEX.get(name + ':' + value);
+            if (index != null) {
+                // 索引头部字段
+                writeInt(index, 7, 0x80);
+                return this;
+            }
+            index = STATIC_NAME_INDEX.get(name);
+            if (index != null) {
+                // 不索引的字面头部字段，名称使用静态表
+                writeInt(index, 4, 0);
+            } else {
+                mOut.write(0);
+                writeString(name);
+            }
+            writeString(value);
+            return this;
+        }
+
+        /**
+         * @return 已编码的头部块，同时清空编码器
+         */
+        byte[] toByteArray() {
+            byte[] block = mOut.toByteArray();
+            mOut.reset();
+            return block;
+        }
+
+        private void writeString(String str) {
+            byte[] bytes = str.getBytes(ISO_8859_1);
+            writeInt(bytes.length, 7, 0);
+            mOut.write(bytes, 0, bytes.length);
+        }
+
+        private void writeInt(int value, int prefixBits, int firstByteFlags) {
+            int maxPrefix = (1 << prefixBits) - 1;
+            if (value < maxPrefix) {
+                mOut.write(firstByteFlags | value);
+                return;
+            }
+            mOut.write(firstByteFlags | maxPrefix);
+            value -= maxPrefix;
+            while (value >= 0x80) {
+                mOut.write((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            mOut.write(value);
+        }
+    }
+
+    /**
+     * 头部解码器，持有动态表，必须按接收顺序解码全部头部块
+     */
+    static final class Decoder {
+
+        /**
+         * 动态表，下标0为最新的条目，名称与值交替存放
+         */
+        private final List<String> mDynamicTable = new ArrayList<>();
+        private int mDynamicTableSize;
+        /**
+         * 对方通过动态表大小更新指令设置的上限，不能超过我们通过SETTINGS声明的上限
+         */
+        private int mMaxDynamicTableSize;
+        private final int mHeaderTableSizeSetting;
+
+        private byte[] mBlock;
+        private int mPos;
+        private int mEnd;
+
+        Decoder(int headerTableSizeSetting) {
+            mHeaderTableSizeSetting = headerTableSizeSetting;
+            mMaxDynamicTableSize = headerTableSizeSetting;
+        }
+
+        /**
+         * 解码一个完整的头部块
+         *
+         * @return 名称、值交替的列表
+         * @throws IOException 头部块格式错误，属于连接错误
+         */
+        List<String> decode(byte[] block, int offset, int length) throws IOException {
+            mBlock = block;
+            mPos = offset;
+            mEnd = offset + length;
+            List<String> headers = new ArrayList<>();
+            try {
+                while (mPos < mEnd) {
+                    int b = mBlock[mPos] & 0xff;
+                    if ((b & 0x80) != 0) {
+                        // 索引头部字段
+                        int index = readInt(7);
+                        if (index == 0) {
+                            throw new IOException("HPACK: index 0");
+                        }
+                        headers.add(nameAt(index));
+                        headers.add(valueAt(index));
+                    } else if ((b & 0x40) != 0) {
+                        // 带索引的字面头部字段
+                        String name = readName(6);
+                        String value = readString();
+                        headers.add(name);
+                        headers.add(value);
+                        addToDynamicTable(name, value);
+                    } else if ((b & 0x20) != 0) {
+                        // 动态表大小更新
+                        int size = readInt(5);
+                        if (size > mHeaderTableSizeSetting) {
+                            throw new IOException("HPACK: dynamic table size " + size + " > " + mHeaderTableSizeSetting);
+                        }
+                        mMaxDynamicTableSize = size;
+                        evict(0);
+                    } else {
+                        // 不索引或永不索引的字面头部字段
+                        String name = readName(4);
+                        headers.add(name);
+                        headers.add(readString());
+                    }
+                }
+            } finally {
+                mBlock = null;
+            }
+            return headers;
+        }
+
+        private String readName(int prefixBits) throws IOException {
+            int index = readInt(prefixBits);
+            return index == 0 ? readString() : nameAt(index);
+        }
+
+        private String nameAt(int index) throws IOException {
+            if (index <= STATIC_TABLE.length) {
+                return STATIC_TABLE[index - 1][0];
+            }
+            int dynamicIndex = (index - STATIC_TABLE.length - 1) * 2;
+            if (dynamicIndex >= mDynamicTable.size()) {
+                throw new IOException("HPACK: index " + index + " out of range");
+            }
+            return mDynamicTable.get(dynamicIndex);
+        }
+
+        private String valueAt(int index) throws IOException {
+            if (index <= STATIC_TABLE.length) {
+                return STATIC_TABLE[index - 1][1];
+            }
+            int dynamicIndex = (index - STATIC_TABLE.length - 1) * 2 + 1;
+            if (dynamicIndex >= mDynamicTable.size()) {
+                throw new IOException("HPACK: index " + index + " out of range");
+            }
+            return mDynamicTable.get(dynamicIndex);
+        }
+
+        private void addToDynamicTable(String name, String value) {
+            int entrySize = name.length() + value.length() + ENTRY_OVERHEAD;
+            if (entrySize > mMaxDynamicTableSize) {
+                // 条目比整个动态表还大时清空动态表
+                mDynamicTable.clear();
+                mDynamicTableSize = 0;
+                return;
+            }
+            evict(entrySize);
+            mDynamicTable.add(0, value);
+            mDynamicTable.add(0, name);
+            mDynamicTableSize += entrySize;
+        }
+
+        /**
+         * 从最旧的条目开始移除，直到能够放入新的条目
+         */
+        private void evict(int required) {
+            while (mDynamicTableSize + required > mMaxDynamicTableSize && !mDynamicTable.isEmpty()) {
+                int last = mDynamicTable.size();
+                String value = mDynamicTable.remove(last - 1);
+                String name = mDynamicTable.remove(last - 2);
+                mDynamicTableSize -= name.length() + value.length() + ENTRY_OVERHEAD;
+            }
+        }
+
+        private int readInt(int prefixBits) throws IOException {
+            int maxPrefix = (1 << prefixBits) - 1;
+            int value = readByte() & maxPrefix;
+            if (value < maxPrefix) {
+                return value;
+            }
+            int shift = 0;
+            while (true) {
+                int b = readByte();
+                if (shift > 21) {
+                    throw new IOException("HPACK: integer overflow");
+                }
+                value += (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+                shift += 7;
+            }
+        }
+
+        private String readString() throws IOException {
+            if (mPos >= mEnd) {
+                throw new IOException("HPACK: truncated header block");
+            }
+            boolean huffman = (mBlock[mPos] & 0x80) != 0;
+            int length = readInt(7);
+            if (length > mEnd - mPos) {
+                throw new IOException("HPACK: string length " + length + " out of range");
+            }
+            String str = huffman ? decodeHuffman(mBlock, mPos, length) : new String(mBlock, mPos, length, ISO_8859_1);
+            mPos += length;
+            return str;
+        }
+
+        private int readByte() throws IOException {
+            if (mPos >= mEnd) {
+                throw new IOException("HPACK: truncated header block");
+            }
+            return mBlock[mPos++] & 0xff;
+        }
+
+        private static String decodeHuffman(byte[] data, int offset, int length) throws IOException {
+            StringBuilder builder = new StringBuilder(length * 8 / 5);
+            int node = 0;
+            // 当前路径上的比特数及是否全为1，用于校验末尾的填充
+            int depth = 0;
+            boolean allOnes = true;
+            for (int i = offset; i < offset + length; i++) {
+                int b = data[i] & 0xff;
+                for (int bit = 7; bit >= 0; bit--) {
+                    int branch = (b >>> bit) & 1;
+                    int next = HUFFMAN_TREE[node * 2 + branch];
+                    depth++;
+                    allOnes &= branch == 1;
+                    if (next < 0) {
+                        builder.append((char) (-1 - next));
+                        node = 0;
+                        depth = 0;
+                        allOnes = true;
+                    } else if (next == 0) {
+                        // 只有EOS的前缀会走到这里
+                        throw new IOException("HPACK: invalid huffman code");
+                    } else {
+                        node = next;
+                    }
+                }
+            }
+            if (depth > 7 || !allOnes) {
+                throw new IOException("HPACK: invalid huffman padding");
+            }
+            return builder.toString();
+        }
+    }
+
+}
@@ -0,0 +1,794 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.jc.hellohttp.Http2Framer.*;
+
+/**
+ * Created by Zhang on 2017/7/28.<br/>
+ * Description: 一个HTTP/2客户端连接，多个执行者同时在同一个连接上以不同的流发送请求<br/>
+ * 每个连接有一个读取线程，负责解析对方发来的帧并投递给对应的流。连接与其全部流的状态都由this保护，
+ * 任何socket写入都不在持有this时进行：读取线程持有this时不会阻塞在写入上，也就不会因为对方等待我们读取而死锁
+ */
+final class Http2Connection {
+
+    private static final String TAG = Http2Connection.class.getSimpleName();
+
+    /**
+     * 我们声明的流初始接收窗口
+     */
+    static final int LOCAL_INITIAL_WINDOW_SIZE = 1024 * 1024;
+    /**
+     * 连接级的接收窗口，建立连接后通过WINDOW_UPDATE从默认的65535扩大到该值
+     */
+    static final int LOCAL_CONNECTION_WINDOW_SIZE = 16 * 1024 * 1024;
+
+    private final String mKey;
+    private final Socket mSocket;
+    private final Http2Framer mFramer;
+    private final Http2ConnectionPool mPool;
+    /**
+     * 只在读取线程中使用
+     */
+    private final Hpack.Decoder mDecoder = new Hpack.Decoder(Hpack.DEFAULT_HEADER_TABLE_SIZE);
+
+    // 以下字段由this保护
+    private final Map<Integer, Http2Stream> mStreams = new HashMap<>();
+    private int mPeerMaxConcurrentStreams = Integer.MAX_VALUE;
+    private int mPeerInitialWindowSize = DEFAULT_INITIAL_WINDOW_SIZE;
+    private int mPeerMaxFrameSize = DEFAULT_MAX_FRAME_SIZE;
+    private long mSendWindow = DEFAULT_INITIAL_WINDOW_SIZE;
+    private long mReceiveWindow = LOCAL_CONNECTION_WINDOW_SIZE;
+    private int mConsumedUnacked;
+    /**
+     * 收到GOAWAY或者连接失败后不再创建新的流
+     */
+    private boolean mShutdown;
+    /**
+     * 最后一个流结束的时间，有进行中的流时无意义
+     */
+    private long mIdleSince = System.currentTimeMillis();
+
+    /**
+     * 下一个流的ID，由mFramer保护，保证流按照ID递增的顺序发送HEADERS
+     */
+    private int mNextStreamId = 1;
+
+    /**
+     * @param key 连接池中的键，scheme://host:port
+     */
+    Http2Connection(String key, Socket socket, Http2ConnectionPool pool) throws IOException {
+        mKey = key;
+        mSocket = socket;
+        mPool = pool;
+        mFramer = new Http2Framer(socket.getInputStream(), socket.getOutputStream());
+        mFramer.writePreface();
+        mFramer.writeSettings(SETTINGS_ENABLE_PUSH, 0, SETTINGS_INITIAL_WINDOW_SIZE, LOCAL_INITIAL_WINDOW_SIZE);
+        mFramer.writeWindowUpdate(0, LOCAL_CONNECTION_WINDOW_SIZE - DEFAULT_INITIAL_WINDOW_SIZE);
+        mFramer.flush();
+        Thread reader = new Thread(new Reader(), "HelloHttp-h2-" + key);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    String getKey() {
+        return mKey;
+    }
+
+    synchronized boolean isUsable() {
+        return !mShutdown;
+    }
+
+    /**
+     * 没有进行中的流且空闲超过idleTimeoutMillis时发送GOAWAY并关闭。
+     * 之后从连接池中取得该连接的执行者在newStream()时得到REFUSED_STREAM，会在新的连接上重试
+     *
+     * @return 已经关闭时返回0，否则为距离到期的毫秒数，有进行中的流时为idleTimeoutMillis
+     */
+    long closeIfIdle(long idleTimeoutMillis) {
+        synchronized (this) {
+            if (mShutdown) {
+                return 0;
+            }
+            if (!mStreams.isEmpty()) {
+                return idleTimeoutMillis;
+            }
+            long remaining = mIdleSince + idleTimeoutMillis - System.currentTimeMillis();
+            if (remaining > 0) {
+                return remaining;
+            }
+            mShutdown = true;
+        }
+        close();
+        return 0;
+    }
+
+    /**
+     * Request.Priority映射为HTTP/2的流权重（RFC 7540第5.3节），同级的流按权重比例分配带宽
+     */
+    static int weight(Request.Priority priority) {
+        switch (priority) {
+            case PREFETCH:
+                return 1;
+            case LOW:
+                return 8;
+            case HIGH:
+                return 64;
+            case IMMEDIATE:
+                return 256;
+            default:
+                return 16;
+        }
+    }
+
+    /**
+     * 创建新的流并发送请求头，对方的并发流数量已满时等待
+     *
+     * @param headerBlock HPACK编码后的请求头
+     * @param endStream   没有请求体时为true
+     * @param weight      流权重
+     */
+    Http2Stream newStream(byte[] headerBlock, boolean endStream, int weight) throws IOException {
+        long deadline = System.currentTimeMillis() + Config.CONNECT_TIMEOUT;
+        while (true) {
+            synchronized (this) {
+                while (!mShutdown && mStreams.size() >= mPeerMaxConcurrentStreams) {
+                    waitUntil(deadline, "Timed out waiting for a stream slot");
+                }
+            }
+            Http2Stream stream = null;
+            synchronized (mFramer) {
+                synchronized (this) {
+                    if (mShutdown) {
+                        throw new Http2Exception(REFUSED_STREAM, "Connection is shutdown", true);
+                    }
+                    if (mStreams.size() >= mPeerMaxConcurrentStreams) {
+                        // 其他线程抢先占用了空位，重新等待
+                        continue;
+                    }
+                    if (mNextStreamId < 0) {
+                        mShutdown = true;
+                        notifyAll();
+                    } else {
+                        stream = new Http2Stream(this, mNextStreamId, mPeerInitialWindowSize, endStream);
+                        mNextStreamId += 2;
+                        mStreams.put(stream.mId, stream);
+                    }
+                }
+                if (stream != null) {
+                    try {
+                        mFramer.writeHeaders(stream.mId, headerBlock, endStream, weight);
+                        mFramer.flush();
+                    } catch (IOException e) {
+                        shutdown(e);
+                        throw e;
+                    }
+                }
+            }
+            if (stream == null) {
+                // 流ID用尽，由连接池创建新的连接。连接池在持有自身时会检查连接，因此释放连接的锁之后再移除
+                mPool.remove(this);
+                throw new Http2Exception(REFUSED_STREAM, "Stream ids exhausted", true);
+            }
+            return stream;
+        }
+    }
+
+    /**
+     * 按照连接级与流级的发送窗口分帧写入请求体，最后一帧携带END_STREAM。
+     * 窗口用尽时先发出缓冲区中的帧再等待，对方收到数据后才会归还窗口
+     */
+    void writeData(Http2Stream stream, byte[] body) throws IOException {
+        int pos = 0;
+        boolean unflushed = false;
+        while (pos < body.length) {
+            int length;
+            boolean last;
+            try {
+                synchronized (this) {
+                    long deadline = System.currentTimeMillis() + Config.READ_TIMEOUT;
+                    while (!stream.mClosed && (mSendWindow <= 0 || stream.mSendWindow <= 0) && !unflushed) {
+                        awaitLocked(stream, deadline);
+                    }
+                    if (stream.mClosed) {
+                        throw stream.mFailure != null ? stream.mFailure : new IOException("Stream closed");
+                    }
+                    // 窗口用尽而缓冲区中还有未发出的帧时为0，释放this之后先flush再等待
+                    length = (int) Math.max(0, Math.min(Math.min(body.length - pos, mPeerMaxFrameSize),
+                            Math.min(mSendWindow, stream.mSendWindow)));
+                    mSendWindow -= length;
+                    stream.mSendWindow -= length;
+                    last = pos + length == body.length;
+                    if (last) {
+                        stream.mLocalFinished = true;
+                        if (stream.mRemoteFinished) {
+                            removeLocked(stream);
+                        }
+                    }
+                }
+            } catch (InterruptedIOException e) {
+                writeRstStreamQuietly(stream.mId, CANCEL);
+                throw e;
+            }
+            try {
+                if (length == 0) {
+                    mFramer.flush();
+                    unflushed = false;
+                    continue;
+                }
+                mFramer.writeData(stream.mId, body, pos, length, last);
+                unflushed = true;
+            } catch (IOException e) {
+                shutdown(e);
+                throw e;
+            }
+            pos += length;
+        }
+        try {
+            mFramer.flush();
+        } catch (IOException e) {
+            shutdown(e);
+            throw e;
+        }
+    }
+
+    List<String> awaitHeaders(Http2Stream stream, int timeoutMillis) throws IOException {
+        try {
+            synchronized (this) {
+                long deadline = System.currentTimeMillis() + timeoutMillis;
+                while (stream.mHeaders == null) {
+                    if (stream.mClosed) {
+                        throw stream.mFailure != null ? stream.mFailure : new IOException("Stream closed before response headers");
+                    }
+                    awaitLocked(stream, deadline);
+                }
+                return stream.mHeaders;
+            }
+        } catch (InterruptedIOException e) {
+            writeRstStreamQuietly(stream.mId, CANCEL);
+            throw e;
+        }
+    }
+
+    /**
+     * 读取响应体，读取后归还接收窗口
+     *
+     * @return 读取的字节数，响应体结束时返回-1
+     */
+    int read(Http2Stream stream, byte[] buffer, int offset, int length, int timeoutMillis) throws IOException {
+        int read;
+        int streamWindowUpdate = 0;
+        int connectionWindowUpdate;
+        try {
+            synchronized (this) {
+                long deadline = System.currentTimeMillis() + timeoutMillis;
+                while (stream.mChunks.isEmpty()) {
+                    if (stream.mClosed && stream.mFailure != null) {
+                        throw stream.mFailure;
+                    }
+                    if (stream.mClosed || stream.mRemoteFinished) {
+                        return -1;
+                    }
+                    awaitLocked(stream, deadline);
+                }
+                byte[] chunk = stream.mChunks.peek();
+                read = Math.min(length, chunk.length - stream.mChunkPos);
+                System.arraycopy(chunk, stream.mChunkPos, buffer, offset, read);
+                stream.mChunkPos += read;
+                if (stream.mChunkPos == chunk.length) {
+                    stream.mChunks.poll();
+                    stream.mChunkPos = 0;
+                }
+                stream.mBufferedBytes -= read;
+                if (!stream.mRemoteFinished) {
+                    stream.mConsumedUnacked += read;
+                    if (stream.mConsumedUnacked >= LOCAL_INITIAL_WINDOW_SIZE / 2) {
+                        streamWindowUpdate = stream.mConsumedUnacked;
+                        stream.mReceiveWindow += streamWindowUpdate;
+                        stream.mConsumedUnacked = 0;
+                    }
+                }
+                mConsumedUnacked += read;
+                connectionWindowUpdate = takeConnectionWindowUpdateLocked();
+            }
+        } catch (InterruptedIOException e) {
+            writeRstStreamQuietly(stream.mId, CANCEL);
+            throw e;
+        }
+        if (streamWindowUpdate > 0) {
+            writeWindowUpdateQuietly(stream.mId, streamWindowUpdate);
+        }
+        if (connectionWindowUpdate > 0) {
+            writeWindowUpdateQuietly(0, connectionWindowUpdate);
+        }
+        return read;
+    }
+
+    void cancel(Http2Stream stream) {
+        boolean reset;
+        int connectionWindowUpdate;
+        synchronized (this) {
+            reset = closeLocked(stream, new IOException("Stream canceled"));
+            connectionWindowUpdate = takeConnectionWindowUpdateLocked();
+        }
+        if (reset) {
+            writeRstStreamQuietly(stream.mId, CANCEL);
+        }
+        if (connectionWindowUpdate > 0) {
+            writeWindowUpdateQuietly(0, connectionWindowUpdate);
+        }
+    }
+
+    /**
+     * 发送GOAWAY并关闭连接，进行中的流全部失败
+     */
+    void close() {
+        try {
+            mFramer.writeGoAway(0, NO_ERROR);
+            mFramer.flush();
+        } catch (IOException ignored) {
+        }
+        shutdown(new IOException("Connection closed"));
+    }
+
+    /**
+     * 在持有this时等待流的状态变化，超时或被打断时关闭流并抛出InterruptedIOException。
+     * 等待中的流一定还没有结束，调用者释放锁之后发送RST_STREAM通知对方
+     */
+    private void awaitLocked(Http2Stream stream, long deadline) throws InterruptedIOException {
+        long remaining = deadline - System.currentTimeMillis();
+        InterruptedIOException failure = null;
+        if (remaining <= 0) {
+            failure = new SocketTimeoutException("Read timed out");
+        } else {
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = new InterruptedIOException("Interrupted while waiting for stream " + stream.mId);
+            }
+        }
+        if (failure != null) {
+            closeLocked(stream, failure);
+            throw failure;
+        }
+    }
+
+    private void waitUntil(long deadline, String timeoutMessage) throws IOException {
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+            throw new SocketTimeoutException(timeoutMessage);
+        }
+        try {
+            wait(remaining);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(timeoutMessage);
+        }
+    }
+
+    /**
+     * 关闭流并丢弃未读取的数据，在持有this时调用
+     *
+     * @return 是否需要向对方发送RST_STREAM
+     */
+    private boolean closeLocked(Http2Stream stream, IOException failure) {
+        if (stream.mClosed) {
+            return false;
+        }
+        stream.mClosed = true;
+        stream.mFailure = failure;
+        // 未读取的数据归还给连接级的接收窗口
+        mConsumedUnacked += stream.mBufferedBytes;
+        stream.mChunks.clear();
+        stream.mBufferedBytes = 0;
+        boolean reset = !(stream.mLocalFinished && stream.mRemoteFinished) && mStreams.containsKey(stream.mId);
+        removeLocked(stream);
+        return reset;
+    }
+
+    private void removeLocked(Http2Stream stream) {
+        if (mStreams.remove(stream.mId) != null) {
+            if (mStreams.isEmpty()) {
+                mIdleSince = System.currentTimeMillis();
+            }
+            notifyAll();
+        }
+    }
+
+    private int takeConnectionWindowUpdateLocked() {
+        if (mConsumedUnacked < LOCAL_CONNECTION_WINDOW_SIZE / 2) {
+            return 0;
+        }
+        int increment = mConsumedUnacked;
+        mReceiveWindow += increment;
+        mConsumedUnacked = 0;
+        return increment;
+    }
+
+    private void writeRstStreamQuietly(int streamId, int errorCode) {
+        try {
+            mFramer.writeRstStream(streamId, errorCode);
+            mFramer.flush();
+        } catch (IOException ignored) {
+            // 连接已经失败，读取线程会处理
+        }
+    }
+
+    private void writeWindowUpdateQuietly(int streamId, int increment) {
+        try {
+            mFramer.writeWindowUpdate(streamId, increment);
+            mFramer.flush();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * 连接失败：不再创建新的流，进行中的流全部以failure结束，从连接池中移除并关闭socket
+     */
+    private void shutdown(IOException failure) {
+        synchronized (this) {
+            mShutdown = true;
+            for (Http2Stream stream : new ArrayList<>(mStreams.values())) {
+                closeLocked(stream, failure);
+            }
+            notifyAll();
+        }
+        mPool.onConnectionClosed(this);
+        try {
+            mSocket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    static String header(List<String> headers, String name) {
+        for (int i = 0; i < headers.size(); i += 2) {
+            if (headers.get(i).equals(name)) {
+                return headers.get(i + 1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 读取线程
+     */
+    private final class Reader implements Runnable {
+
+        @Override
+        public void run() {
+            IOException failure;
+            try {
+                while (mFramer.nextFrame()) {
+                    readFrame();
+                }
+                failure = new EOFException("Connection closed by peer");
+            } catch (Http2Exception e) {
+                try {
+                    mFramer.writeGoAway(0, e.getErrorCode());
+                    mFramer.flush();
+                } catch (IOException ignored) {
+                }
+                Platform.get().logError(TAG, "Protocol error on " + mKey + ": " + e.getMessage());
+                failure = e;
+            } catch (IOException e) {
+                failure = e;
+            }
+            shutdown(failure);
+        }
+
+        private void readFrame() throws IOException {
+            int streamId = mFramer.streamId();
+            switch (mFramer.type()) {
+                case TYPE_DATA:
+                    readData(streamId);
+                    break;
+                case TYPE_HEADERS:
+                    readHeaders(streamId);
+                    break;
+                case TYPE_RST_STREAM:
+                    readRstStream(streamId);
+                    break;
+                case TYPE_SETTINGS:
+                    readSettings();
+                    break;
+                case TYPE_PING:
+                    readPing();
+                    break;
+                case TYPE_GOAWAY:
+                    readGoAway();
+                    break;
+                case TYPE_WINDOW_UPDATE:
+                    readWindowUpdate(streamId);
+                    break;
+                case TYPE_PUSH_PROMISE:
+                    throw new Http2Exception(PROTOCOL_ERROR, "PUSH_PROMISE while push is disabled");
+                case TYPE_CONTINUATION:
+                    throw new Http2Exception(PROTOCOL_ERROR, "Unexpected CONTINUATION");
+                default:
+                    // PRIORITY以及未知类型的帧直接忽略
+                    mFramer.skipPayload(mFramer.length());
+                    break;
+            }
+        }
+
+        private void readData(int streamId) throws IOException {
+            if (streamId == 0) {
+                throw new Http2Exception(PROTOCOL_ERROR, "DATA on stream 0");
+            }
+            int length = mFramer.length();
+            int flags = mFramer.flags();
+            int padding = (flags & FLAG_PADDED) != 0 ? mFramer.readUnsignedByte() : 0;
+            int dataLength = length - ((flags & FLAG_PADDED) != 0 ? 1 : 0) - padding;
+            if (dataLength < 0) {
+                throw new Http2Exception(PROTOCOL_ERROR, "DATA padding too large");
+            }
+            byte[] chunk = new byte[dataLength];
+            mFramer.readPayload(chunk, 0, dataLength);
+            mFramer.skipPayload(padding);
+            boolean endStream = (flags & FLAG_END_STREAM) != 0;
+            boolean reset = false;
+            int connectionWindowUpdate;
+            synchronized (Http2Connection.this) {
+                if (length > mReceiveWindow) {
+                    throw new Http2Exception(FLOW_CONTROL_ERROR, "Connection receive window exceeded");
+                }
+                mReceiveWindow -= length;
+                Http2Stream stream = mStreams.get(streamId);
+                if (stream == null || stream.mClosed) {
+                    // 已经取消的流，数据直接归还
+                    mConsumedUnacked += length;
+                } else if (length > stream.mReceiveWindow) {
+                    mConsumedUnacked += length;
+                    reset = closeLocked(stream, new Http2Exception(FLOW_CONTROL_ERROR, "Stream receive window exceeded"));
+                } else {
+                    stream.mReceiveWindow -= length;
+                    // 填充不会被读取，直接计为已消费
+                    stream.mConsumedUnacked += length - dataLength;
+                    mConsumedUnacked += length - dataLength;
+                    if (dataLength > 0) {
+                        stream.mChunks.add(chunk);
+                        stream.mBufferedBytes += dataLength;
+                    }
+                    if (endStream) {
+                        receiveEndLocked(stream);
+                    }
+                    Http2Connection.this.notifyAll();
+                }
+                connectionWindowUpdate = takeConnectionWindowUpdateLocked();
+            }
+            if (reset) {
+                writeRstStreamQuietly(streamId, FLOW_CONTROL_ERROR);
+            }
+            if (connectionWindowUpdate > 0) {
+                writeWindowUpdateQuietly(0, connectionWindowUpdate);
+            }
+        }
+
+        private void readHeaders(int streamId) throws IOException {
+            if (streamId == 0) {
+                throw new Http2Exception(PROTOCOL_ERROR, "HEADERS on stream 0");
+            }
+            int length = mFramer.length();
+            int flags = mFramer.flags();
+            boolean endStream = (flags & FLAG_END_STREAM) != 0;
+            int padding = 0;
+            if ((flags & FLAG_PADDED) != 0) {
+                padding = mFramer.readUnsignedByte();
+                length--;
+            }
+            if ((flags & FLAG_PRIORITY) != 0) {
+                mFramer.skipPayload(5);
+                length -= 5;
+            }
+            length -= padding;
+            if (length < 0) {
+                throw new Http2Exception(PROTOCOL_ERROR, "HEADERS padding too large");
+            }
+            ByteArrayOutputStream block = new ByteArrayOutputStream(length);
+            byte[] buffer = new byte[length];
+            mFramer.readPayload(buffer, 0, length);
+            block.write(buffer, 0, length);
+            mFramer.skipPayload(padding);
+            while ((flags & FLAG_END_HEADERS) == 0) {
+                if (!mFramer.nextFrame() || mFramer.type() != TYPE_CONTINUATION || mFramer.streamId() != streamId) {
+                    throw new Http2Exception(PROTOCOL_ERROR, "Expected CONTINUATION for stream " + streamId);
+                }
+                flags = mFramer.flags();
+                buffer = new byte[mFramer.length()];
+                mFramer.readPayload(buffer, 0, buffer.length);
+                block.write(buffer, 0, buffer.length);
+            }
+            byte[] bytes = block.toByteArray();
+            List<String> headers;
+            try {
+                // 即使流已经取消也要解码，保持动态表与对方一致
+                headers = mDecoder.decode(bytes, 0, bytes.length);
+            } catch (IOException e) {
+                throw new Http2Exception(COMPRESSION_ERROR, e.getMessage());
+            }
+            synchronized (Http2Connection.this) {
+                Http2Stream stream = mStreams.get(streamId);
+                if (stream == null || stream.mClosed) {
+                    return;
+                }
+                String status = header(headers, ":status");
+                boolean informational = status != null && status.startsWith("1");
+                if (stream.mHeaders == null && !informational) {
+                    stream.mHeaders = headers;
+                }
+                // 之后的HEADERS为trailer，忽略
+                if (endStream) {
+                    receiveEndLocked(stream);
+                }
+                Http2Connection.this.notifyAll();
+            }
+        }
+
+        private void readRstStream(int streamId) throws IOException {
+            if (mFramer.length() != 4) {
+                throw new Http2Exception(FRAME_SIZE_ERROR, "RST_STREAM length " + mFramer.length());
+            }
+            int errorCode = mFramer.readInt();
+            int connectionWindowUpdate;
+            synchronized (Http2Connection.this) {
+                Http2Stream stream = mStreams.get(streamId);
+                if (stream != null) {
+                    closeLocked(stream, new Http2Exception(errorCode,
+                            "Stream " + streamId + " reset by peer, error code: " + errorCode, errorCode == REFUSED_STREAM));
+                }
+                connectionWindowUpdate = takeConnectionWindowUpdateLocked();
+            }
+            if (connectionWindowUpdate > 0) {
+                writeWindowUpdateQuietly(0, connectionWindowUpdate);
+            }
+        }
+
+        private void readSettings() throws IOException {
+            int length = mFramer.length();
+            if ((mFramer.flags() & FLAG_ACK) != 0) {
+                if (length != 0) {
+                    throw new Http2Exception(FRAME_SIZE_ERROR, "SETTINGS ack with payload");
+                }
+                return;
+            }
+            if (length % 6 != 0) {
+                throw new Http2Exception(FRAME_SIZE_ERROR, "SETTINGS length " + length);
+            }
+            int maxFrameSize = -1;
+            synchronized (Http2Connection.this) {
+                for (int i = 0; i < length; i += 6) {
+                    int id = mFramer.readUnsignedByte() << 8 | mFramer.readUnsignedByte();
+                    int value = mFramer.readInt();
+                    switch (id) {
+                        case SETTINGS_MAX_CONCURRENT_STREAMS:
+                            mPeerMaxConcurrentStreams = value < 0 ? Integer.MAX_VALUE : value;
+                            break;
+                        case SETTINGS_INITIAL_WINDOW_SIZE:
+                            if (value < 0) {
+                                throw new Http2Exception(FLOW_CONTROL_ERROR, "INITIAL_WINDOW_SIZE " + value);
+                            }
+                            int delta = value - mPeerInitialWindowSize;
+                            for (Http2Stream stream : mStreams.values()) {
+                                stream.mSendWindow += delta;
+                            }
+                            mPeerInitialWindowSize = value;
+                            break;
+                        case SETTINGS_MAX_FRAME_SIZE:
+                            if (value < DEFAULT_MAX_FRAME_SIZE || value > 0xffffff) {
+                                throw new Http2Exception(PROTOCOL_ERROR, "MAX_FRAME_SIZE " + value);
+                            }
+                            mPeerMaxFrameSize = value;
+                            maxFrameSize = value;
+                            break;
+                        default:
+                            // 编码器不使用动态表，HEADER_TABLE_SIZE无需处理；其他设置忽略
+                            break;
+                    }
+                }
+                Http2Connection.this.notifyAll();
+            }
+            if (maxFrameSize != -1) {
+                mFramer.setPeerMaxFrameSize(maxFrameSize);
+            }
+            mFramer.writeSettingsAck();
+            mFramer.flush();
+        }
+
+        private void readPing() throws IOException {
+            if (mFramer.length() != 8) {
+                throw new Http2Exception(FRAME_SIZE_ERROR, "PING length " + mFramer.length());
+            }
+            byte[] payload = new byte[8];
+            mFramer.readPayload(payload, 0, 8);
+            if ((mFramer.flags() & FLAG_ACK) == 0) {
+                mFramer.writePing(true, payload);
+                mFramer.flush();
+            }
+        }
+
+        private void readGoAway() throws IOException {
+            int length = mFramer.length();
+            if (length < 8) {
+                throw new Http2Exception(FRAME_SIZE_ERROR, "GOAWAY length " + length);
+            }
+            int lastStreamId = mFramer.readInt() & 0x7fffffff;
+            int errorCode = mFramer.readInt();
+            mFramer.skipPayload(length - 8);
+            synchronized (Http2Connection.this) {
+                mShutdown = true;
+                for (Http2Stream stream : new ArrayList<>(mStreams.values())) {
+                    if (stream.mId > lastStreamId) {
+                        // 对方没有处理这些流，可以安全地重试
+                        closeLocked(stream, new Http2Exception(errorCode, "GOAWAY received, error code: " + errorCode, true));
+                    }
+                }
+                Http2Connection.this.notifyAll();
+            }
+            mPool.remove(Http2Connection.this);
+        }
+
+        private void readWindowUpdate(int streamId) throws IOException {
+            if (mFramer.length() != 4) {
+                throw new Http2Exception(FRAME_SIZE_ERROR, "WINDOW_UPDATE length " + mFramer.length());
+            }
+            int increment = mFramer.readInt() & 0x7fffffff;
+            boolean reset = false;
+            synchronized (Http2Connection.this) {
+                if (streamId == 0) {
+                    if (increment == 0) {
+                        throw new Http2Exception(PROTOCOL_ERROR, "WINDOW_UPDATE increment 0");
+                    }
+                    mSendWindow += increment;
+                    if (mSendWindow > Integer.MAX_VALUE) {
+                        throw new Http2Exception(FLOW_CONTROL_ERROR, "Connection send window overflow");
+                    }
+                } else {
+                    Http2Stream stream = mStreams.get(streamId);
+                    if (stream != null) {
+                        stream.mSendWindow += increment;
+                        if (increment == 0 || stream.mSendWindow > Integer.MAX_VALUE) {
+                            reset = closeLocked(stream, new Http2Exception(FLOW_CONTROL_ERROR, "Invalid WINDOW_UPDATE"));
+                        }
+                    }
+                }
+                Http2Connection.this.notifyAll();
+            }
+            if (reset) {
+                writeRstStreamQuietly(streamId, FLOW_CONTROL_ERROR);
+            }
+        }
+
+        private void receiveEndLocked(Http2Stream stream) {
+            stream.mRemoteFinished = true;
+            if (stream.mLocalFinished) {
+                removeLocked(stream);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.Socket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+
+/**
+ * Created by Zhang on 2017/7/28.<br/>
+ * Description: 每个主机（scheme + host + port）最多一个HTTP/2连接，由同一请求队列的全部执行者共享<br/>
+ * 同一主机的多个执行者同时发现没有连接时只有一个去建立，其他的等待它的结果；
+ * 协商结果为HTTP/1.1的主机会被记住，之后直接使用HttpURLConnection。
+ * 空闲（没有进行中的流）超过idleTimeoutMillis的连接由后台线程关闭，没有连接时该线程退出
+ */
+final class Http2ConnectionPool {
+
+    private static final String TAG = Http2ConnectionPool.class.getSimpleName();
+
+    /**
+     * ALPN（JDK 9+、JDK 8u252+、Android 10+），通过反射调用，不可用时https请求始终使用HTTP/1.1
+     */
+    private static final Method SET_APPLICATION_PROTOCOLS = findMethod(SSLParameters.class, "setApplicationProtocols", String[].class);
+    private static final Method GET_APPLICATION_PROTOCOL = findMethod(SSLSocket.class, "getApplicationProtocol");
+
+    private final Protocol mProtocol;
+    private final Dns mDns;
+    private final long mIdleTimeoutMillis;
+
+    // 以下字段由this保护
+    private final Map<String, Http2Connection> mConnections = new HashMap<>();
+    /**
+     * 尚未关闭的全部连接，包括收到GOAWAY之后等待进行中的流结束的连接
+     */
+    private final Set<Http2Connection> mLiveConnections = new HashSet<>();
+    /**
+     * 正在建立连接的主机
+     */
+    private final Set<String> mConnecting = new HashSet<>();
+    /**
+     * 只支持HTTP/1.1的主机
+     */
+    private final Set<String> mHttp1Hosts = new HashSet<>();
+    private boolean mClosed;
+    /**
+     * 关闭空闲连接的后台任务是否正在运行
+     */
+    private boolean mCleanupRunning;
+
+    /**
+     * @param dns               解析目标主机，建立连接时并发尝试解析出的多个地址
+     * @param idleTimeoutMillis 连接空闲超过此时间后关闭
+     */
+    Http2ConnectionPool(Protocol protocol, Dns dns, long idleTimeoutMillis) {
+        mProtocol = protocol;
+        mDns = dns;
+        mIdleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    /**
+     * 获取到目标主机的HTTP/2连接，没有时建立
+     *
+     * @return 应当使用HTTP/1.1时返回null
+     */
+    Http2Connection get(URL url) throws IOException {
+        boolean tls;
+        if ("https".equals(url.getProtocol())) {
+            if (SET_APPLICATION_PROTOCOLS == null || GET_APPLICATION_PROTOCOL == null) {
+                return null;
+            }
+            tls = true;
+        } else if ("http".equals(url.getProtocol()) && mProtocol == Protocol.H2_PRIOR_KNOWLEDGE) {
+            tls = false;
+        } else {
+            return null;
+        }
+        String host = url.getHost();
+        int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+        String key = url.getProtocol() + "://" + host + ":" + port;
+        synchronized (this) {
+            while (true) {
+                if (mClosed || mHttp1Hosts.contains(key)) {
+                    return null;
+                }
+                Http2Connection connection = mConnections.get(key);
+                if (connection != null && connection.isUsable()) {
+                    return connection;
+                }
+                if (mConnecting.add(key)) {
+                    break;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for connection to " + key);
+                }
+            }
+        }
+        Http2Connection connection = null;
+        boolean negotiated = false;
+        try {
+            connection = connect(key, host, port, tls);
+            negotiated = true;
+        } finally {
+            boolean closeNow = false;
+            boolean startCleanup = false;
+            synchronized (this) {
+                mConnecting.remove(key);
+                if (negotiated && connection == null) {
+                    mHttp1Hosts.add(key);
+                } else if (connection != null) {
+                    if (mClosed) {
+                        closeNow = true;
+                    } else {
+                        mConnections.put(key, connection);
+                        mLiveConnections.add(connection);
+                        startCleanup = !mCleanupRunning;
+                        mCleanupRunning = true;
+                    }
+                }
+                notifyAll();
+            }
+            if (closeNow) {
+                connection.close();
+            }
+            if (startCleanup) {
+                WorkerExecutors.background().execute(new Cleanup());
+            }
+        }
+        return connection;
+    }
+
+    /**
+     * 连接不再接受新的流（收到GOAWAY、流ID用尽）时由连接调用，之后的请求将建立新的连接
+     */
+    synchronized void remove(Http2Connection connection) {
+        if (mConnections.get(connection.getKey()) == connection) {
+            mConnections.remove(connection.getKey());
+        }
+    }
+
+    /**
+     * 连接关闭时由连接调用
+     */
+    synchronized void onConnectionClosed(Http2Connection connection) {
+        remove(connection);
+        mLiveConnections.remove(connection);
+    }
+
+    /**
+     * 关闭全部连接，之后get()总是返回null
+     */
+    void closeAll() {
+        List<Http2Connection> connections;
+        synchronized (this) {
+            mClosed = true;
+            connections = new ArrayList<>(mLiveConnections);
+            mConnections.clear();
+            mLiveConnections.clear();
+            notifyAll();
+        }
+        for (Http2Connection connection : connections) {
+            connection.close();
+        }
+    }
+
+    /**
+     * @return 服务器不支持HTTP/2时返回null
+     */
+    private Http2Connection connect(String key, String host, int port, boolean tls) throws IOException {
+        Socket socket = HappyEyeballs.connect(mDns.lookup(host), port, Config.CONNECT_TIMEOUT, WorkerExecutors.background());
+        try {
+            socket.setTcpNoDelay(true);
+            if (tls) {
+                // 使用主机名而不是连接的地址，SNI与证书校验不受影响
+                SSLSocket sslSocket = (SSLSocket) HttpsURLConnection.getDefaultSSLSocketFactory()
+                        .createSocket(socket, host, port, true);
+                socket = sslSocket;
+                SSLParameters parameters = sslSocket.getSSLParameters();
+                // 支持ALPN的平台都支持在握手时校验主机名
+                parameters.setEndpointIdentificationAlgorithm("HTTPS");
+                SET_APPLICATION_PROTOCOLS.invoke(parameters, (Object) new String[]{"h2", "http/1.1"});
+                sslSocket.setSSLParameters(parameters);
+                sslSocket.setSoTimeout(Config.CONNECT_TIMEOUT);
+                sslSocket.startHandshake();
+                sslSocket.setSoTimeout(0);
+                if (!"h2".equals(GET_APPLICATION_PROTOCOL.invoke(sslSocket))) {
+                    Platform.get().logInfo(TAG, key + " does not support h2, using http/1.1");
+                    socket.close();
+                    return null;
+                }
+            }
+            return new Http2Connection(key, socket, this);
+        } catch (IOException e) {
+            closeQuietly(socket);
+            throw e;
+        } catch (IllegalAccessException e) {
+            closeQuietly(socket);
+            throw new IOException("ALPN is unavailable", e);
+        } catch (InvocationTargetException e) {
+            closeQuietly(socket);
+            throw new IOException("ALPN is unavailable", e.getCause());
+        }
+    }
+
+    /**
+     * 关闭空闲超时的连接，等待到下一个连接可能到期为止；连接池关闭或没有连接时退出
+     */
+    private final class Cleanup implements Runnable {
+        @Override
+        public void run() {
+            while (true) {
+                List<Http2Connection> connections;
+                synchronized (Http2ConnectionPool.this) {
+                    if (mClosed || mLiveConnections.isEmpty()) {
+                        mCleanupRunning = false;
+                        return;
+                    }
+                    connections = new ArrayList<>(mConnections.values());
+                }
+                // closeIfIdle()会写入GOAWAY并关闭socket，不在持有连接池时调用
+                long waitMillis = mIdleTimeoutMillis;
+                for (Http2Connection connection : connections) {
+                    long remaining = connection.closeIfIdle(mIdleTimeoutMillis);
+                    if (remaining > 0) {
+                        waitMillis = Math.min(waitMillis, remaining);
+                    }
+                }
+                synchronized (Http2ConnectionPool.this) {
+                    if (mClosed || mLiveConnections.isEmpty()) {
+                        mCleanupRunning = false;
+                        return;
+                    }
+                    try {
+                        Http2ConnectionPool.this.wait(waitMillis);
+                    } catch (InterruptedException e) {
+                        mCleanupRunning = false;
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static Method findMethod(Class<?> clazz, String name, Class<?>... parameterTypes) {
+        try {
+            return clazz.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+}
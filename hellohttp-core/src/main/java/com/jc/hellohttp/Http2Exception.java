@@ -0,0 +1,52 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import java.io.IOException;
+
+/**
+ * Created by Zhang on 2017/7/28.<br/>
+ * Description: HTTP/2协议错误，携带RFC 7540第7节中的错误码
+ */
+class Http2Exception extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int mErrorCode;
+    /**
+     * 对方明确没有处理该流（REFUSED_STREAM，或流的ID大于GOAWAY中的最后一个流），请求可以安全地在新的连接上重试
+     */
+    private final boolean mRefused;
+
+    Http2Exception(int errorCode, String message) {
+        this(errorCode, message, false);
+    }
+
+    Http2Exception(int errorCode, String message, boolean refused) {
+        super(message);
+        mErrorCode = errorCode;
+        mRefused = refused;
+    }
+
+    int getErrorCode() {
+        return mErrorCode;
+    }
+
+    boolean isRefused() {
+        return mRefused;
+    }
+
+}
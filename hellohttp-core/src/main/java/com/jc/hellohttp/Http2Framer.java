@@ -0,0 +1,263 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Created by Zhang on 2017/7/28.<br/>
+ * Description: HTTP/2帧（RFC 7540第4、6节）的读写<br/>
+ * 读取只在连接的读取线程中进行；写入方法都是同步的，多个线程共享同一个连接时由此保证帧不会交错，需要原子写入多个帧时在外部对Http2Framer加锁
+ */
+final class Http2Framer {
+
+    static final byte[] CONNECTION_PREFACE = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(Charset.forName("ISO-8859-1"));
+
+    static final int FRAME_HEADER_LENGTH = 9;
+    static final int DEFAULT_MAX_FRAME_SIZE = 16384;
+    static final int DEFAULT_INITIAL_WINDOW_SIZE = 65535;
+
+    static final int TYPE_DATA = 0x0;
+    static final int TYPE_HEADERS = 0x1;
+    static final int TYPE_PRIORITY = 0x2;
+    static final int TYPE_RST_STREAM = 0x3;
+    static final int TYPE_SETTINGS = 0x4;
+    static final int TYPE_PUSH_PROMISE = 0x5;
+    static final int TYPE_PING = 0x6;
+    static final int TYPE_GOAWAY = 0x7;
+    static final int TYPE_WINDOW_UPDATE = 0x8;
+    static final int TYPE_CONTINUATION = 0x9;
+
+    static final int FLAG_END_STREAM = 0x1;
+    static final int FLAG_ACK = 0x1;
+    static final int FLAG_END_HEADERS = 0x4;
+    static final int FLAG_PADDED = 0x8;
+    static final int FLAG_PRIORITY = 0x20;
+
+    static final int SETTINGS_HEADER_TABLE_SIZE = 0x1;
+    static final int SETTINGS_ENABLE_PUSH = 0x2;
+    static final int SETTINGS_MAX_CONCURRENT_STREAMS = 0x3;
+    static final int SETTINGS_INITIAL_WINDOW_SIZE = 0x4;
+    static final int SETTINGS_MAX_FRAME_SIZE = 0x5;
+    static final int SETTINGS_MAX_HEADER_LIST_SIZE = 0x6;
+
+    static final int NO_ERROR = 0x0;
+    static final int PROTOCOL_ERROR = 0x1;
+    static final int INTERNAL_ERROR = 0x2;
+    static final int FLOW_CONTROL_ERROR = 0x3;
+    static final int STREAM_CLOSED = 0x5;
+    static final int FRAME_SIZE_ERROR = 0x6;
+    static final int REFUSED_STREAM = 0x7;
+    static final int CANCEL = 0x8;
+    static final int COMPRESSION_ERROR = 0x9;
+
+    private final DataInputStream mIn;
+    private final OutputStream mOut;
+    private final byte[] mHeaderBuffer = new byte[FRAME_HEADER_LENGTH];
+
+    // 最近一次读取的帧头
+    private int mLength;
+    private int mType;
+    private int mFlags;
+    private int mStreamId;
+
+    /**
+     * 对方通过SETTINGS声明的最大帧大小，只在写入时使用
+     */
+    private int mPeerMaxFrameSize = DEFAULT_MAX_FRAME_SIZE;
+
+    Http2Framer(InputStream in, OutputStream out) {
+        mIn = new DataInputStream(new BufferedInputStream(in, 1024 * 16));
+        mOut = new BufferedOutputStream(out, 1024 * 16);
+    }
+
+    // ---------------------------------------- 读取 ----------------------------------------
+
+    /**
+     * 读取下一个帧头，之后必须通过readPayload()或skipPayload()消费全部负载
+     *
+     * @return 对方正常关闭连接时返回false
+     */
+    boolean nextFrame() throws IOException {
+        int first = mIn.read();
+        if (first == -1) {
+            return false;
+        }
+        mHeaderBuffer[0] = (byte) first;
+        mIn.readFully(mHeaderBuffer, 1, FRAME_HEADER_LENGTH - 1);
+        mLength = (mHeaderBuffer[0] & 0xff) << 16 | (mHeaderBuffer[1] & 0xff) << 8 | (mHeaderBuffer[2] & 0xff);
+        mType = mHeaderBuffer[3] & 0xff;
+        mFlags = mHeaderBuffer[4] & 0xff;
+        mStreamId = ((mHeaderBuffer[5] & 0x7f) << 24 | (mHeaderBuffer[6] & 0xff) << 16
+                | (mHeaderBuffer[7] & 0xff) << 8 | (mHeaderBuffer[8] & 0xff));
+        if (mLength > DEFAULT_MAX_FRAME_SIZE) {
+            // 没有通过SETTINGS_MAX_FRAME_SIZE放宽限制
+            throw new Http2Exception(FRAME_SIZE_ERROR, "Frame too large: " + mLength);
+        }
+        return true;
+    }
+
+    int length() {
+        return mLength;
+    }
+
+    int type() {
+        return mType;
+    }
+
+    int flags() {
+        return mFlags;
+    }
+
+    int streamId() {
+        return mStreamId;
+    }
+
+    void readPayload(byte[] buffer, int offset, int length) throws IOException {
+        mIn.readFully(buffer, offset, length);
+    }
+
+    int readInt() throws IOException {
+        return mIn.readInt();
+    }
+
+    int readUnsignedByte() throws IOException {
+        return mIn.readUnsignedByte();
+    }
+
+    void skipPayload(int length) throws IOException {
+        while (length > 0) {
+            int skipped = (int) mIn.skip(length);
+            if (skipped <= 0) {
+                throw new EOFException();
+            }
+            length -= skipped;
+        }
+    }
+
+    // ---------------------------------------- 写入 ----------------------------------------
+
+    synchronized void writePreface() throws IOException {
+        mOut.write(CONNECTION_PREFACE);
+    }
+
+    synchronized void setPeerMaxFrameSize(int maxFrameSize) {
+        mPeerMaxFrameSize = maxFrameSize;
+    }
+
+    synchronized int peerMaxFrameSize() {
+        return mPeerMaxFrameSize;
+    }
+
+    /**
+     * @param settings 标识与值交替的数组
+     */
+    synchronized void writeSettings(int... settings) throws IOException {
+        writeFrameHeader(settings.length / 2 * 6, TYPE_SETTINGS, 0, 0);
+        for (int i = 0; i < settings.length; i += 2) {
+            mOut.write(settings[i] >>> 8);
+            mOut.write(settings[i]);
+            writeInt(settings[i + 1]);
+        }
+    }
+
+    synchronized void writeSettingsAck() throws IOException {
+        writeFrameHeader(0, TYPE_SETTINGS, FLAG_ACK, 0);
+    }
+
+    synchronized void writePing(boolean ack, byte[] payload) throws IOException {
+        writeFrameHeader(8, TYPE_PING, ack ? FLAG_ACK : 0, 0);
+        mOut.write(payload, 0, 8);
+    }
+
+    synchronized void writeWindowUpdate(int streamId, int increment) throws IOException {
+        writeFrameHeader(4, TYPE_WINDOW_UPDATE, 0, streamId);
+        writeInt(increment);
+    }
+
+    synchronized void writeRstStream(int streamId, int errorCode) throws IOException {
+        writeFrameHeader(4, TYPE_RST_STREAM, 0, streamId);
+        writeInt(errorCode);
+    }
+
+    synchronized void writeGoAway(int lastStreamId, int errorCode) throws IOException {
+        writeFrameHeader(8, TYPE_GOAWAY, 0, 0);
+        writeInt(lastStreamId);
+        writeInt(errorCode);
+    }
+
+    /**
+     * 写入HEADERS帧，头部块超过最大帧大小时拆分为CONTINUATION帧
+     *
+     * @param weight 1~256，小于等于0时不携带优先级信息
+     */
+    synchronized void writeHeaders(int streamId, byte[] block, boolean endStream, int weight) throws IOException {
+        int priorityLength = weight > 0 ? 5 : 0;
+        int firstLength = Math.min(block.length, mPeerMaxFrameSize - priorityLength);
+        int flags = (endStream ? FLAG_END_STREAM : 0) | (weight > 0 ? FLAG_PRIORITY : 0)
+                | (firstLength == block.length ? FLAG_END_HEADERS : 0);
+        writeFrameHeader(firstLength + priorityLength, TYPE_HEADERS, flags, streamId);
+        if (weight > 0) {
+            // 不独占，依赖于根节点
+            writeInt(0);
+            mOut.write(weight - 1);
+        }
+        mOut.write(block, 0, firstLength);
+        int pos = firstLength;
+        while (pos < block.length) {
+            int length = Math.min(block.length - pos, mPeerMaxFrameSize);
+            writeFrameHeader(length, TYPE_CONTINUATION, pos + length == block.length ? FLAG_END_HEADERS : 0, streamId);
+            mOut.write(block, pos, length);
+            pos += length;
+        }
+    }
+
+    /**
+     * 写入一个DATA帧，调用者保证length不超过最大帧大小和流量控制窗口
+     */
+    synchronized void writeData(int streamId, byte[] data, int offset, int length, boolean endStream) throws IOException {
+        writeFrameHeader(length, TYPE_DATA, endStream ? FLAG_END_STREAM : 0, streamId);
+        mOut.write(data, offset, length);
+    }
+
+    synchronized void flush() throws IOException {
+        mOut.flush();
+    }
+
+    private void writeFrameHeader(int length, int type, int flags, int streamId) throws IOException {
+        mOut.write(length >>> 16);
+        mOut.write(length >>> 8);
+        mOut.write(length);
+        mOut.write(type);
+        mOut.write(flags);
+        writeInt(streamId & 0x7fffffff);
+    }
+
+    private void writeInt(int value) throws IOException {
+        mOut.write(value >>> 24);
+        mOut.write(value >>> 16);
+        mOut.write(value >>> 8);
+        mOut.write(value);
+    }
+
+}
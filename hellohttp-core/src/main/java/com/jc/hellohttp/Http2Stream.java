@@ -0,0 +1,134 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * Created by Zhang on 2017/7/28.<br/>
+ * Description: HTTP/2连接上的一个流，对应一次请求<br/>
+ * 流的全部状态都由所属连接的锁保护，状态的变化由Http2Connection完成；读取线程投递响应，执行者线程阻塞等待响应头并通过输入流读取响应体。
+ * 响应体被读取后才向对方归还接收窗口，读得慢的流缓存的数据不会超过接收窗口
+ */
+final class Http2Stream {
+
+    final Http2Connection mConnection;
+    final int mId;
+
+    // 以下字段由mConnection保护
+    List<String> mHeaders;
+    final ArrayDeque<byte[]> mChunks = new ArrayDeque<>();
+    int mChunkPos;
+    int mBufferedBytes;
+    /**
+     * 请求方向已经发送了END_STREAM
+     */
+    boolean mLocalFinished;
+    /**
+     * 响应方向已经收到了END_STREAM
+     */
+    boolean mRemoteFinished;
+    /**
+     * 流已经关闭（正常结束、被取消、被重置或连接失败）
+     */
+    boolean mClosed;
+    /**
+     * 关闭的原因，正常结束时为null
+     */
+    IOException mFailure;
+    /**
+     * 对方还能发送的字节数
+     */
+    int mReceiveWindow = Http2Connection.LOCAL_INITIAL_WINDOW_SIZE;
+    /**
+     * 已读取但尚未通过WINDOW_UPDATE归还给对方的字节数
+     */
+    int mConsumedUnacked;
+    /**
+     * 还能向对方发送的字节数
+     */
+    long mSendWindow;
+
+    Http2Stream(Http2Connection connection, int id, long sendWindow, boolean localFinished) {
+        mConnection = connection;
+        mId = id;
+        mSendWindow = sendWindow;
+        mLocalFinished = localFinished;
+    }
+
+    /**
+     * 写入请求体，写完后结束请求方向的流
+     */
+    void writeBody(byte[] body) throws IOException {
+        mConnection.writeData(this, body);
+    }
+
+    /**
+     * 等待响应头
+     *
+     * @return 名称、值交替的响应头
+     */
+    List<String> awaitHeaders(int timeoutMillis) throws IOException {
+        return mConnection.awaitHeaders(this, timeoutMillis);
+    }
+
+    InputStream getInputStream() {
+        return new StreamInputStream();
+    }
+
+    /**
+     * 取消流：尚未结束时向对方发送RST_STREAM(CANCEL)，已经结束时不做任何事
+     */
+    void cancel() {
+        mConnection.cancel(this);
+    }
+
+    /**
+     * 响应体输入流，只能在执行者线程中使用
+     */
+    private final class StreamInputStream extends InputStream {
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            return mConnection.read(Http2Stream.this, buffer, offset, length, Config.READ_TIMEOUT);
+        }
+
+        @Override
+        public int available() {
+            synchronized (mConnection) {
+                return mBufferedBytes;
+            }
+        }
+
+        @Override
+        public void close() {
+            cancel();
+        }
+    }
+
+}
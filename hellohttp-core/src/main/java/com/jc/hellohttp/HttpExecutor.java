@@ -0,0 +1,646 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Created by Zhang on 2017/7/10.<br/>
+ * Description: http请求的执行者，从http请求等候区中按照优先级取出http请求并执行（同一优先级按FIFO），得到响应后通过回调的方式将结果投递到主线程<br/>
+ * 执行者本身不持有线程，由RequestQueue提交到指定的Executor中运行，等候区为空时即退出，有新的请求时再次提交
+ */
+class HttpExecutor implements Runnable {
+
+    private static final String TAG = HttpExecutor.class.getSimpleName();
+
+//    private boolean shouldLoop = true;
+
+//    private static final Object mDecodeLock = new Object();
+
+    private volatile boolean interrupted = false;
+
+    /**
+     * 回调执行器，Android上为主线程
+     */
+    private Executor mCallbackExecutor;
+    /**
+     * HttpURLConnection
+     */
+    private volatile HttpURLConnection mConnection;
+    /**
+     * 使用HTTP/2时正在执行的流
+     */
+    private volatile Http2Stream mStream;
+    /**
+     * 执行者复用的HPACK编码器，只使用静态表，不保存状态
+     */
+    private final Hpack.Encoder mHeaderEncoder = new Hpack.Encoder();
+    /**
+     * 正在运行此执行者的线程，未运行时为null
+     */
+    private Thread mThread;
+    /**
+     * 执行者复用的缓冲区，用于写入请求参数
+     */
+    private final byte[] mBuffer = new byte[1024 * 8];
+    /**
+     * 请求等候区，由同一请求队列的所有执行者共享
+     */
+    private final RequestWaitingArea mWaitingArea;
+    /**
+     * 所属的请求队列，用于响应暂停、停止等状态变化
+     */
+    private final RequestQueue mRequestQueue;
+
+    public HttpExecutor(RequestWaitingArea area, RequestQueue requestQueue) {
+        mCallbackExecutor = Platform.get().callbackExecutor();
+        mWaitingArea = area;
+        mRequestQueue = requestQueue;
+    }
+
+    @Override
+    public void run() {
+        synchronized (this) {
+            if (interrupted) {
+                mRequestQueue.onExecutorExit(this, false);
+                return;
+            }
+            mThread = Thread.currentThread();
+        }
+        boolean retired = false;
+        try {
+            Request request;
+            while (!interrupted && mRequestQueue.isExecutable()
+                    && !(retired = mRequestQueue.retireIfOverLimit())
+                    && (request = mWaitingArea.pollRequest()) != null) {
+                try {
+                    if (request.isCanceled()) {
+                        onPersistentRequestCompleted(request);
+                        ResponseMemo memo = mRequestQueue.getResponseMemo();
+                        if (memo != null && request.getMemoKey() != null) {
+                            memo.onCanceled(request, mRequestQueue);
+                        }
+                        request.notifyFailure(new RequestException(RequestException.Kind.CANCELED, "Request canceled"));
+                        continue;
+                    }
+                    if (mRequestQueue.shouldShed(request)) {
+                        handleError(RequestException.Kind.MEMORY, "Request shed under memory pressure", null, request);
+                        continue;
+                    }
+                    switch (request.getRequestMethod()) {
+                        case GET:
+                            performGetRequest(request);
+                            break;
+                        case POST:
+                            performPostRequest(request);
+                            break;
+                    }
+                } catch (RuntimeException e) {
+                    // 解析器等抛出的异常只影响当前请求，执行者继续处理等候区中的请求
+                    Platform.get().logError(TAG, "Request: 'url = " + request.getUrl() + "' failed: " + e);
+                    handleError(RequestException.Kind.DECODE, e.toString(), e, request);
+                } catch (OutOfMemoryError e) {
+                    mRequestQueue.onLowMemory();
+                    Platform.get().logError(TAG, "Request: 'url = " + request.getUrl() + "' ran out of memory");
+                    handleError(RequestException.Kind.MEMORY, "OutOfMemoryError", e, request);
+                } finally {
+                    mRequestQueue.onRequestFinished(request);
+                }
+            }
+        } finally {
+            synchronized (this) {
+                mThread = null;
+                // 线程可能来自线程池，清除打断标记，避免影响之后在此线程上运行的任务
+                //noinspection ResultOfMethodCallIgnored
+                Thread.interrupted();
+            }
+            mRequestQueue.onExecutorExit(this, retired);
+        }
+//        while (shouldLoop) {
+//            if (!mWaitingArea.getRequestsFromWaitingArea().isEmpty()) {
+//                Request request = mWaitingArea.getRequestsFromWaitingArea().remove(0);
+//                switch (request.getRequestMethod()) {
+//                    case GET:
+//                        performGetRequest(request);
+//                        break;
+//                    case POST:
+//                        performPostRequest(request);
+//                        break;
+//                }
+//            } else {
+//                synchronized (mSynLock) {
+//                    try {
+//                        Log.i("HttpExecutor", "Waiting area: Thread id = " + Thread.currentThread().getId() + " has no request, thread is waiting...");
+//                        mSynLock.wait();
+//                    } catch (InterruptedException e) {
+//                        if (!shouldLoop || Config.quit) {
+//                            Log.i("HttpExecutor", "Waiting area: Thread id = " + this.getId() + ", exiting loop...");
+//                            return;
+//                        }
+//                        e.printStackTrace();
+//                    }
+//                }
+//            }
+//        }
+    }
+
+    private void performGetRequest(Request request) {
+        try {
+            if (performHttp2Request(request, "GET")) {
+                return;
+            }
+            mConnection = (HttpURLConnection) request.getHttpUrl().toURL().openConnection();
+            mConnection.setRequestMethod("GET");
+            mConnection.setConnectTimeout(Config.CONNECT_TIMEOUT);
+            mConnection.setReadTimeout(Config.READ_TIMEOUT);
+            if (mConnection.getResponseCode() == HttpURLConnection.HTTP_OK) {
+                if (!interrupted) {
+                    switch (request.getRequestType()) {
+                        case STRING:
+                        case JSON:
+                        case IMAGE:
+                            decodeResponse(request, mConnection.getInputStream(), mConnection.getContentType(), mConnection.getContentLength());
+                            break;
+                        case DOWNLOAD:
+                            String fileName = request.getUrl().substring(request.getUrl().lastIndexOf("/") + 1);
+                            File downloadFile = new File(Platform.get().downloadDirectory(), fileName);
+                            if (downloadFile.exists()) {
+                                if (downloadFile.isFile() && downloadFile.delete()) {
+                                    Platform.get().logInfo(TAG, "File:" + fileName + "already exists, delete and downloadReq again...");
+                                }
+                            }
+                            writeToFile(mConnection.getInputStream(), downloadFile);
+                            postResponse("downloadReq success", mConnection.getContentType(), downloadFile.length(), request);
+                            break;
+                        case UPLOAD:
+                            throw new IllegalStateException("Cannot upload file through \'GET\' request");
+//                            break;
+                    }
+                } else {
+                    Platform.get().logError(TAG, "Request: \'url = " + request.getUrl() + "\' has been interrupted...");
+                    request.notifyFailure(new RequestException(RequestException.Kind.REJECTED, "Request interrupted by shutdownNow()"));
+                }
+            } else {
+                int responseCode = mConnection.getResponseCode();
+                discardResponseBody(mConnection, responseCode);
+                handleError(RequestException.Kind.HTTP_STATUS, String.valueOf(responseCode), null, request);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            handleError(e, request);
+        }
+    }
+
+    private void performPostRequest(Request request) {
+        try {
+            if (performHttp2Request(request, "POST")) {
+                return;
+            }
+            mConnection = (HttpURLConnection) request.getHttpUrl().toURL().openConnection();
+            mConnection.setRequestMethod("POST");
+            mConnection.setConnectTimeout(Config.CONNECT_TIMEOUT);
+            mConnection.setReadTimeout(Config.READ_TIMEOUT);
+            mConnection.setDoOutput(true);
+            mConnection.setDoInput(true);
+            switch (request.getRequestType()) {
+                case STRING:
+                    mConnection.setRequestProperty("Content-Type", Config.STRING_REQ_PROP);
+                    break;
+                case JSON:
+                    mConnection.setRequestProperty("Content-Type", Config.JSON_REQ_PROP);
+                    break;
+                case IMAGE:
+//                    mConnection.setRequestProperty("Content-Type", Config.STRING_REQ_PROP);
+                    break;
+                case DOWNLOAD:
+                    break;
+                case UPLOAD:
+                    // TODO: 2017/7/14
+                    break;
+            }
+            if (request.getIdempotencyKey() != null) {
+                mConnection.setRequestProperty(Config.IDEMPOTENCY_KEY_HEADER, request.getIdempotencyKey());
+            }
+            Map<String, String> params = request.getRequestParams();
+            if (params != null && !params.isEmpty()) {
+                // 预先计算Content-Length，编码结果经由缓冲区直接写入输出流
+                mConnection.setFixedLengthStreamingMode(ParamsEncoder.encodedLength(params));
+                OutputStream outputStream = mConnection.getOutputStream();
+                ParamsEncoder.writeTo(params, outputStream, mBuffer);
+                outputStream.close();
+            }
+            if (mConnection.getResponseCode() == HttpURLConnection.HTTP_OK) {
+                if (!interrupted) {
+                    switch (request.getRequestType()) {
+                        case STRING:
+                        case JSON:
+                        case IMAGE:
+                            decodeResponse(request, mConnection.getInputStream(), mConnection.getContentType(), mConnection.getContentLength());
+                            break;
+                        case DOWNLOAD:
+                            // 强制设置为低优先级
+                            request.setPriority(Request.Priority.LOW);
+                            String fileName = request.getUrl().substring(request.getUrl().lastIndexOf("/") + 1);
+                            File downloadFile = new File(Platform.get().downloadDirectory(), fileName);
+                            if (downloadFile.exists()) {
+                                if (downloadFile.isFile() && downloadFile.delete()) {
+                                    Platform.get().logInfo(TAG, "File:" + fileName + "already exists, delete and download again...");
+                                }
+                            }
+                            writeToFile(mConnection.getInputStream(), downloadFile);
+                            postResponse("Download success. Download request is deprecated, if you want to download file(s), please use \'android.app.DownloadManager\' instead."
+                                    , mConnection.getContentType(), downloadFile.length(), request);
+                            break;
+                        case UPLOAD:
+                            // TODO: 2017/7/14
+                            break;
+                    }
+                } else {
+                    Platform.get().logError(TAG, "Request: \'url = " + request.getUrl() + "\' has been interrupted...");
+                    request.notifyFailure(new RequestException(RequestException.Kind.REJECTED, "Request interrupted by shutdownNow()"));
+                }
+            } else {
+                int responseCode = mConnection.getResponseCode();
+                discardResponseBody(mConnection, responseCode);
+                handleError(RequestException.Kind.HTTP_STATUS, String.valueOf(responseCode), null, request);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            handleError(e, request);
+        }
+    }
+
+    /**
+     * 请求队列启用了HTTP/2并且目标主机支持时，通过HTTP/2连接上的一个流执行请求
+     *
+     * @return 需要回退到HttpURLConnection时返回false
+     */
+    private boolean performHttp2Request(Request request, String method) throws IOException {
+        Http2ConnectionPool pool = mRequestQueue.getHttp2ConnectionPool();
+        if (pool == null) {
+            return false;
+        }
+        switch (request.getRequestType()) {
+            case DOWNLOAD:
+            case UPLOAD:
+                return false;
+        }
+        URL url = request.getHttpUrl().toURL();
+        byte[] body = null;
+        if ("POST".equals(method)) {
+            Map<String, String> params = request.getRequestParams();
+            if (params != null && !params.isEmpty()) {
+                body = ParamsEncoder.encode(params);
+            }
+        }
+        for (int attempt = 0; ; attempt++) {
+            Http2Connection connection = pool.get(url);
+            if (connection == null) {
+                return false;
+            }
+            try {
+                executeHttp2Request(connection, request, url, method, body);
+                return true;
+            } catch (Http2Exception e) {
+                // 对方明确没有处理该请求（GOAWAY、REFUSED_STREAM）时在新的连接上重试一次
+                if (!e.isRefused() || attempt > 0 || interrupted) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private void executeHttp2Request(Http2Connection connection, Request request, URL url, String method, byte[] body)
+            throws IOException {
+        String authority = url.getPort() == -1 ? url.getHost() : url.getHost() + ":" + url.getPort();
+        String path = url.getFile().isEmpty() ? "/" : url.getFile();
+        mHeaderEncoder.header(":method", method)
+                .header(":scheme", url.getProtocol())
+                .header(":authority", authority)
+                .header(":path", path);
+        if (request.getIdempotencyKey() != null) {
+            mHeaderEncoder.header("idempotency-key", request.getIdempotencyKey());
+        }
+        if (body != null) {
+            mHeaderEncoder.header("content-type", request.getRequestType() == Request.RequestType.JSON
+                    ? Config.JSON_REQ_PROP : Config.STRING_REQ_PROP)
+                    .header("content-length", String.valueOf(body.length));
+        }
+        Http2Stream stream = connection.newStream(mHeaderEncoder.toByteArray(), body == null,
+                Http2Connection.weight(request.getPriority()));
+        mStream = stream;
+        try {
+            if (interrupted) {
+                // interruptExecutor()可能发生在mStream赋值之前
+                throw new IOException("Request: 'url = " + request.getUrl() + "' has been interrupted...");
+            }
+            if (body != null) {
+                stream.writeBody(body);
+            }
+            List<String> headers = stream.awaitHeaders(Config.READ_TIMEOUT);
+            String status = Http2Connection.header(headers, ":status");
+            if (String.valueOf(HttpURLConnection.HTTP_OK).equals(status)) {
+                String contentLength = Http2Connection.header(headers, "content-length");
+                decodeResponse(request, stream.getInputStream(), Http2Connection.header(headers, "content-type"),
+                        contentLength != null ? parseContentLength(contentLength) : -1);
+            } else {
+                handleError(RequestException.Kind.HTTP_STATUS, status, null, request);
+            }
+        } finally {
+            mStream = null;
+            // 正常结束的流不会发送RST_STREAM
+            stream.cancel();
+        }
+    }
+
+    private static long parseContentLength(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 在当前线程中解析响应体，再将解析结果投递给回调
+     */
+    private void decodeResponse(Request request, InputStream inputStream, String contentType, long contentLength) throws IOException {
+        ResponseDecoder<?> decoder = request.getDecoder();
+        if (decoder instanceof StreamingDecoder) {
+            // 响应体不在内存中累积，不受大小上限的限制，也不需要预留
+            try {
+                Object response = decoder.decode(mRequestQueue.meterResponseBody(inputStream), contentType, contentLength);
+                postResponse(response, contentType, contentLength, request);
+            } finally {
+                inputStream.close();
+            }
+            return;
+        }
+        long maxSize = mRequestQueue.getMaxResponseSize();
+        if (contentLength > maxSize) {
+            inputStream.close();
+            throw new RequestException(RequestException.Kind.MEMORY, "Content-Length " + contentLength + " exceeds " + maxSize + " bytes");
+        }
+        // 解析前按照Content-Length预留内存，LOW、PREFETCH请求不等待其他响应释放
+        MemoryBudget budget = mRequestQueue.getMemoryBudget();
+        long reservation = contentLength >= 0 ? contentLength : Config.UNKNOWN_LENGTH_RESERVATION;
+        long waitMillis = request.getPriority().compareTo(Request.Priority.LOW) <= 0 ? 0 : Config.READ_TIMEOUT;
+        boolean acquired;
+        try {
+            acquired = budget.acquire(reservation, waitMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            inputStream.close();
+            throw new InterruptedIOException("Interrupted while waiting for memory budget");
+        }
+        if (!acquired) {
+            inputStream.close();
+            throw new RequestException(RequestException.Kind.MEMORY,
+                    "Memory budget exceeded, " + budget.getReserved() + " of " + budget.getCapacity() + " bytes reserved");
+        }
+        BudgetedInputStream body = new BudgetedInputStream(mRequestQueue.meterResponseBody(inputStream), maxSize, budget, reservation);
+        try {
+            Object response = decoder.decode(body, contentType, contentLength);
+            postResponse(response, contentType, contentLength, request);
+        } catch (OutOfMemoryError error) {
+            // 之后一段时间内放弃低优先级的请求，执行者继续运行
+            mRequestQueue.onLowMemory();
+            throw new RequestException(RequestException.Kind.MEMORY, "OutOfMemoryError caught! request url: " + request.getUrl());
+        } finally {
+            try {
+                body.close();
+            } finally {
+                body.release();
+            }
+        }
+    }
+
+    /**
+     * @param contentType   响应头中的Content-Type，与contentLength一起交给ResponseListener
+     */
+    private void postResponse(final Object response, String contentType, long contentLength, final Request request) {
+        onPersistentRequestCompleted(request);
+        ResponseMemo memo = mRequestQueue.getResponseMemo();
+        if (memo != null && request.getMemoKey() != null) {
+            memo.onResponse(request, response);
+        }
+        final RequestCallback<Object> callback = request.getCallback();
+        if (callback != null) {
+            mCallbackExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (!request.isCanceled()) {
+                        callback.onSuccess(response);
+                    }
+                }
+            });
+        }
+        if (request.getResponseListener() != null) {
+            request.notifyResponse(new Response(request, HttpURLConnection.HTTP_OK, contentType, contentLength, response));
+        }
+    }
+
+    /**
+     * 将响应体写入文件，失败时同样关闭文件与响应体
+     */
+    private void writeToFile(InputStream body, File file) throws IOException {
+        FileOutputStream outputStream = new FileOutputStream(file);
+        try {
+            int length;
+            while ((length = body.read(mBuffer)) != -1) {
+                outputStream.write(mBuffer, 0, length);
+            }
+        } finally {
+            try {
+                outputStream.close();
+            } finally {
+                body.close();
+            }
+        }
+    }
+
+    /**
+     * 关闭没有使用的响应体（如错误响应），较短的响应体读完后连接回到HttpURLConnection的连接池，
+     * 否则连接会一直占用到HttpURLConnection被回收
+     */
+    private static void discardResponseBody(HttpURLConnection connection, int responseCode) {
+        try {
+            InputStream body = responseCode >= HttpURLConnection.HTTP_BAD_REQUEST
+                    ? connection.getErrorStream() : connection.getInputStream();
+            if (body != null) {
+                body.close();
+            }
+        } catch (IOException ignored) {
+            // 响应体不可读时连接也不能复用
+        }
+    }
+
+    /**
+     * 读写失败，解码器抛出的RequestException保留其类型，被shutdownNow()打断的视为REJECTED，其他视为NETWORK
+     */
+    private void handleError(IOException e, Request request) {
+        RequestException.Kind kind = e instanceof RequestException ? ((RequestException) e).getKind()
+                : interrupted ? RequestException.Kind.REJECTED : RequestException.Kind.NETWORK;
+        handleError(kind, e.getMessage(), e, request);
+    }
+
+    /**
+     * @param error HTTP_STATUS时为状态码，否则为错误信息
+     */
+    private void handleError(RequestException.Kind kind, String error, Throwable cause, final Request request) {
+        int statusCode = kind == RequestException.Kind.HTTP_STATUS ? parseStatusCode(error) : -1;
+        PersistentRequestStore store = mRequestQueue.getPersistentStore();
+        if (store != null && request.getPersistentId() >= 0 && !store.onFailed(request, kind, statusCode)) {
+            // 暂时性的失败，请求保留在存储中等待重发
+            return;
+        }
+        final RequestException exception = new RequestException(kind, formatError(error), statusCode, cause);
+        ResponseMemo memo = mRequestQueue.getResponseMemo();
+        if (memo != null && request.getMemoKey() != null) {
+            memo.onError(request, exception);
+        }
+        final RequestCallback<Object> callback = request.getCallback();
+        if (callback != null) {
+            final String errorMsg = exception.getMessage();
+            mCallbackExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (!request.isCanceled()) {
+                        callback.onError(errorMsg);
+                    }
+                }
+            });
+        }
+        request.notifyFailure(exception);
+    }
+
+    private static int parseStatusCode(String status) {
+        if (status == null || status.isEmpty() || !isDigitsOnly(status)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(status);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String formatError(String error) {
+        if (error == null) {
+            return "Http request error";
+        }
+        if (isDigitsOnly(error)) {
+            return "Http request error, errorCode: " + error;
+        }
+        return "Http request error, error message: " + error;
+    }
+
+    /**
+     * 持久化的请求已经完成或被取消，不再重发
+     */
+    private void onPersistentRequestCompleted(Request request) {
+        PersistentRequestStore store = mRequestQueue.getPersistentStore();
+        if (store != null && request.getPersistentId() >= 0) {
+            store.onCompleted(request);
+        }
+    }
+
+    private static boolean isDigitsOnly(String str) {
+        for (int i = 0; i < str.length(); i++) {
+            if (!Character.isDigit(str.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+//    /**
+//     * 根据给定的图片宽高压缩图片，如果给定的宽或高为0则不压缩图片
+//     *
+//     * @param inputStream 图片的输入流
+//     * @param width       目标宽度
+//     * @param height      目标高度
+//     * @return 压缩后的图片
+//     */
+//    private Bitmap getCompressedBitmap(InputStream inputStream, int width, int height, Bitmap.Config config) {
+//        try {
+//            // 将输入流中的数据读入数组中
+//            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+//            byte[] buffer = new byte[1024 * 8];
+//            int length = 0;
+//            while ((length = inputStream.read(buffer)) != -1) {
+//                byteArrayOutputStream.write(buffer, 0, length);
+//                byteArrayOutputStream.flush();
+//            }
+//            byte[] bytes = byteArrayOutputStream.toByteArray();
+//            byteArrayOutputStream.close();
+//            // 解析byte[]数组，获取图片原始尺寸
+//            BitmapFactory.Options options = new BitmapFactory.Options();
+//            // 仅加载边界属性
+//            options.inJustDecodeBounds = true;
+//            BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+//            // 根据原始尺寸计算压缩比例
+//            int scale = 1;
+//            if (width != 0 && height != 0) {
+//                int scaleW = options.outWidth / width;
+//                int scaleH = options.outHeight / height;
+//                scale = scaleW > scaleH ? scaleW : scaleH;
+//            }
+//            // 再次解析byte[]数组，获取Bitmap
+//            options.inJustDecodeBounds = false;
+//            options.inPreferredConfig = config;
+//            options.inSampleSize = scale;
+//            return BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+//        } catch (IOException e) {
+//            e.printStackTrace();
+//            return null;
+//        }
+//    }
+
+    void interruptExecutor() {
+//        shouldLoop = false;
+        interrupted = true;
+        HttpURLConnection connection = mConnection;
+        if (connection != null) {
+            connection.disconnect();
+        }
+        Http2Stream stream = mStream;
+        if (stream != null) {
+            stream.cancel();
+        }
+        synchronized (this) {
+            if (mThread != null) {
+                mThread.interrupt();
+            }
+        }
+//        Log.i("HttpExecutor", "Waiting area: Thread id = " + this.getId() + ", exiting loop...");
+//        synchronized (mSynLock) {
+//            mSynLock.notify();
+//        }
+    }
+
+}
+
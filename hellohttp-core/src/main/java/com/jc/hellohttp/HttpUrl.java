@@ -0,0 +1,301 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import java.net.IDN;
+import java.net.MalformedURLException;
+import java.net.URL;
+
+/**
+ * Created by Zhang on 2017/7/21.<br/>
+ * Description: 解析并规范化后的URL，不可变<br/>
+ * 一次遍历完成检查与编码：路径、查询参数、锚点中的非ASCII字符及不安全字符按UTF-8进行百分号编码（正确处理代理对），
+ * 非ASCII的主机名按IDN转换；已经编码过的URL不会产生任何拷贝。java.net.URL在首次使用时创建并缓存，重试时直接复用
+ */
+final class HttpUrl {
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    /**
+     * 规范化后的URL
+     */
+    private final String mUrl;
+    /**
+     * 查询参数在mUrl中的起止位置（不含'?'），没有查询参数时均为-1
+     */
+    private final int mQueryStart;
+    private final int mQueryEnd;
+    /**
+     * 缓存的java.net.URL，并发时最多重复创建，不影响正确性
+     */
+    private volatile URL mJavaUrl;
+
+    private HttpUrl(String url, int queryStart, int queryEnd) {
+        this.mUrl = url;
+        this.mQueryStart = queryStart;
+        this.mQueryEnd = queryEnd;
+    }
+
+    /**
+     * 解析并规范化URL
+     *
+     * @param url 原始URL，可以含有中文等非ASCII字符
+     * @return HttpUrl
+     * @throws IllegalArgumentException URL为空
+     */
+    static HttpUrl parse(String url) {
+        if (url == null || url.isEmpty()) {
+            throw new IllegalArgumentException("Unsupported url --> target url is empty");
+        }
+        int length = url.length();
+        // 查找scheme，"://"之前只能是scheme字符
+        int pos = 0;
+        int hostStart = -1;
+        int hostEnd = -1;
+        int schemeEnd = url.indexOf("://");
+        if (schemeEnd > 0 && isScheme(url, schemeEnd)) {
+            hostStart = schemeEnd + 3;
+            pos = hostStart;
+            // authority一直到'/'、'?'、'#'为止
+            while (pos < length) {
+                char c = url.charAt(pos);
+                if (c == '/' || c == '?' || c == '#') {
+                    break;
+                }
+                pos++;
+            }
+            hostEnd = pos;
+        }
+        // 在剩余部分中查找第一个需要编码的字符，同时记录查询参数的位置
+        int queryStart = -1;
+        int queryEnd = -1;
+        boolean inFragment = false;
+        int firstUnsafe = -1;
+        for (int i = pos; i < length; i++) {
+            char c = url.charAt(i);
+            if (c == '?' && queryStart == -1 && !inFragment) {
+                queryStart = i + 1;
+            } else if (c == '#' && !inFragment) {
+                inFragment = true;
+                if (queryStart != -1) {
+                    queryEnd = i;
+                }
+            } else if (shouldEncode(c)) {
+                firstUnsafe = i;
+                break;
+            }
+        }
+        boolean asciiHost = hostStart == -1 || isAscii(url, hostStart, hostEnd);
+        if (firstUnsafe == -1 && asciiHost) {
+            // 快速路径：URL已经是合法的ASCII，不产生任何拷贝
+            if (queryStart != -1 && queryEnd == -1) {
+                queryEnd = length;
+            }
+            return new HttpUrl(url, queryStart, queryEnd);
+        }
+        return encode(url, hostStart, hostEnd, pos);
+    }
+
+    /**
+     * 慢速路径：从头构建规范化后的URL
+     */
+    private static HttpUrl encode(String url, int hostStart, int hostEnd, int pathStart) {
+        int length = url.length();
+        StringBuilder builder = new StringBuilder(length + 16);
+        if (hostStart != -1) {
+            builder.append(url, 0, hostStart);
+            appendAuthority(builder, url, hostStart, hostEnd);
+        } else {
+            builder.append(url, 0, pathStart);
+        }
+        int queryStart = -1;
+        int queryEnd = -1;
+        boolean inFragment = false;
+        for (int i = pathStart; i < length; i++) {
+            char c = url.charAt(i);
+            if (c == '?' && queryStart == -1 && !inFragment) {
+                builder.append(c);
+                queryStart = builder.length();
+            } else if (c == '#' && !inFragment) {
+                inFragment = true;
+                if (queryStart != -1) {
+                    queryEnd = builder.length();
+                }
+                builder.append(c);
+            } else if (shouldEncode(c)) {
+                int codePoint = c;
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(url.charAt(i + 1))) {
+                    codePoint = Character.toCodePoint(c, url.charAt(++i));
+                } else if (Character.isSurrogate(c)) {
+                    // 孤立的代理字符无法编码为UTF-8，以'?'代替
+                    codePoint = '?';
+                }
+                appendUtf8(builder, codePoint);
+            } else {
+                builder.append(c);
+            }
+        }
+        if (queryStart != -1 && queryEnd == -1) {
+            queryEnd = builder.length();
+        }
+        return new HttpUrl(builder.toString(), queryStart, queryEnd);
+    }
+
+    /**
+     * 主机名中的非ASCII字符按IDN转换，userinfo和端口原样保留
+     */
+    private static void appendAuthority(StringBuilder builder, String url, int start, int end) {
+        int hostStart = url.lastIndexOf('@', end - 1);
+        hostStart = hostStart < start ? start : hostStart + 1;
+        int hostEnd = url.indexOf(':', hostStart);
+        if (hostEnd == -1 || hostEnd > end) {
+            hostEnd = end;
+        }
+        builder.append(url, start, hostStart);
+        String host = url.substring(hostStart, hostEnd);
+        builder.append(isAscii(host, 0, host.length()) ? host : IDN.toASCII(host));
+        builder.append(url, hostEnd, end);
+    }
+
+    private static boolean isScheme(String url, int end) {
+        for (int i = 0; i < end; i++) {
+            char c = url.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '+' || c == '-' || c == '.')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isAscii(String str, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (str.charAt(i) > 0x7f) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 非ASCII字符、控制字符、空格以及RFC 3986中不允许出现的字符需要编码，'%'视为已编码的转义序列，保持不变
+     */
+    private static boolean shouldEncode(char c) {
+        if (c <= ' ' || c >= 0x7f) {
+            return true;
+        }
+        switch (c) {
+            case '"':
+            case '<':
+            case '>':
+            case '\\':
+            case '^':
+            case '`':
+            case '{':
+            case '|':
+            case '}':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static void appendUtf8(StringBuilder builder, int codePoint) {
+        if (codePoint < 0x80) {
+            appendEscaped(builder, codePoint);
+        } else if (codePoint < 0x800) {
+            appendEscaped(builder, 0xc0 | (codePoint >> 6));
+            appendEscaped(builder, 0x80 | (codePoint & 0x3f));
+        } else if (codePoint < 0x10000) {
+            appendEscaped(builder, 0xe0 | (codePoint >> 12));
+            appendEscaped(builder, 0x80 | ((codePoint >> 6) & 0x3f));
+            appendEscaped(builder, 0x80 | (codePoint & 0x3f));
+        } else {
+            appendEscaped(builder, 0xf0 | (codePoint >> 18));
+            appendEscaped(builder, 0x80 | ((codePoint >> 12) & 0x3f));
+            appendEscaped(builder, 0x80 | ((codePoint >> 6) & 0x3f));
+            appendEscaped(builder, 0x80 | (codePoint & 0x3f));
+        }
+    }
+
+    private static void appendEscaped(StringBuilder builder, int b) {
+        builder.append('%').append(HEX_DIGITS[(b >> 4) & 0xf]).append(HEX_DIGITS[b & 0xf]);
+    }
+
+    /**
+     * @return 已编码的查询参数（不含'?'），没有查询参数时返回null
+     */
+    String encodedQuery() {
+        return mQueryStart == -1 ? null : mUrl.substring(mQueryStart, mQueryEnd);
+    }
+
+    /**
+     * 在查询参数末尾追加已编码的参数，锚点保持在最后
+     *
+     * @param encodedParams 已编码的参数，如"a=1&b=2"
+     * @return 新的HttpUrl
+     */
+    HttpUrl withQuery(String encodedParams) {
+        if (encodedParams.isEmpty()) {
+            return this;
+        }
+        StringBuilder builder = new StringBuilder(mUrl.length() + encodedParams.length() + 1);
+        int insertAt;
+        if (mQueryStart == -1) {
+            int fragmentStart = mUrl.indexOf('#');
+            insertAt = fragmentStart == -1 ? mUrl.length() : fragmentStart;
+            builder.append(mUrl, 0, insertAt).append('?');
+        } else {
+            insertAt = mQueryEnd;
+            builder.append(mUrl, 0, insertAt);
+            if (mQueryEnd > mQueryStart) {
+                builder.append('&');
+            }
+        }
+        int queryStart = mQueryStart == -1 ? insertAt + 1 : mQueryStart;
+        builder.append(encodedParams);
+        int queryEnd = builder.length();
+        builder.append(mUrl, insertAt, mUrl.length());
+        return new HttpUrl(builder.toString(), queryStart, queryEnd);
+    }
+
+    /**
+     * 获取缓存的java.net.URL，同一个请求多次执行时不再重复解析
+     */
+    URL toURL() throws MalformedURLException {
+        URL javaUrl = mJavaUrl;
+        if (javaUrl == null) {
+            javaUrl = new URL(mUrl);
+            mJavaUrl = javaUrl;
+        }
+        return javaUrl;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof HttpUrl && ((HttpUrl) o).mUrl.equals(mUrl);
+    }
+
+    @Override
+    public int hashCode() {
+        return mUrl.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return mUrl;
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+/**
+ * Created by Zhang on 2017/7/31.<br/>
+ * Description: 请求队列的内存预算，限制同时在解析中的响应体和解码结果（如Bitmap）占用的总字节数<br/>
+ * 响应开始解析前按照Content-Length（未知时按一个估计值）预留，读取超出预留时追加，解码器分配大块内存前也可以追加，
+ * 解析结束后全部释放。超出预算时LOW、PREFETCH请求立即失败，其他请求等待其他响应释放；
+ * 没有任何预留时总是允许，避免单个大于预算的响应永远无法执行
+ */
+final class MemoryBudget {
+
+    private volatile long mCapacity;
+
+    // 以下字段由this保护
+    private long mReserved;
+
+    MemoryBudget(long capacity) {
+        mCapacity = capacity;
+    }
+
+    void setCapacity(long capacity) {
+        synchronized (this) {
+            mCapacity = capacity;
+            notifyAll();
+        }
+    }
+
+    long getCapacity() {
+        return mCapacity;
+    }
+
+    synchronized long getReserved() {
+        return mReserved;
+    }
+
+    /**
+     * 预留bytes字节
+     *
+     * @param waitMillis 超出预算时最多等待的时间，0表示不等待
+     * @return 是否预留成功
+     */
+    synchronized boolean acquire(long bytes, long waitMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + waitMillis;
+        while (mReserved > 0 && mReserved + bytes > mCapacity) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        mReserved += bytes;
+        return true;
+    }
+
+    /**
+     * 追加预留，不受预算限制，之后的acquire()会相应地等待
+     */
+    synchronized void grow(long bytes) {
+        mReserved += bytes;
+    }
+
+    synchronized void release(long bytes) {
+        mReserved -= bytes;
+        notifyAll();
+    }
+
+    /**
+     * @return 堆内存的使用量是否超过上限的一定比例。已使用的部分包括尚未回收的垃圾，只作为粗略的判断
+     */
+    static boolean isHeapUnderPressure() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        return used > runtime.maxMemory() * Config.HEAP_PRESSURE_RATIO;
+    }
+
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+
+/**
+ * Created by Zhang on 2017/7/22.<br/>
+ * Description: 请求参数编码器，按application/x-www-form-urlencoded规则将参数编码为UTF-8字节<br/>
+ * 编码结果直接写入连接的输出流（经由执行者复用的缓冲区）或精确大小的数组，不产生中间String；
+ * 编码长度可以预先计算，用于设置Content-Length
+ */
+final class ParamsEncoder {
+
+    private static final byte[] HEX_DIGITS = {
+            '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F'
+    };
+
+    /**
+     * 单个字符编码后的最大字节数：4个UTF-8字节，每个字节编码为"%XX"
+     */
+    private static final int MAX_BYTES_PER_CODE_POINT = 12;
+
+    private ParamsEncoder() {
+    }
+
+    /**
+     * 计算编码后的字节数，不分配内存
+     */
+    static int encodedLength(Map<String, String> params) {
+        int length = 0;
+        for (Map.Entry<String, String> entry : params.entrySet()) {
+            if (length != 0) {
+                length++; // '&'
+            }
+            length += encodedLength(entry.getKey()) + 1 + encodedLength(entry.getValue());
+        }
+        return length;
+    }
+
+    /**
+     * 编码为精确大小的字节数组
+     */
+    static byte[] encode(Map<String, String> params) {
+        byte[] bytes = new byte[encodedLength(params)];
+        try {
+            writeTo(params, null, bytes);
+        } catch (IOException e) {
+            // 不写入输出流，不会发生
+            throw new AssertionError(e);
+        }
+        return bytes;
+    }
+
+    /**
+     * 编码为查询字符串，用于GET请求
+     */
+    static String encodeToString(Map<String, String> params) {
+        byte[] bytes = encode(params);
+        // 编码结果只包含ASCII字符
+        char[] chars = new char[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i] = (char) bytes[i];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * 编码并写入输出流，buffer写满时刷新到输出流
+     *
+     * @param params 请求参数
+     * @param out    输出流，为null时buffer必须能容纳全部编码结果
+     * @param buffer 缓冲区，长度不小于{@link #MAX_BYTES_PER_CODE_POINT}
+     */
+    static void writeTo(Map<String, String> params, OutputStream out, byte[] buffer) throws IOException {
+        int pos = 0;
+        boolean first = true;
+        for (Map.Entry<String, String> entry : params.entrySet()) {
+            if (!first) {
+                pos = ensureCapacity(out, buffer, pos, 1);
+                buffer[pos++] = '&';
+            }
+            first = false;
+            pos = write(entry.getKey(), out, buffer, pos);
+            pos = ensureCapacity(out, buffer, pos, 1);
+            buffer[pos++] = '=';
+            pos = write(entry.getValue(), out, buffer, pos);
+        }
+        if (out != null && pos > 0) {
+            out.write(buffer, 0, pos);
+        }
+    }
+
+    private static int write(String str, OutputStream out, byte[] buffer, int pos) throws IOException {
+        if (str == null) {
+            return pos;
+        }
+        int length = str.length();
+        for (int i = 0; i < length; i++) {
+            char c = str.charAt(i);
+            if (isUnreserved(c)) {
+                pos = ensureCapacity(out, buffer, pos, 1);
+                buffer[pos++] = (byte) c;
+                continue;
+            }
+            if (c == ' ') {
+                pos = ensureCapacity(out, buffer, pos, 1);
+                buffer[pos++] = '+';
+                continue;
+            }
+            pos = ensureCapacity(out, buffer, pos, MAX_BYTES_PER_CODE_POINT);
+            int codePoint = c;
+            if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(str.charAt(i + 1))) {
+                codePoint = Character.toCodePoint(c, str.charAt(++i));
+            } else if (Character.isSurrogate(c)) {
+                // 与URLEncoder一致，孤立的代理字符编码为'?'
+                codePoint = '?';
+            }
+            if (codePoint < 0x80) {
+                pos = writeEscaped(buffer, pos, codePoint);
+            } else if (codePoint < 0x800) {
+                pos = writeEscaped(buffer, pos, 0xc0 | (codePoint >> 6));
+                pos = writeEscaped(buffer, pos, 0x80 | (codePoint & 0x3f));
+            } else if (codePoint < 0x10000) {
+                pos = writeEscaped(buffer, pos, 0xe0 | (codePoint >> 12));
+                pos = writeEscaped(buffer, pos, 0x80 | ((codePoint >> 6) & 0x3f));
+                pos = writeEscaped(buffer, pos, 0x80 | (codePoint & 0x3f));
+            } else {
+                pos = writeEscaped(buffer, pos, 0xf0 | (codePoint >> 18));
+                pos = writeEscaped(buffer, pos, 0x80 | ((codePoint >> 12) & 0x3f));
+                pos = writeEscaped(buffer, pos, 0x80 | ((codePoint >> 6) & 0x3f));
+                pos = writeEscaped(buffer, pos, 0x80 | (codePoint & 0x3f));
+            }
+        }
+        return pos;
+    }
+
+    private static int encodedLength(String str) {
+        if (str == null) {
+            return 0;
+        }
+        int length = 0;
+        int strLength = str.length();
+        for (int i = 0; i < strLength; i++) {
+            char c = str.charAt(i);
+            if (isUnreserved(c) || c == ' ') {
+                length++;
+            } else if (c < 0x80) {
+                length += 3;
+            } else if (c < 0x800) {
+                length += 6;
+            } else if (Character.isHighSurrogate(c) && i + 1 < strLength && Character.isLowSurrogate(str.charAt(i + 1))) {
+                length += 12;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length += 3;
+            } else {
+                length += 9;
+            }
+        }
+        return length;
+    }
+
+    private static int ensureCapacity(OutputStream out, byte[] buffer, int pos, int required) throws IOException {
+        if (out != null && pos + required > buffer.length) {
+            out.write(buffer, 0, pos);
+            return 0;
+        }
+        return pos;
+    }
+
+    private static int writeEscaped(byte[] buffer, int pos, int b) {
+        buffer[pos] = '%';
+        buffer[pos + 1] = HEX_DIGITS[(b >> 4) & 0xf];
+        buffer[pos + 2] = HEX_DIGITS[b & 0xf];
+        return pos + 3;
+    }
+
+    /**
+     * 与URLEncoder保持一致：字母、数字以及".-*_"不需要编码
+     */
+    private static boolean isUnreserved(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9'
+                || c == '.' || c == '-' || c == '*' || c == '_';
+    }
+
+}
@@ -0,0 +1,578 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Created by Zhang on 2017/7/31.<br/>
+ * Description: 持久化的请求存储，保存标记为持久化（Request.setPersistable()）的请求，直到服务端给出确定的结果<br/>
+ * 请求以追加写的日志记录在文件中：加入时写入一条ENQUEUE记录并等待写入磁盘，完成时写入一条ACK记录。
+ * 多个线程同时加入时，只由其中一个线程调用fsync，覆盖此前全部线程追加的记录（组提交），加入的开销不随线程数增加。
+ * 启动时重放日志，恢复没有ACK的请求；末尾因进程被杀死而不完整的记录通过长度和CRC识别并截断。
+ * 已完成的记录超过一半并且文件超过64KB时，将未完成的请求重写到新文件中替换原文件<br/>
+ * 网络错误、408、429和5xx视为暂时性的失败，请求保留并在下次flush()或setOnline(true)时重发，不回调；
+ * 请求队列停止（REJECTED）时照常回调，请求不再重发，但保留在文件中，下次启动时重放；
+ * 其余结果（包括解析失败、超出响应体大小上限）视为确定的结果，照常回调。重发时携带同一个幂等键，服务端据此去重，因此投递语义为至少一次<br/>
+ * 持久化的请求在RequestQueue.add()中写入磁盘并等待fsync完成，Android上应在后台线程中添加<br/>
+ * 使用方法：1.new PersistentRequestStore(file)，需要处理上次未完成的请求时setListener()。2.requestQueue.setPersistentStore(store)，
+ * 重放的请求随即加入请求队列。3.网络断开时setOnline(false)，恢复时setOnline(true)，积压的请求一次性加入请求队列
+ */
+public final class PersistentRequestStore {
+
+    private static final String TAG = "PersistentRequestStore";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final byte RECORD_ENQUEUE = 1;
+    private static final byte RECORD_ACK = 2;
+    /**
+     * 单条记录的长度上限，超过时视为损坏
+     */
+    private static final int MAX_RECORD_LENGTH = 16 * 1024 * 1024;
+    /**
+     * 文件超过此大小时才考虑重写
+     */
+    private static final long COMPACT_THRESHOLD = 64 * 1024;
+
+    /**
+     * 重放的请求的结果，上次运行中加入的请求的回调已经不存在，通过幂等键区分
+     */
+    public interface Listener {
+
+        void onDelivered(String idempotencyKey, Object response);
+
+        void onFailed(String idempotencyKey, String errorMsg);
+
+    }
+
+    private final File mFile;
+    /**
+     * 是否组提交，否则每条记录单独fsync，只用于基准测试中对比
+     */
+    private final boolean mGroupCommit;
+    private volatile Listener mListener;
+    private volatile boolean mOnline = true;
+
+    // 以下字段由this保护
+    private FileChannel mChannel;
+    private RequestQueue mRequestQueue;
+    /**
+     * 全部未完成的请求，按加入的先后排列
+     */
+    private final Map<Long, Request> mPending = new LinkedHashMap<>();
+    /**
+     * 未完成且不在请求队列中的请求：离线时加入的、重放的、暂时性失败的
+     */
+    private final Map<Long, Request> mParked = new LinkedHashMap<>();
+    private long mNextId;
+    /**
+     * 文件中已经无用的记录数，用于决定何时重写
+     */
+    private int mObsoleteRecords;
+    /**
+     * 已追加的记录数与已写入磁盘的记录数
+     */
+    private long mAppendedCount;
+    private long mSyncedCount;
+    /**
+     * 是否有线程正在fsync
+     */
+    private boolean mSyncing;
+
+    /**
+     * 打开或创建日志文件，并恢复上次未完成的请求
+     */
+    public PersistentRequestStore(File file) throws IOException {
+        this(file, true);
+    }
+
+    PersistentRequestStore(File file, boolean groupCommit) throws IOException {
+        mFile = file;
+        mGroupCommit = groupCommit;
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create directory: " + parent);
+        }
+        long valid = file.exists() ? replay() : 0;
+        mChannel = new RandomAccessFile(file, "rw").getChannel();
+        if (mChannel.size() > valid) {
+            Platform.get().logError(TAG, "Truncating " + (mChannel.size() - valid) + " bytes of incomplete records in " + file);
+            mChannel.truncate(valid);
+            mChannel.force(false);
+        }
+        mChannel.position(valid);
+    }
+
+    /**
+     * 设置重放的请求的结果监听，需要在setPersistentStore()之前设置
+     */
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * 设置网络是否可用，默认可用。不可用时持久化的请求只写入磁盘；恢复可用时积压的请求一次性加入请求队列
+     */
+    public void setOnline(boolean online) {
+        mOnline = online;
+        if (online) {
+            flush();
+        }
+    }
+
+    /**
+     * 将积压的请求（离线时加入的、重放的、暂时性失败的）一次性加入请求队列，网络不可用或尚未关联请求队列时不做任何事
+     */
+    public void flush() {
+        RequestQueue queue;
+        List<Request> requests;
+        synchronized (this) {
+            queue = mRequestQueue;
+            if (queue == null || !mOnline || mParked.isEmpty()) {
+                return;
+            }
+            requests = new ArrayList<>(mParked.values());
+            mParked.clear();
+        }
+        for (Request request : requests) {
+            if (!queue.add(request)) {
+                // 请求队列已经停止，留待下次启动时重放
+                synchronized (this) {
+                    if (mPending.containsKey(request.getPersistentId())) {
+                        mParked.put(request.getPersistentId(), request);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return 尚未得到确定结果的请求数
+     */
+    public synchronized int getPendingCount() {
+        return mPending.size();
+    }
+
+    /**
+     * 关闭日志文件，此后加入的持久化请求将失败。未完成的请求在下次打开时重放
+     */
+    public synchronized void close() throws IOException {
+        while (mSyncing) {
+            waitForSync();
+        }
+        mChannel.close();
+    }
+
+    /**
+     * 由RequestQueue.setPersistentStore()调用，随即加入重放的请求
+     */
+    void attach(RequestQueue queue) {
+        synchronized (this) {
+            if (mRequestQueue != null && mRequestQueue != queue) {
+                throw new IllegalStateException("PersistentRequestStore is already attached to another RequestQueue");
+            }
+            mRequestQueue = queue;
+        }
+        flush();
+    }
+
+    /**
+     * 写入磁盘后加入请求队列，离线时只写入磁盘。由RequestQueue.add()在检查队列状态之后调用，
+     * 在调用线程上等待fsync完成
+     *
+     * @return 是否已写入磁盘并加入请求队列（离线时只需写入磁盘）；写入之后队列恰好停止时返回false，请求保留在文件中，下次启动时重放
+     */
+    boolean enqueue(Request request) {
+        if (request.getIdempotencyKey() == null) {
+            request.setIdempotencyKey(UUID.randomUUID().toString());
+        }
+        long id;
+        long sequence;
+        boolean parked;
+        RequestQueue queue;
+        synchronized (this) {
+            id = mNextId++;
+            request.setPersistentId(id);
+            try {
+                sequence = append(encodeEnqueue(id, request));
+            } catch (IOException e) {
+                Platform.get().logError(TAG, "Failed to persist request: " + request.getUrl() + ", " + e);
+                request.setPersistentId(-1);
+                return false;
+            }
+            mPending.put(id, request);
+            queue = mRequestQueue;
+            parked = !mOnline;
+            if (parked) {
+                mParked.put(id, request);
+            }
+        }
+        try {
+            sync(sequence);
+        } catch (IOException e) {
+            // 记录可能已经写入磁盘，之后重放时由幂等键去重
+            Platform.get().logError(TAG, "Failed to sync request: " + request.getUrl() + ", " + e);
+            synchronized (this) {
+                mPending.remove(id);
+                mParked.remove(id);
+            }
+            request.setPersistentId(-1);
+            return false;
+        }
+        if (!parked && !queue.add(request)) {
+            Platform.get().logError(TAG, "Request: " + request.getUrl() + " is persisted and will be replayed on next start");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 请求得到了确定的结果或被取消，不再重发
+     */
+    void onCompleted(Request request) {
+        long id = request.getPersistentId();
+        synchronized (this) {
+            if (mPending.remove(id) == null) {
+                return;
+            }
+            mParked.remove(id);
+            try {
+                // 丢失的ACK只会导致一次重发，不需要等待写入磁盘
+                append(encodeAck(id));
+                mObsoleteRecords += 2;
+                if (mObsoleteRecords > mPending.size() && mChannel.size() > COMPACT_THRESHOLD) {
+                    compact();
+                }
+            } catch (IOException e) {
+                Platform.get().logError(TAG, "Failed to acknowledge request: " + request.getUrl() + ", " + e);
+            }
+        }
+    }
+
+    /**
+     * 请求失败时调用
+     *
+     * @param statusCode HTTP_STATUS时的状态码，否则为-1
+     * @return 是否需要回调；暂时性的失败保留请求，等待下次flush()时重发
+     */
+    boolean onFailed(Request request, RequestException.Kind kind, int statusCode) {
+        if (kind == RequestException.Kind.REJECTED) {
+            // 请求队列已停止，记录保留在文件中，下次启动时重放；本次运行中不再重发
+            synchronized (this) {
+                mParked.remove(request.getPersistentId());
+            }
+            return true;
+        }
+        if (!isTransient(kind, statusCode)) {
+            onCompleted(request);
+            return true;
+        }
+        long id = request.getPersistentId();
+        synchronized (this) {
+            if (mPending.containsKey(id)) {
+                mParked.put(id, request);
+            }
+        }
+        Platform.get().logInfo(TAG, "Request: " + request.getUrl() + " failed (" + kind
+                + (statusCode != -1 ? " " + statusCode : "") + "), will be retried on next flush");
+        return false;
+    }
+
+    /**
+     * 网络错误、408、429和5xx是暂时性的失败
+     */
+    static boolean isTransient(RequestException.Kind kind, int statusCode) {
+        if (kind == RequestException.Kind.NETWORK) {
+            return true;
+        }
+        return kind == RequestException.Kind.HTTP_STATUS && (statusCode == 408 || statusCode == 429 || statusCode >= 500);
+    }
+
+    /**
+     * 追加一条记录，不等待写入磁盘
+     *
+     * @return 记录的序号，传给sync()
+     */
+    private long append(byte[] record) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        while (buffer.hasRemaining()) {
+            mChannel.write(buffer);
+        }
+        return ++mAppendedCount;
+    }
+
+    /**
+     * 等待序号为sequence的记录写入磁盘。正在fsync的线程完成后，其余等待的线程中由一个线程再次fsync，
+     * 覆盖期间追加的全部记录
+     */
+    private void sync(long sequence) throws IOException {
+        FileChannel channel;
+        long target;
+        synchronized (this) {
+            if (!mGroupCommit) {
+                mChannel.force(false);
+                mSyncedCount = Math.max(mSyncedCount, sequence);
+                return;
+            }
+            while (mSyncing && mSyncedCount < sequence) {
+                waitForSync();
+            }
+            if (mSyncedCount >= sequence) {
+                return;
+            }
+            mSyncing = true;
+            target = mAppendedCount;
+            channel = mChannel;
+        }
+        boolean synced = false;
+        try {
+            channel.force(false);
+            synced = true;
+        } finally {
+            synchronized (this) {
+                mSyncing = false;
+                if (synced) {
+                    mSyncedCount = Math.max(mSyncedCount, target);
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    private void waitForSync() throws InterruptedIOException {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for sync");
+        }
+    }
+
+    /**
+     * 将未完成的请求重写到临时文件，写入磁盘后替换原文件
+     */
+    private void compact() throws IOException {
+        while (mSyncing) {
+            waitForSync();
+        }
+        File temp = new File(mFile.getPath() + ".tmp");
+        RandomAccessFile out = new RandomAccessFile(temp, "rw");
+        try {
+            FileChannel channel = out.getChannel();
+            channel.truncate(0);
+            for (Map.Entry<Long, Request> entry : mPending.entrySet()) {
+                ByteBuffer buffer = ByteBuffer.wrap(encodeEnqueue(entry.getKey(), entry.getValue()));
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            channel.force(false);
+        } finally {
+            out.close();
+        }
+        mChannel.close();
+        try {
+            if (!temp.renameTo(mFile)) {
+                throw new IOException("Cannot rename " + temp + " to " + mFile);
+            }
+            mObsoleteRecords = 0;
+            mSyncedCount = mAppendedCount;
+        } finally {
+            // 重命名失败时继续追加到原文件
+            mChannel = new RandomAccessFile(mFile, "rw").getChannel();
+            mChannel.position(mChannel.size());
+        }
+    }
+
+    /**
+     * 读取日志，恢复未完成的请求
+     *
+     * @return 完整记录的总长度，之后的内容不完整
+     */
+    private long replay() throws IOException {
+        long valid = 0;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)));
+        try {
+            CRC32 crc = new CRC32();
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length <= 0 || length > MAX_RECORD_LENGTH) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                long checksum;
+                try {
+                    checksum = in.readInt() & 0xffffffffL;
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    break;
+                }
+                crc.reset();
+                crc.update(payload, 0, length);
+                if (crc.getValue() != checksum) {
+                    break;
+                }
+                applyRecord(payload);
+                valid += 8 + length;
+            }
+        } finally {
+            in.close();
+        }
+        mParked.putAll(mPending);
+        Platform.get().logInfo(TAG, "Replayed " + mPending.size() + " pending requests from " + mFile);
+        return valid;
+    }
+
+    private void applyRecord(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte kind = in.readByte();
+        long id = in.readLong();
+        mNextId = Math.max(mNextId, id + 1);
+        if (kind == RECORD_ACK) {
+            if (mPending.remove(id) != null) {
+                mObsoleteRecords += 2;
+            }
+            return;
+        }
+        String key = readString(in);
+        String url = readString(in);
+        Request.RequestMethod method = Request.RequestMethod.valueOf(readString(in));
+        Request.RequestType type = Request.RequestType.valueOf(readString(in));
+        Request.Priority priority = Request.Priority.valueOf(readString(in));
+        int count = in.readInt();
+        Map<String, String> params = null;
+        if (count >= 0) {
+            params = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                params.put(readString(in), readString(in));
+            }
+        }
+        Request request = new Request(url, type, method, params, new ReplayCallback(key));
+        request.setPriority(priority);
+        request.setPersistable(true);
+        request.setIdempotencyKey(key);
+        request.setPersistentId(id);
+        mPending.put(id, request);
+    }
+
+    private static byte[] encodeEnqueue(long id, Request request) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(RECORD_ENQUEUE);
+        out.writeLong(id);
+        writeString(out, request.getIdempotencyKey());
+        writeString(out, request.getUrl());
+        writeString(out, request.getRequestMethod().name());
+        writeString(out, request.getRequestType().name());
+        writeString(out, request.getPriority().name());
+        Map<String, String> params = request.getRequestParams();
+        if (params == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(params.size());
+            for (Map.Entry<String, String> entry : params.entrySet()) {
+                writeString(out, entry.getKey());
+                writeString(out, entry.getValue());
+            }
+        }
+        return frame(bytes.toByteArray());
+    }
+
+    private static byte[] encodeAck(long id) {
+        ByteBuffer payload = ByteBuffer.allocate(9);
+        payload.put(RECORD_ACK).putLong(id);
+        return frame(payload.array());
+    }
+
+    /**
+     * 记录格式：长度（4字节）、CRC32（4字节）、内容
+     */
+    private static byte[] frame(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        ByteBuffer record = ByteBuffer.allocate(8 + payload.length);
+        record.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+        return record.array();
+    }
+
+    /**
+     * writeUTF()限制长度为64KB，请求参数可能更长
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * 重放的请求的回调，转发给Listener
+     */
+    private final class ReplayCallback implements RequestCallback<Object> {
+
+        private final String mIdempotencyKey;
+
+        ReplayCallback(String idempotencyKey) {
+            mIdempotencyKey = idempotencyKey;
+        }
+
+        @Override
+        public void onSuccess(Object response) {
+            Listener listener = mListener;
+            if (listener != null) {
+                listener.onDelivered(mIdempotencyKey, response);
+            }
+        }
+
+        @Override
+        public void onError(String errorMsg) {
+            Listener listener = mListener;
+            if (listener != null) {
+                listener.onFailed(mIdempotencyKey, errorMsg);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import java.io.File;
+import java.util.concurrent.Executor;
+
+/**
+ * Created by Zhang on 2017/7/20.<br/>
+ * Description: 运行平台的抽象，在Android上通过Handler将回调投递到主线程，在普通JVM上（如基准测试）直接在执行线程中回调<br/>
+ * Android的实现位于hellohttp-android模块的AndroidPlatform中，在Android上通过反射创建，core模块本身不依赖任何Android类
+ */
+class Platform {
+
+    private static final String TAG = "Platform";
+
+    private static final Platform PLATFORM = findPlatform();
+
+    static Platform get() {
+        return PLATFORM;
+    }
+
+    private static Platform findPlatform() {
+        try {
+            // 本地单元测试中android.jar的桩实现SDK_INT为0，按普通JVM处理
+            Class<?> version = Class.forName("android.os.Build$VERSION");
+            if (version.getField("SDK_INT").getInt(null) != 0) {
+                return (Platform) Class.forName("com.jc.hellohttp.AndroidPlatform").newInstance();
+            }
+        } catch (Exception ignored) {
+            // 不在Android上，或者没有依赖hellohttp-android模块
+        }
+        return new Platform();
+    }
+
+    /**
+     * 默认的回调执行器，普通JVM上直接在当前线程执行。
+     * 回调在执行者的try块中运行，回调抛出的异常在此记录，不能当作请求失败再以onError()通知
+     */
+    Executor callbackExecutor() {
+        return new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                try {
+                    command.run();
+                } catch (RuntimeException e) {
+                    logError(TAG, "Callback threw: " + e);
+                }
+            }
+        };
+    }
+
+    void logInfo(String tag, String msg) {
+        System.out.println(tag + ": " + msg);
+    }
+
+    void logError(String tag, String msg) {
+        System.err.println(tag + ": " + msg);
+    }
+
+    /**
+     * RequestType.IMAGE未指定解析器时使用的默认解析器，普通JVM上得到原始的字节数组
+     */
+    ResponseDecoder<?> defaultImageDecoder() {
+        return ResponseDecoders.bytes();
+    }
+
+    /**
+     * DOWNLOAD请求保存文件的目录
+     */
+    File downloadDirectory() {
+        return new File(System.getProperty("user.home"), "Downloads");
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.Executor;
+
+/**
+ * Created by Zhang on 2017/8/2.<br/>
+ * Description: 预先建立到目标主机的连接，在后台执行，失败时只记录日志<br/>
+ * 使用HTTP/2的主机建立一个连接放入Http2ConnectionPool，全部请求在其上复用；
+ * 其他主机通过count个并发的HEAD请求建立连接，响应结束后由HttpURLConnection保持在平台自身的连接池中，
+ * https同时缓存了TLS会话
+ */
+final class Preconnector {
+
+    private static final String TAG = Preconnector.class.getSimpleName();
+
+    private Preconnector() {
+    }
+
+    /**
+     * @param origin 目标主机的根路径，scheme://host:port/
+     * @param pool   请求队列的HTTP/2连接池，使用HTTP/1.1时为null
+     */
+    static void preconnect(final URL origin, final int count, final Http2ConnectionPool pool, final Executor executor) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (pool != null) {
+                    try {
+                        if (pool.get(origin) != null) {
+                            return;
+                        }
+                    } catch (IOException e) {
+                        Platform.get().logInfo(TAG, "Preconnect " + origin + " failed: " + e);
+                        return;
+                    }
+                }
+                for (int i = 0; i < count; i++) {
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            warm(origin);
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    private static void warm(URL origin) {
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) origin.openConnection();
+            connection.setRequestMethod("HEAD");
+            connection.setConnectTimeout(Config.CONNECT_TIMEOUT);
+            connection.setReadTimeout(Config.READ_TIMEOUT);
+            connection.setUseCaches(false);
+            int responseCode = connection.getResponseCode();
+            // 关闭而不是disconnect()，连接才会回到连接池
+            InputStream in = responseCode >= HttpURLConnection.HTTP_BAD_REQUEST
+                    ? connection.getErrorStream() : connection.getInputStream();
+            if (in != null) {
+                in.close();
+            }
+        } catch (IOException e) {
+            Platform.get().logInfo(TAG, "Preconnect " + origin + " failed: " + e);
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+}
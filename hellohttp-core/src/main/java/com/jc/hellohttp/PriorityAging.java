@@ -0,0 +1,132 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Created by Zhang on 2017/8/3.<br/>
+ * Description: 等候区的优先级老化策略与排队时间统计<br/>
+ * 默认关闭老化，严格按优先级取出。开启后请求每等待一个老化间隔，有效优先级提升一级，最高与HIGH相当；有效优先级相同时先加入的先执行，
+ * 持续到来的HIGH请求因此不会使LOW、NORMAL请求无限等待。PREFETCH不参与老化，仍只在没有其他请求等待时执行。
+ * 为某一优先级设置了最长等待时间时，超出的请求先于其他全部请求取出，多个超出时先取超出比例最大的。
+ * 只影响取出的顺序，执行者全部忙碌时请求仍需等待
+ */
+final class PriorityAging {
+
+    private static final Request.Priority[] PRIORITIES = Request.Priority.values();
+    /**
+     * 老化能够达到的最高有效优先级，IMMEDIATE请求不会被老化的请求超过
+     */
+    private static final int MAX_AGED_PRIORITY = Request.Priority.HIGH.ordinal();
+    private static final int PREFETCH = Request.Priority.PREFETCH.ordinal();
+
+    /**
+     * 老化间隔（纳秒），0表示关闭老化
+     */
+    private volatile long mAgingIntervalNanos;
+    /**
+     * 按优先级序号索引的最长等待时间（纳秒），0表示不限
+     */
+    private final AtomicLongArray mMaxWaitNanos = new AtomicLongArray(PRIORITIES.length);
+    private volatile boolean mHasMaxWait;
+    /**
+     * 按优先级序号索引的排队时间（微秒）
+     */
+    private final LatencyHistogram[] mWaits = new LatencyHistogram[PRIORITIES.length];
+
+    PriorityAging(long agingIntervalNanos) {
+        mAgingIntervalNanos = agingIntervalNanos;
+        for (int i = 0; i < mWaits.length; i++) {
+            mWaits[i] = new LatencyHistogram();
+        }
+    }
+
+    void setAgingInterval(long nanos) {
+        mAgingIntervalNanos = nanos;
+    }
+
+    void setMaxWait(Request.Priority priority, long nanos) {
+        mMaxWaitNanos.set(priority.ordinal(), nanos);
+        boolean hasMaxWait = false;
+        for (int i = 0; i < PRIORITIES.length; i++) {
+            hasMaxWait |= mMaxWaitNanos.get(i) > 0;
+        }
+        mHasMaxWait = hasMaxWait;
+    }
+
+    /**
+     * @return 是否按照优先级严格排序（未启用老化，也没有设置最长等待时间）
+     */
+    boolean isStrict() {
+        return mAgingIntervalNanos == 0 && !mHasMaxWait;
+    }
+
+    /**
+     * 比较各个桶的队首请求（桶内等待最久的请求），选出下一个应当取出的桶
+     *
+     * @param buckets 按优先级序号索引
+     * @return 桶的下标，全部为空时返回-1
+     */
+    int select(Queue<Request>[] buckets, long now) {
+        long interval = mAgingIntervalNanos;
+        boolean hasMaxWait = mHasMaxWait;
+        int best = -1;
+        int bestPriority = -1;
+        long bestWait = 0;
+        int overdue = -1;
+        double overdueRatio = 1;
+        for (int i = buckets.length - 1; i >= 0; i--) {
+            Request head = buckets[i].peek();
+            if (head == null) {
+                continue;
+            }
+            long wait = now - head.getEnqueuedNanos();
+            long maxWait = hasMaxWait ? mMaxWaitNanos.get(i) : 0;
+            if (maxWait > 0 && wait >= maxWait && (double) wait / maxWait >= overdueRatio) {
+                overdue = i;
+                overdueRatio = (double) wait / maxWait;
+            }
+            int priority = effectivePriority(i, wait, interval);
+            if (priority > bestPriority || (priority == bestPriority && wait > bestWait)) {
+                best = i;
+                bestPriority = priority;
+                bestWait = wait;
+            }
+        }
+        return overdue != -1 ? overdue : best;
+    }
+
+    /**
+     * 请求从等候区取出时调用，记录排队时间
+     */
+    void onDequeued(Request request, long now) {
+        mWaits[request.getPriority().ordinal()].record((now - request.getEnqueuedNanos()) / 1000);
+    }
+
+    LatencyHistogram getWaits(Request.Priority priority) {
+        return mWaits[priority.ordinal()];
+    }
+
+    private static int effectivePriority(int priority, long wait, long interval) {
+        if (interval == 0 || priority == PREFETCH || priority >= MAX_AGED_PRIORITY) {
+            return priority;
+        }
+        return (int) Math.min(priority + wait / interval, MAX_AGED_PRIORITY);
+    }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by Zhang on 2017/7/25.<br/>
+ * Description: 按优先级分桶的多生产者多消费者请求队列，取代PriorityBlockingQueue<br/>
+ * 每个优先级对应一个无锁的ConcurrentLinkedQueue，同一优先级内按FIFO出队，不再需要比较序列号；
+ * 信号量的许可数即为队列中的请求数，队列非空时入队和出队都只有CAS操作，只有队列为空时消费者才会阻塞。
+ * 指定了PriorityAging时记录每个请求的入队时间，出队时按照老化后的有效优先级选择桶，并统计排队时间
+ */
+class PriorityRequestQueue {
+
+    private static final Request.Priority[] PRIORITIES = Request.Priority.values();
+
+    /**
+     * 按优先级序号索引的桶
+     */
+    private final Queue<Request>[] mBuckets;
+    /**
+     * 可以出队的请求数
+     */
+    private final Semaphore mAvailable = new Semaphore(0);
+    /**
+     * 老化策略，为null时严格按优先级出队，也不记录入队时间
+     */
+    private final PriorityAging mAging;
+
+    PriorityRequestQueue() {
+        this(null);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    PriorityRequestQueue(PriorityAging aging) {
+        mAging = aging;
+        mBuckets = new Queue[PRIORITIES.length];
+        for (int i = 0; i < mBuckets.length; i++) {
+            mBuckets[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    void offer(Request request) {
+        if (mAging != null) {
+            request.setEnqueuedNanos(System.nanoTime());
+        }
+        mBuckets[request.getPriority().ordinal()].offer(request);
+        mAvailable.release();
+    }
+
+    /**
+     * 取出优先级最高的请求，队列为空时阻塞等待
+     */
+    Request take() throws InterruptedException {
+        mAvailable.acquire();
+        return pollAcquired();
+    }
+
+    /**
+     * 取出优先级最高的请求，队列为空时返回null
+     */
+    Request poll() {
+        if (!mAvailable.tryAcquire()) {
+            return null;
+        }
+        return pollAcquired();
+    }
+
+    /**
+     * 在给定时间内等待并取出优先级最高的请求，超时返回null
+     */
+    Request poll(long timeout, TimeUnit unit) throws InterruptedException {
+        if (!mAvailable.tryAcquire(timeout, unit)) {
+            return null;
+        }
+        return pollAcquired();
+    }
+
+    /**
+     * 取出全部请求
+     *
+     * @return 取出的请求数
+     */
+    int drainTo(Collection<? super Request> collection) {
+        int count = 0;
+        Request request;
+        while ((request = poll()) != null) {
+            collection.add(request);
+            count++;
+        }
+        return count;
+    }
+
+    int size() {
+        return mAvailable.availablePermits();
+    }
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * 已经获得许可，队列中必然有一个属于当前线程的请求
+     */
+    private Request pollAcquired() {
+        if (mAging == null) {
+            return pollHighest();
+        }
+        long now = System.nanoTime();
+        Request request = mAging.isStrict() ? pollHighest() : pollAged(now);
+        mAging.onDequeued(request, now);
+        return request;
+    }
+
+    private Request pollHighest() {
+        while (true) {
+            for (int i = mBuckets.length - 1; i >= 0; i--) {
+                Request request = mBuckets[i].poll();
+                if (request != null) {
+                    return request;
+                }
+            }
+            // 其他消费者扫描过程中可能取走了更高优先级桶中新加入的请求，留给当前线程的请求在已扫描过的桶中，重新扫描
+            Thread.yield();
+        }
+    }
+
+    private Request pollAged(long now) {
+        while (true) {
+            int index = mAging.select(mBuckets, now);
+            // 选中的队首可能已被其他消费者取走，此时取出同一桶中的下一个请求
+            Request request = index == -1 ? null : mBuckets[index].poll();
+            if (request != null) {
+                return request;
+            }
+            Thread.yield();
+        }
+    }
+
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+/**
+ * Created by Zhang on 2017/7/28.<br/>
+ * Description: 请求队列使用的传输协议，通过RequestQueue.setProtocol()设置
+ */
+public enum Protocol {
+    /**
+     * 全部请求通过HttpURLConnection以HTTP/1.1发送，默认值
+     */
+    HTTP_1_1,
+    /**
+     * https请求通过TLS ALPN协商HTTP/2，同一主机的请求在一个连接上多路复用；
+     * 平台不支持ALPN或服务器不支持HTTP/2时自动回退到HTTP/1.1，http请求始终使用HTTP/1.1
+     */
+    HTTP_2,
+    /**
+     * 在HTTP_2的基础上，http请求直接以明文HTTP/2（h2c，prior knowledge）发送，只适用于确定支持h2c的服务器
+     */
+    H2_PRIOR_KNOWLEDGE
+}
@@ -0,0 +1,361 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import java.util.Map;
+
+/**
+ * Created by Zhang on 2017/7/7.<br/>
+ * Description: 封装http请求，通过构造方法决定不同的请求类型和请求方式
+ */
+public class Request implements Comparable<Request> {
+
+    private static final String TAG = Request.class.getSimpleName();
+
+    /**
+     * http请求方式，暂时仅支持GET和POST
+     */
+    public enum RequestMethod {
+        GET, POST
+    }
+
+    /**
+     * http请求的类型，类似于Volley中的StringRequest, JsonRequest, ImageRequest
+     */
+    public enum RequestType {
+        STRING, JSON, IMAGE, @Deprecated DOWNLOAD, UPLOAD
+    }
+
+    /**
+     * http请求优先级，分为五个等级：预取；低；普通；高；立即<br/>
+     * PREFETCH用于预先加载尚未显示的内容，只在没有其他请求等待时执行。
+     * 默认严格按优先级执行；开启老化后，等候区中等待较久的LOW、NORMAL请求逐步提升到与HIGH相当，见RequestQueue.setPriorityAging()
+     */
+    public enum Priority {
+        PREFETCH, LOW, NORMAL, HIGH, IMMEDIATE
+    }
+
+    /**
+     * 解析后的URL，请求多次执行时复用
+     */
+    private HttpUrl mUrl;
+    /**
+     * 追加了请求参数后的URL（针对GET请求）
+     */
+    private HttpUrl mUrlWithParams;
+    /**
+     * 请求完成后的回调
+     */
+    private RequestCallback<?> mCallback;
+    /**
+     * 请求方式，默认为GET请求
+     */
+    private RequestMethod mRequestMethod = RequestMethod.GET;
+    /**
+     * 请求类型，默认为StringRequest
+     */
+    private RequestType mRequestType = RequestType.STRING;
+    /**
+     * 请求参数，POST请求写入请求体，GET请求追加到URL中
+     */
+    private Map<String, String> mRequestParams;
+    /**
+     * 请求优先级，默认为NORMAL
+     */
+    private Priority mPriority = Priority.NORMAL;
+    /**
+     * 序列号，用于当两个请求优先级相等时，比较其排队顺序，-1表示尚未设置
+     */
+    private int mSequence = -1;
+
+    /**
+     * 响应解析器，为null时根据请求类型选择默认的解析器
+     */
+    private ResponseDecoder<?> mDecoder;
+    /**
+     * 是否已取消
+     */
+    private volatile boolean mCanceled;
+    /**
+     * 是否需要持久化，见PersistentRequestStore
+     */
+    private boolean mPersistable;
+    /**
+     * 幂等键，通过Idempotency-Key请求头发送，服务端据此对重发的请求去重
+     */
+    private String mIdempotencyKey;
+    /**
+     * 在PersistentRequestStore中的记录id，-1表示尚未持久化
+     */
+    private long mPersistentId = -1;
+    /**
+     * ResponseMemo的键，非null表示此请求的结果存入备忘并通知等待的相同请求
+     */
+    private String mMemoKey;
+    /**
+     * 在执行者线程中直接接收结果的监听器
+     */
+    private ResponseListener mResponseListener;
+    /**
+     * 加入等候区的时间（System.nanoTime()），用于优先级老化与排队时间的统计
+     */
+    private long mEnqueuedNanos;
+    /**
+     * 加入等候区时是否计入了RequestQueue中低优先级请求的数量。优先级在加入之后可能改变，执行完毕时据此扣除
+     */
+    private boolean mCountedAsLowPriority;
+
+    public Request(String url, RequestType type, RequestCallback<?> callback) {
+        this.mUrl = HttpUrl.parse(url);
+        this.mRequestType = type;
+        this.mCallback = callback;
+    }
+
+    public Request(String url, RequestType type, RequestMethod method, RequestCallback<?> callback) {
+        this.mUrl = HttpUrl.parse(url);
+        this.mRequestType = type;
+        this.mRequestMethod = method;
+        this.mCallback = callback;
+    }
+
+    // 适用于带请求参数的POST请求
+    public Request(String url, RequestType type, Map<String, String> params, RequestCallback<?> callback) {
+        this.mUrl = HttpUrl.parse(url);
+        this.mRequestType = type;
+        this.mRequestMethod = RequestMethod.POST;
+        this.mRequestParams = params;
+        this.mCallback = callback;
+    }
+
+    // 适用于带请求参数的GET或POST请求，GET请求的参数会追加到URL中
+    public Request(String url, RequestType type, RequestMethod method, Map<String, String> params, RequestCallback<?> callback) {
+        this.mUrl = HttpUrl.parse(url);
+        this.mRequestType = type;
+        this.mRequestMethod = method;
+        this.mRequestParams = params;
+        this.mCallback = callback;
+    }
+
+    // 适用于自定义响应解析的请求，解析在执行者线程中完成，回调中直接得到解析结果
+    public <T> Request(String url, RequestType type, RequestMethod method, Map<String, String> params,
+                       ResponseDecoder<T> decoder, RequestCallback<T> callback) {
+        this.mUrl = HttpUrl.parse(url);
+        this.mRequestType = type;
+        this.mRequestMethod = method;
+        this.mRequestParams = params;
+        this.mDecoder = decoder;
+        this.mCallback = callback;
+    }
+
+    String getUrl() {
+        return mUrl.toString();
+    }
+
+    /**
+     * 获取实际请求的URL，GET请求的请求参数会追加到查询参数中，结果会被缓存
+     */
+    HttpUrl getHttpUrl() {
+        if (mRequestMethod != RequestMethod.GET || mRequestParams == null || mRequestParams.isEmpty()) {
+            return mUrl;
+        }
+        if (mUrlWithParams == null) {
+            mUrlWithParams = mUrl.withQuery(ParamsEncoder.encodeToString(mRequestParams));
+        }
+        return mUrlWithParams;
+    }
+
+    /**
+     * 回调的类型参数与解析结果一致，由调用者保证
+     */
+    @SuppressWarnings("unchecked")
+    RequestCallback<Object> getCallback() {
+        return (RequestCallback<Object>) mCallback;
+    }
+
+    /**
+     * 设置在执行者线程中直接接收结果的监听器，与RequestCallback同时设置时两者都会收到结果。
+     * 与RequestCallback不同，请求被取消、或者因请求队列停止而没有执行时，监听器也会收到通知（CANCELED、REJECTED）
+     */
+    public void setResponseListener(ResponseListener listener) {
+        this.mResponseListener = listener;
+    }
+
+    ResponseListener getResponseListener() {
+        return mResponseListener;
+    }
+
+    /**
+     * 在当前线程中通知监听器，请求已被取消时改为通知CANCELED
+     */
+    void notifyResponse(Response response) {
+        if (mResponseListener == null) {
+            return;
+        }
+        if (mCanceled) {
+            notifyFailure(new RequestException(RequestException.Kind.CANCELED, "Request canceled"));
+            return;
+        }
+        try {
+            mResponseListener.onResponse(response);
+        } catch (RuntimeException e) {
+            Platform.get().logError(TAG, "ResponseListener of '" + getUrl() + "' threw " + e);
+        }
+    }
+
+    void notifyFailure(RequestException error) {
+        if (mResponseListener == null) {
+            return;
+        }
+        if (mCanceled && error.getKind() != RequestException.Kind.CANCELED) {
+            error = new RequestException(RequestException.Kind.CANCELED, "Request canceled");
+        }
+        try {
+            mResponseListener.onFailure(error);
+        } catch (RuntimeException e) {
+            Platform.get().logError(TAG, "ResponseListener of '" + getUrl() + "' threw " + e);
+        }
+    }
+
+    RequestMethod getRequestMethod() {
+        return mRequestMethod;
+    }
+
+    RequestType getRequestType() {
+        return mRequestType;
+    }
+
+    Map<String, String> getRequestParams() {
+        return mRequestParams;
+    }
+
+    /**
+     * 获取响应解析器，未指定时StringRequest与JsonRequest解析为String，ImageRequest在Android上解析为Bitmap（见ImageRequest），
+     * 在普通JVM上解析为byte[]
+     */
+    ResponseDecoder<?> getDecoder() {
+        if (mDecoder == null) {
+            mDecoder = mRequestType == RequestType.IMAGE
+                    ? Platform.get().defaultImageDecoder()
+                    : ResponseDecoders.string();
+        }
+        return mDecoder;
+    }
+
+    Priority getPriority() {
+        return mPriority;
+    }
+
+    // 设为public，目的是让用户在构造一个请求时也能为其设置优先级
+    public void setPriority(Priority priority) {
+        if (priority != null)
+            this.mPriority = priority;
+    }
+
+    /**
+     * 取消请求：尚未执行的请求不再执行，正在执行的请求完成后不再回调。在回调线程（Android上为主线程）中取消时，之后一定不会收到回调
+     */
+    public void cancel() {
+        mCanceled = true;
+    }
+
+    public boolean isCanceled() {
+        return mCanceled;
+    }
+
+    /**
+     * 设置是否持久化：请求队列设置了PersistentRequestStore时，此请求先写入磁盘再执行，
+     * 进程被杀死、网络不可用或服务端暂时出错时保留，之后重发直到服务端给出确定的结果（至少一次）。
+     * 未设置幂等键时自动生成一个，重发时保持不变。
+     * 持久化的请求在RequestQueue.add()中等待fsync完成，Android上不要在主线程中添加
+     */
+    public void setPersistable(boolean persistable) {
+        this.mPersistable = persistable;
+    }
+
+    boolean isPersistable() {
+        return mPersistable;
+    }
+
+    /**
+     * 设置幂等键，通过Idempotency-Key请求头发送，服务端可以据此识别重发的请求
+     */
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.mIdempotencyKey = idempotencyKey;
+    }
+
+    public String getIdempotencyKey() {
+        return mIdempotencyKey;
+    }
+
+    long getPersistentId() {
+        return mPersistentId;
+    }
+
+    void setPersistentId(long persistentId) {
+        this.mPersistentId = persistentId;
+    }
+
+    String getMemoKey() {
+        return mMemoKey;
+    }
+
+    void setMemoKey(String memoKey) {
+        this.mMemoKey = memoKey;
+    }
+
+    long getEnqueuedNanos() {
+        return mEnqueuedNanos;
+    }
+
+    void setEnqueuedNanos(long enqueuedNanos) {
+        this.mEnqueuedNanos = enqueuedNanos;
+    }
+
+    boolean isCountedAsLowPriority() {
+        return mCountedAsLowPriority;
+    }
+
+    void setCountedAsLowPriority(boolean countedAsLowPriority) {
+        this.mCountedAsLowPriority = countedAsLowPriority;
+    }
+
+    /**
+     * @return 响应是否解析为String：未指定解析器的非图片请求，或使用ResponseDecoders.string()
+     */
+    boolean decodesToString() {
+        return mDecoder == null ? mRequestType != RequestType.IMAGE : mDecoder == ResponseDecoders.string();
+    }
+
+    int getSequence() {
+        if (mSequence == -1) {
+            throw new IllegalStateException("\'getSequence()\' called before \'setSequence()\'");
+        }
+        return mSequence;
+    }
+
+    void setSequence(int mSequence) {
+        this.mSequence = mSequence;
+    }
+
+    @Override
+    public int compareTo(Request another) {
+        Priority left = this.getPriority();
+        Priority right = another.getPriority();
+        // 比较优先级，如果优先级相等则比较之前设置的序列号
+        return left == right ? (this.mSequence < another.mSequence ? -1 : (this.mSequence == another.mSequence ? 0 : 1)) : right.ordinal() - left.ordinal();
+    }
+
+}
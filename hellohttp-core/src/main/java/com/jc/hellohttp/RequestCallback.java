@@ -17,11 +17,11 @@ package com.jc.hellohttp;
 
 /**
  * Created by Zhang on 2017/7/7.<br/>
- * Description: http请求完成后的回调接口
+ * Description: http请求完成后的回调接口，T为ResponseDecoder解析出的结果类型
  */
-public interface RequestCallback {
+public interface RequestCallback<T> {
 
-    void onSuccess(Object response);
+    void onSuccess(T response);
 
     void onError(String errorMsg);
 
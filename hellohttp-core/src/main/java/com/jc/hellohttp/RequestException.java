@@ -0,0 +1,83 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import java.io.IOException;
+
+/**
+ * Created by Zhang on 2017/8/4.<br/>
+ * Description: 结构化的请求错误，通过ResponseListener.onFailure()投递；getMessage()与RequestCallback.onError()收到的信息相同<br/>
+ * 自定义的ResponseDecoder可以抛出DECODE类型的RequestException，表示响应体读取成功但内容无法解析
+ */
+public class RequestException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Kind {
+        /**
+         * 服务端返回了200以外的状态码，见getStatusCode()
+         */
+        HTTP_STATUS,
+        /**
+         * 连接、读写失败或超时
+         */
+        NETWORK,
+        /**
+         * 响应体无法解析，或解析器抛出了异常
+         */
+        DECODE,
+        /**
+         * 响应体超过大小上限、超出内存预算，或内存紧张时放弃执行的LOW、PREFETCH请求
+         */
+        MEMORY,
+        /**
+         * 请求在完成之前被取消
+         */
+        CANCELED,
+        /**
+         * 请求队列已停止，请求没有执行或执行中被打断
+         */
+        REJECTED
+    }
+
+    private final Kind mKind;
+    private final int mStatusCode;
+
+    public RequestException(Kind kind, String message) {
+        this(kind, message, -1, null);
+    }
+
+    public RequestException(Kind kind, String message, int statusCode, Throwable cause) {
+        super(message, cause);
+        if (kind == null) {
+            throw new NullPointerException("kind == null");
+        }
+        mKind = kind;
+        mStatusCode = statusCode;
+    }
+
+    public Kind getKind() {
+        return mKind;
+    }
+
+    /**
+     * @return HTTP状态码，不是HTTP_STATUS类型时返回-1
+     */
+    public int getStatusCode() {
+        return mStatusCode;
+    }
+
+}
@@ -0,0 +1,838 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Created by Zhang on 2017/7/7.<br/>
+ * Description: http请求队列，封装了http请求等候区<br/>
+ * 请求进入共享的等候区，由最多maxConcurrency个HttpExecutor在给定的Executor中并发执行，执行者在等候区为空时退出，不占用线程；
+ * 默认使用自有的线程池，也可以传入虚拟线程（见WorkerExecutors）、ForkJoinPool等任意Executor<br/>
+ * 线程安全，可以在任意线程中加入请求。生命周期：创建后即处于RUNNING状态，可以pause()/resume()，
+ * 最终通过drain()等待已加入的请求执行完毕，或通过shutdownNow()立即停止，两者都会返回尚未执行的请求<br/>
+ * 可以启用带宽感知调度（setBandwidthAware()），在带宽受限时降低并发数并推迟低优先级的请求
+ */
+public final class RequestQueue {
+
+    private static final String TAG = RequestQueue.class.getSimpleName();
+
+    /**
+     * 请求队列的状态
+     */
+    public enum State {
+        /**
+         * 正常接收并执行请求
+         */
+        RUNNING,
+        /**
+         * 接收请求，但执行者暂停取出新的请求，正在执行的请求不受影响
+         */
+        PAUSED,
+        /**
+         * 不再接收新的请求，等待已加入的请求执行完毕
+         */
+        DRAINING,
+        /**
+         * 已停止，不再接收和执行请求
+         */
+        TERMINATED
+    }
+
+    // RequestQueue在此处不能是静态的，否则会造成调用stop()之后RequestQueue中的所有资源无法释放。
+//    private static RequestQueue mInstance;
+//
+//    static synchronized RequestQueue getInstance() {
+//        if (mInstance == null) {
+//            mInstance = new RequestQueue();
+//        }
+//        return mInstance;
+//    }
+
+    /**
+     * 请求等候区，由全部执行者共享
+     */
+    private final RequestWaitingArea mWaitingArea = new RequestWaitingArea();
+    /**
+     * 运行执行者的Executor
+     */
+    private final Executor mExecutor;
+    /**
+     * mExecutor是否由请求队列创建，是则在停止时一并关闭
+     */
+    private final boolean mOwnsExecutor;
+    /**
+     * 同时运行的执行者数量上限
+     */
+    private final int mMaxConcurrency;
+    /**
+     * 已提交且尚未退出的执行者
+     */
+    private final AtomicInteger mActiveExecutorCount = new AtomicInteger();
+    private final Set<HttpExecutor> mActiveExecutors = Collections.newSetFromMap(new ConcurrentHashMap<HttpExecutor, Boolean>());
+
+    private volatile State mState = State.RUNNING;
+    /**
+     * 状态变化时的锁，drain()在等待请求完成时在此锁上等待
+     */
+    private final Object mStateLock = new Object();
+    /**
+     * 正在执行add()的线程数，停止时等待它们完成，保证不会有请求在停止之后漏进等候区
+     */
+    private final AtomicInteger mAddingCount = new AtomicInteger();
+    /**
+     * 已加入但尚未执行完毕的请求数
+     */
+    private final AtomicInteger mOutstandingCount = new AtomicInteger();
+    /**
+     * HTTP/2连接池，使用HTTP/1.1时为null
+     */
+    private volatile Http2ConnectionPool mHttp2ConnectionPool;
+    /**
+     * 带宽估计，只在启用带宽感知调度时统计
+     */
+    private final BandwidthEstimator mBandwidthEstimator = new BandwidthEstimator();
+    private volatile boolean mBandwidthAware;
+    /**
+     * 估计带宽低于此值（字节/秒）时视为受限
+     */
+    private volatile long mConstrainedBandwidth = Config.CONSTRAINED_BANDWIDTH;
+    /**
+     * 带宽受限时推迟加入等候区的LOW、PREFETCH请求，由自身保护
+     */
+    private final PriorityRequestQueue mDeferredRequests = new PriorityRequestQueue();
+    /**
+     * 已进入等候区、尚未执行完毕的LOW、PREFETCH请求数，只在持有mDeferredRequests时增加。
+     * 计入的请求带有标记（Request.isCountedAsLowPriority()），执行完毕时按标记扣除，不受之后修改优先级的影响
+     */
+    private final AtomicInteger mLowPriorityInFlight = new AtomicInteger();
+    /**
+     * 持久化请求的存储，未设置时持久化标记不起作用
+     */
+    private volatile PersistentRequestStore mPersistentStore;
+    /**
+     * 同时在解析中的响应占用的内存预算
+     */
+    private final MemoryBudget mMemoryBudget = new MemoryBudget(Runtime.getRuntime().maxMemory() / Config.MEMORY_BUDGET_DIVISOR);
+    private volatile long mMaxResponseSize = Config.MAX_RESPONSE_SIZE;
+    /**
+     * 在此时间（System.currentTimeMillis()）之前放弃执行LOW、PREFETCH请求
+     */
+    private volatile long mLowMemoryUntil;
+    /**
+     * 相同GET请求的响应备忘，未启用时为null
+     */
+    private volatile ResponseMemo mResponseMemo;
+    /**
+     * 主机名解析及其缓存，用于HTTP/2连接与预解析
+     */
+    private final DnsCache mDnsCache = new DnsCache(Dns.SYSTEM, Config.DNS_TTL);
+
+    public RequestQueue() {
+        this(WorkerExecutors.newDefaultExecutor(Config.CORE_SIZE), Config.CORE_SIZE, true);
+    }
+
+    /**
+     * @param executor       运行执行者的Executor，由调用者负责关闭
+     * @param maxConcurrency 同时执行的请求数上限
+     */
+    public RequestQueue(Executor executor, int maxConcurrency) {
+        this(executor, maxConcurrency, false);
+    }
+
+    private RequestQueue(Executor executor, int maxConcurrency, boolean ownsExecutor) {
+        if (executor == null) {
+            throw new NullPointerException("executor == null");
+        }
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency <= 0");
+        }
+        mExecutor = executor;
+        mMaxConcurrency = maxConcurrency;
+        mOwnsExecutor = ownsExecutor;
+    }
+
+    /**
+     * 预先创建默认线程池中的全部线程，避免第一批请求到来时再创建线程。不调用时线程按需创建；使用外部传入的Executor时不起作用
+     */
+    public void start() {
+        if (mState == State.TERMINATED) {
+            throw new IllegalStateException("RequestQueue is already terminated");
+        }
+        if (mOwnsExecutor && mExecutor instanceof ThreadPoolExecutor) {
+            ((ThreadPoolExecutor) mExecutor).prestartAllCoreThreads();
+        }
+    }
+
+    /**
+     * 添加一个http请求<br/>
+     * 注意：设置了PersistentRequestStore时，持久化的请求（Request.setPersistable()）在本方法中写入磁盘并等待fsync完成后才返回，
+     * 耗时取决于存储设备（通常为几毫秒，慢速存储上可达数十毫秒以上），Android上不要在主线程中添加持久化的请求
+     *
+     * @param request --
+     * @return 请求是否成功加入队列，队列已停止或正在停止时返回false，同时以REJECTED通知请求的ResponseListener
+     */
+    public boolean add(Request request) {
+        if (request == null) {
+            Platform.get().logError(TAG, "request = null, add failed...");
+            return false;
+        }
+        PersistentRequestStore store = mPersistentStore;
+        if (store != null && request.isPersistable() && request.getPersistentId() < 0) {
+            // 先检查状态，队列停止之后不再写入磁盘；写入磁盘后再通过add()加入等候区
+            State state = mState;
+            if (state != State.RUNNING && state != State.PAUSED) {
+                return reject(request, state);
+            }
+            return store.enqueue(request);
+        }
+        ResponseMemo memo = mResponseMemo;
+        State current = mState;
+        if (memo != null && (current == State.RUNNING || current == State.PAUSED) && memo.intercept(request, this)) {
+            return true;
+        }
+        mAddingCount.incrementAndGet();
+        try {
+            State state = mState;
+            if (state != State.RUNNING && state != State.PAUSED) {
+                return reject(request, state);
+            }
+            mOutstandingCount.incrementAndGet();
+            if (deferIfConstrained(request)) {
+                return true;
+            }
+            mWaitingArea.addRequest(request);
+            // 重新读取状态，与resume()并发时两者至少有一方能看到对方的修改
+            if (isExecutable()) {
+                scheduleExecutor();
+            }
+            return true;
+        } finally {
+            mAddingCount.decrementAndGet();
+        }
+    }
+
+    private boolean reject(Request request, State state) {
+        Platform.get().logError(TAG, "RequestQueue is " + state + ", add failed...");
+        request.notifyFailure(new RequestException(RequestException.Kind.REJECTED, "RequestQueue is " + state));
+        return false;
+    }
+
+    /**
+     * 执行者数量未达上限时提交一个新的执行者
+     */
+    private void scheduleExecutor() {
+        while (true) {
+            int active = mActiveExecutorCount.get();
+            if (active >= getConcurrencyLimit()) {
+                return;
+            }
+            if (mActiveExecutorCount.compareAndSet(active, active + 1)) {
+                break;
+            }
+        }
+        HttpExecutor executor = new HttpExecutor(mWaitingArea, this);
+        mActiveExecutors.add(executor);
+        try {
+            mExecutor.execute(executor);
+        } catch (RejectedExecutionException e) {
+            mActiveExecutors.remove(executor);
+            mActiveExecutorCount.decrementAndGet();
+            Platform.get().logError(TAG, "Executor rejected HttpExecutor: " + e);
+        }
+    }
+
+    /**
+     * 暂停执行新的请求，正在执行的请求不受影响，暂停期间仍然可以加入请求。执行者执行完当前请求后退出，不占用线程
+     */
+    public void pause() {
+        synchronized (mStateLock) {
+            if (mState == State.RUNNING) {
+                mState = State.PAUSED;
+            }
+        }
+    }
+
+    /**
+     * 恢复执行请求
+     */
+    public void resume() {
+        synchronized (mStateLock) {
+            if (mState != State.PAUSED) {
+                return;
+            }
+            mState = State.RUNNING;
+        }
+        scheduleExecutors();
+    }
+
+    /**
+     * 不再接收新的请求，在给定的时间内等待已加入的请求执行完毕，然后停止队列。处于暂停状态时会先恢复执行
+     *
+     * @return 超时后仍未执行的请求，按时完成时为空列表
+     */
+    public List<Request> drain(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (mStateLock) {
+            if (mState == State.RUNNING || mState == State.PAUSED) {
+                mState = State.DRAINING;
+            }
+        }
+        waitForAdding();
+        scheduleExecutors();
+        synchronized (mStateLock) {
+            long remaining;
+            while (mOutstandingCount.get() > 0 && (remaining = deadline - System.nanoTime()) > 0) {
+                TimeUnit.NANOSECONDS.timedWait(mStateLock, remaining);
+            }
+        }
+        return shutdownNow();
+    }
+
+    /**
+     * 立即停止队列：不再接收新的请求，打断正在执行的请求
+     *
+     * @return 尚未执行的请求，它们的ResponseListener收到REJECTED
+     */
+    public List<Request> shutdownNow() {
+        synchronized (mStateLock) {
+            mState = State.TERMINATED;
+            mStateLock.notifyAll();
+        }
+        waitForAdding();
+        for (HttpExecutor executor : mActiveExecutors) {
+            executor.interruptExecutor();
+        }
+        List<Request> unexecuted = new ArrayList<>();
+        // 在锁内取出推迟的请求，此后不会再有推迟的请求进入等候区
+        synchronized (mDeferredRequests) {
+            mDeferredRequests.drainTo(unexecuted);
+        }
+        mWaitingArea.drainTo(unexecuted);
+        ResponseMemo memo = mResponseMemo;
+        if (memo != null) {
+            memo.drainWaiters(unexecuted);
+        }
+        Http2ConnectionPool http2ConnectionPool = mHttp2ConnectionPool;
+        if (http2ConnectionPool != null) {
+            http2ConnectionPool.closeAll();
+        }
+        if (mOwnsExecutor) {
+            ((ExecutorService) mExecutor).shutdown();
+        }
+        for (Request request : unexecuted) {
+            request.notifyFailure(new RequestException(RequestException.Kind.REJECTED, "RequestQueue is " + State.TERMINATED));
+        }
+        return unexecuted;
+    }
+
+    public State getState() {
+        return mState;
+    }
+
+    /**
+     * 设置传输协议，默认为HTTP/1.1。应当在加入请求之前设置，切换协议时原有的HTTP/2连接会被关闭，正在其上执行的请求将会失败
+     *
+     * @see Protocol
+     */
+    public void setProtocol(Protocol protocol) {
+        if (protocol == null) {
+            throw new NullPointerException("protocol == null");
+        }
+        Http2ConnectionPool old;
+        synchronized (mStateLock) {
+            if (mState == State.TERMINATED) {
+                throw new IllegalStateException("RequestQueue is already terminated");
+            }
+            old = mHttp2ConnectionPool;
+            mHttp2ConnectionPool = protocol == Protocol.HTTP_1_1 ? null : new Http2ConnectionPool(protocol, mDnsCache, Config.CONNECTION_IDLE_TIMEOUT);
+        }
+        if (old != null) {
+            old.closeAll();
+        }
+    }
+
+    /**
+     * 启用或关闭带宽感知调度，默认关闭<br/>
+     * 启用后根据响应体的实际读取速度估计可用带宽，带宽低于setConstrainedBandwidth()设置的阈值时：
+     * 按照每个请求至少32KB/s降低同时执行的请求数；LOW、PREFETCH请求同时最多执行1个，其余的推迟执行，
+     * 为更高优先级的请求（如用户正在等待的接口调用）让出带宽。带宽恢复后推迟的请求按优先级依次执行
+     */
+    public void setBandwidthAware(boolean bandwidthAware) {
+        mBandwidthAware = bandwidthAware;
+        admitDeferredRequests();
+        scheduleExecutors();
+    }
+
+    /**
+     * 设置带宽受限的阈值，默认256KB/s
+     *
+     * @param bytesPerSecond 估计带宽低于此值时视为受限
+     */
+    public void setConstrainedBandwidth(long bytesPerSecond) {
+        if (bytesPerSecond <= 0) {
+            throw new IllegalArgumentException("bytesPerSecond <= 0");
+        }
+        mConstrainedBandwidth = bytesPerSecond;
+        admitDeferredRequests();
+        scheduleExecutors();
+    }
+
+    /**
+     * 以外部信息（如当前的网络类型）设置带宽的估计值，之后由实际的传输速度修正。网络切换时调用
+     *
+     * @param bytesPerSecond 估计的带宽，字节/秒
+     */
+    public void setBandwidthHint(long bytesPerSecond) {
+        if (bytesPerSecond <= 0) {
+            throw new IllegalArgumentException("bytesPerSecond <= 0");
+        }
+        mBandwidthEstimator.setEstimate(bytesPerSecond);
+        admitDeferredRequests();
+        scheduleExecutors();
+    }
+
+    /**
+     * @return 估计的带宽，字节/秒，尚无样本和提示时返回-1
+     */
+    public long getEstimatedBandwidth() {
+        return mBandwidthEstimator.getBytesPerSecond();
+    }
+
+    /**
+     * @return 是否启用了带宽感知调度并且当前带宽受限，可用于决定是否进行预取等非必要的加载
+     */
+    public boolean isBandwidthConstrained() {
+        if (!mBandwidthAware) {
+            return false;
+        }
+        long bandwidth = mBandwidthEstimator.getBytesPerSecond();
+        return bandwidth >= 0 && bandwidth < mConstrainedBandwidth;
+    }
+
+    /**
+     * @return 当前同时运行的执行者数量上限
+     */
+    private int getConcurrencyLimit() {
+        if (!isBandwidthConstrained()) {
+            return mMaxConcurrency;
+        }
+        long limit = mBandwidthEstimator.getBytesPerSecond() / Config.MIN_BANDWIDTH_PER_REQUEST;
+        return (int) Math.max(1, Math.min(mMaxConcurrency, limit));
+    }
+
+    /**
+     * 带宽受限时推迟LOW、PREFETCH请求，已有推迟的请求时新的请求也推迟，保持先后顺序
+     *
+     * @return 是否已推迟，否则调用者将其加入等候区
+     */
+    private boolean deferIfConstrained(Request request) {
+        if (!isLowPriority(request)) {
+            return false;
+        }
+        synchronized (mDeferredRequests) {
+            if (mDeferredRequests.isEmpty() && canAdmitLowPriority()) {
+                countAsLowPriority(request);
+                return false;
+            }
+            mDeferredRequests.offer(request);
+            return true;
+        }
+    }
+
+    /**
+     * 在允许的范围内将推迟的请求加入等候区
+     */
+    private void admitDeferredRequests() {
+        if (mDeferredRequests.isEmpty()) {
+            return;
+        }
+        boolean admitted = false;
+        synchronized (mDeferredRequests) {
+            // 已停止时推迟的请求由shutdownNow()返回
+            while (mState != State.TERMINATED && canAdmitLowPriority()) {
+                Request request = mDeferredRequests.poll();
+                if (request == null) {
+                    break;
+                }
+                countAsLowPriority(request);
+                mWaitingArea.addRequest(request);
+                admitted = true;
+            }
+        }
+        if (admitted && isExecutable()) {
+            scheduleExecutors();
+        }
+    }
+
+    private void countAsLowPriority(Request request) {
+        request.setCountedAsLowPriority(true);
+        mLowPriorityInFlight.incrementAndGet();
+    }
+
+    private boolean canAdmitLowPriority() {
+        return !isBandwidthConstrained() || mLowPriorityInFlight.get() < Config.CONSTRAINED_LOW_PRIORITY_REQUESTS;
+    }
+
+    private static boolean isLowPriority(Request request) {
+        return request.getPriority().compareTo(Request.Priority.LOW) <= 0;
+    }
+
+    /**
+     * 启用带宽感知调度时包装响应体，读取时计入带宽估计
+     */
+    InputStream meterResponseBody(InputStream body) {
+        return mBandwidthAware ? mBandwidthEstimator.meter(body) : body;
+    }
+
+    /**
+     * 设置持久化请求的存储，之后标记为持久化的请求先写入磁盘再执行。上次运行中未完成的请求随即加入请求队列
+     *
+     * @see PersistentRequestStore
+     */
+    public void setPersistentStore(PersistentRequestStore store) {
+        if (store == null) {
+            throw new NullPointerException("store == null");
+        }
+        mPersistentStore = store;
+        store.attach(this);
+    }
+
+    /**
+     * 设置响应体的大小上限，默认16MB。Content-Length超过上限的响应不读取，读取中超过上限时停止，均通过onError()通知。
+     * 不影响下载请求
+     */
+    public void setMaxResponseSize(long bytes) {
+        if (bytes <= 0) {
+            throw new IllegalArgumentException("bytes <= 0");
+        }
+        mMaxResponseSize = bytes;
+    }
+
+    /**
+     * 设置内存预算，默认为堆内存上限的1/4：同时在解析中的响应体与解码结果（如Bitmap）的总字节数超过预算时，
+     * LOW、PREFETCH请求立即失败，其他请求等待，超过读取超时时间后失败
+     */
+    public void setMemoryBudget(long bytes) {
+        if (bytes <= 0) {
+            throw new IllegalArgumentException("bytes <= 0");
+        }
+        mMemoryBudget.setCapacity(bytes);
+    }
+
+    /**
+     * 通知内存不足，例如Android上的onLowMemory()、onTrimMemory()。此后一段时间内取出的LOW、PREFETCH请求不再执行，
+     * 直接通过onError()通知
+     */
+    public void onLowMemory() {
+        mLowMemoryUntil = System.currentTimeMillis() + Config.LOW_MEMORY_SHED_MILLIS;
+    }
+
+    /**
+     * 启用相同GET请求的响应备忘，适用于短时间内重复发出的STRING、JSON请求（如切换标签页时），不依赖服务端的缓存响应头：
+     * 存入后ttlMillis内直接返回备忘的响应体；之后的staleMillis内先返回旧的响应体，同时在后台刷新；
+     * 相同的请求正在执行时等待它的结果而不是再发送一次。只处理解析为String的GET请求，以带参数的URL为键
+     *
+     * @param maxBytes    备忘的总大小上限，超出时淘汰最久未使用的，0表示关闭
+     * @param ttlMillis   直接返回备忘的时长
+     * @param staleMillis ttl之后返回旧响应并在后台刷新的时长
+     */
+    public void setResponseMemo(long maxBytes, long ttlMillis, long staleMillis) {
+        if (maxBytes < 0 || ttlMillis < 0 || staleMillis < 0) {
+            throw new IllegalArgumentException("maxBytes < 0 || ttlMillis < 0 || staleMillis < 0");
+        }
+        mResponseMemo = maxBytes == 0 ? null : new ResponseMemo(maxBytes, ttlMillis, staleMillis);
+    }
+
+    /**
+     * 清空响应备忘，例如修改了数据之后
+     */
+    public void clearResponseMemo() {
+        ResponseMemo memo = mResponseMemo;
+        if (memo != null) {
+            memo.clear();
+        }
+    }
+
+    /**
+     * @return 响应备忘的命中率：未发送网络请求的比例，包括等待相同请求的结果；未启用或尚无请求时返回0
+     */
+    public double getResponseMemoHitRatio() {
+        ResponseMemo memo = mResponseMemo;
+        if (memo == null) {
+            return 0;
+        }
+        long hits = memo.getHitCount();
+        long total = hits + memo.getMissCount();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * 替换主机名解析，例如使用HTTPDNS，或在测试中将主机名指向本地的服务器，默认使用系统的解析。
+     * 解析结果在请求队列内缓存60秒，解析出多个地址时并发尝试建立连接。<br/>
+     * 用于HTTP/2连接与preresolve()；HTTP/1.1请求由HttpURLConnection建立连接，始终使用系统的解析
+     */
+    public void setDns(Dns dns) {
+        if (dns == null) {
+            throw new NullPointerException("dns == null");
+        }
+        mDnsCache.setDelegate(dns);
+    }
+
+    /**
+     * 在后台异步解析即将访问的主机，例如创建请求队列之后立即调用，首个请求不必再等待解析。
+     * 使用系统的解析时也会填充系统自身的缓存，HTTP/1.1请求同样受益
+     */
+    public void preresolve(String... hosts) {
+        mDnsCache.preresolve(Arrays.asList(hosts), WorkerExecutors.background());
+    }
+
+    /**
+     * 在后台预先建立到url所在主机的连接，例如应用启动时同时为首屏请求的API、CDN主机预热，
+     * 首个请求不必再等待DNS解析、TCP与TLS握手，失败时只记录日志。<br/>
+     * 使用HTTP/2的主机建立一个供全部请求复用的连接，空闲5分钟后关闭，count不起作用；
+     * 其他主机向根路径发送count个并发的HEAD请求，连接由HttpURLConnection的连接池保持，
+     * 空闲超时与数量上限由平台决定（JVM默认5秒、最多5个，Android为5分钟）
+     *
+     * @param url   只使用其中的scheme、host与port
+     * @param count 预先建立的连接数
+     */
+    public void preconnect(String url, int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("count <= 0");
+        }
+        URL origin;
+        try {
+            URL parsed = new URL(url);
+            origin = new URL(parsed.getProtocol(), parsed.getHost(), parsed.getPort(), "/");
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException("Invalid url: " + url, e);
+        }
+        if (mState == State.TERMINATED) {
+            return;
+        }
+        Preconnector.preconnect(origin, count, mHttp2ConnectionPool, WorkerExecutors.background());
+    }
+
+    /**
+     * @return 解析缓存的命中率：不需要实际解析的比例，包括等待同一主机正在进行的解析；尚无解析时返回0
+     */
+    public double getDnsCacheHitRatio() {
+        long lookups = mDnsCache.getLookupCount();
+        return lookups == 0 ? 0 : (double) mDnsCache.getHitCount() / lookups;
+    }
+
+    /**
+     * @return 实际解析的平均耗时（毫秒），包括失败的解析；尚无解析时返回0
+     */
+    public double getDnsResolveTimeMillis() {
+        long resolves = mDnsCache.getResolveCount();
+        return resolves == 0 ? 0 : mDnsCache.getResolveNanos() / 1e6 / resolves;
+    }
+
+    /**
+     * 设置优先级老化的间隔，默认关闭（严格按优先级执行）：请求在等候区中每等待这么久，有效优先级提升一级，最高与HIGH相当，
+     * 有效优先级相同时先加入的先执行。持续到来的高优先级请求因此不会使LOW、NORMAL请求无限等待，
+     * IMMEDIATE请求始终最先执行，PREFETCH请求不参与老化
+     *
+     * @param intervalMillis 0表示关闭老化，严格按优先级执行
+     */
+    public void setPriorityAging(long intervalMillis) {
+        if (intervalMillis < 0) {
+            throw new IllegalArgumentException("intervalMillis < 0");
+        }
+        mWaitingArea.getAging().setAgingInterval(TimeUnit.MILLISECONDS.toNanos(intervalMillis));
+    }
+
+    /**
+     * 设置某一优先级的请求在等候区中的最长等待时间，默认不限。超出的请求先于其他全部请求执行，
+     * 例如为PREFETCH设置后，预取在高负载下也能在限定时间内得到执行。
+     * 只影响执行的顺序，全部执行者都在执行耗时的请求时仍需等待其中之一完成
+     *
+     * @param maxWaitMillis 0表示不限
+     */
+    public void setMaxQueueWait(Request.Priority priority, long maxWaitMillis) {
+        if (priority == null) {
+            throw new NullPointerException("priority == null");
+        }
+        if (maxWaitMillis < 0) {
+            throw new IllegalArgumentException("maxWaitMillis < 0");
+        }
+        mWaitingArea.getAging().setMaxWait(priority, TimeUnit.MILLISECONDS.toNanos(maxWaitMillis));
+    }
+
+    /**
+     * 某一优先级的请求在等候区中排队时间的分位数，自请求队列创建起统计，相对误差约3%。
+     * 不包括带宽受限时推迟加入等候区的时间
+     *
+     * @param percentile 0~100，例如50、99
+     * @return 排队时间（毫秒），尚无该优先级的请求时返回0
+     */
+    public double getQueueWaitMillis(Request.Priority priority, double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile < 0 || percentile > 100");
+        }
+        return mWaitingArea.getAging().getWaits(priority).percentile(percentile) / 1000.0;
+    }
+
+    /**
+     * @return 某一优先级已经离开等候区的请求数，即getQueueWaitMillis()的样本数
+     */
+    public long getQueueWaitCount(Request.Priority priority) {
+        return mWaitingArea.getAging().getWaits(priority).getCount();
+    }
+
+    ResponseMemo getResponseMemo() {
+        return mResponseMemo;
+    }
+
+    /**
+     * @return 是否应当放弃执行此请求：内存紧张时放弃LOW、PREFETCH请求
+     */
+    boolean shouldShed(Request request) {
+        if (!isLowPriority(request)) {
+            return false;
+        }
+        return System.currentTimeMillis() < mLowMemoryUntil || MemoryBudget.isHeapUnderPressure();
+    }
+
+    long getMaxResponseSize() {
+        return mMaxResponseSize;
+    }
+
+    MemoryBudget getMemoryBudget() {
+        return mMemoryBudget;
+    }
+
+    /**
+     * @return 持久化请求的存储，未设置时为null
+     */
+    PersistentRequestStore getPersistentStore() {
+        return mPersistentStore;
+    }
+
+    /**
+     * @return HTTP/2连接池，使用HTTP/1.1时为null
+     */
+    Http2ConnectionPool getHttp2ConnectionPool() {
+        return mHttp2ConnectionPool;
+    }
+
+    /**
+     * 等待正在执行add()的线程完成，此后不会再有请求加入等候区
+     */
+    private void waitForAdding() {
+        while (mAddingCount.get() > 0) {
+            Thread.yield();
+        }
+    }
+
+    /**
+     * 为等候区中的请求提交执行者，直到数量达到上限
+     */
+    private void scheduleExecutors() {
+        int pending = mWaitingArea.getRequestCount();
+        int limit = getConcurrencyLimit();
+        for (int i = 0; i < pending && mActiveExecutorCount.get() < limit; i++) {
+            scheduleExecutor();
+        }
+    }
+
+    /**
+     * 执行者取出请求之前调用
+     *
+     * @return 是否可以继续执行请求，暂停或停止时返回false
+     */
+    boolean isExecutable() {
+        State state = mState;
+        return state == State.RUNNING || state == State.DRAINING;
+    }
+
+    /**
+     * 执行者取出请求之前调用，带宽变差使并发数上限降低后，超出上限的执行者退出
+     *
+     * @return 执行者是否应当退出，返回true时已从执行者数量中扣除
+     */
+    boolean retireIfOverLimit() {
+        if (!mBandwidthAware) {
+            return false;
+        }
+        while (true) {
+            int active = mActiveExecutorCount.get();
+            if (active <= getConcurrencyLimit()) {
+                return false;
+            }
+            if (mActiveExecutorCount.compareAndSet(active, active - 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 执行者退出时调用
+     *
+     * @param retired 是否已经通过retireIfOverLimit()扣除
+     */
+    void onExecutorExit(HttpExecutor executor, boolean retired) {
+        mActiveExecutors.remove(executor);
+        if (!retired) {
+            mActiveExecutorCount.decrementAndGet();
+        }
+        // 执行者发现等候区为空之后、退出之前可能有新的请求加入，而加入时执行者数量已满，没有提交新的执行者
+        if (isExecutable() && !mWaitingArea.isEmpty()) {
+            scheduleExecutor();
+        }
+    }
+
+    /**
+     * 执行者执行完一个请求后调用
+     */
+    void onRequestFinished(Request request) {
+        if (request.isCountedAsLowPriority()) {
+            request.setCountedAsLowPriority(false);
+            mLowPriorityInFlight.decrementAndGet();
+        }
+        if (mBandwidthAware) {
+            // 带宽可能已经恢复，放行推迟的请求，补足执行者
+            admitDeferredRequests();
+            if (isExecutable() && !mWaitingArea.isEmpty()) {
+                scheduleExecutors();
+            }
+        } else {
+            admitDeferredRequests();
+        }
+        if (mOutstandingCount.decrementAndGet() == 0 && mState == State.DRAINING) {
+            synchronized (mStateLock) {
+                mStateLock.notifyAll();
+            }
+        }
+    }
+
+}
@@ -15,13 +15,14 @@
  */
 package com.jc.hellohttp;
 
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by Zhang on 2017/7/11.<br/>
- * Description: http请求的等候区，一个等候区对应一个HttpExecutor（线程）， http请求进入等候区后默认以FIFO的规则等待执行
+ * Description: http请求的等候区，http请求进入等候区后按优先级等待执行，同一优先级按FIFO，开启老化后等待较久的请求优先级逐步提升（见PriorityAging）<br/>
+ * 一个请求队列只有一个等候区，由该队列的全部HttpExecutor共享，空闲的执行者总是取走下一个请求，不会出现某个执行者忙碌而其他执行者空闲的情况
  */
 class RequestWaitingArea {
 
@@ -29,19 +30,14 @@ class RequestWaitingArea {
      * 等候区的队列
      */
 //    private List<Request> mWaitingArea;
-    private BlockingQueue<Request> mWaitingArea;
-    /**
-     * http请求执行者
-     */
-    private final HttpExecutor mHttpExecutor;
+    private final PriorityRequestQueue mWaitingArea;
+    private final PriorityAging mAging = new PriorityAging(TimeUnit.MILLISECONDS.toNanos(Config.PRIORITY_AGING_INTERVAL));
 
     private AtomicInteger mSequenceGenerator = new AtomicInteger(0);
 
-    public RequestWaitingArea() {
+    RequestWaitingArea() {
 //        mWaitingArea = new ArrayList<>();
-        mWaitingArea = new PriorityBlockingQueue<>();
-        mHttpExecutor = new HttpExecutor(this);
-        mHttpExecutor.start();
+        mWaitingArea = new PriorityRequestQueue(mAging);
     }
 
     /**
@@ -51,19 +47,19 @@ class RequestWaitingArea {
      */
     void addRequest(Request request) {
         request.setSequence(getSequenceNumber());
-        mWaitingArea.add(request);
+        mWaitingArea.offer(request);
 //        synchronized (HttpExecutor.mSynLock) {
 //            HttpExecutor.mSynLock.notify();
 //        }
     }
 
     /**
-     * 获取这一等候区队列中的所有请求
+     * 取出优先级最高的请求
      *
-     * @return --
+     * @return 等候区为空时返回null
      */
-    BlockingQueue<Request> getRequestsFromWaitingArea() {
-        return mWaitingArea;
+    Request pollRequest() {
+        return mWaitingArea.poll();
     }
 //    List<Request> getRequestsFromWaitingArea() {
 //        return mWaitingArea;
@@ -78,20 +74,23 @@ class RequestWaitingArea {
         return mWaitingArea.size();
     }
 
-    private int getSequenceNumber() {
-        return mSequenceGenerator.incrementAndGet();
+    boolean isEmpty() {
+        return mWaitingArea.isEmpty();
     }
 
-    void stopHttpExecutor() {
-//        if (!mWaitingArea.isEmpty()) {
-//            for (int i = 0; i < mWaitingArea.size(); i++) {
-//                Request request = mWaitingArea.get(i);
-//                if (mWaitingArea.contains(request)) {
-//                    mWaitingArea.remove(request);
-//                }
-//            }
-//        }
-        mHttpExecutor.interruptExecutor();
+    /**
+     * 取出等候区中尚未执行的全部请求
+     */
+    int drainTo(Collection<? super Request> collection) {
+        return mWaitingArea.drainTo(collection);
+    }
+
+    PriorityAging getAging() {
+        return mAging;
+    }
+
+    private int getSequenceNumber() {
+        return mSequenceGenerator.incrementAndGet();
     }
 
 }
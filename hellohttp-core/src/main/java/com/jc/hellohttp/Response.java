@@ -0,0 +1,67 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+/**
+ * Created by Zhang on 2017/8/4.<br/>
+ * Description: 成功的响应，通过ResponseListener.onResponse()投递
+ */
+public final class Response {
+
+    private final Request mRequest;
+    private final int mStatusCode;
+    private final String mContentType;
+    private final long mContentLength;
+    private final Object mBody;
+
+    Response(Request request, int statusCode, String contentType, long contentLength, Object body) {
+        mRequest = request;
+        mStatusCode = statusCode;
+        mContentType = contentType;
+        mContentLength = contentLength;
+        mBody = body;
+    }
+
+    public Request getRequest() {
+        return mRequest;
+    }
+
+    public int getStatusCode() {
+        return mStatusCode;
+    }
+
+    /**
+     * @return 响应头中的Content-Type，可能为null，例如来自响应备忘的结果
+     */
+    public String getContentType() {
+        return mContentType;
+    }
+
+    /**
+     * @return 响应体的长度，未知时为-1
+     */
+    public long getContentLength() {
+        return mContentLength;
+    }
+
+    /**
+     * @return ResponseDecoder解析出的结果，与RequestCallback.onSuccess()收到的相同
+     */
+    public Object getBody() {
+        return mBody;
+    }
+
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Created by Zhang on 2017/7/24.<br/>
+ * Description: 响应解析器，在HttpExecutor线程中直接从响应体的输入流解析出结果，解析结果通过RequestCallback投递<br/>
+ * 常用的解析器见{@link ResponseDecoders}
+ */
+public interface ResponseDecoder<T> {
+
+    /**
+     * 解析响应体，在HttpExecutor线程中调用，不要在此操作UI
+     *
+     * @param body          响应体的输入流，由调用方负责关闭
+     * @param contentType   响应头中的Content-Type，可能为null
+     * @param contentLength 响应体的长度，未知时为-1
+     * @return 解析结果
+     * @throws IOException 读取或解析失败，将通过RequestCallback.onError()通知
+     */
+    T decode(InputStream body, String contentType, long contentLength) throws IOException;
+
+}
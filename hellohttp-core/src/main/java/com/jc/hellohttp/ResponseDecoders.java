@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Created by Zhang on 2017/7/24.<br/>
+ * Description: 常用的响应解析器<br/>
+ * 需要解析大量JSON时推荐使用hellohttp-android模块中的JsonReaderDecoder，直接从输入流中解析，不会生成中间的String。
+ * org.json在Android上由系统提供，在普通JVM上使用JSON解析器时需要自行依赖org.json
+ */
+public final class ResponseDecoders {
+
+    private static final ResponseDecoder<String> STRING = new ResponseDecoder<String>() {
+        @Override
+        public String decode(InputStream body, String contentType, long contentLength) throws IOException {
+            return readString(body, contentType, contentLength);
+        }
+    };
+
+    private static final ResponseDecoder<byte[]> BYTES = new ResponseDecoder<byte[]>() {
+        @Override
+        public byte[] decode(InputStream body, String contentType, long contentLength) throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(contentLength > 0 && contentLength <= Integer.MAX_VALUE
+                    ? (int) contentLength : 1024 * 8);
+            byte[] buffer = new byte[1024 * 8];
+            int length;
+            while ((length = body.read(buffer)) != -1) {
+                out.write(buffer, 0, length);
+            }
+            body.close();
+            return out.toByteArray();
+        }
+    };
+
+    private ResponseDecoders() {
+    }
+
+    /**
+     * StringRequest与JsonRequest默认使用的解析器，使用Content-Type中声明的字符集（默认UTF-8），结果与响应体逐字节对应
+     */
+    public static ResponseDecoder<String> string() {
+        return STRING;
+    }
+
+    /**
+     * 读取完整的响应体，普通JVM上ImageRequest默认使用的解析器
+     */
+    public static ResponseDecoder<byte[]> bytes() {
+        return BYTES;
+    }
+
+    /**
+     * 在执行者线程中解析为JSONObject
+     */
+    public static ResponseDecoder<JSONObject> jsonObject() {
+        return new JsonObjectDecoder();
+    }
+
+    /**
+     * 在执行者线程中解析为JSONArray
+     */
+    public static ResponseDecoder<JSONArray> jsonArray() {
+        return new JsonArrayDecoder();
+    }
+
+    // JSON解析器在使用时才创建，避免在普通JVM上加载org.json
+    private static class JsonObjectDecoder implements ResponseDecoder<JSONObject> {
+        @Override
+        public JSONObject decode(InputStream body, String contentType, long contentLength) throws IOException {
+            try {
+                return new JSONObject(readString(body, contentType, contentLength));
+            } catch (JSONException e) {
+                throw new RequestException(RequestException.Kind.DECODE, "Malformed json: " + e.getMessage());
+            }
+        }
+    }
+
+    private static class JsonArrayDecoder implements ResponseDecoder<JSONArray> {
+        @Override
+        public JSONArray decode(InputStream body, String contentType, long contentLength) throws IOException {
+            try {
+                return new JSONArray(readString(body, contentType, contentLength));
+            } catch (JSONException e) {
+                throw new RequestException(RequestException.Kind.DECODE, "Malformed json: " + e.getMessage());
+            }
+        }
+    }
+
+    static String readString(InputStream body, String contentType, long contentLength) throws IOException {
+        try {
+            return TextDecoder.decode(body, contentType, contentLength);
+        } finally {
+            body.close();
+        }
+    }
+
+}
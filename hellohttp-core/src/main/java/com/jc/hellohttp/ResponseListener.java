@@ -0,0 +1,30 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+/**
+ * Created by Zhang on 2017/8/4.<br/>
+ * Description: 在执行请求的线程中直接接收结果的监听器，不经过RequestCallback所在的回调线程（Android上为主线程），
+ * 适合将结果交给CompletableFuture等继续组合，见Request.setResponseListener()<br/>
+ * 每个请求只会调用其中一个方法一次。回调时占用着执行者，不要在此进行耗时的操作，更不要等待同一请求队列中其他请求的结果
+ */
+public interface ResponseListener {
+
+    void onResponse(Response response);
+
+    void onFailure(RequestException error);
+
+}
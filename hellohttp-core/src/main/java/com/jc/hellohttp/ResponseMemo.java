@@ -0,0 +1,274 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Created by Zhang on 2017/8/1.<br/>
+ * Description: 短时间内相同GET请求的响应备忘，不依赖服务端的缓存响应头<br/>
+ * 只处理解析为String的STRING、JSON请求（未指定解析器或使用ResponseDecoders.string()），以请求方式和带参数的URL为键：
+ * 存入后ttl内直接返回备忘的响应体；之后的stale时间内先返回旧的响应体，同时以LOW优先级在后台刷新；再之后视为未命中。
+ * 未命中时相同的请求正在执行，则等待它的结果而不是再发送一次。按照响应体的字节数限制总大小，超出时淘汰最久未使用的
+ */
+final class ResponseMemo {
+
+    /**
+     * 每个条目除响应体外的估计开销
+     */
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private final long mMaxBytes;
+    private final long mTtlMillis;
+    private final long mStaleMillis;
+    private final Executor mCallbackExecutor;
+
+    // 以下字段由this保护
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    /**
+     * 正在执行的请求，以键索引
+     */
+    private final Map<String, Flight> mInFlight = new HashMap<>();
+    private long mBytes;
+    private long mHitCount;
+    private long mMissCount;
+
+    ResponseMemo(long maxBytes, long ttlMillis, long staleMillis) {
+        mMaxBytes = maxBytes;
+        mTtlMillis = ttlMillis;
+        mStaleMillis = staleMillis;
+        mCallbackExecutor = Platform.get().callbackExecutor();
+    }
+
+    /**
+     * RequestQueue.add()时调用
+     *
+     * @param queue 用于加入后台刷新的请求
+     * @return 请求是否已由备忘处理（命中，或等待相同的请求），否则调用者照常将其加入等候区
+     */
+    boolean intercept(Request request, RequestQueue queue) {
+        if (!isMemoizable(request)) {
+            return false;
+        }
+        String key = keyOf(request);
+        String body;
+        Request refresh = null;
+        synchronized (this) {
+            Entry entry = mEntries.get(key);
+            long age = entry == null ? Long.MAX_VALUE : System.currentTimeMillis() - entry.mStoredAt;
+            if (age < mTtlMillis + mStaleMillis) {
+                mHitCount++;
+                body = entry.mBody;
+                if (age >= mTtlMillis && !mInFlight.containsKey(key)) {
+                    refresh = new Request(request.getHttpUrl().toString(), request.getRequestType(), Request.RequestMethod.GET, null);
+                    refresh.setPriority(Request.Priority.LOW);
+                    refresh.setMemoKey(key);
+                    mInFlight.put(key, new Flight(refresh.getPriority()));
+                }
+            } else {
+                Flight flight = mInFlight.get(key);
+                // 正在执行的请求优先级更低时（如后台刷新）不等待它，单独执行
+                if (flight != null && flight.mPriority.compareTo(request.getPriority()) >= 0) {
+                    mHitCount++;
+                    flight.mWaiters.add(request);
+                    return true;
+                }
+                mMissCount++;
+                if (flight == null) {
+                    mInFlight.put(key, new Flight(request.getPriority()));
+                    request.setMemoKey(key);
+                }
+                return false;
+            }
+        }
+        deliver(request, body);
+        if (refresh != null && !queue.add(refresh)) {
+            synchronized (this) {
+                mInFlight.remove(key);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 带有备忘键的请求成功后调用，存入响应体并通知等待的相同请求
+     */
+    void onResponse(Request request, Object response) {
+        String key = request.getMemoKey();
+        List<Request> waiters = removeFlight(key);
+        synchronized (this) {
+            if (response instanceof String) {
+                put(key, (String) response);
+            }
+        }
+        for (Request waiter : waiters) {
+            deliver(waiter, response);
+        }
+    }
+
+    /**
+     * 带有备忘键的请求失败后调用，等待的相同请求得到同样的错误
+     */
+    void onError(Request request, RequestException error) {
+        final String errorMsg = error.getMessage();
+        for (final Request waiter : removeFlight(request.getMemoKey())) {
+            waiter.notifyFailure(error);
+            final RequestCallback<Object> callback = waiter.getCallback();
+            if (callback == null) {
+                continue;
+            }
+            mCallbackExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (!waiter.isCanceled()) {
+                        callback.onError(errorMsg);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * 带有备忘键的请求被取消而没有执行时调用，等待的相同请求重新加入请求队列，其中第一个成为新的执行者
+     */
+    void onCanceled(Request request, RequestQueue queue) {
+        for (Request waiter : removeFlight(request.getMemoKey())) {
+            queue.add(waiter);
+        }
+    }
+
+    /**
+     * 执行中的请求结束，每个键同时只有一个请求带有备忘键
+     *
+     * @return 等待它的相同请求
+     */
+    private List<Request> removeFlight(String key) {
+        synchronized (this) {
+            Flight flight = mInFlight.remove(key);
+            return flight != null ? flight.mWaiters : Collections.<Request>emptyList();
+        }
+    }
+
+    /**
+     * 请求队列停止时取出全部等待中的请求，与尚未执行的请求一起返回给调用者
+     */
+    void drainWaiters(Collection<? super Request> collection) {
+        synchronized (this) {
+            for (Flight flight : mInFlight.values()) {
+                collection.addAll(flight.mWaiters);
+            }
+            mInFlight.clear();
+        }
+    }
+
+    synchronized void clear() {
+        mEntries.clear();
+        mBytes = 0;
+    }
+
+    synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    private void put(String key, String body) {
+        long size = sizeOf(key, body);
+        Entry old = mEntries.remove(key);
+        if (old != null) {
+            mBytes -= old.mSize;
+        }
+        if (size > mMaxBytes) {
+            return;
+        }
+        mEntries.put(key, new Entry(body, size));
+        mBytes += size;
+        Iterator<Entry> iterator = mEntries.values().iterator();
+        while (mBytes > mMaxBytes && iterator.hasNext()) {
+            mBytes -= iterator.next().mSize;
+            iterator.remove();
+        }
+    }
+
+    /**
+     * 监听器在当前线程（命中时为调用add()的线程，等待相同请求时为执行者线程）中收到结果
+     */
+    private void deliver(final Request request, final Object response) {
+        if (request.getResponseListener() != null) {
+            request.notifyResponse(new Response(request, 200, null, -1, response));
+        }
+        final RequestCallback<Object> callback = request.getCallback();
+        if (callback == null) {
+            return;
+        }
+        mCallbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!request.isCanceled()) {
+                    callback.onSuccess(response);
+                }
+            }
+        });
+    }
+
+    private static boolean isMemoizable(Request request) {
+        return request.getRequestMethod() == Request.RequestMethod.GET
+                && (request.getRequestType() == Request.RequestType.STRING || request.getRequestType() == Request.RequestType.JSON)
+                && request.decodesToString()
+                && !request.isPersistable()
+                && request.getMemoKey() == null;
+    }
+
+    private static String keyOf(Request request) {
+        return request.getRequestMethod() + " " + request.getHttpUrl();
+    }
+
+    private static long sizeOf(String key, String body) {
+        // String按UTF-16存储
+        return 2L * (key.length() + body.length()) + ENTRY_OVERHEAD;
+    }
+
+    private static final class Flight {
+        final Request.Priority mPriority;
+        final List<Request> mWaiters = new ArrayList<>();
+
+        Flight(Request.Priority priority) {
+            mPriority = priority;
+        }
+    }
+
+    private static final class Entry {
+        final String mBody;
+        final long mSize;
+        final long mStoredAt = System.currentTimeMillis();
+
+        Entry(String body, long size) {
+            mBody = body;
+            mSize = size;
+        }
+    }
+
+}
@@ -0,0 +1,24 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+/**
+ * Created by Zhang on 2017/8/4.<br/>
+ * Description: 逐块处理响应体、不在内存中保留整个响应体的解析器，例如将响应体交给下游的订阅者<br/>
+ * 读取的字节不计入请求队列的内存预算，也不受响应体大小上限的限制
+ */
+public interface StreamingDecoder<T> extends ResponseDecoder<T> {
+}
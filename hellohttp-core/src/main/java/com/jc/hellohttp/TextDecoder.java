@@ -0,0 +1,164 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Created by Zhang on 2017/8/3.<br/>
+ * Description: 将响应体解码为String，使用Content-Type中声明的字符集，未声明或不支持时使用UTF-8<br/>
+ * 按块解码，结果与响应体逐字节对应，不增删换行；无法解码的字节替换为U+FFFD，与InputStreamReader相同。
+ * 已知Content-Length时按字符集的最大字符数预先分配，解码过程中不再扩容。
+ * 每个线程复用CharsetDecoder与读取缓冲区，执行者线程解析大量响应时不会重复分配
+ */
+final class TextDecoder {
+
+    private static final String TAG = TextDecoder.class.getSimpleName();
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int BUFFER_SIZE = 1024 * 8;
+    /**
+     * 未知Content-Length时结果的初始容量（字符数）
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+    /**
+     * 数组的最大长度，部分虚拟机在数组头部保留了几个字
+     */
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    private static final ThreadLocal<Buffers> BUFFERS = new ThreadLocal<Buffers>() {
+        @Override
+        protected Buffers initialValue() {
+            return new Buffers();
+        }
+    };
+
+    private TextDecoder() {
+    }
+
+    /**
+     * 读取并解码完整的响应体，不关闭输入流
+     *
+     * @param contentType   响应头中的Content-Type，可能为null
+     * @param contentLength 响应体的长度，未知时为-1
+     */
+    static String decode(InputStream body, String contentType, long contentLength) throws IOException {
+        Buffers buffers = BUFFERS.get();
+        CharsetDecoder decoder = buffers.decoder(charsetOf(contentType));
+        ByteBuffer in = buffers.mBytes;
+        in.clear();
+        CharBuffer out = CharBuffer.allocate(initialCapacity(contentLength, decoder.maxCharsPerByte()));
+        boolean eof = false;
+        while (true) {
+            if (!eof) {
+                int length = body.read(in.array(), in.arrayOffset() + in.position(), in.remaining());
+                if (length == -1) {
+                    eof = true;
+                } else {
+                    in.position(in.position() + length);
+                }
+            }
+            in.flip();
+            CoderResult result = decoder.decode(in, out, eof);
+            // 未解码完的多字节序列留在缓冲区开头，与下一次读取的字节拼接
+            in.compact();
+            if (result.isOverflow()) {
+                out = grow(out);
+            } else if (eof) {
+                break;
+            }
+        }
+        while (decoder.flush(out).isOverflow()) {
+            out = grow(out);
+        }
+        return new String(out.array(), out.arrayOffset(), out.position());
+    }
+
+    /**
+     * @return Content-Type中的charset参数，未声明或不支持时为UTF-8
+     */
+    static Charset charsetOf(String contentType) {
+        if (contentType == null) {
+            return UTF_8;
+        }
+        String[] parameters = contentType.split(";");
+        // 第一个是媒体类型
+        for (int i = 1; i < parameters.length; i++) {
+            String parameter = parameters[i];
+            int index = parameter.indexOf('=');
+            if (index == -1 || !"charset".equalsIgnoreCase(parameter.substring(0, index).trim())) {
+                continue;
+            }
+            String name = parameter.substring(index + 1).trim();
+            if (name.length() >= 2 && name.startsWith("\"") && name.endsWith("\"")) {
+                name = name.substring(1, name.length() - 1);
+            }
+            try {
+                return Charset.forName(name);
+            } catch (IllegalArgumentException e) {
+                // IllegalCharsetNameException、UnsupportedCharsetException
+                Platform.get().logInfo(TAG, "Unsupported charset " + name + ", using UTF-8");
+                return UTF_8;
+            }
+        }
+        return UTF_8;
+    }
+
+    private static int initialCapacity(long contentLength, float maxCharsPerByte) {
+        if (contentLength < 0) {
+            return INITIAL_CAPACITY;
+        }
+        // 多出的一个字符容纳flush()输出的替换字符
+        return (int) Math.min((long) Math.ceil(contentLength * (double) maxCharsPerByte) + 1, MAX_CAPACITY);
+    }
+
+    private static CharBuffer grow(CharBuffer out) throws IOException {
+        if (out.capacity() == MAX_CAPACITY) {
+            throw new IOException("Response body is too large to decode as a string");
+        }
+        int capacity = (int) Math.min(Math.max(out.capacity() * 2L, INITIAL_CAPACITY), MAX_CAPACITY);
+        CharBuffer grown = CharBuffer.allocate(capacity);
+        out.flip();
+        grown.put(out);
+        return grown;
+    }
+
+    /**
+     * 每个线程复用的解码器与读取缓冲区，解码器按最近一次使用的字符集缓存
+     */
+    private static final class Buffers {
+        final ByteBuffer mBytes = ByteBuffer.allocate(BUFFER_SIZE);
+        private CharsetDecoder mDecoder;
+
+        CharsetDecoder decoder(Charset charset) {
+            if (mDecoder == null || !mDecoder.charset().equals(charset)) {
+                mDecoder = charset.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            }
+            return mDecoder.reset();
+        }
+    }
+
+}
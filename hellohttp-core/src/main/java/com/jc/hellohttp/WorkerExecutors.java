@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Created by Zhang on 2017/7/26.<br/>
+ * Description: 运行HttpExecutor的Executor，通过HelloHttp.createRequestQueue(Executor, int)传入<br/>
+ * 任意Executor均可使用，例如自己的线程池或ForkJoinPool；请求执行在阻塞IO上，在JDK 21及以上的JVM中使用虚拟线程时，
+ * 大量并发请求不再各自占用一个平台线程
+ */
+public final class WorkerExecutors {
+
+    private static final String TAG = WorkerExecutors.class.getSimpleName();
+
+    /**
+     * 空闲线程的存活时间
+     */
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private WorkerExecutors() {
+    }
+
+    /**
+     * @return 当前运行环境是否支持虚拟线程，Android上总是返回false
+     */
+    public static boolean isVirtualThreadSupported() {
+        return findVirtualThreadFactoryMethod() != null;
+    }
+
+    /**
+     * 每个任务一个虚拟线程的Executor。不支持虚拟线程时退化为按需创建线程的线程池
+     */
+    public static ExecutorService virtualThreads() {
+        Method method = findVirtualThreadFactoryMethod();
+        if (method != null) {
+            try {
+                return (ExecutorService) method.invoke(null);
+            } catch (Exception e) {
+                Platform.get().logError(TAG, "Create virtual thread executor failed: " + e);
+            }
+        }
+        Platform.get().logInfo(TAG, "Virtual threads are not supported, use a cached thread pool instead");
+        return Executors.newCachedThreadPool(new WorkerThreadFactory());
+    }
+
+    /**
+     * 请求队列默认使用的线程池：最多maxThreads个线程，空闲超过KEEP_ALIVE_SECONDS秒后回收
+     */
+    static ThreadPoolExecutor newDefaultExecutor(int maxThreads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new WorkerThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * 进程内共享的后台线程池，运行DNS预解析、并发连接尝试等短小的阻塞任务，按需创建线程，空闲后回收
+     */
+    static Executor background() {
+        return BackgroundHolder.EXECUTOR;
+    }
+
+    private static Method findVirtualThreadFactoryMethod() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static final class BackgroundHolder {
+        static final Executor EXECUTOR = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new WorkerThreadFactory());
+    }
+
+    /**
+     * 守护线程，不阻止JVM退出
+     */
+    private static final class WorkerThreadFactory implements ThreadFactory {
+
+        private static final AtomicInteger sPoolNumber = new AtomicInteger();
+
+        private final int mPoolNumber = sPoolNumber.incrementAndGet();
+        private final AtomicInteger mThreadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "HelloHttp-" + mPoolNumber + "-worker-" + mThreadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
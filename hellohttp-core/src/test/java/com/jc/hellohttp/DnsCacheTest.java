@@ -0,0 +1,192 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by Zhang on 2017/8/21.<br/>
+ * Description: DnsCache的单元测试，以可控制的StubDns代替实际的解析
+ */
+public class DnsCacheTest {
+
+    @Test
+    public void resultIsCachedUntilTtlExpires() throws Exception {
+        StubDns dns = new StubDns();
+        DnsCache cache = new DnsCache(dns, 200);
+        assertEquals(dns.mAddresses, cache.lookup("example.com"));
+        assertEquals(dns.mAddresses, cache.lookup("example.com"));
+        assertEquals(1, dns.mCalls.get());
+        assertEquals(2, cache.getLookupCount());
+        assertEquals(1, cache.getHitCount());
+
+        Thread.sleep(300);
+        assertEquals(dns.mAddresses, cache.lookup("example.com"));
+        assertEquals(2, dns.mCalls.get());
+        assertEquals(2, cache.getResolveCount());
+    }
+
+    @Test
+    public void hostsAreCachedSeparately() throws Exception {
+        StubDns dns = new StubDns();
+        DnsCache cache = new DnsCache(dns, 60 * 1000);
+        cache.lookup("a.example.com");
+        cache.lookup("b.example.com");
+        cache.lookup("a.example.com");
+        assertEquals(2, dns.mCalls.get());
+    }
+
+    /**
+     * 同一主机的并发解析只调用一次实际的Dns，等待者得到同一个结果
+     */
+    @Test
+    public void concurrentLookupsAreCoalesced() throws Exception {
+        final StubDns dns = new StubDns();
+        dns.mBlocked = new CountDownLatch(1);
+        final DnsCache cache = new DnsCache(dns, 60 * 1000);
+        int threadCount = 8;
+        final List<List<InetAddress>> results = Collections.synchronizedList(new ArrayList<List<InetAddress>>());
+        final CountDownLatch done = new CountDownLatch(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        results.add(cache.lookup("example.com"));
+                    } catch (UnknownHostException ignored) {
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        assertTrue(dns.mEntered.await(5, TimeUnit.SECONDS));
+        // 全部线程都已进入lookup()后再放行实际的解析
+        long deadline = System.currentTimeMillis() + 5000;
+        while (cache.getLookupCount() < threadCount && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(threadCount, cache.getLookupCount());
+        dns.mBlocked.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        assertEquals(1, dns.mCalls.get());
+        assertEquals(threadCount, results.size());
+        for (List<InetAddress> result : results) {
+            assertSame(results.get(0), result);
+        }
+        assertEquals(threadCount - 1, cache.getHitCount());
+    }
+
+    /**
+     * 解析失败不缓存，下一次查询重新解析
+     */
+    @Test
+    public void failuresAreNotCached() throws Exception {
+        StubDns dns = new StubDns();
+        dns.mFailures.set(1);
+        DnsCache cache = new DnsCache(dns, 60 * 1000);
+        try {
+            cache.lookup("example.com");
+            fail();
+        } catch (UnknownHostException expected) {
+            assertTrue(expected.getMessage().contains("stub failure"));
+        }
+        assertEquals(dns.mAddresses, cache.lookup("example.com"));
+        assertEquals(2, dns.mCalls.get());
+    }
+
+    @Test
+    public void emptyResultIsAFailure() throws Exception {
+        StubDns dns = new StubDns();
+        dns.mAddresses = Collections.emptyList();
+        DnsCache cache = new DnsCache(dns, 60 * 1000);
+        try {
+            cache.lookup("example.com");
+            fail();
+        } catch (UnknownHostException expected) {
+            assertTrue(expected.getMessage().contains("no addresses"));
+        }
+        try {
+            cache.lookup("example.com");
+            fail();
+        } catch (UnknownHostException expected) {
+            // 同样不缓存
+        }
+        assertEquals(2, dns.mCalls.get());
+    }
+
+    /**
+     * 替换Dns时清空缓存
+     */
+    @Test
+    public void setDelegateClearsCache() throws Exception {
+        StubDns first = new StubDns();
+        StubDns second = new StubDns();
+        DnsCache cache = new DnsCache(first, 60 * 1000);
+        cache.lookup("example.com");
+        cache.setDelegate(second);
+        cache.lookup("example.com");
+        assertEquals(1, first.mCalls.get());
+        assertEquals(1, second.mCalls.get());
+    }
+
+    /**
+     * 可控制的Dns：记录调用次数，可以指定先失败几次，或者阻塞到放行为止
+     */
+    private static final class StubDns implements Dns {
+
+        final AtomicInteger mCalls = new AtomicInteger();
+        final AtomicInteger mFailures = new AtomicInteger();
+        final CountDownLatch mEntered = new CountDownLatch(1);
+        volatile CountDownLatch mBlocked;
+        volatile List<InetAddress> mAddresses;
+
+        StubDns() throws UnknownHostException {
+            mAddresses = Collections.singletonList(InetAddress.getByAddress("example.com", new byte[]{127, 0, 0, 1}));
+        }
+
+        @Override
+        public List<InetAddress> lookup(String host) throws UnknownHostException {
+            mCalls.incrementAndGet();
+            mEntered.countDown();
+            CountDownLatch blocked = mBlocked;
+            if (blocked != null) {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    throw new UnknownHostException("interrupted");
+                }
+            }
+            if (mFailures.getAndDecrement() > 0) {
+                throw new UnknownHostException("stub failure for " + host);
+            }
+            return mAddresses;
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by Zhang on 2017/8/21.<br/>
+ * Description: HappyEyeballs的单元测试。尝试由RecordingExecutor运行，它记录每个尝试开始的时间，
+ * 并且可以扣住某个尝试不运行，模拟一个既不成功也不失败的地址（如不可达的IPv6），与网络环境无关
+ */
+public class HappyEyeballsTest {
+
+    private ServerSocket mServer;
+    private InetAddress mIpv4;
+    private InetAddress mIpv6;
+
+    @Before
+    public void setUp() throws IOException {
+        mIpv4 = InetAddress.getByAddress(new byte[]{127, 0, 0, 1});
+        // ::1，服务器只监听127.0.0.1，连接到该地址会立即失败
+        mIpv6 = InetAddress.getByAddress(new byte[]{0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1});
+        mServer = new ServerSocket(0, 50, mIpv4);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServer.close();
+    }
+
+    /**
+     * 第一个地址没有结果时，间隔CONNECT_ATTEMPT_DELAY后开始下一个，由后者建立连接
+     */
+    @Test
+    public void pendingAttemptIsRacedAfterDelay() throws IOException {
+        RecordingExecutor executor = new RecordingExecutor(0);
+        long start = System.nanoTime();
+        Socket socket = HappyEyeballs.connect(Arrays.asList(mIpv6, mIpv4), mServer.getLocalPort(), 5000, executor);
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+        try {
+            assertTrue(socket.isConnected());
+            assertEquals(mIpv4, socket.getInetAddress());
+            assertEquals(2, executor.mStartNanos.size());
+            long delayMillis = (executor.mStartNanos.get(1) - executor.mStartNanos.get(0)) / 1000000;
+            assertTrue("second attempt after " + delayMillis + " ms", delayMillis >= Config.CONNECT_ATTEMPT_DELAY - 10);
+            // 不等待第一个尝试的连接超时
+            assertTrue("connected after " + elapsedMillis + " ms", elapsedMillis < Config.CONNECT_ATTEMPT_DELAY + 2000);
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * 第一个地址失败时立即开始下一个，不等待CONNECT_ATTEMPT_DELAY
+     */
+    @Test
+    public void failedAttemptStartsNextImmediately() throws IOException {
+        RecordingExecutor executor = new RecordingExecutor(-1);
+        Socket socket = HappyEyeballs.connect(Arrays.asList(mIpv6, mIpv4), mServer.getLocalPort(), 5000, executor);
+        try {
+            assertEquals(mIpv4, socket.getInetAddress());
+            long delayMillis = (executor.mStartNanos.get(1) - executor.mStartNanos.get(0)) / 1000000;
+            assertTrue("second attempt after " + delayMillis + " ms", delayMillis < Config.CONNECT_ATTEMPT_DELAY);
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void allAttemptsFailing() throws IOException {
+        int port = mServer.getLocalPort();
+        mServer.close();
+        try {
+            HappyEyeballs.connect(Arrays.asList(mIpv6, mIpv4), port, 5000, new RecordingExecutor(-1));
+            fail();
+        } catch (IOException expected) {
+            // 最后一个失败的原因
+        }
+    }
+
+    @Test
+    public void addressesAreInterleavedByFamily() throws IOException {
+        InetAddress v6a = InetAddress.getByName("2001:db8::1");
+        InetAddress v6b = InetAddress.getByName("2001:db8::2");
+        InetAddress v4a = InetAddress.getByName("192.0.2.1");
+        InetAddress v4b = InetAddress.getByName("192.0.2.2");
+        assertEquals(Arrays.asList(v6a, v4a, v6b, v4b), HappyEyeballs.interleave(Arrays.asList(v6a, v6b, v4a, v4b)));
+        assertEquals(Arrays.asList(v4a, v6a, v4b, v6b), HappyEyeballs.interleave(Arrays.asList(v4a, v4b, v6a, v6b)));
+        assertEquals(Arrays.asList(v4a, v6a, v4b), HappyEyeballs.interleave(Arrays.asList(v4a, v4b, v6a)));
+    }
+
+    /**
+     * 在新线程中运行尝试并记录开始时间，指定下标的尝试被扣住不运行
+     */
+    private static final class RecordingExecutor implements Executor {
+
+        final List<Long> mStartNanos = new ArrayList<>();
+        private final int mHeldIndex;
+
+        RecordingExecutor(int heldIndex) {
+            mHeldIndex = heldIndex;
+        }
+
+        @Override
+        public synchronized void execute(Runnable command) {
+            mStartNanos.add(System.nanoTime());
+            if (mStartNanos.size() - 1 == mHeldIndex) {
+                return;
+            }
+            new Thread(command).start();
+        }
+    }
+
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by Zhang on 2017/8/21.<br/>
+ * Description: Hpack的单元测试，解码器以RFC 7541附录C.3～C.6的示例验证，每组示例的多个头部块共享同一个解码器（动态表）
+ */
+public class HpackTest {
+
+    private static final String DATE_1 = "Mon, 21 Oct 2013 20:13:21 GMT";
+    private static final String DATE_2 = "Mon, 21 Oct 2013 20:13:22 GMT";
+    private static final String LOCATION = "https://www.example.com";
+    private static final String COOKIE = "foo=ASDJKHQKBZXOQWEOPIUAXQWEOIU; max-age=3600; version=1";
+
+    /**
+     * C.3 不使用Huffman编码的请求
+     */
+    @Test
+    public void requestsWithoutHuffman() throws IOException {
+        Hpack.Decoder decoder = new Hpack.Decoder(Hpack.DEFAULT_HEADER_TABLE_SIZE);
+        assertDecoded(decoder, "828684410f7777772e6578616d706c652e636f6d",
+                ":method", "GET", ":scheme", "http", ":path", "/", ":authority", "www.example.com");
+        assertDecoded(decoder, "828684be58086e6f2d6361636865",
+                ":method", "GET", ":scheme", "http", ":path", "/", ":authority", "www.example.com",
+                "cache-control", "no-cache");
+        assertDecoded(decoder, "828785bf400a637573746f6d2d6b65790c637573746f6d2d76616c7565",
+                ":method", "GET", ":scheme", "https", ":path", "/index.html", ":authority", "www.example.com",
+                "custom-key", "custom-value");
+    }
+
+    /**
+     * C.4 使用Huffman编码的请求
+     */
+    @Test
+    public void requestsWithHuffman() throws IOException {
+        Hpack.Decoder decoder = new Hpack.Decoder(Hpack.DEFAULT_HEADER_TABLE_SIZE);
+        assertDecoded(decoder, "828684418cf1e3c2e5f23a6ba0ab90f4ff",
+                ":method", "GET", ":scheme", "http", ":path", "/", ":authority", "www.example.com");
+        assertDecoded(decoder, "828684be5886a8eb10649cbf",
+                ":method", "GET", ":scheme", "http", ":path", "/", ":authority", "www.example.com",
+                "cache-control", "no-cache");
+        assertDecoded(decoder, "828785bf408825a849e95ba97d7f8925a849e95bb8e8b4bf",
+                ":method", "GET", ":scheme", "https", ":path", "/index.html", ":authority", "www.example.com",
+                "custom-key", "custom-value");
+    }
+
+    /**
+     * C.5 不使用Huffman编码的响应，动态表上限为256字节，后加入的条目逐出最旧的条目
+     */
+    @Test
+    public void responsesWithoutHuffman() throws IOException {
+        Hpack.Decoder decoder = new Hpack.Decoder(256);
+        assertDecoded(decoder, "4803333032580770726976617465611d4d6f6e2c203231204f637420323031332032303a31333a323120474d"
+                        + "546e1768747470733a2f2f7777772e6578616d706c652e636f6d",
+                ":status", "302", "cache-control", "private", "date", DATE_1, "location", LOCATION);
+        assertDecoded(decoder, "4803333037c1c0bf",
+                ":status", "307", "cache-control", "private", "date", DATE_1, "location", LOCATION);
+        // 动态表此时有4个条目（62～65），":status: 302"已被逐出
+        assertOutOfRange(decoder, 66);
+        assertDecoded(decoder, "88c1611d4d6f6e2c203231204f637420323031332032303a31333a323220474d54c05a04677a69707738666f"
+                        + "6f3d4153444a4b48514b425a584f5157454f50495541585157454f49553b206d61782d6167653d333630303b"
+                        + "2076657273696f6e3d31",
+                ":status", "200", "cache-control", "private", "date", DATE_2, "location", LOCATION,
+                "content-encoding", "gzip", "set-cookie", COOKIE);
+        // 动态表此时有3个条目（62～64）
+        assertOutOfRange(decoder, 65);
+    }
+
+    /**
+     * C.6 使用Huffman编码的响应
+     */
+    @Test
+    public void responsesWithHuffman() throws IOException {
+        Hpack.Decoder decoder = new Hpack.Decoder(256);
+        assertDecoded(decoder, "488264025885aec3771a4b6196d07abe941054d444a8200595040b8166e082a62d1bff6e919d29ad171863"
+                        + "c78f0b97c8e9ae82ae43d3",
+                ":status", "302", "cache-control", "private", "date", DATE_1, "location", LOCATION);
+        assertDecoded(decoder, "4883640effc1c0bf",
+                ":status", "307", "cache-control", "private", "date", DATE_1, "location", LOCATION);
+        assertDecoded(decoder, "88c16196d07abe941054d444a8200595040b8166e084a62d1bffc05a839bd9ab77ad94e7821dd7f2e6c7b3"
+                        + "35dfdfcd5b3960d5af27087f3672c1ab270fb5291f9587316065c003ed4ee5b1063d5007",
+                ":status", "200", "cache-control", "private", "date", DATE_2, "location", LOCATION,
+                "content-encoding", "gzip", "set-cookie", COOKIE);
+        assertOutOfRange(decoder, 65);
+    }
+
+    /**
+     * 编码器只使用静态表，编码结果由解码器还原
+     */
+    @Test
+    public void encoderRoundTrip() throws IOException {
+        String longValue = new String(new char[300]).replace('\0', 'v');
+        byte[] block = new Hpack.Encoder()
+                .header(":method", "GET")
+                .header(":path", "/a/b?c=d")
+                .header("content-length", "42")
+                .header("x-custom", longValue)
+                .toByteArray();
+        List<String> headers = new Hpack.Decoder(Hpack.DEFAULT_HEADER_TABLE_SIZE).decode(block, 0, block.length);
+        assertEquals(Arrays.asList(":method", "GET", ":path", "/a/b?c=d", "content-length", "42", "x-custom", longValue), headers);
+        // ":method: GET"完整地在静态表中，编码为一个字节
+        assertEquals((byte) 0x82, block[0]);
+    }
+
+    @Test
+    public void dynamicTableSizeUpdateAboveSettingIsRejected() {
+        Hpack.Decoder decoder = new Hpack.Decoder(256);
+        try {
+            // 大小更新为4096，超过SETTINGS中声明的256
+            decoder.decode(hex("3fe11f"), 0, 3);
+            fail();
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("dynamic table size"));
+        }
+    }
+
+    @Test
+    public void truncatedBlockIsRejected() {
+        Hpack.Decoder decoder = new Hpack.Decoder(Hpack.DEFAULT_HEADER_TABLE_SIZE);
+        byte[] block = hex("410f7777772e6578616d706c65");
+        try {
+            decoder.decode(block, 0, block.length);
+            fail();
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("out of range"));
+        }
+    }
+
+    private static void assertDecoded(Hpack.Decoder decoder, String hex, String... expected) throws IOException {
+        byte[] block = hex(hex);
+        assertEquals(Arrays.asList(expected), decoder.decode(block, 0, block.length));
+    }
+
+    /**
+     * 引用动态表中不存在的索引，用于确认动态表中的条目数
+     */
+    private static void assertOutOfRange(Hpack.Decoder decoder, int index) {
+        byte[] block = {(byte) (0x80 | index)};
+        try {
+            decoder.decode(block, 0, block.length);
+            fail("index " + index + " should be out of range");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("out of range"));
+        }
+    }
+
+    private static byte[] hex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        }
+        return bytes;
+    }
+
+}
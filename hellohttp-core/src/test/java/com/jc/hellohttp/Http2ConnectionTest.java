@@ -0,0 +1,393 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.security.KeyStore;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManagerFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by Zhang on 2017/8/21.<br/>
+ * Description: HTTP/2连接的单元测试：收发两个方向的流量控制窗口、REFUSED_STREAM与GOAWAY之后的重试、回退到HTTP/1.1。
+ * 请求通过RequestQueue发送到进程内的Http2TestServer
+ */
+public class Http2ConnectionTest {
+
+    private static final int TIMEOUT_SECONDS = 10;
+
+    private Http2TestServer mServer;
+    private RequestQueue mQueue;
+
+    @After
+    public void tearDown() {
+        if (mQueue != null) {
+            mQueue.shutdownNow();
+        }
+        if (mServer != null) {
+            mServer.stop();
+        }
+    }
+
+    /**
+     * 响应体超过流级（1MB）与连接级（16MB）的接收窗口，服务器只有收到WINDOW_UPDATE才能发送完
+     */
+    @Test
+    public void receiveWindowsAreReplenishedWhileReading() throws Exception {
+        mServer = new Http2TestServer();
+        mQueue = newQueue(Protocol.H2_PRIOR_KNOWLEDGE);
+        int size = 20 * 1024 * 1024;
+        BlockingCallback<Long> callback = new BlockingCallback<>();
+        mQueue.add(new Request(mServer.url("/bytes?size=" + size), Request.RequestType.STRING, Request.RequestMethod.GET,
+                null, new CountingDecoder(), callback));
+        assertEquals(Long.valueOf(size), callback.await());
+        assertTrue(mServer.streamWindowIncrements() >= size - Http2Connection.LOCAL_INITIAL_WINDOW_SIZE);
+        assertTrue(mServer.connectionWindowIncrements() >= size - Http2Framer.DEFAULT_INITIAL_WINDOW_SIZE);
+    }
+
+    /**
+     * 服务器声明1024字节的流接收窗口，请求体按窗口分帧发送，收到WINDOW_UPDATE后继续
+     */
+    @Test
+    public void requestBodyRespectsPeerStreamWindow() throws Exception {
+        mServer = new Http2TestServer(1024);
+        mQueue = newQueue(Protocol.H2_PRIOR_KNOWLEDGE);
+        // 第一个响应到达时服务器的SETTINGS一定已经生效
+        assertEquals("a", execute(mServer.url("/bytes?size=1")));
+
+        String value = repeat('b', 10000);
+        BlockingCallback<String> callback = new BlockingCallback<>();
+        mQueue.add(new Request(mServer.url("/echo"), Request.RequestType.STRING,
+                Collections.singletonMap("k", value), callback));
+        assertEquals("k=" + value, callback.await());
+        assertTrue("max DATA frame " + mServer.maxDataFrameLength(), mServer.maxDataFrameLength() <= 1024);
+        assertTrue(mServer.dataFrameCount() >= 10);
+    }
+
+    @Test
+    public void refusedStreamIsRetried() throws Exception {
+        mServer = new Http2TestServer();
+        mQueue = newQueue(Protocol.H2_PRIOR_KNOWLEDGE);
+        mServer.refuseNextStreams(1, Http2Framer.REFUSED_STREAM);
+        assertEquals("aaaaa", execute(mServer.url("/bytes?size=5")));
+        assertEquals(2, mServer.streamCount());
+        // RST_STREAM只影响该流，在同一个连接上重试
+        assertEquals(1, mServer.acceptedCount());
+    }
+
+    @Test
+    public void refusedStreamIsRetriedOnlyOnce() throws Exception {
+        mServer = new Http2TestServer();
+        mQueue = newQueue(Protocol.H2_PRIOR_KNOWLEDGE);
+        mServer.refuseNextStreams(2, Http2Framer.REFUSED_STREAM);
+        BlockingCallback<String> callback = new BlockingCallback<>();
+        mQueue.add(new Request(mServer.url("/bytes?size=5"), Request.RequestType.STRING, callback));
+        assertNotNull(callback.awaitError());
+        assertEquals(2, mServer.streamCount());
+    }
+
+    /**
+     * 对方可能已经处理了被其他错误码重置的流，不能重试
+     */
+    @Test
+    public void streamResetWithOtherErrorIsNotRetried() throws Exception {
+        mServer = new Http2TestServer();
+        mQueue = newQueue(Protocol.H2_PRIOR_KNOWLEDGE);
+        mServer.refuseNextStreams(1, Http2Framer.INTERNAL_ERROR);
+        BlockingCallback<String> callback = new BlockingCallback<>();
+        mQueue.add(new Request(mServer.url("/bytes?size=5"), Request.RequestType.STRING, callback));
+        assertNotNull(callback.awaitError());
+        assertEquals(1, mServer.streamCount());
+    }
+
+    /**
+     * GOAWAY中的最后一个流ID小于请求的流，请求在新的连接上重试
+     */
+    @Test
+    public void goAwayIsRetriedOnNewConnection() throws Exception {
+        mServer = new Http2TestServer();
+        mQueue = newQueue(Protocol.H2_PRIOR_KNOWLEDGE);
+        assertEquals("a", execute(mServer.url("/bytes?size=1")));
+        mServer.goAwayOnNextStream();
+        assertEquals("aaa", execute(mServer.url("/bytes?size=3")));
+        assertEquals(3, mServer.streamCount());
+        assertEquals(2, mServer.acceptedCount());
+        // 之后的请求继续使用新的连接
+        assertEquals("aa", execute(mServer.url("/bytes?size=2")));
+        assertEquals(2, mServer.acceptedCount());
+    }
+
+    /**
+     * Protocol.HTTP_2下http请求不尝试h2c，直接使用HttpURLConnection
+     */
+    @Test
+    public void cleartextRequestsFallBackToHttp1() throws Exception {
+        final AtomicInteger http1Requests = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                if ("HTTP/1.1".equals(exchange.getProtocol())) {
+                    http1Requests.incrementAndGet();
+                }
+                byte[] body = "http1".getBytes("UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+        try {
+            String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+            assertNull(new Http2ConnectionPool(Protocol.HTTP_2, Dns.SYSTEM, 1000).get(new URL(url)));
+            mQueue = newQueue(Protocol.HTTP_2);
+            assertEquals("http1", execute(url));
+            assertEquals(1, http1Requests.get());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * ALPN协商结果为http/1.1的主机被记住，之后不再尝试建立HTTP/2连接
+     */
+    @Test
+    public void alpnHttp1HostIsRemembered() throws Exception {
+        final Method setApplicationProtocols = findMethod(SSLParameters.class, "setApplicationProtocols", String[].class);
+        Assume.assumeNotNull(setApplicationProtocols, findMethod(SSLSocket.class, "getApplicationProtocol"));
+        SSLContext context = newSslContext();
+        final SSLServerSocket serverSocket = (SSLServerSocket) context.getServerSocketFactory()
+                .createServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        final AtomicInteger handshakes = new AtomicInteger();
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!serverSocket.isClosed()) {
+                    try {
+                        SSLSocket socket = (SSLSocket) serverSocket.accept();
+                        // 在握手之前计数，客户端的握手完成时一定已经计入
+                        handshakes.incrementAndGet();
+                        SSLParameters parameters = socket.getSSLParameters();
+                        setApplicationProtocols.invoke(parameters, (Object) new String[]{"http/1.1"});
+                        socket.setSSLParameters(parameters);
+                        socket.startHandshake();
+                        socket.close();
+                    } catch (Exception e) {
+                        return;
+                    }
+                }
+            }
+        }, "Http2ConnectionTest-tls");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        SSLSocketFactory defaultFactory = HttpsURLConnection.getDefaultSSLSocketFactory();
+        HttpsURLConnection.setDefaultSSLSocketFactory(context.getSocketFactory());
+        try {
+            URL url = new URL("https://127.0.0.1:" + serverSocket.getLocalPort() + "/");
+            Http2ConnectionPool pool = new Http2ConnectionPool(Protocol.HTTP_2, Dns.SYSTEM, 1000);
+            assertNull(pool.get(url));
+            assertEquals(1, handshakes.get());
+            assertNull(pool.get(url));
+            assertEquals(1, handshakes.get());
+        } finally {
+            HttpsURLConnection.setDefaultSSLSocketFactory(defaultFactory);
+            serverSocket.close();
+        }
+    }
+
+    /**
+     * 流ID用尽时newStream()从连接池中移除连接。另一个线程此时持有连接池并检查连接是否可用（如get()），
+     * 两者不能互相等待
+     */
+    @Test
+    public void exhaustedStreamIdsDoNotDeadlockWithPool() throws Exception {
+        mServer = new Http2TestServer();
+        final Http2ConnectionPool pool = new Http2ConnectionPool(Protocol.H2_PRIOR_KNOWLEDGE, Dns.SYSTEM, 60 * 1000);
+        final Http2Connection connection = pool.get(new URL(mServer.url("/")));
+        assertNotNull(connection);
+        // 模拟已经用完2^31个流ID
+        Field nextStreamId = Http2Connection.class.getDeclaredField("mNextStreamId");
+        nextStreamId.setAccessible(true);
+        nextStreamId.setInt(connection, -1);
+
+        final AtomicReference<Throwable> streamError = new AtomicReference<>();
+        final Thread executor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    connection.newStream(new byte[0], true, 16);
+                } catch (Throwable e) {
+                    streamError.set(e);
+                }
+            }
+        }, "Http2ConnectionTest-executor");
+        final AtomicBoolean usable = new AtomicBoolean(true);
+        Thread checker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (pool) {
+                    executor.start();
+                    // 等待执行者在remove()中等待连接池
+                    while (executor.getState() != Thread.State.BLOCKED && executor.isAlive()) {
+                        Thread.yield();
+                    }
+                    usable.set(connection.isUsable());
+                }
+            }
+        }, "Http2ConnectionTest-checker");
+        executor.setDaemon(true);
+        checker.setDaemon(true);
+        checker.start();
+        checker.join(TIMEOUT_SECONDS * 1000);
+        executor.join(TIMEOUT_SECONDS * 1000);
+        assertFalse("deadlock between newStream() and the pool", checker.isAlive() || executor.isAlive());
+        assertFalse(usable.get());
+        assertTrue(streamError.get() instanceof Http2Exception);
+        assertTrue(((Http2Exception) streamError.get()).isRefused());
+        assertNotSame(connection, pool.get(new URL(mServer.url("/"))));
+    }
+
+    private static RequestQueue newQueue(Protocol protocol) {
+        RequestQueue queue = new RequestQueue();
+        queue.setProtocol(protocol);
+        return queue;
+    }
+
+    private String execute(String url) throws Exception {
+        BlockingCallback<String> callback = new BlockingCallback<>();
+        mQueue.add(new Request(url, Request.RequestType.STRING, callback));
+        return callback.await();
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        java.util.Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    private static Method findMethod(Class<?> clazz, String name, Class<?>... parameterTypes) {
+        try {
+            return clazz.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 服务端使用localhost.jks中的自签名证书（SAN为127.0.0.1），客户端只信任该证书
+     */
+    private static SSLContext newSslContext() throws Exception {
+        char[] password = "password".toCharArray();
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        InputStream in = Http2ConnectionTest.class.getResourceAsStream("/localhost.jks");
+        try {
+            keyStore.load(in, password);
+        } finally {
+            in.close();
+        }
+        KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, password);
+        TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagerFactory.init(keyStore);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(keyManagerFactory.getKeyManagers(), trustManagerFactory.getTrustManagers(), null);
+        return context;
+    }
+
+    /**
+     * 统计响应体的字节数，不缓存响应体，也不受响应体大小上限的限制
+     */
+    private static final class CountingDecoder implements StreamingDecoder<Long> {
+        @Override
+        public Long decode(InputStream body, String contentType, long contentLength) throws IOException {
+            byte[] buffer = new byte[16 * 1024];
+            long count = 0;
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                count += read;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * 等待请求结束的回调
+     */
+    static final class BlockingCallback<T> implements RequestCallback<T> {
+
+        private final CountDownLatch mDone = new CountDownLatch(1);
+        private volatile T mResponse;
+        private volatile String mError;
+
+        @Override
+        public void onSuccess(T response) {
+            mResponse = response;
+            mDone.countDown();
+        }
+
+        @Override
+        public void onError(String errorMsg) {
+            mError = errorMsg;
+            mDone.countDown();
+        }
+
+        T await() throws InterruptedException {
+            assertTrue("Timed out", mDone.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            if (mError != null) {
+                fail("Request failed: " + mError);
+            }
+            return mResponse;
+        }
+
+        String awaitError() throws InterruptedException {
+            assertTrue("Timed out", mDone.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            assertNull("Unexpected response", mResponse);
+            return mError;
+        }
+    }
+
+}
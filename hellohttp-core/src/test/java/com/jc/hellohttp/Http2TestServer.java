@@ -0,0 +1,447 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.jc.hellohttp.Http2Framer.*;
+
+/**
+ * Created by Zhang on 2017/8/21.<br/>
+ * Description: 单元测试使用的进程内明文HTTP/2（h2c，prior knowledge）服务器，复用客户端的Http2Framer与Hpack<br/>
+ * /bytes?size=n返回n个字节，/echo返回请求体。发送响应时遵守客户端的流量控制窗口，收到请求体后立即归还窗口；
+ * 可以指定接下来的流以RST_STREAM拒绝或以GOAWAY拒绝，并记录收到的DATA帧与WINDOW_UPDATE，供测试检查
+ */
+final class Http2TestServer {
+
+    private final ServerSocket mServerSocket;
+    /**
+     * 通过SETTINGS声明的流接收窗口，即客户端发送请求体时的流级窗口
+     */
+    private final int mInitialWindowSize;
+    private final ExecutorService mExecutor = Executors.newCachedThreadPool();
+    private final Set<Connection> mConnections = Collections.newSetFromMap(new ConcurrentHashMap<Connection, Boolean>());
+
+    private final AtomicInteger mAcceptedCount = new AtomicInteger();
+    private final AtomicInteger mStreamCount = new AtomicInteger();
+    private final AtomicInteger mMaxDataFrameLength = new AtomicInteger();
+    private final AtomicInteger mDataFrameCount = new AtomicInteger();
+    private final AtomicLong mStreamWindowIncrements = new AtomicLong();
+    private final AtomicLong mConnectionWindowIncrements = new AtomicLong();
+
+    // 以下字段由this保护
+    private int mRefuseCount;
+    private int mRefuseErrorCode;
+    private boolean mGoAwayOnNextStream;
+
+    Http2TestServer() throws IOException {
+        this(1024 * 1024);
+    }
+
+    Http2TestServer(int initialWindowSize) throws IOException {
+        mInitialWindowSize = initialWindowSize;
+        mServerSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!mServerSocket.isClosed()) {
+                    try {
+                        Socket socket = mServerSocket.accept();
+                        socket.setTcpNoDelay(true);
+                        mAcceptedCount.incrementAndGet();
+                        Connection connection = new Connection(socket);
+                        mConnections.add(connection);
+                        mExecutor.execute(connection);
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            }
+        }, "Http2TestServer-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    String url(String path) {
+        return "http://127.0.0.1:" + mServerSocket.getLocalPort() + path;
+    }
+
+    /**
+     * 接下来的count个流以RST_STREAM(errorCode)结束，不处理请求
+     */
+    synchronized void refuseNextStreams(int count, int errorCode) {
+        mRefuseCount = count;
+        mRefuseErrorCode = errorCode;
+    }
+
+    /**
+     * 收到下一个流时发送GOAWAY，其中的最后一个流ID小于该流，表示该流没有被处理
+     */
+    synchronized void goAwayOnNextStream() {
+        mGoAwayOnNextStream = true;
+    }
+
+    /**
+     * @return 接受过的连接总数
+     */
+    int acceptedCount() {
+        return mAcceptedCount.get();
+    }
+
+    /**
+     * @return 收到过的流总数，包括被拒绝的流
+     */
+    int streamCount() {
+        return mStreamCount.get();
+    }
+
+    int maxDataFrameLength() {
+        return mMaxDataFrameLength.get();
+    }
+
+    int dataFrameCount() {
+        return mDataFrameCount.get();
+    }
+
+    /**
+     * @return 客户端通过流级WINDOW_UPDATE归还的字节数之和
+     */
+    long streamWindowIncrements() {
+        return mStreamWindowIncrements.get();
+    }
+
+    /**
+     * @return 客户端通过连接级WINDOW_UPDATE扩大的字节数之和，包括建立连接时的扩大
+     */
+    long connectionWindowIncrements() {
+        return mConnectionWindowIncrements.get();
+    }
+
+    void stop() {
+        try {
+            mServerSocket.close();
+        } catch (IOException ignored) {
+        }
+        for (Connection connection : mConnections) {
+            connection.close();
+        }
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * 服务端的一个流
+     */
+    private static final class Stream {
+        final int mId;
+        List<String> mHeaders;
+        final ByteArrayOutputStream mBody = new ByteArrayOutputStream();
+        long mSendWindow;
+        boolean mReset;
+
+        Stream(int id, long sendWindow) {
+            mId = id;
+            mSendWindow = sendWindow;
+        }
+    }
+
+    private final class Connection implements Runnable {
+
+        private final Socket mSocket;
+        private volatile Http2Framer mFramer;
+        private final Hpack.Decoder mDecoder = new Hpack.Decoder(Hpack.DEFAULT_HEADER_TABLE_SIZE);
+
+        // 以下字段由this保护
+        private final Map<Integer, Stream> mStreams = new HashMap<>();
+        private long mSendWindow = DEFAULT_INITIAL_WINDOW_SIZE;
+        private int mPeerInitialWindowSize = DEFAULT_INITIAL_WINDOW_SIZE;
+        private boolean mClosed;
+
+        Connection(Socket socket) {
+            mSocket = socket;
+        }
+
+        @Override
+        public void run() {
+            try {
+                // 逐字节读取连接前言，之后的数据交给Http2Framer的缓冲区
+                byte[] preface = new byte[CONNECTION_PREFACE.length];
+                new DataInputStream(mSocket.getInputStream()).readFully(preface);
+                if (!Arrays.equals(preface, CONNECTION_PREFACE)) {
+                    throw new IOException("Bad connection preface");
+                }
+                mFramer = new Http2Framer(mSocket.getInputStream(), mSocket.getOutputStream());
+                mFramer.writeSettings(SETTINGS_INITIAL_WINDOW_SIZE, mInitialWindowSize);
+                mFramer.flush();
+                while (mFramer.nextFrame()) {
+                    readFrame();
+                }
+            } catch (IOException ignored) {
+                // 客户端关闭连接
+            } finally {
+                close();
+            }
+        }
+
+        private void readFrame() throws IOException {
+            int streamId = mFramer.streamId();
+            int length = mFramer.length();
+            int flags = mFramer.flags();
+            switch (mFramer.type()) {
+                case TYPE_HEADERS: {
+                    int blockLength = length;
+                    if ((flags & FLAG_PRIORITY) != 0) {
+                        mFramer.skipPayload(5);
+                        blockLength -= 5;
+                    }
+                    // 客户端不使用填充，头部块不超过一个帧
+                    byte[] block = new byte[blockLength];
+                    mFramer.readPayload(block, 0, blockLength);
+                    List<String> headers = mDecoder.decode(block, 0, blockLength);
+                    mStreamCount.incrementAndGet();
+                    Stream stream;
+                    synchronized (this) {
+                        stream = new Stream(streamId, mPeerInitialWindowSize);
+                        stream.mHeaders = headers;
+                        mStreams.put(streamId, stream);
+                    }
+                    if ((flags & FLAG_END_STREAM) != 0) {
+                        dispatch(stream);
+                    }
+                    break;
+                }
+                case TYPE_DATA: {
+                    byte[] data = new byte[length];
+                    mFramer.readPayload(data, 0, length);
+                    mDataFrameCount.incrementAndGet();
+                    updateMax(mMaxDataFrameLength, length);
+                    Stream stream;
+                    synchronized (this) {
+                        stream = mStreams.get(streamId);
+                    }
+                    if (stream != null) {
+                        stream.mBody.write(data, 0, length);
+                    }
+                    if (length > 0) {
+                        // 请求体全部缓存在内存中，收到即归还窗口
+                        mFramer.writeWindowUpdate(0, length);
+                        if ((flags & FLAG_END_STREAM) == 0) {
+                            mFramer.writeWindowUpdate(streamId, length);
+                        }
+                        mFramer.flush();
+                    }
+                    if (stream != null && (flags & FLAG_END_STREAM) != 0) {
+                        dispatch(stream);
+                    }
+                    break;
+                }
+                case TYPE_SETTINGS: {
+                    if ((flags & FLAG_ACK) != 0) {
+                        break;
+                    }
+                    synchronized (this) {
+                        for (int i = 0; i < length; i += 6) {
+                            int id = mFramer.readUnsignedByte() << 8 | mFramer.readUnsignedByte();
+                            int value = mFramer.readInt();
+                            if (id == SETTINGS_INITIAL_WINDOW_SIZE) {
+                                for (Stream stream : mStreams.values()) {
+                                    stream.mSendWindow += value - mPeerInitialWindowSize;
+                                }
+                                mPeerInitialWindowSize = value;
+                            }
+                        }
+                        notifyAll();
+                    }
+                    mFramer.writeSettingsAck();
+                    mFramer.flush();
+                    break;
+                }
+                case TYPE_WINDOW_UPDATE: {
+                    int increment = mFramer.readInt() & 0x7fffffff;
+                    synchronized (this) {
+                        if (streamId == 0) {
+                            mConnectionWindowIncrements.addAndGet(increment);
+                            mSendWindow += increment;
+                        } else {
+                            mStreamWindowIncrements.addAndGet(increment);
+                            Stream stream = mStreams.get(streamId);
+                            if (stream != null) {
+                                stream.mSendWindow += increment;
+                            }
+                        }
+                        notifyAll();
+                    }
+                    break;
+                }
+                case TYPE_RST_STREAM: {
+                    mFramer.readInt();
+                    synchronized (this) {
+                        Stream stream = mStreams.remove(streamId);
+                        if (stream != null) {
+                            stream.mReset = true;
+                        }
+                        notifyAll();
+                    }
+                    break;
+                }
+                case TYPE_PING: {
+                    byte[] payload = new byte[8];
+                    mFramer.readPayload(payload, 0, 8);
+                    if ((flags & FLAG_ACK) == 0) {
+                        mFramer.writePing(true, payload);
+                        mFramer.flush();
+                    }
+                    break;
+                }
+                case TYPE_GOAWAY:
+                    mFramer.skipPayload(length);
+                    throw new IOException("GOAWAY received");
+                default:
+                    mFramer.skipPayload(length);
+                    break;
+            }
+        }
+
+        private void dispatch(final Stream stream) throws IOException {
+            int refuseErrorCode = -1;
+            boolean goAway = false;
+            synchronized (Http2TestServer.this) {
+                if (mRefuseCount > 0) {
+                    mRefuseCount--;
+                    refuseErrorCode = mRefuseErrorCode;
+                } else if (mGoAwayOnNextStream) {
+                    mGoAwayOnNextStream = false;
+                    goAway = true;
+                }
+            }
+            if (refuseErrorCode != -1) {
+                synchronized (this) {
+                    mStreams.remove(stream.mId);
+                }
+                mFramer.writeRstStream(stream.mId, refuseErrorCode);
+                mFramer.flush();
+                return;
+            }
+            if (goAway) {
+                mFramer.writeGoAway(stream.mId - 2, NO_ERROR);
+                mFramer.flush();
+                return;
+            }
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        respond(stream);
+                    } catch (IOException e) {
+                        close();
+                    } catch (InterruptedException e) {
+                        close();
+                    }
+                }
+            });
+        }
+
+        private void respond(Stream stream) throws IOException, InterruptedException {
+            String path = Http2Connection.header(stream.mHeaders, ":path");
+            byte[] body;
+            if (path.startsWith("/echo")) {
+                body = stream.mBody.toByteArray();
+            } else {
+                body = new byte[queryParameter(path, "size", 16)];
+                Arrays.fill(body, (byte) 'a');
+            }
+            byte[] block = new Hpack.Encoder()
+                    .header(":status", "200")
+                    .header("content-type", "application/octet-stream")
+                    .header("content-length", String.valueOf(body.length))
+                    .toByteArray();
+            mFramer.writeHeaders(stream.mId, block, body.length == 0, 0);
+            mFramer.flush();
+            int pos = 0;
+            while (pos < body.length) {
+                int length;
+                synchronized (this) {
+                    while (!stream.mReset && !mClosed && (mSendWindow <= 0 || stream.mSendWindow <= 0)) {
+                        wait();
+                    }
+                    if (stream.mReset || mClosed) {
+                        return;
+                    }
+                    length = (int) Math.min(Math.min(body.length - pos, DEFAULT_MAX_FRAME_SIZE),
+                            Math.min(mSendWindow, stream.mSendWindow));
+                    mSendWindow -= length;
+                    stream.mSendWindow -= length;
+                }
+                mFramer.writeData(stream.mId, body, pos, length, pos + length == body.length);
+                pos += length;
+            }
+            mFramer.flush();
+            synchronized (this) {
+                mStreams.remove(stream.mId);
+            }
+        }
+
+        void close() {
+            synchronized (this) {
+                mClosed = true;
+                notifyAll();
+            }
+            mConnections.remove(this);
+            try {
+                mSocket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static void updateMax(AtomicInteger max, int value) {
+        while (true) {
+            int current = max.get();
+            if (value <= current || max.compareAndSet(current, value)) {
+                return;
+            }
+        }
+    }
+
+    private static int queryParameter(String path, String name, int defaultValue) {
+        int queryStart = path.indexOf('?');
+        if (queryStart == -1) {
+            return defaultValue;
+        }
+        for (String pair : path.substring(queryStart + 1).split("&")) {
+            if (pair.startsWith(name + "=")) {
+                return Integer.parseInt(pair.substring(name.length() + 1));
+            }
+        }
+        return defaultValue;
+    }
+
+}
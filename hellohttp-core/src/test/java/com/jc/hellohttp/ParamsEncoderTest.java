@@ -0,0 +1,148 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by Zhang on 2017/8/21.<br/>
+ * Description: ParamsEncoder的单元测试。encodedLength()用于设置Content-Length，必须与writeTo()写入的字节数一致；
+ * 编码结果与URLEncoder.encode(..., "UTF-8")以'&'、'='连接的结果相同
+ */
+public class ParamsEncoderTest {
+
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+    /**
+     * 与HttpExecutor中复用的缓冲区大小相同
+     */
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    @Test
+    public void asciiAndReservedCharacters() throws IOException {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("name", "HelloHttp");
+        params.put("reserved", "a&b=c?d/e#f%g+h:i;j,k@l$m!n'o(p)q~r");
+        params.put("unreserved", "AZaz09.-*_");
+        params.put("space", " a b  ");
+        params.put("key with=&", "");
+        params.put("control", "\t\r\n\u007f");
+        assertMatchesUrlEncoder(params);
+    }
+
+    @Test
+    public void nonAsciiCharacters() throws IOException {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("latin", "café ñ ß");
+        params.put("中文", "你好，世界");
+        params.put("emoji", "😀👍🏽");
+        params.put("mixed", "a中b😀c é");
+        assertMatchesUrlEncoder(params);
+    }
+
+    /**
+     * 孤立的代理字符编码为'?'，与URLEncoder相同
+     */
+    @Test
+    public void loneSurrogates() throws IOException {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("high", "a\ud83d");
+        params.put("low", "\ude00b");
+        params.put("reversed", "\ude00\ud83d");
+        assertMatchesUrlEncoder(params);
+    }
+
+    /**
+     * 编码结果跨越8KB缓冲区的边界，多字节字符在边界处不被拆开写错
+     */
+    @Test
+    public void valuesCrossingBufferBoundary() throws IOException {
+        for (int shift = 0; shift < 12; shift++) {
+            StringBuilder value = new StringBuilder();
+            for (int i = 0; i < BUFFER_SIZE - 8 + shift; i++) {
+                value.append('v');
+            }
+            value.append("😀中é &");
+            for (int i = 0; i < 3000; i++) {
+                value.append(i % 2 == 0 ? '中' : ' ');
+            }
+            Map<String, String> params = new LinkedHashMap<>();
+            params.put("k", value.toString());
+            params.put("next", "😀");
+            assertMatchesUrlEncoder(params);
+        }
+    }
+
+    @Test
+    public void emptyParams() throws IOException {
+        Map<String, String> params = new LinkedHashMap<>();
+        assertEquals(0, ParamsEncoder.encodedLength(params));
+        assertEquals(0, ParamsEncoder.encode(params).length);
+        assertEquals("", ParamsEncoder.encodeToString(params));
+        assertArrayEquals(new byte[0], writeTo(params, BUFFER_SIZE));
+    }
+
+    /**
+     * null键值编码为空字符串
+     */
+    @Test
+    public void nullValue() {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("a", null);
+        params.put("b", "1");
+        assertEquals("a=&b=1", ParamsEncoder.encodeToString(params));
+        assertEquals(6, ParamsEncoder.encodedLength(params));
+    }
+
+    private static void assertMatchesUrlEncoder(Map<String, String> params) throws IOException {
+        String expected = urlEncode(params);
+        byte[] encoded = ParamsEncoder.encode(params);
+        assertEquals(ParamsEncoder.encodedLength(params), encoded.length);
+        assertEquals(expected, new String(encoded, US_ASCII));
+        assertEquals(expected, ParamsEncoder.encodeToString(params));
+        // 通过输出流写入，包括只能容纳一个字符的最小缓冲区
+        assertArrayEquals(encoded, writeTo(params, BUFFER_SIZE));
+        assertArrayEquals(encoded, writeTo(params, 12));
+    }
+
+    private static byte[] writeTo(Map<String, String> params, int bufferSize) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ParamsEncoder.writeTo(params, out, new byte[bufferSize]);
+        return out.toByteArray();
+    }
+
+    private static String urlEncode(Map<String, String> params) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, String> entry : params.entrySet()) {
+            if (builder.length() != 0) {
+                builder.append('&');
+            }
+            builder.append(URLEncoder.encode(entry.getKey(), "UTF-8"))
+                    .append('=')
+                    .append(URLEncoder.encode(entry.getValue(), "UTF-8"));
+        }
+        return builder.toString();
+    }
+
+}
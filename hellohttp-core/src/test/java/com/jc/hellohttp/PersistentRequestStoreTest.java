@@ -0,0 +1,359 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by Zhang on 2017/8/21.<br/>
+ * Description: PersistentRequestStore的单元测试。请求加入暂停的请求队列，不会真正发送；
+ * 重新打开同一个文件模拟进程重启
+ */
+public class PersistentRequestStoreTest {
+
+    private static final String URL = "http://example.com/upload";
+
+    private File mFile;
+    private final List<PersistentRequestStore> mStores = new ArrayList<>();
+    private final List<RequestQueue> mQueues = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("requests", ".log");
+        assertTrue(mFile.delete());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (RequestQueue queue : mQueues) {
+            queue.shutdownNow();
+        }
+        for (PersistentRequestStore store : mStores) {
+            store.close();
+        }
+        mFile.delete();
+        new File(mFile.getPath() + ".tmp").delete();
+    }
+
+    /**
+     * 没有ACK的请求在重新打开时恢复，携带原来的幂等键、参数和优先级
+     */
+    @Test
+    public void pendingRequestsAreReplayed() throws IOException {
+        PersistentRequestStore store = open(true);
+        RequestQueue queue = pausedQueue(store);
+        Request first = newRequest("a", "1");
+        first.setPriority(Request.Priority.HIGH);
+        assertTrue(queue.add(first));
+        Request second = newRequest("b", "2");
+        assertTrue(queue.add(second));
+        Request third = newRequest("c", "3");
+        assertTrue(queue.add(third));
+        store.onCompleted(second);
+        assertEquals(2, store.getPendingCount());
+        reopen(store);
+
+        PersistentRequestStore replayed = open(true);
+        assertEquals(2, replayed.getPendingCount());
+        List<Request> requests = queuedRequests(replayed);
+        assertEquals(2, requests.size());
+        Request a = requests.get(0);
+        assertEquals(first.getIdempotencyKey(), a.getIdempotencyKey());
+        assertEquals(Collections.singletonMap("a", "1"), a.getRequestParams());
+        assertEquals(Request.Priority.HIGH, a.getPriority());
+        assertTrue(a.isPersistable());
+        assertEquals(third.getIdempotencyKey(), requests.get(1).getIdempotencyKey());
+    }
+
+    /**
+     * 末尾不完整的记录被截断，之前的记录照常恢复，截断之后可以继续追加
+     */
+    @Test
+    public void tornTailIsTruncated() throws IOException {
+        PersistentRequestStore store = open(true);
+        RequestQueue queue = pausedQueue(store);
+        Request kept = newRequest("k", "kept");
+        queue.add(kept);
+        reopen(store);
+        long valid = mFile.length();
+        queue = pausedQueue(store = open(true));
+        queue.add(newRequest("t", "torn"));
+        reopen(store);
+        // 模拟写入第二条记录时进程被杀死
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        try {
+            file.setLength(valid + (mFile.length() - valid) / 2);
+        } finally {
+            file.close();
+        }
+
+        store = open(true);
+        assertEquals(1, store.getPendingCount());
+        assertEquals(valid, mFile.length());
+        queue = pausedQueue(store);
+        Request added = newRequest("n", "new");
+        assertTrue(queue.add(added));
+        reopen(store);
+
+        List<Request> requests = queuedRequests(open(true));
+        assertEquals(2, requests.size());
+        assertEquals(kept.getIdempotencyKey(), requests.get(0).getIdempotencyKey());
+        assertEquals(added.getIdempotencyKey(), requests.get(1).getIdempotencyKey());
+    }
+
+    /**
+     * CRC不匹配的记录及其之后的内容视为不完整
+     */
+    @Test
+    public void corruptRecordEndsReplay() throws IOException {
+        PersistentRequestStore store = open(true);
+        RequestQueue queue = pausedQueue(store);
+        queue.add(newRequest("a", "1"));
+        long valid = mFile.length();
+        queue.add(newRequest("b", "2"));
+        reopen(store);
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        try {
+            file.seek(mFile.length() - 1);
+            int last = file.read();
+            file.seek(mFile.length() - 1);
+            file.write(last ^ 0xff);
+        } finally {
+            file.close();
+        }
+
+        assertEquals(1, open(true).getPendingCount());
+        assertEquals(valid, mFile.length());
+    }
+
+    /**
+     * 已完成的记录超过一半并且文件超过64KB时重写，只保留未完成的请求
+     */
+    @Test
+    public void compactionKeepsOnlyPendingRequests() throws IOException {
+        PersistentRequestStore store = open(true);
+        RequestQueue queue = pausedQueue(store);
+        char[] chars = new char[2048];
+        java.util.Arrays.fill(chars, 'x');
+        String large = new String(chars);
+        List<Request> requests = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            Request request = newRequest("i", i + large);
+            assertTrue(queue.add(request));
+            requests.add(request);
+        }
+        assertTrue(mFile.length() > 128 * 1024);
+        List<String> survivors = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            if (i % 8 == 0) {
+                survivors.add(requests.get(i).getIdempotencyKey());
+            } else {
+                store.onCompleted(requests.get(i));
+            }
+        }
+        assertTrue("file length " + mFile.length(), mFile.length() < 64 * 1024);
+        assertFalse(new File(mFile.getPath() + ".tmp").exists());
+        // 重写之后继续追加到新文件
+        Request added = newRequest("n", "new");
+        assertTrue(queue.add(added));
+        survivors.add(added.getIdempotencyKey());
+        reopen(store);
+
+        assertEquals(survivors, idempotencyKeys(queuedRequests(open(true))));
+    }
+
+    /**
+     * 多个线程同时加入时，每个线程的请求按照加入的先后重放，全部请求的id不重复
+     */
+    @Test
+    public void groupCommitPreservesOrder() throws Exception {
+        final PersistentRequestStore store = open(true);
+        final RequestQueue queue = pausedQueue(store);
+        final int threads = 8;
+        final int perThread = 25;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < perThread; i++) {
+                            Request request = newRequest("t" + thread, String.valueOf(i));
+                            if (!queue.add(request)) {
+                                errors.add(new AssertionError("add failed: " + thread + "/" + i));
+                            }
+                        }
+                    } catch (Throwable e) {
+                        errors.add(e);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        start.countDown();
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        assertEquals(Collections.<Throwable>emptyList(), errors);
+        reopen(store);
+
+        List<Request> requests = queuedRequests(open(true));
+        assertEquals(threads * perThread, requests.size());
+        Map<String, Integer> next = new HashMap<>();
+        long lastId = -1;
+        for (Request request : requests) {
+            assertTrue(request.getPersistentId() > lastId);
+            lastId = request.getPersistentId();
+            Map.Entry<String, String> param = request.getRequestParams().entrySet().iterator().next();
+            Integer expected = next.get(param.getKey());
+            assertEquals(expected == null ? 0 : expected, Integer.parseInt(param.getValue()));
+            next.put(param.getKey(), Integer.parseInt(param.getValue()) + 1);
+        }
+    }
+
+    /**
+     * 暂时性的失败保留请求，等待重发；确定的失败写入ACK
+     */
+    @Test
+    public void failuresAreClassifiedByKind() throws IOException {
+        PersistentRequestStore store = open(true);
+        RequestQueue queue = pausedQueue(store);
+        Request network = newRequest("a", "1");
+        Request unavailable = newRequest("b", "2");
+        Request decode = newRequest("c", "3");
+        Request memory = newRequest("d", "4");
+        Request notFound = newRequest("e", "5");
+        for (Request request : new Request[]{network, unavailable, decode, memory, notFound}) {
+            assertTrue(queue.add(request));
+        }
+        assertFalse(store.onFailed(network, RequestException.Kind.NETWORK, -1));
+        assertFalse(store.onFailed(unavailable, RequestException.Kind.HTTP_STATUS, 503));
+        assertTrue(store.onFailed(decode, RequestException.Kind.DECODE, 200));
+        assertTrue(store.onFailed(memory, RequestException.Kind.MEMORY, 200));
+        assertTrue(store.onFailed(notFound, RequestException.Kind.HTTP_STATUS, 404));
+        assertEquals(2, store.getPendingCount());
+
+        assertTrue(PersistentRequestStore.isTransient(RequestException.Kind.HTTP_STATUS, 408));
+        assertTrue(PersistentRequestStore.isTransient(RequestException.Kind.HTTP_STATUS, 429));
+        assertFalse(PersistentRequestStore.isTransient(RequestException.Kind.HTTP_STATUS, 400));
+        assertFalse(PersistentRequestStore.isTransient(RequestException.Kind.CANCELED, -1));
+    }
+
+    /**
+     * 请求队列停止之后加入的持久化请求被拒绝，不写入磁盘
+     */
+    @Test
+    public void stoppedQueueDoesNotPersist() throws IOException {
+        PersistentRequestStore store = open(true);
+        RequestQueue queue = pausedQueue(store);
+        queue.shutdownNow();
+        long length = mFile.length();
+        assertFalse(queue.add(newRequest("a", "1")));
+        assertEquals(0, store.getPendingCount());
+        assertEquals(length, mFile.length());
+    }
+
+    /**
+     * 离线时只写入磁盘，恢复在线时一次性加入请求队列
+     */
+    @Test
+    public void offlineRequestsAreFlushedWhenOnline() throws IOException {
+        PersistentRequestStore store = open(true);
+        store.setOnline(false);
+        RequestQueue queue = pausedQueue(store);
+        Request request = newRequest("a", "1");
+        assertTrue(queue.add(request));
+        assertEquals(0, queue.shutdownNow().size());
+        reopen(store);
+
+        store = open(false);
+        store.setOnline(false);
+        queue = pausedQueue(store);
+        assertEquals(1, store.getPendingCount());
+        store.setOnline(true);
+        assertEquals(Collections.singletonList(request.getIdempotencyKey()), idempotencyKeys(queue.shutdownNow()));
+    }
+
+    private PersistentRequestStore open(boolean groupCommit) throws IOException {
+        PersistentRequestStore store = new PersistentRequestStore(mFile, groupCommit);
+        mStores.add(store);
+        return store;
+    }
+
+    private void reopen(PersistentRequestStore store) throws IOException {
+        mStores.remove(store);
+        store.close();
+    }
+
+    private RequestQueue pausedQueue(PersistentRequestStore store) {
+        RequestQueue queue = new RequestQueue();
+        queue.pause();
+        queue.setPersistentStore(store);
+        mQueues.add(queue);
+        return queue;
+    }
+
+    /**
+     * 关联一个暂停的请求队列，取出重放的请求
+     */
+    private List<Request> queuedRequests(PersistentRequestStore store) {
+        RequestQueue queue = pausedQueue(store);
+        List<Request> requests = new ArrayList<>(queue.shutdownNow());
+        Collections.sort(requests, new java.util.Comparator<Request>() {
+            @Override
+            public int compare(Request lhs, Request rhs) {
+                return Long.compare(lhs.getPersistentId(), rhs.getPersistentId());
+            }
+        });
+        return requests;
+    }
+
+    private static List<String> idempotencyKeys(List<Request> requests) {
+        List<String> keys = new ArrayList<>();
+        for (Request request : requests) {
+            keys.add(request.getIdempotencyKey());
+        }
+        return keys;
+    }
+
+    private static Request newRequest(String name, String value) {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put(name, value);
+        Request request = new Request(URL, Request.RequestType.STRING, Request.RequestMethod.POST, params, null);
+        request.setPersistable(true);
+        return request;
+    }
+
+}
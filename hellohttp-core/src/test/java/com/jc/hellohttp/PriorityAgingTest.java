@@ -0,0 +1,148 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by Zhang on 2017/8/21.<br/>
+ * Description: PriorityAging.select()的单元测试，请求的入队时间直接指定，不依赖实际的等待
+ */
+public class PriorityAgingTest {
+
+    private static final long INTERVAL = TimeUnit.SECONDS.toNanos(1);
+    private static final long NOW = TimeUnit.HOURS.toNanos(1);
+
+    private final Queue<Request>[] mBuckets = newBuckets();
+
+    @Test
+    public void agingIsOffByDefault() {
+        assertEquals(0, Config.PRIORITY_AGING_INTERVAL);
+        PriorityAging aging = new PriorityAging(TimeUnit.MILLISECONDS.toNanos(Config.PRIORITY_AGING_INTERVAL));
+        assertTrue(aging.isStrict());
+        // 等待很久的LOW请求也排在刚加入的NORMAL请求之后
+        add(Request.Priority.LOW, TimeUnit.MINUTES.toNanos(10));
+        add(Request.Priority.NORMAL, 0);
+        assertEquals(Request.Priority.NORMAL.ordinal(), aging.select(mBuckets, NOW));
+    }
+
+    @Test
+    public void emptyBucketsSelectNothing() {
+        assertEquals(-1, new PriorityAging(INTERVAL).select(mBuckets, NOW));
+    }
+
+    /**
+     * 每等待一个间隔提升一级，有效优先级相同时等待较久的先取出
+     */
+    @Test
+    public void waitingRaisesEffectivePriority() {
+        PriorityAging aging = new PriorityAging(INTERVAL);
+        assertFalse(aging.isStrict());
+        add(Request.Priority.NORMAL, 0);
+        add(Request.Priority.LOW, INTERVAL / 2);
+        assertEquals(Request.Priority.NORMAL.ordinal(), aging.select(mBuckets, NOW));
+
+        // LOW等待1.5个间隔后与NORMAL相当，并且等待得更久
+        mBuckets[Request.Priority.LOW.ordinal()].clear();
+        add(Request.Priority.LOW, INTERVAL * 3 / 2);
+        assertEquals(Request.Priority.LOW.ordinal(), aging.select(mBuckets, NOW));
+    }
+
+    /**
+     * 老化最高与HIGH相当，不会超过IMMEDIATE
+     */
+    @Test
+    public void agingStopsAtHigh() {
+        PriorityAging aging = new PriorityAging(INTERVAL);
+        add(Request.Priority.LOW, INTERVAL * 10);
+        add(Request.Priority.HIGH, 0);
+        assertEquals(Request.Priority.LOW.ordinal(), aging.select(mBuckets, NOW));
+        add(Request.Priority.IMMEDIATE, 0);
+        assertEquals(Request.Priority.IMMEDIATE.ordinal(), aging.select(mBuckets, NOW));
+    }
+
+    @Test
+    public void prefetchNeverAges() {
+        PriorityAging aging = new PriorityAging(INTERVAL);
+        add(Request.Priority.PREFETCH, TimeUnit.MINUTES.toNanos(10));
+        add(Request.Priority.LOW, 0);
+        assertEquals(Request.Priority.LOW.ordinal(), aging.select(mBuckets, NOW));
+        mBuckets[Request.Priority.LOW.ordinal()].clear();
+        assertEquals(Request.Priority.PREFETCH.ordinal(), aging.select(mBuckets, NOW));
+    }
+
+    /**
+     * 超出最长等待时间的请求先于其他全部请求取出，不论是否开启老化
+     */
+    @Test
+    public void overdueRequestIsSelectedFirst() {
+        PriorityAging aging = new PriorityAging(0);
+        aging.setMaxWait(Request.Priority.PREFETCH, INTERVAL);
+        assertFalse(aging.isStrict());
+        add(Request.Priority.IMMEDIATE, 0);
+        add(Request.Priority.PREFETCH, INTERVAL / 2);
+        assertEquals(Request.Priority.IMMEDIATE.ordinal(), aging.select(mBuckets, NOW));
+
+        mBuckets[Request.Priority.PREFETCH.ordinal()].clear();
+        add(Request.Priority.PREFETCH, INTERVAL);
+        assertEquals(Request.Priority.PREFETCH.ordinal(), aging.select(mBuckets, NOW));
+
+        aging.setMaxWait(Request.Priority.PREFETCH, 0);
+        assertTrue(aging.isStrict());
+    }
+
+    /**
+     * 多个请求超出时，先取超出比例最大的
+     */
+    @Test
+    public void mostOverdueRatioWins() {
+        PriorityAging aging = new PriorityAging(INTERVAL);
+        aging.setMaxWait(Request.Priority.PREFETCH, INTERVAL * 4);
+        aging.setMaxWait(Request.Priority.LOW, INTERVAL);
+        // PREFETCH超出1.5倍，LOW超出2倍
+        add(Request.Priority.PREFETCH, INTERVAL * 6);
+        add(Request.Priority.LOW, INTERVAL * 2);
+        add(Request.Priority.IMMEDIATE, 0);
+        assertEquals(Request.Priority.LOW.ordinal(), aging.select(mBuckets, NOW));
+
+        mBuckets[Request.Priority.LOW.ordinal()].clear();
+        add(Request.Priority.LOW, INTERVAL * 5 / 4);
+        assertEquals(Request.Priority.PREFETCH.ordinal(), aging.select(mBuckets, NOW));
+    }
+
+    private void add(Request.Priority priority, long waitedNanos) {
+        Request request = new Request("http://example.com/" + priority, Request.RequestType.STRING, null);
+        request.setPriority(priority);
+        request.setEnqueuedNanos(NOW - waitedNanos);
+        mBuckets[priority.ordinal()].add(request);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Queue<Request>[] newBuckets() {
+        Queue<Request>[] buckets = new Queue[Request.Priority.values().length];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new ArrayDeque<>();
+        }
+        return buckets;
+    }
+
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by Zhang on 2017/8/21.<br/>
+ * Description: PriorityRequestQueue的单元测试：桶之间严格按优先级、桶内按FIFO出队，并发入队与出队时请求数准确
+ */
+public class PriorityRequestQueueTest {
+
+    private static final int TIMEOUT_SECONDS = 10;
+
+    @Test
+    public void strictPriorityAcrossBuckets() {
+        PriorityRequestQueue queue = new PriorityRequestQueue();
+        Request.Priority[] order = {
+                Request.Priority.LOW, Request.Priority.PREFETCH, Request.Priority.IMMEDIATE,
+                Request.Priority.NORMAL, Request.Priority.HIGH
+        };
+        for (Request.Priority priority : order) {
+            queue.offer(newRequest(priority, 0));
+        }
+        assertEquals(order.length, queue.size());
+        Request.Priority[] expected = {
+                Request.Priority.IMMEDIATE, Request.Priority.HIGH, Request.Priority.NORMAL,
+                Request.Priority.LOW, Request.Priority.PREFETCH
+        };
+        for (Request.Priority priority : expected) {
+            assertEquals(priority, queue.poll().getPriority());
+        }
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void fifoWithinBucket() {
+        PriorityRequestQueue queue = new PriorityRequestQueue();
+        for (int i = 0; i < 100; i++) {
+            queue.offer(newRequest(i % 2 == 0 ? Request.Priority.NORMAL : Request.Priority.LOW, i));
+        }
+        for (int i = 0; i < 100; i += 2) {
+            assertEquals(i, queue.poll().getSequence());
+        }
+        for (int i = 1; i < 100; i += 2) {
+            assertEquals(i, queue.poll().getSequence());
+        }
+    }
+
+    /**
+     * 经由等候区使用时行为相同：默认不开启老化
+     */
+    @Test
+    public void waitingAreaKeepsStrictOrder() {
+        RequestWaitingArea waitingArea = new RequestWaitingArea();
+        Request low = newRequest(Request.Priority.LOW, 0);
+        Request high = newRequest(Request.Priority.HIGH, 0);
+        Request normal = newRequest(Request.Priority.NORMAL, 0);
+        Request lateNormal = newRequest(Request.Priority.NORMAL, 0);
+        waitingArea.addRequest(low);
+        waitingArea.addRequest(normal);
+        waitingArea.addRequest(high);
+        waitingArea.addRequest(lateNormal);
+        assertEquals(4, waitingArea.getRequestCount());
+        assertSame(high, waitingArea.pollRequest());
+        assertSame(normal, waitingArea.pollRequest());
+        assertSame(lateNormal, waitingArea.pollRequest());
+        assertSame(low, waitingArea.pollRequest());
+        assertNull(waitingArea.pollRequest());
+        assertEquals(0, waitingArea.getRequestCount());
+    }
+
+    /**
+     * 多个生产者同时入队：请求数等于入队的总数，每个生产者的请求在各自的桶内保持入队顺序
+     */
+    @Test
+    public void concurrentProducers() throws Exception {
+        final RequestWaitingArea waitingArea = new RequestWaitingArea();
+        final int producers = 8;
+        final int perProducer = 2000;
+        runConcurrently(producers, new Task() {
+            @Override
+            public void run(int thread) {
+                for (int i = 0; i < perProducer; i++) {
+                    // 等候区会重新分配序列号，生产者与序号记录在URL中
+                    Request request = new Request("http://example.com/" + thread + "/" + i, Request.RequestType.STRING, null);
+                    request.setPriority(Request.Priority.values()[i % 5]);
+                    waitingArea.addRequest(request);
+                }
+            }
+        });
+        assertEquals(producers * perProducer, waitingArea.getRequestCount());
+
+        Map<String, Integer> lastIndex = new HashMap<>();
+        int lastPriority = Integer.MAX_VALUE;
+        int count = 0;
+        Request request;
+        while ((request = waitingArea.pollRequest()) != null) {
+            int priority = request.getPriority().ordinal();
+            assertTrue(priority <= lastPriority);
+            if (priority < lastPriority) {
+                lastIndex.clear();
+                lastPriority = priority;
+            }
+            String[] path = request.getUrl().substring("http://example.com/".length()).split("/");
+            int index = Integer.parseInt(path[1]);
+            Integer last = lastIndex.put(path[0], index);
+            assertTrue(last == null || last < index);
+            count++;
+            assertEquals(producers * perProducer - count, waitingArea.getRequestCount());
+        }
+        assertEquals(producers * perProducer, count);
+    }
+
+    /**
+     * 生产者与消费者同时进行：每个请求恰好出队一次，结束时请求数为0
+     */
+    @Test
+    public void concurrentProducersAndConsumers() throws Exception {
+        final PriorityRequestQueue queue = new PriorityRequestQueue();
+        final int producers = 4;
+        final int perProducer = 5000;
+        final AtomicBoolean producing = new AtomicBoolean(true);
+        final List<Request> consumed = Collections.synchronizedList(new ArrayList<Request>());
+        final CountDownLatch consumersDone = new CountDownLatch(4);
+        for (int c = 0; c < 4; c++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        List<Request> local = new ArrayList<>();
+                        while (true) {
+                            Request request = queue.poll(10, TimeUnit.MILLISECONDS);
+                            if (request != null) {
+                                local.add(request);
+                            } else if (!producing.get()) {
+                                break;
+                            }
+                        }
+                        consumed.addAll(local);
+                    } catch (InterruptedException ignored) {
+                    } finally {
+                        consumersDone.countDown();
+                    }
+                }
+            }, "PriorityRequestQueueTest-consumer").start();
+        }
+        runConcurrently(producers, new Task() {
+            @Override
+            public void run(int thread) {
+                for (int i = 0; i < perProducer; i++) {
+                    queue.offer(newRequest(Request.Priority.values()[(thread + i) % 5], i));
+                }
+            }
+        });
+        producing.set(false);
+        assertTrue(consumersDone.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(0, queue.size());
+        assertEquals(producers * perProducer, consumed.size());
+        Map<Request, Boolean> unique = new IdentityHashMap<>();
+        for (Request request : consumed) {
+            assertNull(unique.put(request, Boolean.TRUE));
+        }
+    }
+
+    private interface Task {
+        void run(int thread);
+    }
+
+    private static void runConcurrently(int threads, final Task task) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        task.run(thread);
+                    } catch (Throwable e) {
+                        errors.add(e);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }, "PriorityRequestQueueTest-producer").start();
+        }
+        start.countDown();
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(Collections.<Throwable>emptyList(), errors);
+    }
+
+    private static Request newRequest(Request.Priority priority, int sequence) {
+        Request request = new Request("http://example.com/" + sequence, Request.RequestType.STRING, null);
+        request.setPriority(priority);
+        request.setSequence(sequence);
+        return request;
+    }
+
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by Zhang on 2017/8/21.<br/>
+ * Description: RequestQueue生命周期的单元测试：pause()/resume()、drain()、shutdownNow()以及停止之后的add()。
+ * 本地服务器的/block在测试放行之前不返回响应，用来模拟正在执行的请求
+ */
+public class RequestQueueLifecycleTest {
+
+    private static final int TIMEOUT_SECONDS = 10;
+
+    private HttpServer mServer;
+    private ExecutorService mServerExecutor;
+    /**
+     * 服务器收到的请求路径，按到达的先后排列
+     */
+    private final List<String> mReceived = Collections.synchronizedList(new ArrayList<String>());
+    private final Semaphore mArrived = new Semaphore(0);
+    private final CountDownLatch mUnblock = new CountDownLatch(1);
+    private ExecutorService mExecutor;
+    private RequestQueue mQueue;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        mServer.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String path = exchange.getRequestURI().getPath();
+                mReceived.add(path);
+                mArrived.release();
+                if (path.startsWith("/block")) {
+                    try {
+                        mUnblock.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                byte[] body = path.getBytes("UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        mServerExecutor = Executors.newCachedThreadPool();
+        mServer.setExecutor(mServerExecutor);
+        mServer.start();
+        mExecutor = Executors.newCachedThreadPool();
+        // 同时只执行一个请求，其余的在等候区中等待
+        mQueue = new RequestQueue(mExecutor, 1);
+    }
+
+    @After
+    public void tearDown() {
+        mUnblock.countDown();
+        mQueue.shutdownNow();
+        mExecutor.shutdownNow();
+        mServer.stop(0);
+        mServerExecutor.shutdownNow();
+    }
+
+    @Test
+    public void addAfterShutdownIsRejected() {
+        mQueue.shutdownNow();
+        assertEquals(RequestQueue.State.TERMINATED, mQueue.getState());
+        RecordingListener listener = new RecordingListener();
+        Request request = newRequest("/ok", listener);
+        assertFalse(mQueue.add(request));
+        assertEquals(RequestException.Kind.REJECTED, listener.awaitFailure().getKind());
+    }
+
+    @Test
+    public void addWhileDrainingIsRejected() throws Exception {
+        RecordingListener inFlight = new RecordingListener();
+        mQueue.add(newRequest("/block", inFlight));
+        awaitArrivals(1);
+        final CountDownLatch drained = new CountDownLatch(1);
+        final List<Request> unexecuted = Collections.synchronizedList(new ArrayList<Request>());
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    unexecuted.addAll(mQueue.drain(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+                } catch (InterruptedException ignored) {
+                } finally {
+                    drained.countDown();
+                }
+            }
+        }, "RequestQueueLifecycleTest-drain").start();
+        while (mQueue.getState() != RequestQueue.State.DRAINING) {
+            Thread.sleep(1);
+        }
+
+        RecordingListener rejected = new RecordingListener();
+        assertFalse(mQueue.add(newRequest("/ok", rejected)));
+        assertEquals(RequestException.Kind.REJECTED, rejected.awaitFailure().getKind());
+
+        // 已加入的请求照常完成，之后队列停止
+        mUnblock.countDown();
+        assertEquals("/block", inFlight.awaitResponse().getBody());
+        assertTrue(drained.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(unexecuted.isEmpty());
+        assertEquals(RequestQueue.State.TERMINATED, mQueue.getState());
+    }
+
+    @Test
+    public void drainReturnsEmptyListWhenAllRequestsComplete() throws Exception {
+        List<RecordingListener> listeners = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            RecordingListener listener = new RecordingListener();
+            listeners.add(listener);
+            assertTrue(mQueue.add(newRequest("/ok" + i, listener)));
+        }
+        assertEquals(Collections.<Request>emptyList(), mQueue.drain(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        for (int i = 0; i < listeners.size(); i++) {
+            assertEquals("/ok" + i, listeners.get(i).awaitResponse().getBody());
+        }
+        assertEquals(RequestQueue.State.TERMINATED, mQueue.getState());
+    }
+
+    /**
+     * 超时后仍在等候区中的请求返回给调用者并收到REJECTED，正在执行的请求被打断
+     */
+    @Test
+    public void drainReturnsUnexecutedRequestsOnTimeout() throws Exception {
+        RecordingListener inFlight = new RecordingListener();
+        mQueue.add(newRequest("/block", inFlight));
+        awaitArrivals(1);
+        RecordingListener waiting = new RecordingListener();
+        Request queued = newRequest("/ok", waiting);
+        mQueue.add(queued);
+
+        long start = System.nanoTime();
+        List<Request> unexecuted = mQueue.drain(300, TimeUnit.MILLISECONDS);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("drain returned after " + elapsedMillis + " ms", elapsedMillis >= 250 && elapsedMillis < 5000);
+        assertEquals(Collections.singletonList(queued), unexecuted);
+        assertEquals(RequestException.Kind.REJECTED, waiting.awaitFailure().getKind());
+        assertNotNull(inFlight.awaitFailure());
+        assertEquals(Collections.singletonList("/block"), mReceived);
+    }
+
+    /**
+     * 暂停后正在执行的请求照常完成，等候区中的请求直到resume()才执行；暂停期间仍然可以加入请求
+     */
+    @Test
+    public void pauseLetsInFlightRequestsFinish() throws Exception {
+        RecordingListener inFlight = new RecordingListener();
+        mQueue.add(newRequest("/block", inFlight));
+        awaitArrivals(1);
+        mQueue.pause();
+        assertEquals(RequestQueue.State.PAUSED, mQueue.getState());
+        RecordingListener queued = new RecordingListener();
+        assertTrue(mQueue.add(newRequest("/ok", queued)));
+
+        mUnblock.countDown();
+        assertEquals("/block", inFlight.awaitResponse().getBody());
+        assertFalse("request executed while paused", mArrived.tryAcquire(300, TimeUnit.MILLISECONDS));
+        assertFalse(queued.isDone());
+
+        mQueue.resume();
+        assertEquals(RequestQueue.State.RUNNING, mQueue.getState());
+        assertEquals("/ok", queued.awaitResponse().getBody());
+        assertEquals(2, mReceived.size());
+    }
+
+    /**
+     * shutdownNow()打断正在执行的请求，不等待读取超时
+     */
+    @Test
+    public void shutdownNowInterruptsExecutors() throws Exception {
+        RecordingListener inFlight = new RecordingListener();
+        mQueue.add(newRequest("/block", inFlight));
+        awaitArrivals(1);
+        RecordingListener waiting = new RecordingListener();
+        Request queued = newRequest("/ok", waiting);
+        mQueue.add(queued);
+
+        long start = System.nanoTime();
+        assertEquals(Collections.singletonList(queued), mQueue.shutdownNow());
+        assertEquals(RequestException.Kind.REJECTED, waiting.awaitFailure().getKind());
+        assertNotNull(inFlight.awaitFailure());
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("interrupted after " + elapsedMillis + " ms", elapsedMillis < Config.READ_TIMEOUT);
+        assertEquals(RequestQueue.State.TERMINATED, mQueue.getState());
+    }
+
+    private void awaitArrivals(int count) throws InterruptedException {
+        assertTrue("server did not receive the request", mArrived.tryAcquire(count, TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    private Request newRequest(String path, RecordingListener listener) {
+        Request request = new Request("http://127.0.0.1:" + mServer.getAddress().getPort() + path,
+                Request.RequestType.STRING, null);
+        request.setResponseListener(listener);
+        return request;
+    }
+
+    private static final class RecordingListener implements ResponseListener {
+
+        private final CountDownLatch mDone = new CountDownLatch(1);
+        private volatile Response mResponse;
+        private volatile RequestException mError;
+
+        @Override
+        public void onResponse(Response response) {
+            mResponse = response;
+            mDone.countDown();
+        }
+
+        @Override
+        public void onFailure(RequestException error) {
+            mError = error;
+            mDone.countDown();
+        }
+
+        boolean isDone() {
+            return mDone.getCount() == 0;
+        }
+
+        Response awaitResponse() throws InterruptedException {
+            assertTrue("Timed out", mDone.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            assertNull("Request failed: " + mError, mError);
+            return mResponse;
+        }
+
+        RequestException awaitFailure() {
+            try {
+                assertTrue("Timed out", mDone.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+            assertNull("Unexpected response", mResponse);
+            return mError;
+        }
+    }
+
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by Zhang on 2017/8/21.<br/>
+ * Description: ResponseMemo的单元测试。普通JVM上回调在当前线程中执行，命中时在intercept()返回之前就已收到结果；
+ * 需要加入请求队列的请求（后台刷新、取消后重新加入）进入一个暂停的请求队列，由shutdownNow()取出检查
+ */
+public class ResponseMemoTest {
+
+    private static final String URL = "http://example.com/memo";
+
+    private RequestQueue mQueue;
+
+    @Before
+    public void setUp() {
+        mQueue = new RequestQueue();
+        mQueue.pause();
+    }
+
+    @After
+    public void tearDown() {
+        mQueue.shutdownNow();
+    }
+
+    /**
+     * ttl内直接命中；stale时间内返回旧的响应体，并且只发起一次LOW优先级的后台刷新；再之后未命中
+     */
+    @Test
+    public void ttlThenStaleWindow() throws Exception {
+        ResponseMemo memo = new ResponseMemo(1024 * 1024, 300, 600);
+        Request leader = newRequest(URL, null);
+        assertFalse(memo.intercept(leader, mQueue));
+        assertNotNull(leader.getMemoKey());
+        memo.onResponse(leader, "v1");
+
+        RecordingCallback fresh = new RecordingCallback();
+        assertTrue(memo.intercept(newRequest(URL, fresh), mQueue));
+        assertEquals("v1", fresh.single());
+
+        Thread.sleep(450);
+        RecordingCallback stale = new RecordingCallback();
+        assertTrue(memo.intercept(newRequest(URL, stale), mQueue));
+        assertEquals("v1", stale.single());
+        // 刷新进行中时不再发起新的刷新
+        assertTrue(memo.intercept(newRequest(URL, new RecordingCallback()), mQueue));
+
+        Thread.sleep(600);
+        Request expired = newRequest(URL, null);
+        // 刷新请求为LOW，NORMAL的请求不等待它
+        assertFalse(memo.intercept(expired, mQueue));
+
+        List<Request> queued = mQueue.shutdownNow();
+        assertEquals(1, queued.size());
+        Request refresh = queued.get(0);
+        assertEquals(Request.Priority.LOW, refresh.getPriority());
+        assertEquals(leader.getMemoKey(), refresh.getMemoKey());
+    }
+
+    /**
+     * 未命中时相同的请求正在执行，则等待它的结果
+     */
+    @Test
+    public void waitersShareLeaderResult() {
+        ResponseMemo memo = new ResponseMemo(1024 * 1024, 60 * 1000, 0);
+        Request leader = newRequest(URL, null);
+        assertFalse(memo.intercept(leader, mQueue));
+        RecordingCallback first = new RecordingCallback();
+        RecordingCallback second = new RecordingCallback();
+        Request firstWaiter = newRequest(URL, first);
+        assertTrue(memo.intercept(firstWaiter, mQueue));
+        assertTrue(memo.intercept(newRequest(URL, second), mQueue));
+        assertTrue(first.mResults.isEmpty());
+        // 等待者不带备忘键，不会再次存入
+        assertNull(firstWaiter.getMemoKey());
+
+        memo.onResponse(leader, "shared");
+        assertEquals("shared", first.single());
+        assertEquals("shared", second.single());
+    }
+
+    @Test
+    public void waitersShareLeaderError() {
+        ResponseMemo memo = new ResponseMemo(1024 * 1024, 60 * 1000, 0);
+        Request leader = newRequest(URL, null);
+        assertFalse(memo.intercept(leader, mQueue));
+        RecordingCallback waiter = new RecordingCallback();
+        assertTrue(memo.intercept(newRequest(URL, waiter), mQueue));
+        memo.onError(leader, new RequestException(RequestException.Kind.NETWORK, "boom"));
+        assertEquals("error:boom", waiter.single());
+        // 错误不存入备忘
+        assertFalse(memo.intercept(newRequest(URL, null), mQueue));
+    }
+
+    /**
+     * 正在执行的请求优先级更低时，优先级更高的请求不等待它
+     */
+    @Test
+    public void higherPriorityDoesNotWaitForLowerPriorityLeader() {
+        ResponseMemo memo = new ResponseMemo(1024 * 1024, 60 * 1000, 0);
+        Request leader = newRequest(URL, null);
+        leader.setPriority(Request.Priority.LOW);
+        assertFalse(memo.intercept(leader, mQueue));
+        Request high = newRequest(URL, null);
+        high.setPriority(Request.Priority.HIGH);
+        assertFalse(memo.intercept(high, mQueue));
+        // 只有先到的请求带有备忘键
+        assertNull(high.getMemoKey());
+    }
+
+    /**
+     * 执行者被取消后，等待者重新加入请求队列，其中第一个成为新的执行者，其余的等待它
+     */
+    @Test
+    public void waitersAreRequeuedWhenLeaderIsCanceled() {
+        mQueue.setResponseMemo(1024 * 1024, 60 * 1000, 0);
+        ResponseMemo memo = mQueue.getResponseMemo();
+        Request leader = newRequest(URL, null);
+        Request first = newRequest(URL, null);
+        Request second = newRequest(URL, null);
+        assertTrue(mQueue.add(leader));
+        assertTrue(mQueue.add(first));
+        assertTrue(mQueue.add(second));
+        assertNotNull(leader.getMemoKey());
+        assertNull(first.getMemoKey());
+
+        leader.cancel();
+        memo.onCanceled(leader, mQueue);
+        assertNotNull(first.getMemoKey());
+        assertNull(second.getMemoKey());
+
+        List<Request> unexecuted = mQueue.shutdownNow();
+        // 等候区中的leader与first，以及仍在等待first的second
+        assertEquals(3, unexecuted.size());
+        assertTrue(unexecuted.contains(first));
+        assertTrue(unexecuted.contains(second));
+    }
+
+    /**
+     * 按字节数限制总大小，超出时淘汰最久未使用的条目
+     */
+    @Test
+    public void leastRecentlyUsedEntriesAreEvictedBySize() {
+        String body = repeat('x', 1000);
+        // 每个条目约2KB，上限只能容纳两个
+        ResponseMemo memo = new ResponseMemo(5000, 60 * 1000, 0);
+        store(memo, URL + "/a", body);
+        store(memo, URL + "/b", body);
+        assertTrue(memo.intercept(newRequest(URL + "/a", null), mQueue));
+        store(memo, URL + "/c", body);
+
+        assertTrue(memo.intercept(newRequest(URL + "/a", null), mQueue));
+        assertTrue(memo.intercept(newRequest(URL + "/c", null), mQueue));
+        assertFalse(memo.intercept(newRequest(URL + "/b", null), mQueue));
+    }
+
+    @Test
+    public void entryLargerThanLimitIsNotStored() {
+        ResponseMemo memo = new ResponseMemo(1000, 60 * 1000, 0);
+        store(memo, URL + "/small", "ok");
+        store(memo, URL + "/big", repeat('x', 1000));
+        assertTrue(memo.intercept(newRequest(URL + "/small", null), mQueue));
+        assertFalse(memo.intercept(newRequest(URL + "/big", null), mQueue));
+    }
+
+    /**
+     * 命中（包括等待相同的请求）与未命中之比
+     */
+    @Test
+    public void hitRatio() {
+        assertEquals(0, mQueue.getResponseMemoHitRatio(), 0);
+        mQueue.setResponseMemo(1024 * 1024, 60 * 1000, 0);
+        ResponseMemo memo = mQueue.getResponseMemo();
+        Request leader = newRequest(URL, null);
+        mQueue.add(leader);
+        mQueue.add(newRequest(URL, null));
+        memo.onResponse(leader, "v");
+        mQueue.add(newRequest(URL, null));
+        mQueue.add(newRequest(URL, null));
+        // 1次未命中，1次等待，2次命中
+        assertEquals(1, memo.getMissCount());
+        assertEquals(3, memo.getHitCount());
+        assertEquals(0.75, mQueue.getResponseMemoHitRatio(), 1e-9);
+    }
+
+    @Test
+    public void onlyStringGetRequestsAreMemoized() {
+        ResponseMemo memo = new ResponseMemo(1024 * 1024, 60 * 1000, 0);
+        Request post = new Request(URL, Request.RequestType.STRING, Request.RequestMethod.POST, null);
+        assertFalse(memo.intercept(post, mQueue));
+        assertNull(post.getMemoKey());
+        Request image = new Request(URL, Request.RequestType.IMAGE, Request.RequestMethod.GET, null);
+        assertFalse(memo.intercept(image, mQueue));
+        assertNull(image.getMemoKey());
+        Request persistable = newRequest(URL, null);
+        persistable.setPersistable(true);
+        assertFalse(memo.intercept(persistable, mQueue));
+        assertNull(persistable.getMemoKey());
+    }
+
+    private void store(ResponseMemo memo, String url, String body) {
+        Request request = newRequest(url, null);
+        assertFalse(memo.intercept(request, mQueue));
+        memo.onResponse(request, body);
+    }
+
+    private static Request newRequest(String url, RecordingCallback callback) {
+        return new Request(url, Request.RequestType.STRING, Request.RequestMethod.GET, callback);
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        java.util.Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    /**
+     * 记录收到的结果，错误记为"error:"加错误信息
+     */
+    private static final class RecordingCallback implements RequestCallback<String> {
+
+        final List<String> mResults = new ArrayList<>();
+
+        @Override
+        public void onSuccess(String response) {
+            mResults.add(response);
+        }
+
+        @Override
+        public void onError(String errorMsg) {
+            mResults.add("error:" + errorMsg);
+        }
+
+        String single() {
+            assertEquals(1, mResults.size());
+            return mResults.get(0);
+        }
+    }
+
+}
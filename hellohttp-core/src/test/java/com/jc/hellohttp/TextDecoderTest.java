@@ -0,0 +1,169 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by Zhang on 2017/8/21.<br/>
+ * Description: TextDecoder的单元测试，解码结果与new String(bytes, charset)逐字符比较
+ */
+public class TextDecoderTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Charset GBK = Charset.forName("GBK");
+    /**
+     * 与TextDecoder的读取缓冲区大小相同
+     */
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    @Test
+    public void lineBreaksArePreserved() throws IOException {
+        String text = "line1\r\nline2\rline3\n\nlast";
+        assertEquals(text, decode(text.getBytes(UTF_8), "text/plain", true));
+        assertEquals(text + "\n", decode((text + "\n").getBytes(UTF_8), "text/plain", false));
+        assertEquals("", decode(new byte[0], null, true));
+    }
+
+    /**
+     * 多字节序列跨越读取缓冲区的边界，在任意位置被拆开
+     */
+    @Test
+    public void multiByteSequenceAcrossBufferBoundary() throws IOException {
+        for (int shift = 0; shift < 4; shift++) {
+            byte[] bytes = concat(filler(BUFFER_SIZE - 1 - shift), "中文😀é".getBytes(UTF_8));
+            assertExact(bytes, UTF_8, "text/html; charset=utf-8");
+        }
+        for (int shift = 0; shift < 2; shift++) {
+            byte[] bytes = concat(filler(BUFFER_SIZE - 1 - shift), "汉字测试".getBytes(GBK));
+            assertExact(bytes, GBK, "text/plain; charset=GBK");
+        }
+    }
+
+    /**
+     * 输入流每次只返回一个字节
+     */
+    @Test
+    public void trickleInput() throws IOException {
+        byte[] bytes = "半角/全角：ＡＢＣ 😀\r\n".getBytes(UTF_8);
+        String decoded = TextDecoder.decode(new TrickleInputStream(bytes), "text/plain", -1);
+        assertEquals(new String(bytes, UTF_8), decoded);
+    }
+
+    @Test
+    public void charsetParameter() {
+        assertEquals(GBK, TextDecoder.charsetOf("text/plain; charset=\"GBK\""));
+        assertEquals(GBK, TextDecoder.charsetOf("text/plain;CHARSET=gbk"));
+        assertEquals(GBK, TextDecoder.charsetOf("text/plain; format=flowed; Charset = GBK "));
+        assertEquals(Charset.forName("ISO-8859-1"), TextDecoder.charsetOf("text/html; charset=iso-8859-1"));
+        assertEquals(UTF_8, TextDecoder.charsetOf("application/json"));
+        assertEquals(UTF_8, TextDecoder.charsetOf(null));
+        // 媒体类型本身不是参数
+        assertEquals(UTF_8, TextDecoder.charsetOf("charset=GBK"));
+    }
+
+    @Test
+    public void unknownCharsetFallsBackToUtf8() throws IOException {
+        assertEquals(UTF_8, TextDecoder.charsetOf("text/plain; charset=x-no-such-charset"));
+        assertEquals(UTF_8, TextDecoder.charsetOf("text/plain; charset=\"bad name!\""));
+        byte[] bytes = "中文".getBytes(UTF_8);
+        assertEquals("中文", decode(bytes, "text/plain; charset=x-no-such-charset", true));
+    }
+
+    /**
+     * 无法解码的字节替换为U+FFFD，包括末尾被截断的多字节序列
+     */
+    @Test
+    public void malformedInputIsReplaced() throws IOException {
+        byte[] invalid = {'a', (byte) 0xff, 'b', (byte) 0xc3, 'c'};
+        assertExact(invalid, UTF_8, null);
+        assertTrue(decode(invalid, null, true).contains("�"));
+        byte[] truncated = Arrays.copyOf("中".getBytes(UTF_8), 2);
+        assertExact(concat("ok".getBytes(UTF_8), truncated), UTF_8, null);
+        byte[] gbkTruncated = Arrays.copyOf("汉".getBytes(GBK), 1);
+        assertExact(gbkTruncated, GBK, "text/plain; charset=gbk");
+    }
+
+    /**
+     * 已知与未知Content-Length的结果相同，未知时结果超过初始容量需要扩容
+     */
+    @Test
+    public void knownAndUnknownContentLength() throws IOException {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            builder.append(i).append(i % 3 == 0 ? "：中文\r\n" : ",");
+        }
+        byte[] bytes = builder.toString().getBytes(UTF_8);
+        assertExact(bytes, UTF_8, null);
+        byte[] ascii = filler(3 * BUFFER_SIZE + 7);
+        assertExact(ascii, UTF_8, null);
+    }
+
+    /**
+     * 同一个线程依次使用不同的字符集，复用的解码器不会带入上一次的状态
+     */
+    @Test
+    public void decoderIsResetBetweenCalls() throws IOException {
+        assertExact(Arrays.copyOf("中".getBytes(UTF_8), 1), UTF_8, null);
+        assertExact("汉字".getBytes(GBK), GBK, "text/plain; charset=gbk");
+        assertExact("中文".getBytes(UTF_8), UTF_8, null);
+    }
+
+    private static void assertExact(byte[] bytes, Charset charset, String contentType) throws IOException {
+        String expected = new String(bytes, charset);
+        assertEquals(expected, decode(bytes, contentType, true));
+        assertEquals(expected, decode(bytes, contentType, false));
+    }
+
+    private static String decode(byte[] bytes, String contentType, boolean knownLength) throws IOException {
+        return TextDecoder.decode(new ByteArrayInputStream(bytes), contentType, knownLength ? bytes.length : -1);
+    }
+
+    private static byte[] filler(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) ('a' + i % 26);
+        }
+        return bytes;
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] bytes = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, bytes, first.length, second.length);
+        return bytes;
+    }
+
+    private static final class TrickleInputStream extends FilterInputStream {
+
+        TrickleInputStream(byte[] bytes) {
+            super(new ByteArrayInputStream(bytes));
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return super.read(b, off, Math.min(len, 1));
+        }
+    }
+
+}
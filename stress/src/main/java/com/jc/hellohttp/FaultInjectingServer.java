@@ -0,0 +1,345 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Created by Zhang on 2017/8/3.<br/>
+ * Description: 压力测试使用的本地HTTP/1.1服务器，直接基于ServerSocket实现，可以按概率注入故障<br/>
+ * GET /bytes?size=N：返回N字节的响应体；POST /echo：原样返回请求体。支持keep-alive，每个连接一个线程。
+ * 每个请求先等待latency（加上0~jitter的随机值）毫秒，然后按概率：
+ * 发送一半响应体后以RST重置连接；返回503；把响应体分成小块慢慢发送（slow loris）；否则正常响应
+ */
+final class FaultInjectingServer {
+
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+    /**
+     * 请求行与请求头的总大小上限
+     */
+    private static final int MAX_HEAD_SIZE = 16 * 1024;
+    /**
+     * slow loris每次发送的字节数
+     */
+    private static final int SLOW_CHUNK_SIZE = 16;
+
+    private final ServerSocket mServerSocket;
+    private final ExecutorService mExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger mThreadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "FaultInjectingServer-" + mThreadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private final Set<Socket> mConnections = Collections.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
+
+    private volatile int mLatencyMillis;
+    private volatile int mJitterMillis;
+    private volatile double mResetRate;
+    private volatile double mErrorRate;
+    private volatile double mSlowRate;
+    private volatile int mSlowChunkDelayMillis = 10;
+
+    private final AtomicLong mRequestCount = new AtomicLong();
+    private final AtomicLong mResetCount = new AtomicLong();
+    private final AtomicLong mErrorCount = new AtomicLong();
+    private final AtomicLong mSlowCount = new AtomicLong();
+
+    FaultInjectingServer() throws IOException {
+        mServerSocket = new ServerSocket(0, 1024, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!mServerSocket.isClosed()) {
+                    final Socket socket;
+                    try {
+                        socket = mServerSocket.accept();
+                    } catch (IOException e) {
+                        return;
+                    }
+                    mConnections.add(socket);
+                    mExecutor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            serve(socket);
+                        }
+                    });
+                }
+            }
+        }, "FaultInjectingServer-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    String url(String path) {
+        return "http://127.0.0.1:" + mServerSocket.getLocalPort() + path;
+    }
+
+    void setLatency(int latencyMillis, int jitterMillis) {
+        mLatencyMillis = latencyMillis;
+        mJitterMillis = jitterMillis;
+    }
+
+    /**
+     * @param resetRate 发送一半响应体后重置连接的概率
+     * @param errorRate 返回503的概率
+     * @param slowRate  慢慢发送响应体的概率
+     */
+    void setFaultRates(double resetRate, double errorRate, double slowRate) {
+        mResetRate = resetRate;
+        mErrorRate = errorRate;
+        mSlowRate = slowRate;
+    }
+
+    /**
+     * slow loris时每发送16字节后等待的时间
+     */
+    void setSlowChunkDelay(int delayMillis) {
+        mSlowChunkDelayMillis = delayMillis;
+    }
+
+    long getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    long getResetCount() {
+        return mResetCount.get();
+    }
+
+    long getErrorCount() {
+        return mErrorCount.get();
+    }
+
+    long getSlowCount() {
+        return mSlowCount.get();
+    }
+
+    /**
+     * @return 当前打开的连接数
+     */
+    int getConnectionCount() {
+        return mConnections.size();
+    }
+
+    /**
+     * 关闭监听与全部连接
+     */
+    void stop() {
+        closeQuietly(mServerSocket);
+        for (Socket socket : mConnections) {
+            closeQuietly(socket);
+        }
+        mExecutor.shutdownNow();
+    }
+
+    private void serve(Socket socket) {
+        try {
+            socket.setTcpNoDelay(true);
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            while (true) {
+                String head = readHead(in);
+                if (head == null) {
+                    return;
+                }
+                String[] lines = head.split("\r\n");
+                String[] requestLine = lines[0].split(" ");
+                if (requestLine.length != 3) {
+                    return;
+                }
+                long contentLength = 0;
+                boolean close = false;
+                for (int i = 1; i < lines.length; i++) {
+                    int index = lines[i].indexOf(':');
+                    if (index == -1) {
+                        continue;
+                    }
+                    String name = lines[i].substring(0, index).trim();
+                    String value = lines[i].substring(index + 1).trim();
+                    if ("Content-Length".equalsIgnoreCase(name)) {
+                        contentLength = Long.parseLong(value);
+                    } else if ("Connection".equalsIgnoreCase(name) && "close".equalsIgnoreCase(value)) {
+                        close = true;
+                    }
+                }
+                byte[] requestBody = readBody(in, contentLength);
+                mRequestCount.incrementAndGet();
+                if (!respond(socket, out, requestLine[0], requestLine[1], requestBody) || close) {
+                    return;
+                }
+            }
+        } catch (IOException | RuntimeException ignored) {
+            // 客户端断开或请求格式错误，关闭连接
+        } finally {
+            mConnections.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    /**
+     * @return 连接是否可以继续使用
+     */
+    private boolean respond(Socket socket, OutputStream out, String method, String target, byte[] requestBody)
+            throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int delay = mLatencyMillis + (mJitterMillis > 0 ? random.nextInt(mJitterMillis + 1) : 0);
+        if (delay > 0) {
+            sleep(delay);
+        }
+        byte[] body;
+        if ("POST".equals(method) && target.startsWith("/echo")) {
+            body = requestBody;
+        } else if ("GET".equals(method) && target.startsWith("/bytes")) {
+            body = new byte[queryParameter(target, "size", 16)];
+            Arrays.fill(body, (byte) 'a');
+        } else {
+            writeResponse(out, 404, "Not Found", new byte[0]);
+            return true;
+        }
+        double dice = random.nextDouble();
+        if (dice < mResetRate) {
+            mResetCount.incrementAndGet();
+            writeHead(out, 200, "OK", body.length);
+            out.write(body, 0, body.length / 2);
+            out.flush();
+            // SO_LINGER为0时close()发送RST而不是FIN
+            socket.setSoLinger(true, 0);
+            socket.close();
+            return false;
+        }
+        if (dice < mResetRate + mErrorRate) {
+            mErrorCount.incrementAndGet();
+            writeResponse(out, 503, "Service Unavailable", "injected error".getBytes(ISO_8859_1));
+            return true;
+        }
+        if (dice < mResetRate + mErrorRate + mSlowRate) {
+            mSlowCount.incrementAndGet();
+            writeHead(out, 200, "OK", body.length);
+            for (int offset = 0; offset < body.length; offset += SLOW_CHUNK_SIZE) {
+                out.write(body, offset, Math.min(SLOW_CHUNK_SIZE, body.length - offset));
+                out.flush();
+                sleep(mSlowChunkDelayMillis);
+            }
+            out.flush();
+            return true;
+        }
+        writeResponse(out, 200, "OK", body);
+        return true;
+    }
+
+    private static void writeResponse(OutputStream out, int code, String reason, byte[] body) throws IOException {
+        writeHead(out, code, reason, body.length);
+        out.write(body);
+        out.flush();
+    }
+
+    private static void writeHead(OutputStream out, int code, String reason, int contentLength) throws IOException {
+        String head = "HTTP/1.1 " + code + " " + reason + "\r\n"
+                + "Content-Type: text/plain; charset=utf-8\r\n"
+                + "Content-Length: " + contentLength + "\r\n\r\n";
+        out.write(head.getBytes(ISO_8859_1));
+    }
+
+    /**
+     * @return 请求行与请求头，连接在请求之间关闭时返回null
+     */
+    private static String readHead(InputStream in) throws IOException {
+        ByteArrayOutputStream head = new ByteArrayOutputStream(256);
+        // 最近读取的4个字节
+        int last = 0;
+        while (last != 0x0D0A0D0A) {
+            int b = in.read();
+            if (b == -1) {
+                if (head.size() == 0) {
+                    return null;
+                }
+                throw new IOException("Unexpected end of request head");
+            }
+            head.write(b);
+            if (head.size() > MAX_HEAD_SIZE) {
+                throw new IOException("Request head is too large");
+            }
+            last = (last << 8) | b;
+        }
+        return new String(head.toByteArray(), 0, head.size() - 4, ISO_8859_1);
+    }
+
+    private static byte[] readBody(InputStream in, long contentLength) throws IOException {
+        byte[] body = new byte[(int) contentLength];
+        int offset = 0;
+        while (offset < body.length) {
+            int length = in.read(body, offset, body.length - offset);
+            if (length == -1) {
+                throw new IOException("Unexpected end of request body");
+            }
+            offset += length;
+        }
+        return body;
+    }
+
+    private static int queryParameter(String target, String name, int defaultValue) {
+        int index = target.indexOf('?');
+        if (index == -1) {
+            return defaultValue;
+        }
+        for (String pair : target.substring(index + 1).split("&")) {
+            if (pair.startsWith(name + "=")) {
+                return Integer.parseInt(pair.substring(name.length() + 1));
+            }
+        }
+        return defaultValue;
+    }
+
+    private static void sleep(int millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted");
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+}
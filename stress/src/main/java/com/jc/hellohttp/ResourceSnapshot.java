@@ -0,0 +1,130 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Created by Zhang on 2017/8/3.<br/>
+ * Description: 某一时刻的线程、文件描述符与堆内存使用量<br/>
+ * 文件描述符通过/proc/self/fd统计，其中的TCP socket与/proc/self/net/tcp、tcp6中的inode对照得出，只在Linux上可用，其他系统上为-1
+ */
+final class ResourceSnapshot {
+
+    private static final File FD_DIRECTORY = new File("/proc/self/fd");
+    private static final String[] TCP_TABLES = {"/proc/self/net/tcp", "/proc/self/net/tcp6"};
+
+    /**
+     * 全部存活的线程数
+     */
+    final int mThreads;
+    /**
+     * 请求队列的线程数：执行者线程（HelloHttp-N-worker-M）与HTTP/2读取线程（HelloHttp-h2-*）
+     */
+    final int mClientThreads;
+    final int mFileDescriptors;
+    /**
+     * TCP socket数，包括监听的socket
+     */
+    final int mSockets;
+    final long mHeapUsed;
+
+    private ResourceSnapshot(int threads, int clientThreads, int fileDescriptors, int sockets, long heapUsed) {
+        mThreads = threads;
+        mClientThreads = clientThreads;
+        mFileDescriptors = fileDescriptors;
+        mSockets = sockets;
+        mHeapUsed = heapUsed;
+    }
+
+    /**
+     * @param gc 是否先执行GC，使堆内存使用量只包括存活的对象
+     */
+    static ResourceSnapshot capture(boolean gc) {
+        if (gc) {
+            System.gc();
+            System.gc();
+        }
+        int clientThreads = 0;
+        int threads = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            threads++;
+            if (thread.getName().startsWith("HelloHttp-")) {
+                clientThreads++;
+            }
+        }
+        int fileDescriptors = -1;
+        int sockets = -1;
+        String[] fds = FD_DIRECTORY.list();
+        if (fds != null) {
+            Set<String> tcpInodes = readTcpInodes();
+            fileDescriptors = 0;
+            sockets = 0;
+            for (String fd : fds) {
+                Path path = Paths.get(FD_DIRECTORY.getPath(), fd);
+                try {
+                    fileDescriptors++;
+                    // socket:[inode]
+                    String target = Files.readSymbolicLink(path).toString();
+                    if (target.startsWith("socket:[") && tcpInodes.contains(target.substring(8, target.length() - 1))) {
+                        sockets++;
+                    }
+                } catch (IOException ignored) {
+                    // 列出目录之后关闭的描述符
+                }
+            }
+        }
+        long heapUsed = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        return new ResourceSnapshot(threads, clientThreads, fileDescriptors, sockets, heapUsed);
+    }
+
+    /**
+     * @return 本进程的全部TCP socket的inode，表中第10列
+     */
+    private static Set<String> readTcpInodes() {
+        Set<String> inodes = new HashSet<>();
+        for (String table : TCP_TABLES) {
+            try {
+                List<String> lines = Files.readAllLines(Paths.get(table), Charset.forName("US-ASCII"));
+                for (int i = 1; i < lines.size(); i++) {
+                    String[] columns = lines.get(i).trim().split("\\s+");
+                    if (columns.length > 9) {
+                        inodes.add(columns[9]);
+                    }
+                }
+            } catch (IOException ignored) {
+                // 没有IPv6时不存在tcp6
+            }
+        }
+        return inodes;
+    }
+
+    @Override
+    public String toString() {
+        return "threads=" + mThreads + " (client " + mClientThreads + "), fds=" + mFileDescriptors
+                + " (tcp " + mSockets + "), heap=" + mHeapUsed / (1024 * 1024) + "MB";
+    }
+
+}
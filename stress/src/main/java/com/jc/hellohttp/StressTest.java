@@ -0,0 +1,500 @@
+/*
+ * Copyright 2017 zhanghong6912@outlook.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jc.hellohttp;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Created by Zhang on 2017/8/3.<br/>
+ * Description: RequestQueue的浸泡/压力测试，在Linux的普通JVM上运行：./gradlew :stress:run -PstressArgs="--requests=1000000"<br/>
+ * 多个生产者线程持续向请求队列加入GET、POST与下载请求，保持固定数量的在途请求；本地的FaultInjectingServer按概率注入延迟、
+ * 503、slow loris响应体与连接重置。结束后报告吞吐量、延迟分位数、线程与socket泄漏以及堆内存增长，
+ * 发现丢失的回调、重复的回调、内容不符的响应体、线程或socket泄漏、堆内存增长超过上限时以状态码1退出。
+ * 参数均为--name=value的形式，见DEFAULTS
+ */
+public final class StressTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String ERROR_PREFIX = "Http request error, error message: ";
+
+    private static final String[][] DEFAULTS = {
+            {"requests", "1000000", "请求总数"},
+            {"producers", "4", "加入请求的线程数"},
+            {"inflight", "256", "在途请求数上限"},
+            {"executors", "16", "同时执行的请求数上限"},
+            {"virtual-threads", "false", "执行者使用虚拟线程（JDK 21+）"},
+            {"aging", "0", "优先级老化间隔（毫秒），0表示严格按优先级执行"},
+            {"prefetch-max-wait", "0", "PREFETCH请求的最长排队时间（毫秒），0表示不限"},
+            {"size", "1024", "GET响应体的平均大小（字节），实际在1~2倍之间随机"},
+            {"post", "0.2", "POST请求的比例"},
+            {"download", "0.02", "下载请求的比例，文件写入临时目录"},
+            {"cancel", "0.01", "加入后立即取消的比例"},
+            {"latency", "0", "服务端的固定延迟（毫秒）"},
+            {"jitter", "2", "服务端的随机延迟上限（毫秒）"},
+            {"reset", "0.001", "发送一半响应体后重置连接的概率"},
+            {"error", "0.01", "返回503的概率"},
+            {"slow", "0.001", "slow loris响应体的概率"},
+            {"slow-delay", "5", "slow loris每16字节的间隔（毫秒）"},
+            {"report", "5", "进度报告的间隔（秒）"},
+            {"drain", "60", "全部加入后等待完成的时间（秒）"},
+            {"max-heap-growth", "64", "允许的堆内存增长（MB），预热后与结束时GC后的比较"},
+    };
+
+    private final Map<String, String> mOptions;
+    private final int mRequests;
+    private final double mPostRatio;
+    private final double mDownloadRatio;
+    private final double mCancelRatio;
+    private final int mSize;
+
+    private FaultInjectingServer mServer;
+    private RequestQueue mQueue;
+    private Semaphore mWindow;
+
+    private final LatencyHistogram mLatencies = new LatencyHistogram();
+    /**
+     * 按优先级分别统计，下标为Priority.ordinal()
+     */
+    private final LatencyHistogram[] mPriorityLatencies = new LatencyHistogram[Request.Priority.values().length];
+    private final AtomicLong mMaxLatencyMicros = new AtomicLong();
+    private final AtomicLong mIssued = new AtomicLong();
+    private final AtomicLong mSucceeded = new AtomicLong();
+    private final AtomicLong mFailed = new AtomicLong();
+    private final AtomicLong mCanceled = new AtomicLong();
+    private final AtomicLong mCorrupt = new AtomicLong();
+    private final AtomicLong mDuplicates = new AtomicLong();
+    private final AtomicLong mAfterCancel = new AtomicLong();
+    private final Map<String, AtomicLong> mErrors = new ConcurrentHashMap<>();
+    /**
+     * 尚未得到回调的请求，结束时剩余的视为丢失
+     */
+    private final Set<Call> mOutstanding = ConcurrentHashMap.newKeySet();
+
+    private StressTest(Map<String, String> options) {
+        mOptions = options;
+        mRequests = intOption("requests");
+        mPostRatio = doubleOption("post");
+        mDownloadRatio = doubleOption("download");
+        mCancelRatio = doubleOption("cancel");
+        mSize = intOption("size");
+        for (int i = 0; i < mPriorityLatencies.length; i++) {
+            mPriorityLatencies[i] = new LatencyHistogram();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String[] option : DEFAULTS) {
+            options.put(option[0], option[1]);
+        }
+        for (String arg : args) {
+            int index = arg.indexOf('=');
+            String name = arg.startsWith("--") && index > 2 ? arg.substring(2, index) : null;
+            if (name == null || !options.containsKey(name)) {
+                System.err.println("Unknown argument: " + arg);
+                for (String[] option : DEFAULTS) {
+                    System.err.println("  --" + option[0] + "=" + option[1] + "\t" + option[2]);
+                }
+                System.exit(2);
+            }
+            options.put(name, arg.substring(index + 1));
+        }
+        System.exit(new StressTest(options).run() ? 0 : 1);
+    }
+
+    private boolean run() throws Exception {
+        // 普通JVM上下载到user.home/Downloads，指向临时目录
+        File home = Files.createTempDirectory("hellohttp-stress").toFile();
+        System.setProperty("user.home", home.getPath());
+        if (!new File(home, "Downloads").mkdir()) {
+            throw new IOException("Cannot create download directory in " + home);
+        }
+        ResourceSnapshot baseline = ResourceSnapshot.capture(true);
+        mServer = new FaultInjectingServer();
+        mServer.setLatency(intOption("latency"), intOption("jitter"));
+        mServer.setFaultRates(doubleOption("reset"), doubleOption("error"), doubleOption("slow"));
+        mServer.setSlowChunkDelay(intOption("slow-delay"));
+        int executors = intOption("executors");
+        ExecutorService executor = Boolean.parseBoolean(mOptions.get("virtual-threads"))
+                ? WorkerExecutors.virtualThreads() : WorkerExecutors.newDefaultExecutor(executors);
+        mQueue = HelloHttp.createRequestQueue(executor, executors);
+        mQueue.setPriorityAging(intOption("aging"));
+        mQueue.setMaxQueueWait(Request.Priority.PREFETCH, intOption("prefetch-max-wait"));
+        mWindow = new Semaphore(intOption("inflight"));
+        System.out.println("Options: " + mOptions);
+        System.out.println("Baseline: " + baseline);
+
+        final long start = System.nanoTime();
+        Reporter reporter = new Reporter(start, intOption("report"));
+        reporter.start();
+        int producers = intOption("producers");
+        List<Thread> threads = new ArrayList<>();
+        final AtomicLong next = new AtomicLong();
+        for (int i = 0; i < producers; i++) {
+            Thread producer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    long index;
+                    while ((index = next.getAndIncrement()) < mRequests) {
+                        mWindow.acquireUninterruptibly();
+                        issue(index);
+                    }
+                }
+            }, "StressTest-producer-" + i);
+            producer.start();
+            threads.add(producer);
+        }
+        for (Thread producer : threads) {
+            producer.join();
+        }
+        // 等待全部回调
+        long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(intOption("drain"));
+        while (!mOutstanding.isEmpty() && System.nanoTime() < drainDeadline) {
+            Thread.sleep(100);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        reporter.interrupt();
+        ResourceSnapshot warm = reporter.getWarmSnapshot();
+        ResourceSnapshot end = ResourceSnapshot.capture(true);
+        ResourceSnapshot peak = reporter.getPeak();
+
+        List<Request> unexecuted = mQueue.drain(5, TimeUnit.SECONDS);
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        mServer.stop();
+        ResourceSnapshot after = awaitQuiescence(baseline);
+        deleteRecursively(home);
+
+        return report(seconds, unexecuted.size(), baseline, warm, peak, end, after);
+    }
+
+    // 下载请求仍使用已废弃的DOWNLOAD类型，覆盖其文件写入路径
+    @SuppressWarnings("deprecation")
+    private void issue(long index) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Request.Priority[] priorities = Request.Priority.values();
+        final Call call;
+        Request request;
+        double dice = random.nextDouble();
+        if (dice < mDownloadRatio) {
+            // 文件名取URL的最后一段，只使用少量文件名
+            call = new Call();
+            request = new Request(mServer.url("/bytes/download-" + index % 16 + "?size=" + mSize), Request.RequestType.DOWNLOAD,
+                    Request.RequestMethod.GET, call);
+        } else if (dice < mDownloadRatio + mPostRatio) {
+            Map<String, String> params = new HashMap<>();
+            params.put("index", String.valueOf(index));
+            params.put("content", "压力测试 " + random.nextInt());
+            call = new Call(new String(ParamsEncoder.encode(params), UTF_8));
+            request = new Request(mServer.url("/echo"), Request.RequestType.STRING, Request.RequestMethod.POST, params, call);
+        } else {
+            int size = mSize + random.nextInt(mSize + 1);
+            call = new Call(size);
+            request = new Request(mServer.url("/bytes?size=" + size + "&index=" + index), Request.RequestType.STRING,
+                    Request.RequestMethod.GET, call);
+        }
+        Request.Priority priority = priorities[random.nextInt(priorities.length)];
+        request.setPriority(priority);
+        call.mPriority = priority;
+        mOutstanding.add(call);
+        mIssued.incrementAndGet();
+        if (!mQueue.add(request)) {
+            call.finish();
+            mFailed.incrementAndGet();
+            countError("rejected by RequestQueue");
+            return;
+        }
+        if (random.nextDouble() < mCancelRatio) {
+            request.cancel();
+            // 取消后不一定还有回调，由这里结束；已经回调过的不再计入
+            if (call.finish()) {
+                call.mCanceled = true;
+                mCanceled.incrementAndGet();
+            }
+        }
+    }
+
+    private void countError(String error) {
+        String kind = error.startsWith(ERROR_PREFIX) ? error.substring(ERROR_PREFIX.length()) : error;
+        // 去掉端口号等变化的部分，按错误类型归类
+        kind = kind.replaceAll("[0-9]{4,}", "#");
+        if (kind.length() > 80) {
+            kind = kind.substring(0, 80);
+        }
+        AtomicLong count = mErrors.get(kind);
+        if (count == null) {
+            AtomicLong created = new AtomicLong();
+            count = mErrors.putIfAbsent(kind, created);
+            if (count == null) {
+                count = created;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    /**
+     * 停止后等待执行者线程退出、空闲连接关闭，最多等待15秒（JDK的keep-alive连接空闲5秒后关闭）
+     */
+    private static ResourceSnapshot awaitQuiescence(ResourceSnapshot baseline) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(15);
+        while (true) {
+            ResourceSnapshot snapshot = ResourceSnapshot.capture(true);
+            boolean quiet = snapshot.mClientThreads <= baseline.mClientThreads && snapshot.mSockets <= baseline.mSockets;
+            if (quiet || System.nanoTime() > deadline) {
+                return snapshot;
+            }
+            Thread.sleep(500);
+        }
+    }
+
+    private boolean report(double seconds, int unexecuted, ResourceSnapshot baseline, ResourceSnapshot warm,
+                           ResourceSnapshot peak, ResourceSnapshot end, ResourceSnapshot after) {
+        long completed = mSucceeded.get() + mFailed.get() + mCanceled.get();
+        System.out.println();
+        System.out.println("==== Stress test result ====");
+        System.out.printf("Requests:   issued=%d succeeded=%d failed=%d canceled=%d (delivered after cancel %d)%n",
+                mIssued.get(), mSucceeded.get(), mFailed.get(), mCanceled.get(), mAfterCancel.get());
+        System.out.printf("Integrity:  lost=%d duplicate callbacks=%d corrupt bodies=%d unexecuted at drain=%d%n",
+                mOutstanding.size(), mDuplicates.get(), mCorrupt.get(), unexecuted);
+        System.out.printf("Throughput: %.0f requests/s over %.1f s%n", completed / seconds, seconds);
+        System.out.printf("Latency:    p50=%.2fms p90=%.2fms p99=%.2fms p99.9=%.2fms max=%.2fms%n",
+                mLatencies.percentile(50) / 1000.0, mLatencies.percentile(90) / 1000.0, mLatencies.percentile(99) / 1000.0,
+                mLatencies.percentile(99.9) / 1000.0, mMaxLatencyMicros.get() / 1000.0);
+        for (Request.Priority priority : Request.Priority.values()) {
+            LatencyHistogram histogram = mPriorityLatencies[priority.ordinal()];
+            System.out.printf("  %-9s  p50=%.2fms p99=%.2fms (%d requests), queue wait p50=%.2fms p99=%.2fms%n", priority,
+                    histogram.percentile(50) / 1000.0, histogram.percentile(99) / 1000.0, histogram.getCount(),
+                    mQueue.getQueueWaitMillis(priority, 50), mQueue.getQueueWaitMillis(priority, 99));
+        }
+        System.out.printf("Server:     requests=%d resets=%d 503=%d slow=%d%n", mServer.getRequestCount(),
+                mServer.getResetCount(), mServer.getErrorCount(), mServer.getSlowCount());
+        System.out.println("Errors:");
+        for (Map.Entry<String, AtomicLong> entry : mErrors.entrySet()) {
+            System.out.println("  " + entry.getValue().get() + "\t" + entry.getKey());
+        }
+        System.out.println("Baseline:   " + baseline);
+        System.out.println("Peak:       " + peak);
+        System.out.println("Warm:       " + warm);
+        System.out.println("End:        " + end);
+        System.out.println("After stop: " + after);
+
+        List<String> failures = new ArrayList<>();
+        if (!mOutstanding.isEmpty()) {
+            failures.add(mOutstanding.size() + " requests never got a callback");
+        }
+        if (mDuplicates.get() > 0) {
+            failures.add(mDuplicates.get() + " duplicate callbacks");
+        }
+        if (mCorrupt.get() > 0) {
+            failures.add(mCorrupt.get() + " response bodies did not match");
+        }
+        if (after.mClientThreads > baseline.mClientThreads) {
+            failures.add((after.mClientThreads - baseline.mClientThreads) + " client threads leaked");
+        }
+        if (after.mSockets > baseline.mSockets) {
+            failures.add((after.mSockets - baseline.mSockets) + " sockets leaked");
+        }
+        long heapGrowth = warm != null ? end.mHeapUsed - warm.mHeapUsed : 0;
+        System.out.printf("Heap growth after warm-up: %.1fMB%n", heapGrowth / (1024.0 * 1024));
+        if (heapGrowth > intOption("max-heap-growth") * 1024L * 1024) {
+            failures.add("heap grew by " + heapGrowth / (1024 * 1024) + "MB");
+        }
+        System.out.println(failures.isEmpty() ? "PASS" : "FAIL: " + failures);
+        return failures.isEmpty();
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    private int intOption(String name) {
+        return Integer.parseInt(mOptions.get(name));
+    }
+
+    private double doubleOption(String name) {
+        return Double.parseDouble(mOptions.get(name));
+    }
+
+    /**
+     * 一个请求的回调，检查回调次数与响应体
+     */
+    private final class Call implements RequestCallback<Object> {
+        private final long mStartNanos = System.nanoTime();
+        private final int mExpectedLength;
+        private final String mExpectedBody;
+        private final AtomicInteger mCallbacks = new AtomicInteger();
+        private final AtomicInteger mFinished = new AtomicInteger();
+        Request.Priority mPriority;
+        volatile boolean mCanceled;
+
+        /**
+         * 不检查响应体
+         */
+        Call() {
+            mExpectedLength = -1;
+            mExpectedBody = null;
+        }
+
+        Call(int expectedLength) {
+            mExpectedLength = expectedLength;
+            mExpectedBody = null;
+        }
+
+        Call(String expectedBody) {
+            mExpectedLength = expectedBody.length();
+            mExpectedBody = expectedBody;
+        }
+
+        @Override
+        public void onSuccess(Object response) {
+            if (!onCallback()) {
+                return;
+            }
+            String body = (String) response;
+            boolean intact = mExpectedBody != null ? mExpectedBody.equals(body) : mExpectedLength < 0
+                    || body.length() == mExpectedLength && (body.isEmpty() || body.charAt(0) == 'a' && body.charAt(body.length() - 1) == 'a');
+            if (!intact) {
+                mCorrupt.incrementAndGet();
+            }
+            mSucceeded.incrementAndGet();
+        }
+
+        @Override
+        public void onError(String errorMsg) {
+            if (!onCallback()) {
+                return;
+            }
+            countError(errorMsg);
+            mFailed.incrementAndGet();
+        }
+
+        /**
+         * @return 是否由这次回调结束请求
+         */
+        private boolean onCallback() {
+            if (mCallbacks.incrementAndGet() > 1) {
+                mDuplicates.incrementAndGet();
+                return false;
+            }
+            if (!finish()) {
+                if (mCanceled) {
+                    mAfterCancel.incrementAndGet();
+                }
+                return false;
+            }
+            long micros = (System.nanoTime() - mStartNanos) / 1000;
+            mLatencies.record(micros);
+            mPriorityLatencies[mPriority.ordinal()].record(micros);
+            long max;
+            while (micros > (max = mMaxLatencyMicros.get()) && !mMaxLatencyMicros.compareAndSet(max, micros)) {
+                // 重试
+            }
+            return true;
+        }
+
+        /**
+         * 回调或取消时调用，只有第一次生效
+         */
+        boolean finish() {
+            if (!mFinished.compareAndSet(0, 1)) {
+                return false;
+            }
+            mOutstanding.remove(this);
+            mWindow.release();
+            return true;
+        }
+    }
+
+    /**
+     * 定期打印进度，记录资源使用量的峰值，完成10%的请求后记录预热后的快照
+     */
+    private final class Reporter extends Thread {
+        private final long mStartNanos;
+        private final int mIntervalSeconds;
+        private volatile ResourceSnapshot mWarm;
+        private volatile ResourceSnapshot mPeak;
+
+        Reporter(long startNanos, int intervalSeconds) {
+            super("StressTest-reporter");
+            setDaemon(true);
+            mStartNanos = startNanos;
+            mIntervalSeconds = intervalSeconds;
+        }
+
+        ResourceSnapshot getWarmSnapshot() {
+            return mWarm;
+        }
+
+        ResourceSnapshot getPeak() {
+            return mPeak != null ? mPeak : ResourceSnapshot.capture(false);
+        }
+
+        @Override
+        public void run() {
+            long lastCompleted = 0;
+            long lastNanos = mStartNanos;
+            try {
+                while (!isInterrupted()) {
+                    Thread.sleep(200);
+                    long completed = mSucceeded.get() + mFailed.get() + mCanceled.get();
+                    if (mWarm == null && completed >= mRequests / 10) {
+                        mWarm = ResourceSnapshot.capture(true);
+                    }
+                    long now = System.nanoTime();
+                    if (now - lastNanos < TimeUnit.SECONDS.toNanos(mIntervalSeconds)) {
+                        continue;
+                    }
+                    ResourceSnapshot snapshot = ResourceSnapshot.capture(false);
+                    if (mPeak == null || snapshot.mSockets > mPeak.mSockets || snapshot.mThreads > mPeak.mThreads) {
+                        mPeak = snapshot;
+                    }
+                    System.out.printf("[%4ds] completed=%d (%.0f/s) inflight=%d failed=%d p99=%.2fms | server connections=%d | %s%n",
+                            TimeUnit.NANOSECONDS.toSeconds(now - mStartNanos), completed,
+                            (completed - lastCompleted) * 1e9 / (now - lastNanos), mOutstanding.size(), mFailed.get(),
+                            mLatencies.percentile(99) / 1000.0, mServer.getConnectionCount(), snapshot);
+                    lastCompleted = completed;
+                    lastNanos = now;
+                }
+            } catch (InterruptedException ignored) {
+                // 测试结束
+            }
+        }
+    }
+
+}